@@ -45,10 +45,9 @@ public class WidgetsModel {
     private static final ArrayList<WidgetListRowEntry> EMPTY_WIDGET_LIST = new ArrayList<>();
 
     /**
-     * Returns a list of {@link WidgetListRowEntry}. All {@link WidgetItem} in a single row
-     * are sorted (based on label and user), but the overall list of {@link WidgetListRowEntry}s
-     * is not sorted. This list is sorted at the UI when using
-     * {@link com.android.launcher3.widget.WidgetsDiffReporter}
+     * Returns a list of {@link WidgetListRowEntry} sorted by package title. All
+     * {@link WidgetItem} in a single row are sorted (based on label and user).
+     * The returned list is shared with the UI and should not be modified.
      *
      * @see com.android.launcher3.widget.WidgetsListAdapter#setWidgets(ArrayList)
      */
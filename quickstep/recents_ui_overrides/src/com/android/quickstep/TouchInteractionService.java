@@ -84,6 +84,7 @@ import com.android.quickstep.inputconsumers.ScreenPinnedInputConsumer;
 import com.android.quickstep.inputconsumers.SysUiOverlayInputConsumer;
 import com.android.quickstep.util.ActiveGestureLog;
 import com.android.quickstep.util.AssistantUtilities;
+import com.android.quickstep.util.MainThreadBinderWatchdog;
 import com.android.quickstep.util.ProtoTracer;
 import com.android.quickstep.util.SplitScreenBounds;
 import com.android.systemui.plugins.OverscrollPlugin;
@@ -301,6 +302,7 @@ public class TouchInteractionService extends Service implements PluginListener<O
         mDeviceState.runOnUserUnlocked(this::onUserUnlocked);
         mRotationTouchHelper = mDeviceState.getRotationTouchHelper();
         ProtoTracer.INSTANCE.get(this).add(this);
+        MainThreadBinderWatchdog.INSTANCE.start();
 
         sConnected = true;
     }
@@ -436,6 +438,7 @@ public class TouchInteractionService extends Service implements PluginListener<O
         SystemUiProxy.INSTANCE.get(this).setProxy(null);
         ProtoTracer.INSTANCE.get(TouchInteractionService.this).stop();
         ProtoTracer.INSTANCE.get(this).remove(this);
+        ProtoTracer.INSTANCE.get(this).flushStream();
 
         getSystemService(AccessibilityManager.class)
                 .unregisterSystemAction(SYSTEM_ACTION_ID_ALL_APPS);
@@ -487,7 +490,7 @@ public class TouchInteractionService extends Service implements PluginListener<O
                 mGestureState = newGestureState;
                 mConsumer = newConsumer(prevGestureState, mGestureState, event);
 
-                ActiveGestureLog.INSTANCE.addLog("setInputConsumer: " + mConsumer.getName());
+                ActiveGestureLog.INSTANCE.addLog("setInputConsumer", mConsumer.getName());
                 mUncheckedConsumer = mConsumer;
             } else if (mDeviceState.isUserUnlocked() && mDeviceState.isFullyGesturalNavMode()) {
                 mGestureState = createGestureState(mGestureState);
@@ -519,9 +522,8 @@ public class TouchInteractionService extends Service implements PluginListener<O
             switch (event.getActionMasked()) {
                 case ACTION_DOWN:
                 case ACTION_UP:
-                    ActiveGestureLog.INSTANCE.addLog("onMotionEvent("
-                            + (int) event.getRawX() + ", " + (int) event.getRawY() + ")",
-                            event.getActionMasked());
+                    ActiveGestureLog.INSTANCE.addLog("onMotionEvent", event.getActionMasked(),
+                            (int) event.getRawX(), (int) event.getRawY());
                     break;
                 default:
                     ActiveGestureLog.INSTANCE.addLog("onMotionEvent", event.getActionMasked());
@@ -844,15 +846,16 @@ public class TouchInteractionService extends Service implements PluginListener<O
             pw.println("  resumed=" + resumed);
             pw.println("  mConsumer=" + mConsumer.getName());
             ActiveGestureLog.INSTANCE.dump("", pw);
-            pw.println("ProtoTrace:");
-            pw.println("  file="
-                    + ProtoTracer.INSTANCE.get(TouchInteractionService.this).getTraceFile());
+            ProtoTracer.INSTANCE.get(TouchInteractionService.this).dump(pw);
+            MainThreadBinderWatchdog.INSTANCE.dump("", pw);
         }
     }
 
     private void printAvailableCommands(PrintWriter pw) {
         pw.println("Available commands:");
         pw.println("  clear-touch-log: Clears the touch interaction log");
+        pw.println("  stream-trace [on|off]: Enables or disables the streaming proto trace");
+        pw.println("  clear-binder-stats: Clears the main thread binder call stats");
     }
 
     private void onCommand(PrintWriter pw, ArgList args) {
@@ -860,6 +863,14 @@ public class TouchInteractionService extends Service implements PluginListener<O
             case "clear-touch-log":
                 ActiveGestureLog.INSTANCE.clear();
                 break;
+            case "clear-binder-stats":
+                MAIN_EXECUTOR.execute(MainThreadBinderWatchdog.INSTANCE::reset);
+                break;
+            case "stream-trace":
+                boolean enabled = args.peekArg() == null || !"off".equals(args.nextArg());
+                ProtoTracer.INSTANCE.get(this).setStreamingEnabled(enabled);
+                pw.println("Streaming trace " + (enabled ? "enabled" : "disabled"));
+                break;
         }
     }
 
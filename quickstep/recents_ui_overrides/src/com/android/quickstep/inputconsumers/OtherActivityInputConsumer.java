@@ -196,6 +196,10 @@ public class OtherActivityInputConsumer extends ContextWrapper implements InputC
                 && !mRecentsViewDispatcher.hasConsumer()) {
             mRecentsViewDispatcher.setConsumer(mInteractionHandler
                     .getRecentsViewDispatcher(mNavBarPosition.getRotation()));
+            if (mRecentsViewDispatcher.getDroppedCount() > 0) {
+                ActiveGestureLog.INSTANCE.addLog("cachedEventsDropped",
+                        mRecentsViewDispatcher.getDroppedCount());
+            }
             int action = ev.getAction();
             ev.setAction(ACTION_MOVE_ALLOW_EASY_FLING);
             mRecentsViewDispatcher.dispatchEvent(ev);
@@ -19,9 +19,13 @@ package com.android.quickstep.util;
 import static com.android.launcher3.tracing.nano.LauncherTraceFileProto.MagicNumber.MAGIC_NUMBER_H;
 import static com.android.launcher3.tracing.nano.LauncherTraceFileProto.MagicNumber.MAGIC_NUMBER_L;
 
+import static com.android.launcher3.util.Executors.UI_HELPER_EXECUTOR;
+
 import android.content.Context;
 import android.os.SystemClock;
+import android.view.Choreographer;
 
+import com.android.launcher3.Utilities;
 import com.android.launcher3.tracing.nano.LauncherTraceProto;
 import com.android.launcher3.tracing.nano.LauncherTraceEntryProto;
 import com.android.launcher3.tracing.nano.LauncherTraceFileProto;
@@ -32,7 +36,6 @@ import com.android.systemui.shared.tracing.ProtoTraceable;
 import com.google.protobuf.nano.MessageNano;
 
 import java.io.File;
-import java.io.FileDescriptor;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Queue;
@@ -50,13 +53,31 @@ public class ProtoTracer implements ProtoTraceParams<MessageNano,
     private static final String TAG = "ProtoTracer";
     private static final long MAGIC_NUMBER_VALUE = ((long) MAGIC_NUMBER_H << 32) | MAGIC_NUMBER_L;
 
+    private static final String KEY_STREAMING_ENABLED = "pref_proto_trace_streaming";
+    private static final long STREAM_MAX_DISK_SIZE = 8 * 1024 * 1024;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
     private final Context mContext;
     private final FrameProtoTracer<MessageNano,
             LauncherTraceFileProto, LauncherTraceEntryProto, LauncherTraceProto> mProtoTracer;
 
+    // Streaming trace, which writes entries to disk as they are produced and can be kept
+    // enabled for long periods
+    private final ArrayList<ProtoTraceable<LauncherTraceProto>> mTraceables = new ArrayList<>();
+    private final ProtoTraceStreamWriter mStreamWriter;
+    private final Choreographer.FrameCallback mStreamFrameCallback = this::onStreamFrame;
+    private LauncherTraceEntryProto mStreamEntry;
+    private boolean mStreamFrameScheduled;
+
     public ProtoTracer(Context context) {
         mContext = context;
         mProtoTracer = new FrameProtoTracer<>(this);
+        mStreamWriter = new ProtoTraceStreamWriter(
+                new File(mContext.getFilesDir(), "launcher_trace_stream.pb"),
+                STREAM_MAX_DISK_SIZE, STREAM_BUFFER_SIZE, UI_HELPER_EXECUTOR);
+        if (Utilities.getDevicePrefs(mContext).getBoolean(KEY_STREAMING_ENABLED, false)) {
+            mStreamWriter.start();
+        }
     }
 
     @Override
@@ -109,19 +130,76 @@ public class ProtoTracer implements ProtoTraceParams<MessageNano,
         mProtoTracer.stop();
     }
 
+    /**
+     * Enables or disables the streaming trace. The setting is persisted across restarts.
+     */
+    public void setStreamingEnabled(boolean enabled) {
+        Utilities.getDevicePrefs(mContext).edit()
+                .putBoolean(KEY_STREAMING_ENABLED, enabled).apply();
+        if (enabled) {
+            mStreamWriter.start();
+        } else {
+            mStreamWriter.stop();
+        }
+    }
+
+    public boolean isStreamingEnabled() {
+        return mStreamWriter.isStarted();
+    }
+
     public void add(ProtoTraceable<LauncherTraceProto> traceable) {
         mProtoTracer.add(traceable);
+        if (!mTraceables.contains(traceable)) {
+            mTraceables.add(traceable);
+        }
     }
 
     public void remove(ProtoTraceable<LauncherTraceProto> traceable) {
         mProtoTracer.remove(traceable);
+        mTraceables.remove(traceable);
     }
 
     public void scheduleFrameUpdate() {
         mProtoTracer.scheduleFrameUpdate();
+        if (mStreamWriter.isStarted() && !mStreamFrameScheduled) {
+            mStreamFrameScheduled = true;
+            Choreographer.getInstance().postFrameCallback(mStreamFrameCallback);
+        }
     }
 
     public void update() {
         mProtoTracer.update();
+        if (mStreamFrameScheduled) {
+            // The entry written now already contains the state of the scheduled frame
+            mStreamFrameScheduled = false;
+            Choreographer.getInstance().removeFrameCallback(mStreamFrameCallback);
+        }
+        writeStreamEntry();
+    }
+
+    /**
+     * Writes the entries buffered for the streaming trace to disk
+     */
+    public void flushStream() {
+        mStreamWriter.flush();
+    }
+
+    private void onStreamFrame(long frameTimeNanos) {
+        mStreamFrameScheduled = false;
+        writeStreamEntry();
+    }
+
+    private void writeStreamEntry() {
+        if (mStreamWriter.isStarted() && !mTraceables.isEmpty()) {
+            // The entry and its nested protos are reused, traceables overwrite their state
+            mStreamEntry = updateBufferProto(mStreamEntry, mTraceables);
+            mStreamWriter.append(mStreamEntry);
+        }
+    }
+
+    public void dump(PrintWriter pw) {
+        pw.println("ProtoTrace:");
+        pw.println("  file=" + getTraceFile());
+        mStreamWriter.dump("  ", pw);
     }
 }
@@ -25,11 +25,16 @@ import android.view.SurfaceControl;
 import android.view.SurfaceControl.Transaction;
 import android.view.View;
 
+import androidx.annotation.VisibleForTesting;
+
 import com.android.quickstep.RemoteAnimationTargets.ReleaseCheck;
 import com.android.systemui.shared.system.SyncRtSurfaceTransactionApplierCompat.SurfaceParams;
 import com.android.systemui.shared.system.ViewRootImplCompat;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 
 /**
@@ -48,12 +53,27 @@ public class SurfaceTransactionApplier extends ReleaseCheck {
 
     private int mLastSequenceNumber = 0;
 
+    // Callbacks which are not currently registered with the RenderThread, available for reuse.
+    // Callbacks are obtained on the UI thread and recycled on the RenderThread.
+    private final ArrayList<ApplyCallback> mCallbackPool = new ArrayList<>();
+    // Only accessed on the RenderThread. Applying a transaction clears it, so that a single
+    // instance can be used for all the frames.
+    private final Transaction mTransaction;
+
     /**
      * @param targetView The view in the surface that acts as synchronization anchor.
      */
     public SurfaceTransactionApplier(View targetView) {
-        mTargetViewRootImpl = new ViewRootImplCompat(targetView);
-        mBarrierSurfaceControl = mTargetViewRootImpl.getRenderSurfaceControl();
+        this(new ViewRootImplCompat(targetView), null, new Transaction());
+    }
+
+    @VisibleForTesting
+    SurfaceTransactionApplier(ViewRootImplCompat targetViewRootImpl,
+            SurfaceControl barrierSurfaceControl, Transaction transaction) {
+        mTargetViewRootImpl = targetViewRootImpl;
+        mBarrierSurfaceControl = barrierSurfaceControl != null
+                ? barrierSurfaceControl : mTargetViewRootImpl.getRenderSurfaceControl();
+        mTransaction = transaction;
         mApplyHandler = new Handler(this::onApplyMessage);
     }
 
@@ -68,8 +88,8 @@ public class SurfaceTransactionApplier extends ReleaseCheck {
     /**
      * Schedules applying surface parameters on the next frame.
      *
-     * @param params The surface parameters to apply. DO NOT MODIFY the list after passing into
-     *               this method to avoid synchronization issues.
+     * @param params The surface parameters to apply. The params are copied, so the array can be
+     *               reused by the caller after this call.
      */
     public void scheduleApply(final SurfaceParams... params) {
         View view = mTargetViewRootImpl.getView();
@@ -78,29 +98,69 @@ public class SurfaceTransactionApplier extends ReleaseCheck {
         }
 
         mLastSequenceNumber++;
-        final int toApplySeqNo = mLastSequenceNumber;
         setCanRelease(false);
-        mTargetViewRootImpl.registerRtFrameCallback(frame -> {
-            if (mBarrierSurfaceControl == null || !mBarrierSurfaceControl.isValid()) {
-                Message.obtain(mApplyHandler, MSG_UPDATE_SEQUENCE_NUMBER, toApplySeqNo, 0)
-                        .sendToTarget();
-                return;
+        mTargetViewRootImpl.registerRtFrameCallback(obtainCallback(params, mLastSequenceNumber));
+
+        // Make sure a frame gets scheduled.
+        view.invalidate();
+    }
+
+    /**
+     * Returns a callback which applies {@param params} when run, taken from the pool if possible
+     */
+    @VisibleForTesting
+    LongConsumer obtainCallback(SurfaceParams[] params, int sequenceNumber) {
+        ApplyCallback callback;
+        synchronized (mCallbackPool) {
+            int size = mCallbackPool.size();
+            callback = size > 0 ? mCallbackPool.remove(size - 1) : new ApplyCallback();
+        }
+        callback.set(params, sequenceNumber);
+        return callback;
+    }
+
+    /**
+     * Callback run on the RenderThread to apply a set of surface params for a frame. Instances
+     * are returned to the pool once applied.
+     */
+    private class ApplyCallback implements LongConsumer {
+
+        private SurfaceParams[] mParams = new SurfaceParams[0];
+        private int mParamsCount;
+        private int mSequenceNumber;
+
+        void set(SurfaceParams[] params, int sequenceNumber) {
+            if (mParams.length < params.length) {
+                mParams = new SurfaceParams[params.length];
             }
-            Transaction t = new Transaction();
-            for (int i = params.length - 1; i >= 0; i--) {
-                SurfaceParams surfaceParams = params[i];
-                if (surfaceParams.surface.isValid()) {
-                    deferTransactionUntil(t, surfaceParams.surface, mBarrierSurfaceControl, frame);
-                    surfaceParams.applyTo(t);
+            System.arraycopy(params, 0, mParams, 0, params.length);
+            mParamsCount = params.length;
+            mSequenceNumber = sequenceNumber;
+        }
+
+        @Override
+        public void accept(long frame) {
+            if (mBarrierSurfaceControl != null && mBarrierSurfaceControl.isValid()) {
+                Transaction t = mTransaction;
+                for (int i = mParamsCount - 1; i >= 0; i--) {
+                    SurfaceParams surfaceParams = mParams[i];
+                    if (surfaceParams.surface.isValid()) {
+                        deferTransactionUntil(
+                                t, surfaceParams.surface, mBarrierSurfaceControl, frame);
+                        surfaceParams.applyTo(t);
+                    }
                 }
+                t.apply();
             }
-            t.apply();
-            Message.obtain(mApplyHandler, MSG_UPDATE_SEQUENCE_NUMBER, toApplySeqNo, 0)
+            Message.obtain(mApplyHandler, MSG_UPDATE_SEQUENCE_NUMBER, mSequenceNumber, 0)
                     .sendToTarget();
-        });
 
-        // Make sure a frame gets scheduled.
-        view.invalidate();
+            Arrays.fill(mParams, 0, mParamsCount, null);
+            mParamsCount = 0;
+            synchronized (mCallbackPool) {
+                mCallbackPool.add(this);
+            }
+        }
     }
 
     /**
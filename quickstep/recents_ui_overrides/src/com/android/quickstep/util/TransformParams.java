@@ -62,6 +62,10 @@ public class TransformParams {
     private BuilderProxy mHomeBuilderProxy = BuilderProxy.ALWAYS_VISIBLE;
     private BuilderProxy mBaseBuilderProxy = BuilderProxy.ALWAYS_VISIBLE;
 
+    // Reused across frames to avoid allocations during the animation
+    private SurfaceParams[] mSurfaceParams = new SurfaceParams[0];
+    private TransactionCompat mTransaction;
+
     public TransformParams() {
         mProgress = 0;
         mTargetAlpha = 1;
@@ -135,9 +139,16 @@ public class TransformParams {
         return this;
     }
 
+    /**
+     * Creates the surface params for all the targets. The returned array is reused on every call,
+     * and is only valid until the next call to this method.
+     */
     public SurfaceParams[] createSurfaceParams(BuilderProxy proxy) {
         RemoteAnimationTargets targets = mTargetSet;
-        SurfaceParams[] surfaceParams = new SurfaceParams[targets.unfilteredApps.length];
+        if (mSurfaceParams.length != targets.unfilteredApps.length) {
+            mSurfaceParams = new SurfaceParams[targets.unfilteredApps.length];
+        }
+        SurfaceParams[] surfaceParams = mSurfaceParams;
         for (int i = 0; i < targets.unfilteredApps.length; i++) {
             RemoteAnimationTargetCompat app = targets.unfilteredApps[i];
             SurfaceParams.Builder builder = new SurfaceParams.Builder(app.leash);
@@ -187,7 +198,11 @@ public class TransformParams {
         if (mSyncTransactionApplier != null) {
             mSyncTransactionApplier.scheduleApply(params);
         } else {
-            TransactionCompat t = new TransactionCompat();
+            if (mTransaction == null) {
+                mTransaction = new TransactionCompat();
+            }
+            // Applying the transaction also clears it, so that it can be reused for the next frame
+            TransactionCompat t = mTransaction;
             for (SurfaceParams param : params) {
                 SyncRtSurfaceTransactionApplierCompat.applyParams(t, param);
             }
@@ -19,6 +19,7 @@ package com.android.quickstep;
 
 import static com.android.quickstep.SysUINavigationMode.Mode.NO_BUTTON;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.anyInt;
@@ -231,6 +232,35 @@ public class OrientationTouchTransformerTest {
         assertTrue(mTouchTransformer.touchInValidSwipeRegions(inRegion2.getX(), inRegion2.getY()));
     }
 
+    @Test
+    public void transform_swipeTraceInCurrentRotation() {
+        mTouchTransformer.createOrAddTouchRegion(mInfo);
+        float startY = generateTouchRegionHeight(Surface.ROTATION_0) + 1;
+
+        // Replay a swipe several times, so that the region's cached transform gets reused
+        for (int swipe = 0; swipe < 3; swipe++) {
+            MotionEvent down = generateAndTransformMotionEvent(MotionEvent.ACTION_DOWN, 500,
+                    startY);
+            assertTrue(mTouchTransformer.touchInValidSwipeRegions(down.getX(), down.getY()));
+            for (int i = 1; i <= 20; i++) {
+                float y = startY - i * 50;
+                MotionEvent move = generateAndTransformMotionEvent(MotionEvent.ACTION_MOVE, 500, y);
+                // The region has the display rotation, events are not transformed
+                assertEquals(500, move.getX(), 0);
+                assertEquals(y, move.getY(), 0);
+                // Moves above the nav bar are outside of the touched region
+                assertFalse(mTouchTransformer.touchInValidSwipeRegions(move.getX(), move.getY()));
+            }
+            generateAndTransformMotionEvent(MotionEvent.ACTION_UP, 500, startY - 1000);
+        }
+
+        // The cached transform is not used once the region is replaced
+        float landscapeRegionY = generateTouchRegionHeight(Surface.ROTATION_90) + 1;
+        mTouchTransformer.createOrAddTouchRegion(createDisplayInfo(Surface.ROTATION_90));
+        tapAndAssertTrue(100, landscapeRegionY,
+                event -> mTouchTransformer.touchInValidSwipeRegions(event.getX(), event.getY()));
+    }
+
     private DefaultDisplay.Info createDisplayInfo(int rotation) {
         Point p = new Point(SIZE_WIDTH, SIZE_HEIGHT);
         if (rotation == Surface.ROTATION_90 || rotation == Surface.ROTATION_270) {
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Test utility to measure the bytes allocated by the current thread while running some code.
+ * Tests using it are skipped on JVMs which do not support per-thread allocation accounting.
+ */
+public class AllocationTracker {
+
+    private final com.sun.management.ThreadMXBean mThreadBean;
+
+    public AllocationTracker() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        mThreadBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(mThreadBean.isThreadAllocatedMemorySupported());
+        mThreadBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    /**
+     * Runs {@param task} {@param iterations} times and returns the number of bytes allocated.
+     */
+    public long measure(int iterations, Runnable task) {
+        long threadId = Thread.currentThread().getId();
+        // Calibrate the cost of the measurement itself
+        long baseStart = mThreadBean.getThreadAllocatedBytes(threadId);
+        long baseEnd = mThreadBean.getThreadAllocatedBytes(threadId);
+
+        long start = mThreadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; i++) {
+            task.run();
+        }
+        long end = mThreadBean.getThreadAllocatedBytes(threadId);
+        return Math.max(0, (end - start) - (baseEnd - baseStart));
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static android.view.MotionEvent.ACTION_CANCEL;
+import static android.view.MotionEvent.ACTION_DOWN;
+import static android.view.MotionEvent.ACTION_MOVE;
+import static android.view.MotionEvent.ACTION_POINTER_DOWN;
+import static android.view.MotionEvent.ACTION_POINTER_UP;
+import static android.view.MotionEvent.ACTION_UP;
+
+import static com.android.quickstep.util.CachedEventDispatcher.MAX_CACHED_EVENTS;
+
+import static org.junit.Assert.assertEquals;
+
+import android.view.MotionEvent;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+
+/**
+ * Tests for {@link CachedEventDispatcher}
+ */
+@RunWith(RobolectricTestRunner.class)
+public class CachedEventDispatcherTest {
+
+    private static final int MOVE_COUNT = 100;
+
+    private CachedEventDispatcher mDispatcher;
+    private ArrayList<MotionEvent> mReceived;
+    private ArrayList<Integer> mReceivedHistorySizes;
+    private long mTime;
+
+    @Before
+    public void setup() {
+        mDispatcher = new CachedEventDispatcher();
+        mReceived = new ArrayList<>();
+        mReceivedHistorySizes = new ArrayList<>();
+        mTime = 0;
+    }
+
+    @Test
+    public void testMovesMergedIntoSingleEvent() {
+        dispatch(ACTION_DOWN, 0);
+        for (int i = 0; i < MOVE_COUNT; i++) {
+            dispatch(ACTION_MOVE, 0);
+        }
+        setConsumer();
+
+        assertEquals(2, mReceived.size());
+        assertEquals(ACTION_DOWN, mReceived.get(0).getActionMasked());
+        assertEquals(ACTION_MOVE, mReceived.get(1).getActionMasked());
+        assertEquals(MOVE_COUNT - 1, (int) mReceivedHistorySizes.get(1));
+        assertEquals(2, mDispatcher.getQueuedCount());
+        assertEquals(MOVE_COUNT - 1, mDispatcher.getMergedCount());
+        assertEquals(0, mDispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void testCacheBounded() {
+        dispatch(ACTION_DOWN, 0);
+        // Moves from alternating devices are not merged
+        for (int i = 0; i < MOVE_COUNT; i++) {
+            dispatch(ACTION_MOVE, i % 2);
+        }
+        long lastMoveTime = mTime;
+        setConsumer();
+
+        assertEquals(MAX_CACHED_EVENTS, mReceived.size());
+        assertEquals(ACTION_DOWN, mReceived.get(0).getActionMasked());
+        // The latest position is always kept
+        assertEquals(lastMoveTime, mReceived.get(MAX_CACHED_EVENTS - 1).getEventTime());
+        assertEquals(MOVE_COUNT - (MAX_CACHED_EVENTS - 1), mDispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void testDroppedCountIncludesMergedSamples() {
+        dispatch(ACTION_DOWN, 0);
+        for (int i = 0; i < MAX_CACHED_EVENTS - 1; i++) {
+            dispatch(ACTION_MOVE, i % 2);
+        }
+        // Merged into the last cached move
+        int lastDevice = (MAX_CACHED_EVENTS - 2) % 2;
+        dispatch(ACTION_MOVE, lastDevice);
+        dispatch(ACTION_MOVE, lastDevice);
+
+        dispatch(ACTION_MOVE, 1 - lastDevice);
+        assertEquals(3, mDispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void testUpEventKeptWhenFull() {
+        dispatch(ACTION_DOWN, 0);
+        for (int i = 0; i < MOVE_COUNT; i++) {
+            dispatch(ACTION_MOVE, i % 2);
+        }
+        dispatch(ACTION_UP, 0);
+        setConsumer();
+
+        assertEquals(MAX_CACHED_EVENTS, mReceived.size());
+        assertEquals(ACTION_DOWN, mReceived.get(0).getActionMasked());
+        assertEquals(ACTION_UP, mReceived.get(MAX_CACHED_EVENTS - 1).getActionMasked());
+        assertEquals(MOVE_COUNT - (MAX_CACHED_EVENTS - 2), mDispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void testDownKeptWhenFullWithoutMoves() {
+        dispatch(ACTION_DOWN, 0);
+        int pointerCount = 2 * MAX_CACHED_EVENTS;
+        for (int i = 0; i < pointerCount; i++) {
+            dispatch(i % 2 == 0 ? ACTION_POINTER_DOWN : ACTION_POINTER_UP, 0);
+        }
+        dispatch(ACTION_UP, 0);
+        setConsumer();
+
+        assertEquals(MAX_CACHED_EVENTS, mReceived.size());
+        assertEquals(ACTION_DOWN, mReceived.get(0).getActionMasked());
+        assertEquals(ACTION_UP, mReceived.get(MAX_CACHED_EVENTS - 1).getActionMasked());
+        assertEquals(pointerCount - (MAX_CACHED_EVENTS - 2), mDispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void testGestureBoundariesNeverDropped() {
+        for (int i = 0; i < MAX_CACHED_EVENTS; i++) {
+            dispatch(ACTION_DOWN, 0);
+            dispatch(i % 2 == 0 ? ACTION_UP : ACTION_CANCEL, 0);
+        }
+        setConsumer();
+
+        assertEquals(2 * MAX_CACHED_EVENTS, mReceived.size());
+        for (int i = 0; i < MAX_CACHED_EVENTS; i++) {
+            assertEquals(ACTION_DOWN, mReceived.get(2 * i).getActionMasked());
+            assertEquals(i % 2 == 0 ? ACTION_UP : ACTION_CANCEL,
+                    mReceived.get(2 * i + 1).getActionMasked());
+        }
+        assertEquals(0, mDispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void testEventsDispatchedDirectlyWithConsumer() {
+        setConsumer();
+        dispatch(ACTION_DOWN, 0);
+        dispatch(ACTION_MOVE, 0);
+        dispatch(ACTION_MOVE, 0);
+
+        assertEquals(3, mReceived.size());
+        assertEquals(0, mDispatcher.getQueuedCount());
+        assertEquals(0, mDispatcher.getMergedCount());
+    }
+
+    private void dispatch(int action, int deviceId) {
+        mTime++;
+        MotionEvent ev = MotionEvent.obtain(0, mTime, action, mTime, mTime, 1, 1, 0, 1, 1,
+                deviceId, 0);
+        mDispatcher.dispatchEvent(ev);
+        ev.recycle();
+    }
+
+    private void setConsumer() {
+        mDispatcher.setConsumer(ev -> {
+            // Cached events are recycled after being dispatched
+            mReceived.add(MotionEvent.obtain(ev));
+            mReceivedHistorySizes.add(ev.getHistorySize());
+        });
+    }
+}
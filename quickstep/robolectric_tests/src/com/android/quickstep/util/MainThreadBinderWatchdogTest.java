@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static android.os.IBinder.FLAG_ONEWAY;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.os.IBinder;
+
+import com.android.launcher3.util.TraceHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Tests for {@link MainThreadBinderWatchdog}
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MainThreadBinderWatchdogTest {
+
+    private static final String DESCRIPTOR = "android.app.IActivityManager";
+
+    private final MainThreadBinderWatchdog mWatchdog = MainThreadBinderWatchdog.INSTANCE;
+
+    @Before
+    public void setUp() {
+        mWatchdog.reset();
+        mWatchdog.setBudget(MILLISECONDS.toNanos(4), MILLISECONDS.toNanos(16));
+    }
+
+    @After
+    public void tearDown() {
+        mWatchdog.stop();
+        mWatchdog.reset();
+    }
+
+    @Test
+    public void testCallsTaggedWithDescriptor() throws Exception {
+        IBinder binder = mock(IBinder.class);
+        when(binder.getInterfaceDescriptor()).thenReturn(DESCRIPTOR);
+        mWatchdog.start();
+
+        // Oneway calls do not block the main thread
+        mWatchdog.onTransactStarted(binder, 1, FLAG_ONEWAY);
+        mWatchdog.onTransactEnded(null);
+        assertEquals(0, mWatchdog.getCount(DESCRIPTOR));
+
+        for (int i = 0; i < 2; i++) {
+            mWatchdog.onTransactStarted(binder, 1, 0);
+            mWatchdog.onTransactEnded(null);
+        }
+        assertEquals(2, mWatchdog.getCount(DESCRIPTOR));
+        // The descriptor is only queried once
+        verify(binder, times(1)).getInterfaceDescriptor();
+
+        TraceHelper.allowIpcs("section", () -> {
+            mWatchdog.onTransactStarted(binder, 1, 0);
+            mWatchdog.onTransactEnded(null);
+            return null;
+        });
+        assertEquals(1, mWatchdog.getCount("section"));
+    }
+
+    @Test
+    public void testCallsIgnoredWhenStopped() throws Exception {
+        IBinder binder = mock(IBinder.class);
+        when(binder.getInterfaceDescriptor()).thenReturn(DESCRIPTOR);
+        mWatchdog.onTransactStarted(binder, 1, 0);
+        mWatchdog.onTransactEnded(null);
+        assertEquals(0, mWatchdog.getCount(DESCRIPTOR));
+    }
+
+    @Test
+    public void testCallsAreCountedPerTag() {
+        long now = MILLISECONDS.toNanos(1000);
+        mWatchdog.onCallFinished("getRunningTask", DESCRIPTOR, 1,
+                MILLISECONDS.toNanos(1), true, now);
+        mWatchdog.onCallFinished("getRunningTask", DESCRIPTOR, 1,
+                MILLISECONDS.toNanos(1), true, now);
+        mWatchdog.onCallFinished("isSafeMode", DESCRIPTOR, 1, MILLISECONDS.toNanos(1), true, now);
+
+        assertEquals(2, mWatchdog.getCount("getRunningTask"));
+        assertEquals(1, mWatchdog.getCount("isSafeMode"));
+        assertEquals(0, mWatchdog.getBudgetViolations());
+    }
+
+    @Test
+    public void testFrameBudget() {
+        long now = MILLISECONDS.toNanos(1000);
+        // Three 2ms calls in the same frame exceed the 4ms budget once
+        for (int i = 0; i < 3; i++) {
+            now += MILLISECONDS.toNanos(2);
+            mWatchdog.onCallFinished("onResume", DESCRIPTOR, 1,
+                    MILLISECONDS.toNanos(2), false, now);
+        }
+        assertEquals(1, mWatchdog.getBudgetViolations());
+        assertEquals(1, mWatchdog.getOutlierCount());
+
+        // A new frame starts with a fresh budget
+        now += MILLISECONDS.toNanos(50);
+        mWatchdog.onCallFinished("onResume", DESCRIPTOR, 1, MILLISECONDS.toNanos(2), false, now);
+        assertEquals(1, mWatchdog.getBudgetViolations());
+
+        // Allowed calls do not count against the budget
+        mWatchdog.onCallFinished("allowed", DESCRIPTOR, 1, MILLISECONDS.toNanos(30), true, now);
+        assertEquals(1, mWatchdog.getBudgetViolations());
+        assertEquals(1, mWatchdog.getOutlierCount());
+    }
+
+    @Test
+    public void testOutliersAreDumpedWithStacks() {
+        mWatchdog.onCallFinished("slowCall", DESCRIPTOR, 1, MILLISECONDS.toNanos(20), false,
+                MILLISECONDS.toNanos(1000));
+        assertEquals(1, mWatchdog.getOutlierCount());
+
+        StringWriter out = new StringWriter();
+        mWatchdog.dump("", new PrintWriter(out));
+        String dump = out.toString();
+        assertTrue(dump, dump.contains("slowCall: 20ms"));
+        assertTrue(dump, dump.contains("at " + getClass().getName()));
+    }
+
+    @Test
+    public void testMainThreadSectionsAreTracked() {
+        assertNull(TraceHelper.getMainThreadSection());
+        String section = TraceHelper.allowIpcs("outer", () -> {
+            assertTrue((TraceHelper.getMainThreadFlags() & TraceHelper.FLAG_IGNORE_BINDERS) != 0);
+            return TraceHelper.getMainThreadSection();
+        });
+        assertEquals("outer", section);
+        assertNull(TraceHelper.getMainThreadSection());
+        assertEquals(0, TraceHelper.getMainThreadFlags());
+
+        Object token = TraceHelper.INSTANCE.beginFlagsOverride(TraceHelper.FLAG_UI_EVENT);
+        assertEquals(TraceHelper.FLAG_UI_EVENT, TraceHelper.getMainThreadFlags());
+        TraceHelper.INSTANCE.endFlagsOverride(token);
+        assertEquals(0, TraceHelper.getMainThreadFlags());
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.view.MotionEvent;
+
+import com.android.quickstep.util.MotionPauseDetector.LSqVelocityProvider;
+import com.android.quickstep.util.MotionPauseDetector.LinearVelocityProvider;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/**
+ * Tests for the velocity providers used by {@link MotionPauseDetector}
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MotionPauseDetectorTest {
+
+    private static final int WARM_UP_EVENTS = 10_000;
+    private static final int MEASURED_EVENTS = 1_000;
+
+    @Test
+    public void linearVelocity_unavailableUntilSecondEvent() {
+        LinearVelocityProvider provider = new LinearVelocityProvider(MotionEvent.AXIS_Y);
+        assertTrue(Float.isNaN(provider.addPosition(0, 0)));
+        assertEquals(2f, provider.addPosition(10, 20), 0.001f);
+
+        provider.clear();
+        assertTrue(Float.isNaN(provider.addPosition(20, 0)));
+    }
+
+    @Test
+    public void lsqVelocity_constantSpeed() {
+        LSqVelocityProvider provider = new LSqVelocityProvider(MotionEvent.AXIS_Y);
+        float velocity = Float.NaN;
+        for (int i = 0; i < 10; i++) {
+            velocity = provider.addPosition(i * 8, i * 16);
+        }
+        assertEquals(2f, velocity, 0.01f);
+    }
+
+    @Test
+    public void linearVelocity_noAllocationsPerEvent() {
+        LinearVelocityProvider provider = new LinearVelocityProvider(MotionEvent.AXIS_Y);
+        assertNoAllocations(new Runnable() {
+            long mTime;
+
+            @Override
+            public void run() {
+                mTime += 8;
+                provider.addPosition(mTime, mTime * 1.5f);
+            }
+        });
+    }
+
+    @Test
+    public void lsqVelocity_noAllocationsPerEvent() {
+        LSqVelocityProvider provider = new LSqVelocityProvider(MotionEvent.AXIS_Y);
+        assertNoAllocations(new Runnable() {
+            long mTime;
+
+            @Override
+            public void run() {
+                mTime += 8;
+                provider.addPosition(mTime, mTime * 1.5f);
+            }
+        });
+    }
+
+    private static void assertNoAllocations(Runnable addEvent) {
+        AllocationTracker tracker = new AllocationTracker();
+        tracker.measure(WARM_UP_EVENTS, addEvent);
+        assertEquals(0, tracker.measure(MEASURED_EVENTS, addEvent));
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static com.android.launcher3.tracing.nano.LauncherTraceFileProto.MagicNumber.MAGIC_NUMBER_H;
+import static com.android.launcher3.tracing.nano.LauncherTraceFileProto.MagicNumber.MAGIC_NUMBER_L;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.android.launcher3.tracing.nano.LauncherTraceEntryProto;
+import com.android.launcher3.tracing.nano.LauncherTraceFileProto;
+import com.android.launcher3.tracing.nano.LauncherTraceProto;
+import com.android.launcher3.tracing.nano.TouchInteractionServiceProto;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+/**
+ * Tests for {@link ProtoTraceStreamWriter}
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ProtoTraceStreamWriterTest {
+
+    private static final long MAGIC_NUMBER_VALUE = ((long) MAGIC_NUMBER_H << 32) | MAGIC_NUMBER_L;
+
+    private File mFile;
+    private LauncherTraceEntryProto mEntry;
+
+    @Before
+    public void setUp() {
+        mFile = new File(RuntimeEnvironment.application.getCacheDir(), "trace_test.pb");
+        mFile.delete();
+        mEntry = new LauncherTraceEntryProto();
+        mEntry.launcher = new LauncherTraceProto();
+        mEntry.launcher.touchInteractionService = new TouchInteractionServiceProto();
+    }
+
+    @Test
+    public void testEntriesAreStreamedAsValidTrace() throws Exception {
+        ProtoTraceStreamWriter writer =
+                new ProtoTraceStreamWriter(mFile, 1024 * 1024, 256, Runnable::run);
+        writer.start();
+        for (int i = 0; i < 100; i++) {
+            // The same entry object is reused for every frame
+            mEntry.elapsedRealtimeNanos = i;
+            writer.append(mEntry);
+        }
+        writer.stop();
+
+        LauncherTraceFileProto trace = readTrace(mFile);
+        assertEquals(MAGIC_NUMBER_VALUE, trace.magicNumber);
+        assertEquals(100, trace.entry.length);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, trace.entry[i].elapsedRealtimeNanos);
+        }
+    }
+
+    @Test
+    public void testTraceIsRotatedAtSizeLimit() throws Exception {
+        long maxDiskSize = 1024;
+        ProtoTraceStreamWriter writer =
+                new ProtoTraceStreamWriter(mFile, maxDiskSize, 128, Runnable::run);
+        writer.start();
+        int count = 1000;
+        for (int i = 0; i < count; i++) {
+            mEntry.elapsedRealtimeNanos = i;
+            writer.append(mEntry);
+        }
+        writer.stop();
+
+        File rotatedFile = new File(mFile.getPath() + ".1");
+        assertTrue(mFile.length() + rotatedFile.length() <= maxDiskSize);
+
+        // Both files are valid traces, and the current one contains the most recent entries
+        LauncherTraceFileProto older = readTrace(rotatedFile);
+        LauncherTraceFileProto newer = readTrace(mFile);
+        assertEquals(MAGIC_NUMBER_VALUE, older.magicNumber);
+        assertEquals(count - 1, newer.entry[newer.entry.length - 1].elapsedRealtimeNanos);
+        assertEquals(older.entry[older.entry.length - 1].elapsedRealtimeNanos + 1,
+                newer.entry[0].elapsedRealtimeNanos);
+    }
+
+    @Test
+    public void testEntriesDroppedWhenBuffersAreFull() throws Exception {
+        ArrayList<Runnable> pendingWrites = new ArrayList<>();
+        ProtoTraceStreamWriter writer =
+                new ProtoTraceStreamWriter(mFile, 1024 * 1024, 64, pendingWrites::add);
+        writer.start();
+        for (int i = 0; i < 1000; i++) {
+            mEntry.elapsedRealtimeNanos = i;
+            writer.append(mEntry);
+        }
+        writer.stop();
+        pendingWrites.forEach(Runnable::run);
+
+        // Only the entries fitting in the two fixed buffers are kept
+        LauncherTraceFileProto trace = readTrace(mFile);
+        assertTrue(trace.entry.length > 0);
+        assertTrue(trace.entry.length * mEntry.getSerializedSize() <= 2 * 64);
+        assertEquals(0, trace.entry[0].elapsedRealtimeNanos);
+    }
+
+    @Test
+    public void testRestartWaitsForBuffersBeingWritten() throws Exception {
+        ArrayList<Runnable> pendingWrites = new ArrayList<>();
+        ProtoTraceStreamWriter writer =
+                new ProtoTraceStreamWriter(mFile, 1024 * 1024, 64, pendingWrites::add);
+        writer.start();
+        for (int i = 0; i < 1000; i++) {
+            mEntry.elapsedRealtimeNanos = i;
+            writer.append(mEntry);
+        }
+        writer.stop();
+
+        // Both buffers are still being written, no new buffer is allocated for the new trace
+        writer.start();
+        mEntry.elapsedRealtimeNanos = 1000;
+        writer.append(mEntry);
+
+        ArrayList<Runnable> writes = new ArrayList<>(pendingWrites);
+        pendingWrites.clear();
+        writes.forEach(Runnable::run);
+        mEntry.elapsedRealtimeNanos = 1001;
+        writer.append(mEntry);
+        writer.stop();
+        pendingWrites.forEach(Runnable::run);
+
+        LauncherTraceFileProto trace = readTrace(mFile);
+        assertEquals(1, trace.entry.length);
+        assertEquals(1001, trace.entry[0].elapsedRealtimeNanos);
+    }
+
+    private static LauncherTraceFileProto readTrace(File file) throws Exception {
+        return LauncherTraceFileProto.parseFrom(Files.readAllBytes(file.toPath()));
+    }
+}
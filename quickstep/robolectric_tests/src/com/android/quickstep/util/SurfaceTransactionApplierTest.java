@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.anyFloat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import android.view.SurfaceControl;
+import android.view.SurfaceControl.Transaction;
+import android.view.View;
+
+import com.android.systemui.shared.system.SyncRtSurfaceTransactionApplierCompat.SurfaceParams;
+import com.android.systemui.shared.system.ViewRootImplCompat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Tests for {@link SurfaceTransactionApplier}
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SurfaceTransactionApplierTest {
+
+    private ViewRootImplCompat mViewRoot;
+    private Transaction mTransaction;
+    private SurfaceControl mSurface;
+
+    @Before
+    public void setup() {
+        mViewRoot = new ViewRootImplCompat(new View(RuntimeEnvironment.application));
+        mTransaction = mock(Transaction.class);
+        mSurface = createValidSurface();
+    }
+
+    @Test
+    public void testCallbacksReusedOnceApplied() {
+        SurfaceTransactionApplier applier =
+                new SurfaceTransactionApplier(mViewRoot, createValidSurface(), mTransaction);
+        SurfaceParams[] params = new SurfaceParams[] {createParams(0.5f)};
+
+        LongConsumer first = applier.obtainCallback(params, 1);
+        first.accept(1);
+        LongConsumer second = applier.obtainCallback(params, 2);
+        assertSame(first, second);
+
+        // A callback waiting for its frame is not reused
+        LongConsumer third = applier.obtainCallback(params, 3);
+        assertNotSame(second, third);
+    }
+
+    @Test
+    public void testTransactionSharedAcrossFrames() {
+        SurfaceTransactionApplier applier =
+                new SurfaceTransactionApplier(mViewRoot, createValidSurface(), mTransaction);
+
+        SurfaceParams[] params = new SurfaceParams[] {createParams(0.5f)};
+        LongConsumer first = applier.obtainCallback(params, 1);
+        // The params are copied, the caller can reuse the array for the next frame
+        params[0] = createParams(0.25f);
+        LongConsumer second = applier.obtainCallback(params, 2);
+        first.accept(1);
+        second.accept(2);
+
+        verify(mTransaction).setAlpha(eq(mSurface), eq(0.5f));
+        verify(mTransaction).setAlpha(eq(mSurface), eq(0.25f));
+        verify(mTransaction, times(2)).apply();
+    }
+
+    @Test
+    public void testNothingAppliedWithoutBarrier() {
+        SurfaceTransactionApplier applier =
+                new SurfaceTransactionApplier(mViewRoot, null, mTransaction);
+        applier.obtainCallback(new SurfaceParams[] {createParams(0.5f)}, 1).accept(1);
+
+        verify(mTransaction, never()).setAlpha(eq(mSurface), anyFloat());
+        verify(mTransaction, never()).apply();
+    }
+
+    private SurfaceParams createParams(float alpha) {
+        return new SurfaceParams.Builder(mSurface).withAlpha(alpha).build();
+    }
+
+    private static SurfaceControl createValidSurface() {
+        SurfaceControl surface = ReflectionHelpers.callConstructor(SurfaceControl.class);
+        // Native calls are no-ops in tests, a non-zero pointer is only used for isValid()
+        ReflectionHelpers.setField(surface, "mNativeObject", 1L);
+        return surface;
+    }
+}
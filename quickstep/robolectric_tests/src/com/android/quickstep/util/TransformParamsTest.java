@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static com.android.systemui.shared.system.RemoteAnimationTargetCompat.MODE_CLOSING;
+import static com.android.systemui.shared.system.RemoteAnimationTargetCompat.MODE_OPENING;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+import com.android.quickstep.RemoteAnimationTargets;
+import com.android.quickstep.util.TransformParams.BuilderProxy;
+import com.android.systemui.shared.system.RemoteAnimationTargetCompat;
+import com.android.systemui.shared.system.SurfaceControlCompat;
+import com.android.systemui.shared.system.SyncRtSurfaceTransactionApplierCompat.SurfaceParams;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.util.ReflectionHelpers;
+
+/**
+ * Tests for {@link TransformParams}
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TransformParamsTest {
+
+    @Test
+    public void createSurfaceParams_reusesArrayAcrossFrames() {
+        RemoteAnimationTargetCompat closingApp = createTarget(MODE_CLOSING);
+        RemoteAnimationTargetCompat openingApp = createTarget(MODE_OPENING);
+        TransformParams params = new TransformParams().setTargetSet(new RemoteAnimationTargets(
+                new RemoteAnimationTargetCompat[] {closingApp, openingApp},
+                new RemoteAnimationTargetCompat[0], MODE_CLOSING));
+
+        SurfaceParams[] firstFrame = params.setTargetAlpha(0.5f)
+                .createSurfaceParams(BuilderProxy.NO_OP);
+        assertEquals(2, firstFrame.length);
+        SurfaceParams firstTargetParams = firstFrame[0];
+        assertEquals(0.5f, firstTargetParams.alpha, 0);
+        // Other targets use the base builder proxy, which keeps them visible
+        assertEquals(1f, firstFrame[1].alpha, 0);
+
+        SurfaceParams[] secondFrame = params.setTargetAlpha(0.25f)
+                .createSurfaceParams(BuilderProxy.NO_OP);
+        assertSame(firstFrame, secondFrame);
+        assertNotSame(firstTargetParams, secondFrame[0]);
+        assertEquals(0.25f, secondFrame[0].alpha, 0);
+    }
+
+    @Test
+    public void createSurfaceParams_resizesArrayWithTargets() {
+        TransformParams params = new TransformParams().setTargetSet(new RemoteAnimationTargets(
+                new RemoteAnimationTargetCompat[] {createTarget(MODE_CLOSING)},
+                new RemoteAnimationTargetCompat[0], MODE_CLOSING));
+        assertEquals(1, params.createSurfaceParams(BuilderProxy.NO_OP).length);
+
+        params.setTargetSet(new RemoteAnimationTargets(
+                new RemoteAnimationTargetCompat[] {
+                        createTarget(MODE_CLOSING), createTarget(MODE_CLOSING)},
+                new RemoteAnimationTargetCompat[0], MODE_CLOSING));
+        assertEquals(2, params.createSurfaceParams(BuilderProxy.NO_OP).length);
+    }
+
+    private static RemoteAnimationTargetCompat createTarget(int mode) {
+        RemoteAnimationTargetCompat target = mock(RemoteAnimationTargetCompat.class);
+        ReflectionHelpers.setField(target, "mode", mode);
+        ReflectionHelpers.setField(target, "leash", mock(SurfaceControlCompat.class));
+        return target;
+    }
+}
@@ -27,6 +27,7 @@ import android.util.Log;
 
 import androidx.annotation.MainThread;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Locale;
 import java.util.function.BiConsumer;
@@ -34,11 +35,20 @@ import java.util.function.Supplier;
 
 /**
  * A binder proxy transaction listener for tracking non-whitelisted binder calls.
+ *
+ * Only one listener can be set on {@link Binder}, so the process listener dispatches the calls to
+ * all the trackers which are started. Subclasses can override
+ * {@link #onMainThreadTransactStarted} and {@link #onTransactEnded} to track main thread calls
+ * in other ways. Main thread calls never overlap, so the state of the current call is kept by
+ * the tracker instead of being returned as a session.
  */
 public class DejankBinderTracker implements Binder.ProxyTransactListener {
     private static final String TAG = "DejankBinderTracker";
 
     private static final Object sLock = new Object();
+    // Trackers which are started, replaced on every change so that it can be read without locking
+    private static volatile DejankBinderTracker[] sTrackers = new DejankBinderTracker[0];
+    private static final Binder.ProxyTransactListener sProcessListener = new ProcessListener();
     private static final HashSet<String> sWhitelistedFrameworkClasses = new HashSet<>();
     static {
         // Common IPCs that are ok to block the main thread.
@@ -101,11 +111,26 @@ public class DejankBinderTracker implements Binder.ProxyTransactListener {
             Log.wtf(TAG, "Unexpected use of binder tracker in non-debug build", new Exception());
             return;
         }
+        startTrackingInternal();
+    }
+
+    /**
+     * Starts tracking in all builds, for subclasses which are safe to use in release builds.
+     */
+    @MainThread
+    protected void startTrackingInternal() {
         if (mIsTracking) {
             return;
         }
         mIsTracking = true;
-        Binder.setProxyTransactListener(this);
+        synchronized (sLock) {
+            DejankBinderTracker[] trackers = Arrays.copyOf(sTrackers, sTrackers.length + 1);
+            trackers[sTrackers.length] = this;
+            sTrackers = trackers;
+            if (trackers.length == 1) {
+                Binder.setProxyTransactListener(sProcessListener);
+            }
+        }
     }
 
     @MainThread
@@ -114,32 +139,69 @@ public class DejankBinderTracker implements Binder.ProxyTransactListener {
             return;
         }
         mIsTracking = false;
-        Binder.setProxyTransactListener(null);
+        synchronized (sLock) {
+            DejankBinderTracker[] trackers = new DejankBinderTracker[sTrackers.length - 1];
+            int count = 0;
+            for (DejankBinderTracker tracker : sTrackers) {
+                if (tracker != this) {
+                    trackers[count++] = tracker;
+                }
+            }
+            sTrackers = trackers;
+            if (trackers.length == 0) {
+                Binder.setProxyTransactListener(null);
+            }
+        }
+    }
+
+    public boolean isTracking() {
+        return mIsTracking;
     }
 
     // Override the hidden Binder#onTransactStarted method
-    public synchronized Object onTransactStarted(IBinder binder, int transactionCode, int flags) {
+    public Object onTransactStarted(IBinder binder, int transactionCode, int flags) {
         if (!mIsTracking
-                || !sTrackingAllowed
-                || sTemporarilyIgnoreTracking
                 || (flags & FLAG_ONEWAY) == FLAG_ONEWAY
                 || !isMainThread()) {
             return null;
         }
+        onMainThreadTransactStarted(binder, transactionCode);
+        return null;
+    }
 
-        String descriptor;
+    /**
+     * Called when a blocking binder call starts on the main thread.
+     */
+    protected synchronized void onMainThreadTransactStarted(IBinder binder, int transactionCode) {
+        if (!sTrackingAllowed || sTemporarilyIgnoreTracking) {
+            return;
+        }
+        String descriptor = getInterfaceDescriptor(binder);
+        if (!isWhitelisted(descriptor)) {
+            mUnexpectedTransactionCallback.accept(descriptor, transactionCode);
+        }
+    }
+
+    /**
+     * Returns the interface descriptor of {@param binder}, or its class name if it is unknown.
+     */
+    protected static String getInterfaceDescriptor(IBinder binder) {
         try {
-            descriptor = binder.getInterfaceDescriptor();
-            if (sWhitelistedFrameworkClasses.contains(descriptor)) {
-                return null;
+            String descriptor = binder.getInterfaceDescriptor();
+            if (descriptor != null) {
+                return descriptor;
             }
         } catch (RemoteException e) {
             e.printStackTrace();
-            descriptor = binder.getClass().getSimpleName();
         }
+        return binder.getClass().getSimpleName();
+    }
 
-        mUnexpectedTransactionCallback.accept(descriptor, transactionCode);
-        return null;
+    /**
+     * Returns true if calls to the interface are ok to block the main thread.
+     */
+    protected static boolean isWhitelisted(String descriptor) {
+        return sWhitelistedFrameworkClasses.contains(descriptor);
     }
 
     @Override
@@ -156,4 +218,30 @@ public class DejankBinderTracker implements Binder.ProxyTransactListener {
     public static boolean isMainThread() {
         return Thread.currentThread() == Looper.getMainLooper().getThread();
     }
+
+    /**
+     * Binder listener of the process, which dispatches the calls to all the started trackers.
+     */
+    private static class ProcessListener implements Binder.ProxyTransactListener {
+
+        // Override the hidden Binder#onTransactStarted method
+        public Object onTransactStarted(IBinder binder, int transactionCode, int flags) {
+            for (DejankBinderTracker tracker : sTrackers) {
+                tracker.onTransactStarted(binder, transactionCode, flags);
+            }
+            return null;
+        }
+
+        @Override
+        public Object onTransactStarted(IBinder binder, int transactionCode) {
+            return onTransactStarted(binder, transactionCode, 0);
+        }
+
+        @Override
+        public void onTransactEnded(Object session) {
+            for (DejankBinderTracker tracker : sTrackers) {
+                tracker.onTransactEnded(session);
+            }
+        }
+    }
 }
@@ -57,7 +57,6 @@ class OrientationTouchTransformer {
 
     private static final int QUICKSTEP_ROTATION_UNINITIALIZED = -1;
 
-    private final Matrix mTmpMatrix = new Matrix();
     private final float[] mTmpPoint = new float[2];
 
     private SparseArray<OrientationRectF> mSwipeTouchRegions = new SparseArray<>(MAX_ORIENTATIONS);
@@ -363,6 +362,12 @@ class OrientationTouchTransformer {
         private float mHeight;
         private float mWidth;
 
+        // Transform from the current display rotation to this region's rotation. It only depends
+        // on the display rotation, so it is computed once per rotation change instead of for
+        // every event.
+        private final Matrix mTransform = new Matrix();
+        private int mTransformDisplayRotation = QUICKSTEP_ROTATION_UNINITIALIZED;
+
         OrientationRectF(float left, float top, float right, float bottom, int rotation) {
             super(left, top, right, bottom);
             this.mRotation = rotation;
@@ -384,22 +389,30 @@ class OrientationTouchTransformer {
                     && x >= left && x <= right && y >= top && y <= bottom;
         }
 
+        private Matrix getTransform() {
+            if (mTransformDisplayRotation != mCurrentDisplayRotation) {
+                mTransformDisplayRotation = mCurrentDisplayRotation;
+                mTransform.reset();
+                postDisplayRotation(deltaRotation(mCurrentDisplayRotation, mRotation),
+                        mHeight, mWidth, mTransform);
+            }
+            return mTransform;
+        }
+
         boolean applyTransform(MotionEvent event, boolean forceTransform) {
-            mTmpMatrix.reset();
-            postDisplayRotation(deltaRotation(mCurrentDisplayRotation, mRotation),
-                    mHeight, mWidth, mTmpMatrix);
+            Matrix transform = getTransform();
             if (forceTransform) {
                 if (DEBUG) {
                     Log.d(TAG, "Transforming rotation due to forceTransform, "
                             + "mCurrentRotation: " + mCurrentDisplayRotation
                             + "mRotation: " + mRotation);
                 }
-                event.transform(mTmpMatrix);
+                event.transform(transform);
                 return true;
             }
             mTmpPoint[0] = event.getX();
             mTmpPoint[1] = event.getY();
-            mTmpMatrix.mapPoints(mTmpPoint);
+            transform.mapPoints(mTmpPoint);
 
             if (DEBUG) {
                 Log.d(TAG, "original: " + event.getX() + ", " + event.getY()
@@ -409,7 +422,7 @@ class OrientationTouchTransformer {
             }
 
             if (contains(mTmpPoint[0], mTmpPoint[1])) {
-                event.transform(mTmpMatrix);
+                event.transform(transform);
                 return true;
             }
             return false;
@@ -19,33 +19,101 @@ import static com.android.systemui.shared.system.InputChannelCompat.mergeMotionE
 
 import android.view.MotionEvent;
 
-import java.util.ArrayList;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.Arrays;
 import java.util.function.Consumer;
 
 /**
  * Utility class to dispatch touch events to a different class. It stores the events locally
  * until a valid dispatcher is available.
+ *
+ * Move events are merged into the previous cached event as historical samples whenever possible,
+ * so that the consumer receives them as a single batched event. The cache has a fixed capacity:
+ * once full, the most recent cached move event is dropped to make room for new events. Down, up
+ * and cancel events are never dropped.
  */
 public class CachedEventDispatcher {
 
+    // Number of events cached before other events start getting dropped
+    @VisibleForTesting
+    static final int MAX_CACHED_EVENTS = 32;
+
     private Consumer<MotionEvent> mConsumer;
 
-    private ArrayList<MotionEvent> mCache;
+    private MotionEvent[] mCache;
+    private int mCacheCount;
     private MotionEvent mLastEvent;
 
+    private int mQueuedCount;
+    private int mMergedCount;
+    private int mDroppedCount;
+
     public void dispatchEvent(MotionEvent event) {
         if (mConsumer != null) {
             mConsumer.accept(event);
+        } else if (mLastEvent != null && mergeMotionEvent(event, mLastEvent)) {
+            mMergedCount++;
         } else {
-            if (mLastEvent == null || !mergeMotionEvent(event, mLastEvent)) {
-                // Queue event.
-                if (mCache == null) {
-                    mCache = new ArrayList<>();
-                }
-                mLastEvent = MotionEvent.obtain(event);
-                mCache.add(mLastEvent);
+            // Queue event.
+            if (mCache == null) {
+                mCache = new MotionEvent[MAX_CACHED_EVENTS];
+            } else if (mCacheCount == mCache.length && !dropLastMoveEvent()
+                    && !makeRoomFor(event)) {
+                mDroppedCount++;
+                return;
+            }
+            mLastEvent = MotionEvent.obtain(event);
+            mCache[mCacheCount++] = mLastEvent;
+            mQueuedCount++;
+        }
+    }
+
+    /**
+     * Drops the most recent cached move event, returning false if there is none.
+     */
+    private boolean dropLastMoveEvent() {
+        for (int i = mCacheCount - 1; i >= 0; i--) {
+            if (mCache[i].getActionMasked() == MotionEvent.ACTION_MOVE) {
+                dropEventAt(i);
+                return true;
             }
         }
+        return false;
+    }
+
+    /**
+     * Makes room for {@param event} when the cache has no move event left to drop, returning
+     * false if the new event should be dropped instead.
+     */
+    private boolean makeRoomFor(MotionEvent event) {
+        if (!isGestureBoundary(event)) {
+            return false;
+        }
+        for (int i = mCacheCount - 1; i >= 0; i--) {
+            if (!isGestureBoundary(mCache[i])) {
+                dropEventAt(i);
+                return true;
+            }
+        }
+        // Only gesture boundaries are cached, grow the cache rather than dropping one of them
+        mCache = Arrays.copyOf(mCache, mCache.length + MAX_CACHED_EVENTS);
+        return true;
+    }
+
+    private static boolean isGestureBoundary(MotionEvent event) {
+        int action = event.getActionMasked();
+        return action == MotionEvent.ACTION_DOWN || action == MotionEvent.ACTION_UP
+                || action == MotionEvent.ACTION_CANCEL;
+    }
+
+    private void dropEventAt(int index) {
+        MotionEvent ev = mCache[index];
+        // Count every sample merged into the event
+        mDroppedCount += ev.getHistorySize() + 1;
+        ev.recycle();
+        System.arraycopy(mCache, index + 1, mCache, index, mCacheCount - index - 1);
+        mCache[--mCacheCount] = null;
     }
 
     public void setConsumer(Consumer<MotionEvent> consumer) {
@@ -53,17 +121,39 @@ public class CachedEventDispatcher {
             return;
         }
         mConsumer = consumer;
-        int cacheCount = mCache == null ? 0 : mCache.size();
-        for (int i = 0; i < cacheCount; i++) {
-            MotionEvent ev = mCache.get(i);
+        for (int i = 0; i < mCacheCount; i++) {
+            MotionEvent ev = mCache[i];
+            mCache[i] = null;
             mConsumer.accept(ev);
             ev.recycle();
         }
-        mCache = null;
+        mCacheCount = 0;
         mLastEvent = null;
     }
 
     public boolean hasConsumer() {
         return mConsumer != null;
     }
+
+    /**
+     * Returns the number of events which were cached as a separate event
+     */
+    public int getQueuedCount() {
+        return mQueuedCount;
+    }
+
+    /**
+     * Returns the number of events which were merged into a previously cached event
+     */
+    public int getMergedCount() {
+        return mMergedCount;
+    }
+
+    /**
+     * Returns the number of events which were dropped because the cache was full, including the
+     * samples which were merged into them
+     */
+    public int getDroppedCount() {
+        return mDroppedCount;
+    }
 }
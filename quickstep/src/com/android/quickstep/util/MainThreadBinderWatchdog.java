@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static com.android.launcher3.util.TraceHelper.FLAG_IGNORE_BINDERS;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import android.os.IBinder;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.launcher3.uioverrides.DejankBinderTracker;
+import com.android.launcher3.util.TraceHelper;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.WeakHashMap;
+
+/**
+ * Low overhead accounting of binder calls made on the main thread, safe to keep enabled in
+ * release builds.
+ *
+ * Each blocking call is attributed to the innermost {@link TraceHelper} section open on the main
+ * thread, eg. the name passed to {@link TraceHelper#allowIpcs}, or to the interface descriptor
+ * of the binder if no section is open. It is recorded in a fixed size table of counts,
+ * durations and a duration histogram. Calls which are neither explicitly allowed nor to a
+ * whitelisted interface are also checked against a per-frame budget. A stack trace is only
+ * captured for outliers, so the offending call sites can be found without paying for a stack on
+ * every call.
+ */
+public class MainThreadBinderWatchdog extends DejankBinderTracker {
+
+    public static final MainThreadBinderWatchdog INSTANCE = new MainThreadBinderWatchdog();
+
+    private static final String TAG = "BinderWatchdog";
+
+    private static final String OTHER = "<other>";
+
+    private static final int MAX_TAGS = 64;
+    // Histogram buckets: <1ms, <2ms, <4ms, ... , >=64ms
+    private static final int HISTOGRAM_SIZE = 8;
+    private static final int MAX_OUTLIERS = 8;
+
+    private static final long DEFAULT_FRAME_BUDGET_NANOS = MILLISECONDS.toNanos(4);
+    private static final long DEFAULT_OUTLIER_NANOS = MILLISECONDS.toNanos(16);
+    private static final long FRAME_NANOS = MILLISECONDS.toNanos(16);
+
+    // All the following state is only accessed on the main thread, except in dump
+    // Interface descriptors of the binders called so far, which would otherwise need another
+    // transaction for every call
+    private final WeakHashMap<IBinder, String> mDescriptors = new WeakHashMap<>();
+
+    private final String[] mTags = new String[MAX_TAGS];
+    private final int[] mCounts = new int[MAX_TAGS];
+    private final int[] mAllowedCounts = new int[MAX_TAGS];
+    private final long[] mTotalNanos = new long[MAX_TAGS];
+    private final long[] mMaxNanos = new long[MAX_TAGS];
+    private final int[][] mHistograms = new int[MAX_TAGS][HISTOGRAM_SIZE];
+    private int mTagCount;
+
+    private final String[] mOutlierTags = new String[MAX_OUTLIERS];
+    private final String[] mOutlierDescriptors = new String[MAX_OUTLIERS];
+    private final int[] mOutlierCodes = new int[MAX_OUTLIERS];
+    private final long[] mOutlierNanos = new long[MAX_OUTLIERS];
+    private final Throwable[] mOutlierStacks = new Throwable[MAX_OUTLIERS];
+    private int mOutlierCount;
+
+    private long mFrameBudgetNanos = DEFAULT_FRAME_BUDGET_NANOS;
+    private long mOutlierThresholdNanos = DEFAULT_OUTLIER_NANOS;
+    private long mWindowStartNanos;
+    private long mWindowBinderNanos;
+    private int mBudgetViolations;
+
+    // The blocking call in progress on the main thread
+    private IBinder mCallBinder;
+    private int mCallCode;
+    private long mCallStartNanos;
+
+    private MainThreadBinderWatchdog() {
+        super(null);
+    }
+
+    /**
+     * Starts tracking binder calls, along with any other started {@link DejankBinderTracker}.
+     */
+    public void start() {
+        startTrackingInternal();
+    }
+
+    public void stop() {
+        stopTracking();
+    }
+
+    /**
+     * Sets the total time which can be spent in unexpected binder calls within a frame, and the
+     * duration of a single call after which its stack is captured.
+     */
+    public void setBudget(long frameBudgetNanos, long outlierThresholdNanos) {
+        mFrameBudgetNanos = frameBudgetNanos;
+        mOutlierThresholdNanos = outlierThresholdNanos;
+    }
+
+    @Override
+    protected void onMainThreadTransactStarted(IBinder binder, int code) {
+        // Oneway calls do not block and are already skipped
+        mCallBinder = binder;
+        mCallCode = code;
+        mCallStartNanos = SystemClock.elapsedRealtimeNanos();
+    }
+
+    @Override
+    public void onTransactEnded(Object session) {
+        IBinder binder = mCallBinder;
+        if (binder == null || !isMainThread()) {
+            return;
+        }
+        mCallBinder = null;
+        long now = SystemClock.elapsedRealtimeNanos();
+        String descriptor = getCachedDescriptor(binder);
+        String tag = TraceHelper.getMainThreadSection();
+        boolean allowed = (TraceHelper.getMainThreadFlags() & FLAG_IGNORE_BINDERS) != 0
+                || isWhitelisted(descriptor);
+        onCallFinished(tag == null ? descriptor : tag, descriptor, mCallCode,
+                now - mCallStartNanos, allowed, now);
+    }
+
+    private String getCachedDescriptor(IBinder binder) {
+        String descriptor = mDescriptors.get(binder);
+        if (descriptor == null) {
+            descriptor = getInterfaceDescriptor(binder);
+            mDescriptors.put(binder, descriptor);
+        }
+        return descriptor;
+    }
+
+    @VisibleForTesting
+    void onCallFinished(String tag, String descriptor, int code, long durationNanos,
+            boolean allowed, long nowNanos) {
+        int index = getTagIndex(tag);
+        mCounts[index]++;
+        if (allowed) {
+            mAllowedCounts[index]++;
+        }
+        mTotalNanos[index] += durationNanos;
+        mMaxNanos[index] = Math.max(mMaxNanos[index], durationNanos);
+        mHistograms[index][getBucket(durationNanos)]++;
+
+        if (allowed) {
+            return;
+        }
+        if (nowNanos - mWindowStartNanos > FRAME_NANOS) {
+            mWindowStartNanos = nowNanos - durationNanos;
+            mWindowBinderNanos = 0;
+        }
+        long previousWindowNanos = mWindowBinderNanos;
+        mWindowBinderNanos += durationNanos;
+        boolean exceededBudget = previousWindowNanos <= mFrameBudgetNanos
+                && mWindowBinderNanos > mFrameBudgetNanos;
+        if (exceededBudget) {
+            mBudgetViolations++;
+        }
+        if (exceededBudget || durationNanos >= mOutlierThresholdNanos) {
+            recordOutlier(tag, descriptor, code, durationNanos);
+        }
+    }
+
+    private void recordOutlier(String tag, String descriptor, int code, long durationNanos) {
+        int index = mOutlierCount % MAX_OUTLIERS;
+        mOutlierTags[index] = tag;
+        mOutlierDescriptors[index] = descriptor;
+        mOutlierCodes[index] = code;
+        mOutlierNanos[index] = durationNanos;
+        mOutlierStacks[index] = new Throwable();
+        mOutlierCount++;
+        Log.w(TAG, "Slow binder call on main thread: " + tag + " (" + descriptor + "#" + code
+                + "), " + NANOSECONDS.toMillis(durationNanos) + "ms");
+    }
+
+    private int getTagIndex(String tag) {
+        for (int i = 0; i < mTagCount; i++) {
+            // Tags are usually constants, so check for the same instance first
+            if (mTags[i] == tag || mTags[i].equals(tag)) {
+                return i;
+            }
+        }
+        if (mTagCount < MAX_TAGS - 1) {
+            mTags[mTagCount] = tag;
+            return mTagCount++;
+        }
+        // The last entry collects all tags which do not fit in the table
+        mTags[MAX_TAGS - 1] = OTHER;
+        mTagCount = MAX_TAGS;
+        return MAX_TAGS - 1;
+    }
+
+    private static int getBucket(long durationNanos) {
+        long ms = NANOSECONDS.toMillis(durationNanos);
+        int bucket = 0;
+        while (ms > 0 && bucket < HISTOGRAM_SIZE - 1) {
+            ms >>= 1;
+            bucket++;
+        }
+        return bucket;
+    }
+
+    @VisibleForTesting
+    int getCount(String tag) {
+        for (int i = 0; i < mTagCount; i++) {
+            if (mTags[i].equals(tag)) {
+                return mCounts[i];
+            }
+        }
+        return 0;
+    }
+
+    @VisibleForTesting
+    int getBudgetViolations() {
+        return mBudgetViolations;
+    }
+
+    @VisibleForTesting
+    int getOutlierCount() {
+        return mOutlierCount;
+    }
+
+    /**
+     * Clears all the recorded calls
+     */
+    public void reset() {
+        for (int i = 0; i < MAX_TAGS; i++) {
+            mTags[i] = null;
+            mCounts[i] = 0;
+            mAllowedCounts[i] = 0;
+            mTotalNanos[i] = 0;
+            mMaxNanos[i] = 0;
+            Arrays.fill(mHistograms[i], 0);
+        }
+        mTagCount = 0;
+        Arrays.fill(mOutlierStacks, null);
+        mOutlierCount = 0;
+        mBudgetViolations = 0;
+        mWindowStartNanos = 0;
+        mWindowBinderNanos = 0;
+    }
+
+    public void dump(String prefix, PrintWriter pw) {
+        pw.println(prefix + "MainThreadBinderWatchdog:");
+        pw.println(prefix + "  enabled=" + isTracking());
+        pw.println(prefix + "  frameBudgetMs=" + NANOSECONDS.toMillis(mFrameBudgetNanos)
+                + " budgetViolations=" + mBudgetViolations);
+        pw.println(prefix + "  calls (count, allowed, total, max, histogram <1,2,4..64+ms):");
+        for (int i = 0; i < mTagCount; i++) {
+            StringBuilder line = new StringBuilder(prefix).append("    ").append(mTags[i])
+                    .append(": ").append(mCounts[i])
+                    .append(", ").append(mAllowedCounts[i])
+                    .append(", ").append(NANOSECONDS.toMillis(mTotalNanos[i])).append("ms")
+                    .append(", ").append(NANOSECONDS.toMillis(mMaxNanos[i])).append("ms, [");
+            for (int j = 0; j < HISTOGRAM_SIZE; j++) {
+                line.append(j == 0 ? "" : " ").append(mHistograms[i][j]);
+            }
+            pw.println(line.append("]"));
+        }
+        pw.println(prefix + "  outliers=" + mOutlierCount);
+        int count = Math.min(mOutlierCount, MAX_OUTLIERS);
+        for (int i = 0; i < count; i++) {
+            int index = (mOutlierCount - 1 - i) % MAX_OUTLIERS;
+            pw.println(prefix + "    " + mOutlierTags[index] + ": "
+                    + NANOSECONDS.toMillis(mOutlierNanos[index]) + "ms ("
+                    + mOutlierDescriptors[index] + "#" + mOutlierCodes[index] + ")");
+            Throwable stack = mOutlierStacks[index];
+            if (stack != null) {
+                for (StackTraceElement element : stack.getStackTrace()) {
+                    pw.println(prefix + "      at " + element);
+                }
+            }
+        }
+    }
+}
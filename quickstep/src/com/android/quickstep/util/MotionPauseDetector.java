@@ -22,6 +22,8 @@ import android.content.res.Resources;
 import android.util.Log;
 import android.view.MotionEvent;
 
+import androidx.annotation.VisibleForTesting;
+
 import com.android.launcher3.Alarm;
 import com.android.launcher3.R;
 import com.android.launcher3.compat.AccessibilityManagerCompat;
@@ -54,7 +56,8 @@ public class MotionPauseDetector {
     private final Context mContext;
     private final VelocityProvider mVelocityProvider;
 
-    private Float mPreviousVelocity = null;
+    // Velocity at the previous position, or NaN if not available
+    private float mPreviousVelocity = Float.NaN;
 
     private OnMotionPauseListener mOnMotionPauseListener;
     private boolean mIsPaused;
@@ -131,8 +134,8 @@ public class MotionPauseDetector {
         mForcePauseTimeout.setAlarm(mMakePauseHarderToTrigger
                 ? HARDER_TRIGGER_TIMEOUT
                 : FORCE_PAUSE_TIMEOUT);
-        Float newVelocity = mVelocityProvider.addMotionEvent(ev, pointerIndex);
-        if (newVelocity != null && mPreviousVelocity != null) {
+        float newVelocity = mVelocityProvider.addMotionEvent(ev, pointerIndex);
+        if (!Float.isNaN(newVelocity) && !Float.isNaN(mPreviousVelocity)) {
             checkMotionPaused(newVelocity, mPreviousVelocity, ev.getEventTime());
         }
         mPreviousVelocity = newVelocity;
@@ -195,7 +198,7 @@ public class MotionPauseDetector {
 
     public void clear() {
         mVelocityProvider.clear();
-        mPreviousVelocity = null;
+        mPreviousVelocity = Float.NaN;
         setOnMotionPauseListener(null);
         mIsPaused = mHasEverBeenPaused = false;
         mSlowStartTime = 0;
@@ -214,15 +217,16 @@ public class MotionPauseDetector {
     }
 
     /**
-     * Interface to abstract out velocity calculations
+     * Interface to abstract out velocity calculations. Implementations should not allocate when
+     * adding motion events, as they are called for every move event of a gesture.
      */
     protected interface VelocityProvider {
 
         /**
-         * Adds a new motion events, and returns the velocity at this point, or null if
+         * Adds a new motion events, and returns the velocity at this point, or NaN if
          * the velocity is not available
          */
-        Float addMotionEvent(MotionEvent ev, int pointer);
+        float addMotionEvent(MotionEvent ev, int pointer);
 
         /**
          * Clears all stored motion event records
@@ -230,10 +234,12 @@ public class MotionPauseDetector {
         void clear();
     }
 
-    private static class LinearVelocityProvider implements VelocityProvider {
+    @VisibleForTesting
+    static class LinearVelocityProvider implements VelocityProvider {
 
-        private Long mPreviousTime = null;
-        private Float mPreviousPosition = null;
+        private boolean mHasPrevious;
+        private long mPreviousTime;
+        private float mPreviousPosition;
 
         private final int mAxis;
 
@@ -242,16 +248,19 @@ public class MotionPauseDetector {
         }
 
         @Override
-        public Float addMotionEvent(MotionEvent ev, int pointer) {
-            long time = ev.getEventTime();
-            float position = ev.getAxisValue(mAxis, pointer);
-            Float velocity = null;
+        public float addMotionEvent(MotionEvent ev, int pointer) {
+            return addPosition(ev.getEventTime(), ev.getAxisValue(mAxis, pointer));
+        }
 
-            if (mPreviousTime != null && mPreviousPosition != null) {
+        @VisibleForTesting
+        float addPosition(long time, float position) {
+            float velocity = Float.NaN;
+            if (mHasPrevious) {
                 long changeInTime = Math.max(1, time - mPreviousTime);
                 float changeInPosition = position - mPreviousPosition;
                 velocity = changeInPosition / changeInTime;
             }
+            mHasPrevious = true;
             mPreviousTime = time;
             mPreviousPosition = position;
             return velocity;
@@ -259,8 +268,7 @@ public class MotionPauseDetector {
 
         @Override
         public void clear() {
-            mPreviousTime = null;
-            mPreviousPosition = null;
+            mHasPrevious = false;
         }
     }
 
@@ -268,7 +276,8 @@ public class MotionPauseDetector {
      * Java implementation of {@link android.view.VelocityTracker} using the Least Square (deg 2)
      * algorithm.
      */
-    private static class LSqVelocityProvider implements VelocityProvider {
+    @VisibleForTesting
+    static class LSqVelocityProvider implements VelocityProvider {
 
         // Maximum age of a motion event to be considered when calculating the velocity.
         private static final long HORIZON_MS = 100;
@@ -303,17 +312,21 @@ public class MotionPauseDetector {
         }
 
         @Override
-        public Float addMotionEvent(MotionEvent ev, int pointer) {
+        public float addMotionEvent(MotionEvent ev, int pointer) {
             // Add all historic points
             int historyCount = ev.getHistorySize();
             for (int i = 0; i < historyCount; i++) {
                 addPositionAndTime(
                         ev.getHistoricalEventTime(i), ev.getHistoricalAxisValue(mAxis, pointer, i));
             }
+            return addPosition(ev.getEventTime(), ev.getAxisValue(mAxis, pointer));
+        }
 
+        @VisibleForTesting
+        float addPosition(long time, float position) {
             // Start index for the last position (about to be added)
             int eventStartIndex = mHistoryStart;
-            addPositionAndTime(ev.getEventTime(), ev.getAxisValue(mAxis, pointer));
+            addPositionAndTime(time, position);
             return solveUnweightedLeastSquaresDeg2(eventStartIndex);
         }
 
@@ -321,7 +334,7 @@ public class MotionPauseDetector {
          * Solves the instantaneous velocity.
          * Based on solveUnweightedLeastSquaresDeg2 in VelocityTracker.cpp
          */
-        private Float solveUnweightedLeastSquaresDeg2(final int pointPos) {
+        private float solveUnweightedLeastSquaresDeg2(final int pointPos) {
             final long eventTime = mHistoricTimes[pointPos];
 
             float sxi = 0, sxiyi = 0, syi = 0, sxi2 = 0, sxi3 = 0, sxi2yi = 0, sxi4 = 0;
@@ -373,7 +386,7 @@ public class MotionPauseDetector {
                     case 1:
                         return 0f;
                     default:
-                        return null;
+                        return Float.NaN;
                 }
             }
 
@@ -386,7 +399,7 @@ public class MotionPauseDetector {
             float denominator = Sxx * Sx2x2 - Sxx2 * Sxx2;
             if (denominator == 0) {
                 // division by 0 when computing velocity
-                return null;
+                return Float.NaN;
             }
             // Compute a
             // float numerator = Sx2y*Sxx - Sxy*Sxx2;
@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static com.android.launcher3.tracing.nano.LauncherTraceFileProto.MagicNumber.MAGIC_NUMBER_H;
+import static com.android.launcher3.tracing.nano.LauncherTraceFileProto.MagicNumber.MAGIC_NUMBER_L;
+
+import android.util.Log;
+
+import androidx.annotation.UiThread;
+import androidx.annotation.WorkerThread;
+
+import com.google.protobuf.nano.CodedOutputByteBufferNano;
+import com.google.protobuf.nano.MessageNano;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+/**
+ * Writes launcher trace entries to disk as they are produced, instead of keeping the whole trace
+ * in memory until tracing stops.
+ *
+ * Each entry is appended as a length-delimited {@code entry} field after the magic number, so
+ * the file is always a valid {@code LauncherTraceFileProto}. Memory is bounded by two fixed
+ * buffers: one being filled on the UI thread and one being written on the background executor.
+ * Entries are dropped if both buffers are full. Disk usage is bounded by rotating the trace into
+ * a second file once it reaches half of the size limit.
+ */
+public class ProtoTraceStreamWriter {
+
+    private static final String TAG = "ProtoTraceStreamWriter";
+
+    private static final int FIELD_MAGIC_NUMBER = 1;
+    private static final int FIELD_ENTRY = 2;
+    private static final long MAGIC_NUMBER_VALUE = ((long) MAGIC_NUMBER_H << 32) | MAGIC_NUMBER_L;
+
+    private static final int BUFFER_COUNT = 2;
+
+    private final File mFile;
+    private final File mRotatedFile;
+    private final long mMaxFileSize;
+    private final int mBufferSize;
+    private final Executor mWriteExecutor;
+
+    // Buffers which are not being written to disk, guarded by itself
+    private final ArrayDeque<byte[]> mFreeBuffers = new ArrayDeque<>(BUFFER_COUNT);
+    private boolean mBuffersAllocated;
+
+    // Accessed on the UI thread
+    private byte[] mBuffer;
+    private CodedOutputByteBufferNano mOut;
+    private boolean mStarted;
+    private int mEntryCount;
+    private int mDroppedCount;
+
+    // Accessed on the write executor
+    private FileOutputStream mStream;
+    private long mFileSize;
+    private int mRotationCount;
+
+    /**
+     * @param maxDiskSize the maximum size of the trace files together
+     * @param bufferSize the size of each of the in-memory buffers, which also limits the size of
+     *                   a single entry
+     */
+    public ProtoTraceStreamWriter(File file, long maxDiskSize, int bufferSize,
+            Executor writeExecutor) {
+        mFile = file;
+        mRotatedFile = new File(file.getPath() + ".1");
+        mMaxFileSize = maxDiskSize / 2;
+        mBufferSize = bufferSize;
+        mWriteExecutor = writeExecutor;
+    }
+
+    public File getTraceFile() {
+        return mFile;
+    }
+
+    public boolean isStarted() {
+        return mStarted;
+    }
+
+    /**
+     * Starts a new trace, replacing any previous trace files
+     */
+    @UiThread
+    public void start() {
+        if (mStarted) {
+            return;
+        }
+        mStarted = true;
+        mEntryCount = 0;
+        mDroppedCount = 0;
+        if (!mBuffersAllocated) {
+            // Buffers are only allocated the first time tracing starts. When restarting, buffers
+            // still being written from the previous trace are taken once they are free again.
+            mBuffersAllocated = true;
+            synchronized (mFreeBuffers) {
+                for (int i = 0; i < BUFFER_COUNT; i++) {
+                    mFreeBuffers.add(new byte[mBufferSize]);
+                }
+            }
+        }
+        if (mOut == null) {
+            takeFreeBuffer();
+        }
+        mWriteExecutor.execute(() -> {
+            mRotatedFile.delete();
+            openFile();
+        });
+    }
+
+    /**
+     * Writes any buffered entries and closes the trace
+     */
+    @UiThread
+    public void stop() {
+        if (!mStarted) {
+            return;
+        }
+        mStarted = false;
+        flush();
+        mWriteExecutor.execute(this::closeFile);
+    }
+
+    /**
+     * Appends {@param entry} to the trace. The entry can be reused by the caller once this
+     * returns.
+     */
+    @UiThread
+    public void append(MessageNano entry) {
+        if (!mStarted) {
+            return;
+        }
+        int size = CodedOutputByteBufferNano.computeMessageSize(FIELD_ENTRY, entry);
+        if (size > mBufferSize) {
+            mDroppedCount++;
+            return;
+        }
+        if (mOut == null || mOut.spaceLeft() < size) {
+            flush();
+            if (mOut == null) {
+                // Both buffers are still being written
+                mDroppedCount++;
+                return;
+            }
+        }
+        try {
+            mOut.writeMessage(FIELD_ENTRY, entry);
+            mEntryCount++;
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to serialize trace entry", e);
+            mDroppedCount++;
+        }
+    }
+
+    /**
+     * Hands the current buffer over to the write executor
+     */
+    @UiThread
+    public void flush() {
+        if (mOut != null) {
+            int length = mBufferSize - mOut.spaceLeft();
+            if (length > 0) {
+                byte[] buffer = mBuffer;
+                mBuffer = null;
+                mOut = null;
+                mWriteExecutor.execute(() -> write(buffer, length));
+            }
+        }
+        if (mOut == null && mStarted) {
+            takeFreeBuffer();
+        }
+    }
+
+    private void takeFreeBuffer() {
+        synchronized (mFreeBuffers) {
+            mBuffer = mFreeBuffers.poll();
+        }
+        mOut = mBuffer == null ? null
+                : CodedOutputByteBufferNano.newInstance(mBuffer, 0, mBufferSize);
+    }
+
+    @WorkerThread
+    private void write(byte[] buffer, int length) {
+        try {
+            if (mStream != null) {
+                if (mFileSize + length > mMaxFileSize && mFileSize > 0) {
+                    rotate();
+                }
+                mStream.write(buffer, 0, length);
+                mFileSize += length;
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to write trace", e);
+            closeFile();
+        } finally {
+            synchronized (mFreeBuffers) {
+                mFreeBuffers.add(buffer);
+            }
+        }
+    }
+
+    @WorkerThread
+    private void rotate() {
+        closeFile();
+        mRotatedFile.delete();
+        mFile.renameTo(mRotatedFile);
+        mRotationCount++;
+        openFile();
+    }
+
+    @WorkerThread
+    private void openFile() {
+        closeFile();
+        try {
+            mStream = new FileOutputStream(mFile);
+            byte[] header = new byte[CodedOutputByteBufferNano.computeFixed64Size(
+                    FIELD_MAGIC_NUMBER, MAGIC_NUMBER_VALUE)];
+            CodedOutputByteBufferNano.newInstance(header)
+                    .writeFixed64(FIELD_MAGIC_NUMBER, MAGIC_NUMBER_VALUE);
+            mStream.write(header);
+            mFileSize = header.length;
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to open trace file", e);
+            closeFile();
+        }
+    }
+
+    @WorkerThread
+    private void closeFile() {
+        if (mStream != null) {
+            try {
+                mStream.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Unable to close trace file", e);
+            }
+            mStream = null;
+        }
+    }
+
+    public void dump(String prefix, PrintWriter pw) {
+        pw.println(prefix + "streaming=" + mStarted);
+        pw.println(prefix + "entries=" + mEntryCount);
+        pw.println(prefix + "dropped=" + mDroppedCount);
+        pw.println(prefix + "rotations=" + mRotationCount);
+        pw.println(prefix + "files=" + mFile + ", " + mRotatedFile);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.anim;
+
+import static com.android.launcher3.anim.Interpolators.ACCEL;
+import static com.android.launcher3.anim.Interpolators.LINEAR;
+
+import static org.junit.Assert.assertEquals;
+
+import android.animation.AnimatorSet;
+import android.util.FloatProperty;
+import android.util.IntProperty;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+/**
+ * Tests for {@link PendingAnimation} property batching
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PendingAnimationTest {
+
+    private static final FloatProperty<View> TRANSLATION_X =
+            new FloatProperty<View>("translationX") {
+                @Override
+                public void setValue(View view, float value) {
+                    view.setTranslationX(value);
+                }
+
+                @Override
+                public Float get(View view) {
+                    return view.getTranslationX();
+                }
+            };
+
+    private static final IntProperty<View> SCROLL_X = new IntProperty<View>("scrollX") {
+        @Override
+        public void setValue(View view, int value) {
+            view.setScrollX(value);
+        }
+
+        @Override
+        public Integer get(View view) {
+            return view.getScrollX();
+        }
+    };
+
+    private View mView1;
+    private View mView2;
+
+    @Before
+    public void setUp() {
+        mView1 = new View(RuntimeEnvironment.application);
+        mView2 = new View(RuntimeEnvironment.application);
+    }
+
+    @Test
+    public void testPropertiesShareOneAnimator() {
+        PendingAnimation pa = new PendingAnimation(100);
+        pa.setFloat(mView1, TRANSLATION_X, 100, LINEAR);
+        pa.setFloat(mView2, TRANSLATION_X, 200, LINEAR);
+        pa.setInt(mView1, SCROLL_X, 50, LINEAR);
+        pa.setViewAlpha(mView2, 0, LINEAR);
+
+        AnimatorSet anim = pa.buildAnim();
+        assertEquals(1, anim.getChildAnimations().size());
+    }
+
+    @Test
+    public void testSetPlayFraction() {
+        mView1.setTranslationX(10);
+        PendingAnimation pa = new PendingAnimation(100);
+        pa.setFloat(mView1, TRANSLATION_X, 110, LINEAR);
+        pa.setFloat(mView2, TRANSLATION_X, 100, ACCEL);
+        pa.setInt(mView1, SCROLL_X, 100, LINEAR);
+        pa.setViewAlpha(mView1, 0, LINEAR);
+
+        AnimatorPlaybackController controller = pa.createPlaybackController();
+        controller.setPlayFraction(0.5f);
+
+        assertEquals(60, mView1.getTranslationX(), 0.001f);
+        assertEquals(ACCEL.getInterpolation(0.5f) * 100, mView2.getTranslationX(), 0.001f);
+        assertEquals(50, mView1.getScrollX());
+        assertEquals(0.5f, mView1.getAlpha(), 0.001f);
+
+        controller.setPlayFraction(1);
+        assertEquals(110, mView1.getTranslationX(), 0.001f);
+        assertEquals(0, mView1.getAlpha(), 0.001f);
+        // Seeking does not update the visibility
+        assertEquals(View.VISIBLE, mView1.getVisibility());
+
+        // Start values are captured once, seeking back restores them
+        controller.setPlayFraction(0);
+        assertEquals(10, mView1.getTranslationX(), 0.001f);
+    }
+
+    @Test
+    public void testViewAlphaVisibility() {
+        mView1.setAlpha(0);
+        mView1.setVisibility(View.INVISIBLE);
+        mView2.setAlpha(1);
+        PendingAnimation pa = new PendingAnimation(100);
+        pa.setViewAlpha(mView1, 1, LINEAR);
+        pa.setViewAlpha(mView2, 0, LINEAR);
+
+        AnimatorSet anim = pa.buildAnim();
+        anim.end();
+
+        assertEquals(1, mView1.getAlpha(), 0.001f);
+        assertEquals(View.VISIBLE, mView1.getVisibility());
+        assertEquals(0, mView2.getAlpha(), 0.001f);
+        assertEquals(View.INVISIBLE, mView2.getVisibility());
+    }
+
+    @Test
+    public void testInterpolatorOverride() {
+        PendingAnimation pa = new PendingAnimation(100);
+        pa.setFloat(mView1, TRANSLATION_X, 100, ACCEL);
+        AnimatorPlaybackController controller = pa.createPlaybackController();
+
+        // Setting an interpolator replaces the per property interpolators
+        controller.dispatchSetInterpolator(LINEAR);
+        controller.setPlayFraction(0.5f);
+        assertEquals(50, mView1.getTranslationX(), 0.001f);
+
+        controller.dispatchSetInterpolator(BatchedPropertyAnimator.PER_PROPERTY);
+        controller.setPlayFraction(0.5f);
+        assertEquals(ACCEL.getInterpolation(0.5f) * 100, mView1.getTranslationX(), 0.001f);
+    }
+}
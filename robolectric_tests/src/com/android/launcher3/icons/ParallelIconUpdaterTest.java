@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.icons;
+
+import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.content.pm.LauncherActivityInfo;
+import android.content.pm.LauncherApps;
+import android.os.Process;
+import android.os.UserHandle;
+
+import com.android.launcher3.LauncherAppState;
+import com.android.launcher3.icons.cache.IconCacheUpdateHandler;
+import com.android.launcher3.util.LauncherModelHelper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.LooperMode;
+import org.robolectric.annotation.LooperMode.Mode;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link ParallelIconUpdater}
+ */
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(Mode.PAUSED)
+public class ParallelIconUpdaterTest {
+
+    private static final int APP_COUNT = 50;
+    private static final String APP_PREFIX = "com.android.launcher3.icons.app";
+
+    private Context mContext;
+    private IconCache mIconCache;
+    private UserHandle mUser;
+    private List<LauncherActivityInfo> mActivities;
+
+    @Before
+    public void setup() throws Exception {
+        mContext = RuntimeEnvironment.application;
+        mUser = Process.myUserHandle();
+
+        LauncherModelHelper modelHelper = new LauncherModelHelper();
+        for (int i = 0; i < APP_COUNT; i++) {
+            modelHelper.installApp(APP_PREFIX + i);
+        }
+        mIconCache = LauncherAppState.getInstance(mContext).getIconCache();
+        mActivities = new ArrayList<>();
+        for (LauncherActivityInfo info : mContext.getSystemService(LauncherApps.class)
+                .getActivityList(null, mUser)) {
+            if (info.getComponentName().getPackageName().startsWith(APP_PREFIX)) {
+                mActivities.add(info);
+            }
+        }
+    }
+
+    @Test
+    public void testUpdateNeededUntilComplete() {
+        assertTrue(ParallelIconUpdater.isUpdateNeeded(mContext, mIconCache));
+        ParallelIconUpdater.onUpdateComplete(mContext, mIconCache);
+        assertFalse(ParallelIconUpdater.isUpdateNeeded(mContext, mIconCache));
+    }
+
+    @Test
+    public void testUpdatedPackagesReportedOnce() {
+        HashSet<String> updatedPackages = new HashSet<>();
+        int[] reportCount = new int[1];
+        new ParallelIconUpdater(mContext, mIconCache, () -> false).updateIcons(mActivities,
+                LauncherActivityCachingLogic.newInstance(mContext), (packages, user) -> {
+                    assertEquals(mUser, user);
+                    updatedPackages.addAll(packages);
+                    reportCount[0]++;
+                });
+
+        assertEquals(APP_COUNT, mActivities.size());
+        assertEquals(APP_COUNT, updatedPackages.size());
+        assertEquals(1, reportCount[0]);
+    }
+
+    @Test
+    public void testUpToDateEntriesSkipped() {
+        runParallelUpdate();
+        assertTrue(runParallelUpdate().isEmpty());
+    }
+
+    @Test
+    public void testUpdateHandlerFindsEntriesUpToDate() throws Exception {
+        assertEquals(APP_COUNT, runParallelUpdate().size());
+        assertTrue(runUpdateHandler().isEmpty());
+    }
+
+    @Test
+    public void testEntriesFromUpdateHandlerSkipped() throws Exception {
+        runUpdateHandler();
+        assertTrue(runParallelUpdate().isEmpty());
+    }
+
+    @Test
+    public void testIgnoredPackagesSkipped() {
+        HashSet<String> updatedPackages = new HashSet<>();
+        ParallelIconUpdater updater = new ParallelIconUpdater(mContext, mIconCache, () -> false);
+        updater.addPackagesToIgnore(mUser, APP_PREFIX + 0);
+        updater.updateIcons(mActivities, LauncherActivityCachingLogic.newInstance(mContext),
+                (packages, user) -> updatedPackages.addAll(packages));
+
+        assertEquals(APP_COUNT - 1, updatedPackages.size());
+        assertFalse(updatedPackages.contains(APP_PREFIX + 0));
+    }
+
+    @Test
+    public void testStopsWhenLoaderStopped() {
+        HashSet<String> updatedPackages = new HashSet<>();
+        new ParallelIconUpdater(mContext, mIconCache, () -> true).updateIcons(mActivities,
+                LauncherActivityCachingLogic.newInstance(mContext),
+                (packages, user) -> updatedPackages.addAll(packages));
+        assertTrue(updatedPackages.isEmpty());
+    }
+
+    private HashSet<String> runParallelUpdate() {
+        HashSet<String> updatedPackages = new HashSet<>();
+        new ParallelIconUpdater(mContext, mIconCache, () -> false).updateIcons(mActivities,
+                LauncherActivityCachingLogic.newInstance(mContext),
+                (packages, user) -> updatedPackages.addAll(packages));
+        return updatedPackages;
+    }
+
+    private HashSet<String> runUpdateHandler() throws Exception {
+        HashSet<String> updatedPackages = new HashSet<>();
+        IconCacheUpdateHandler updateHandler = mIconCache.getUpdateHandler();
+        updateHandler.updateIcons(mActivities, LauncherActivityCachingLogic.newInstance(mContext),
+                (packages, user) -> updatedPackages.addAll(packages));
+        // The handler updates one icon at a time on the model thread, with a delay between icons
+        for (int i = 0; i <= APP_COUNT; i++) {
+            ShadowLooper.idleMainLooper(1, TimeUnit.MILLISECONDS);
+            MODEL_EXECUTOR.submit(() -> { }).get();
+        }
+        updateHandler.finish();
+        return updatedPackages;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Tests for {@link EventLogArray}
+ */
+@RunWith(RobolectricTestRunner.class)
+public class EventLogArrayTest {
+
+    @Test
+    public void testDumpDecodesExtras() {
+        EventLogArray log = new EventLogArray("test", 10);
+        log.addLog("oneOff");
+        log.addLog("int", 5);
+        log.addLog("bool", true);
+        log.addLog("point", 1, 20, 30);
+        log.addLog("object", Thread.State.NEW);
+
+        String[] lines = dump(log);
+        assertEquals(6, lines.length);
+        // Newest entry first
+        assertTrue(lines[1].contains("object: NEW"));
+        assertTrue(lines[2].contains("point(20, 30): 1"));
+        assertTrue(lines[3].contains("bool: true"));
+        assertTrue(lines[4].contains("int: 5"));
+        assertTrue(lines[5].contains("oneOff"));
+    }
+
+    @Test
+    public void testDuplicatesAreMerged() {
+        EventLogArray log = new EventLogArray("test", 10);
+        for (int i = 0; i < 5; i++) {
+            log.addLog("move", 2);
+        }
+
+        String[] lines = dump(log);
+        assertEquals(3, lines.length);
+        assertTrue(lines[1].contains("move: 2"));
+        assertTrue(lines[2].contains("move: 2 & 3 similar events"));
+    }
+
+    @Test
+    public void testDifferentExtrasAreNotMerged() {
+        EventLogArray log = new EventLogArray("test", 10);
+        for (int i = 0; i < 3; i++) {
+            log.addLog("setEndTarget", Thread.State.values()[i]);
+        }
+        for (int i = 0; i < 3; i++) {
+            log.addLog("onMotionEvent", 0, i, i);
+        }
+
+        String[] lines = dump(log);
+        assertEquals(7, lines.length);
+        assertTrue(lines[1].contains("onMotionEvent(2, 2): 0"));
+        assertTrue(lines[3].contains("onMotionEvent(0, 0): 0"));
+        assertTrue(lines[4].contains("setEndTarget: " + Thread.State.values()[2]));
+        assertTrue(lines[6].contains("setEndTarget: " + Thread.State.values()[0]));
+        for (String line : lines) {
+            assertFalse(line, line.contains("similar events"));
+        }
+    }
+
+    @Test
+    public void testOldEntriesArePurged() {
+        EventLogArray log = new EventLogArray("test", 4);
+        for (int i = 0; i < 10; i++) {
+            log.addLog("event" + i);
+        }
+
+        String[] lines = dump(log);
+        assertEquals(5, lines.length);
+        assertTrue(lines[1].contains("event9"));
+        assertTrue(lines[4].contains("event6"));
+    }
+
+    @Test
+    public void testClear() {
+        EventLogArray log = new EventLogArray("test", 4);
+        log.addLog("before");
+        log.clear();
+        log.addLog("after");
+
+        String[] lines = dump(log);
+        assertEquals(2, lines.length);
+        assertTrue(lines[1].contains("after"));
+    }
+
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        int size = 64;
+        EventLogArray log = new EventLogArray("test", size);
+        int threadCount = 4;
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            String event = "thread" + t;
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 10000; i++) {
+                    log.addLog(event, i, i, i);
+                    log.addLog("shared");
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        String[] lines = dump(log);
+        assertTrue(lines.length > 1 && lines.length <= size + 1);
+        for (int i = 1; i < lines.length; i++) {
+            // Entries written by a single writer are never torn
+            assertFalse(lines[i], lines[i].contains("null"));
+            if (lines[i].contains("thread")) {
+                String point = lines[i].substring(lines[i].indexOf('(') + 1,
+                        lines[i].indexOf(','));
+                String extras = lines[i].substring(lines[i].indexOf("): ") + 3,
+                        lines[i].indexOf(" traceId"));
+                assertEquals(lines[i], point, extras.split(" ")[0]);
+            }
+        }
+    }
+
+    private static String[] dump(EventLogArray log) {
+        StringWriter out = new StringWriter();
+        log.dump("", new PrintWriter(out));
+        return out.toString().split("\n");
+    }
+}
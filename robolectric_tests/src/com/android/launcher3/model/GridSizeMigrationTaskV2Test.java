@@ -29,6 +29,8 @@ import static com.android.launcher3.util.LauncherModelHelper.TEST_PACKAGE;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import android.content.ComponentName;
+import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
@@ -187,4 +189,102 @@ public class GridSizeMigrationTaskV2Test {
         assertEquals(c.getInt(cellXIndex), 0);
         assertEquals(c.getInt(cellYIndex), 2);
     }
+
+    @Test
+    public void testMigrationOfManyItems() {
+        int srcColumns = 5;
+        int srcRows = 5;
+        int itemCount = 500;
+        for (int i = 0; i < itemCount; i++) {
+            int cell = i % (srcColumns * srcRows);
+            mModelHelper.addItem(APP_ICON, 1 + i / (srcColumns * srcRows), DESKTOP,
+                    cell % srcColumns, cell / srcColumns, TEST_PACKAGE, i + 1, TMP_CONTENT_URI);
+        }
+
+        mIdp.numHotseatIcons = 4;
+        mIdp.numColumns = 4;
+        mIdp.numRows = 4;
+        migrate(0);
+
+        Cursor c = mContext.getContentResolver().query(LauncherSettings.Favorites.CONTENT_URI,
+                new String[]{LauncherSettings.Favorites._ID, LauncherSettings.Favorites.SCREEN,
+                        LauncherSettings.Favorites.CELLX, LauncherSettings.Favorites.CELLY},
+                "container=" + CONTAINER_DESKTOP, null, null, null);
+        assertEquals(itemCount, c.getCount());
+        HashSet<Integer> ids = new HashSet<>();
+        HashSet<String> positions = new HashSet<>();
+        int minId = Integer.MAX_VALUE;
+        int maxId = Integer.MIN_VALUE;
+        while (c.moveToNext()) {
+            int id = c.getInt(0);
+            ids.add(id);
+            minId = Math.min(minId, id);
+            maxId = Math.max(maxId, id);
+            assertTrue(c.getInt(2) < mIdp.numColumns);
+            assertTrue(c.getInt(3) < mIdp.numRows);
+            positions.add(c.getInt(1) + "," + c.getInt(2) + "," + c.getInt(3));
+        }
+        c.close();
+        assertEquals(itemCount, ids.size());
+        assertEquals(itemCount, positions.size());
+        // The ids are reserved as one block
+        assertEquals(itemCount - 1, maxId - minId);
+    }
+
+    @Test
+    public void testWidgetsMatchedByProvider() {
+        addWidget(LauncherSettings.Favorites.TMP_TABLE, 1, 0, testPackage1);
+        addWidget(LauncherSettings.Favorites.TMP_TABLE, 2, 2, testPackage2);
+        addWidget(LauncherSettings.Favorites.TABLE_NAME, 3, 0, testPackage1);
+
+        mIdp.numHotseatIcons = 4;
+        mIdp.numColumns = 4;
+        mIdp.numRows = 4;
+        migrate(0);
+
+        // Only the widget which is not in the destination is copied, widgets are not considered
+        // the same because they have no intent
+        Cursor c = mContext.getContentResolver().query(LauncherSettings.Favorites.CONTENT_URI,
+                new String[]{LauncherSettings.Favorites.APPWIDGET_PROVIDER},
+                "itemType=" + LauncherSettings.Favorites.ITEM_TYPE_APPWIDGET, null, null, null);
+        HashSet<String> providers = new HashSet<>();
+        while (c.moveToNext()) {
+            providers.add(c.getString(0));
+        }
+        assertEquals(2, c.getCount());
+        c.close();
+        assertTrue(providers.contains(getWidgetProvider(testPackage1)));
+        assertTrue(providers.contains(getWidgetProvider(testPackage2)));
+    }
+
+    private void migrate(int srcHotseatSize) {
+        GridSizeMigrationTaskV2.DbReader srcReader = new GridSizeMigrationTaskV2.DbReader(mDb,
+                LauncherSettings.Favorites.TMP_TABLE, mContext, mValidPackages, srcHotseatSize);
+        GridSizeMigrationTaskV2.DbReader destReader = new GridSizeMigrationTaskV2.DbReader(mDb,
+                LauncherSettings.Favorites.TABLE_NAME, mContext, mValidPackages,
+                mIdp.numHotseatIcons);
+        GridSizeMigrationTaskV2 task = new GridSizeMigrationTaskV2(mContext, mDb, srcReader,
+                destReader, mIdp.numHotseatIcons, new Point(mIdp.numColumns, mIdp.numRows));
+        task.migrate();
+    }
+
+    private void addWidget(String tableName, int id, int cellY, String packageName) {
+        ContentValues values = new ContentValues();
+        values.put(LauncherSettings.Favorites._ID, id);
+        values.put(LauncherSettings.Favorites.CONTAINER, CONTAINER_DESKTOP);
+        values.put(LauncherSettings.Favorites.SCREEN, 1);
+        values.put(LauncherSettings.Favorites.CELLX, 0);
+        values.put(LauncherSettings.Favorites.CELLY, cellY);
+        values.put(LauncherSettings.Favorites.SPANX, 2);
+        values.put(LauncherSettings.Favorites.SPANY, 2);
+        values.put(LauncherSettings.Favorites.ITEM_TYPE,
+                LauncherSettings.Favorites.ITEM_TYPE_APPWIDGET);
+        values.put(LauncherSettings.Favorites.APPWIDGET_ID, id);
+        values.put(LauncherSettings.Favorites.APPWIDGET_PROVIDER, getWidgetProvider(packageName));
+        mDb.insert(tableName, null, values);
+    }
+
+    private static String getWidgetProvider(String packageName) {
+        return new ComponentName(packageName, packageName + ".Widget").flattenToString();
+    }
 }
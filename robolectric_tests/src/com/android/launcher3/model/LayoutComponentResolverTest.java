@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.ComponentName;
+import android.content.pm.PackageManager;
+
+import com.android.launcher3.model.LayoutComponentResolver.ResolvedActivity;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.LooperMode;
+import org.robolectric.annotation.LooperMode.Mode;
+
+import java.util.ArrayList;
+
+/**
+ * Tests for {@link LayoutComponentResolver}
+ */
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(Mode.PAUSED)
+public class LayoutComponentResolverTest {
+
+    private static final int APP_COUNT = 50;
+    private static final String APP_PREFIX = "com.android.launcher3.layout.app";
+
+    private PackageManager mPm;
+    private ArrayList<ComponentName> mComponents;
+
+    @Before
+    public void setup() {
+        mPm = RuntimeEnvironment.application.getPackageManager();
+        mComponents = new ArrayList<>();
+        for (int i = 0; i < APP_COUNT; i++) {
+            ComponentName cn = new ComponentName(APP_PREFIX + i, APP_PREFIX + i + ".Main");
+            shadowOf(mPm).addActivityIfNotPresent(cn);
+            mComponents.add(cn);
+        }
+    }
+
+    @Test
+    public void testResolveAll() {
+        ComponentName missing = new ComponentName(APP_PREFIX + "missing", "Main");
+        ArrayList<ComponentName> components = new ArrayList<>(mComponents);
+        components.add(missing);
+
+        LayoutComponentResolver resolver = new LayoutComponentResolver(mPm);
+        resolver.resolveAll(components);
+
+        for (ComponentName cn : mComponents) {
+            ResolvedActivity activity = resolver.resolve(cn);
+            assertNotNull(activity);
+            assertEquals(cn, activity.component);
+            assertNotNull(activity.label);
+        }
+        assertNull(resolver.resolve(missing));
+    }
+
+    @Test
+    public void testResolveWithoutResolveAll() {
+        LayoutComponentResolver resolver = new LayoutComponentResolver(mPm);
+        ComponentName cn = mComponents.get(0);
+        ResolvedActivity activity = resolver.resolve(cn);
+        assertNotNull(activity);
+        assertEquals(cn, activity.component);
+        assertNull(resolver.resolve(new ComponentName(APP_PREFIX + "missing", "Main")));
+    }
+}
@@ -31,6 +31,8 @@ import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_SHORTCU
 import static com.android.launcher3.LauncherSettings.Favorites.PROFILE_ID;
 import static com.android.launcher3.LauncherSettings.Favorites.RESTORED;
 import static com.android.launcher3.LauncherSettings.Favorites.SCREEN;
+import static com.android.launcher3.LauncherSettings.Favorites.SPANX;
+import static com.android.launcher3.LauncherSettings.Favorites.SPANY;
 import static com.android.launcher3.LauncherSettings.Favorites.TITLE;
 import static com.android.launcher3.LauncherSettings.Favorites._ID;
 import static com.android.launcher3.util.LauncherModelHelper.TEST_PACKAGE;
@@ -44,9 +46,14 @@ import static junit.framework.Assert.assertTrue;
 import static org.robolectric.Shadows.shadowOf;
 
 import android.content.ComponentName;
+import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
 import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.net.Uri;
 import android.os.Process;
 
 import com.android.launcher3.InvariantDeviceProfile;
@@ -55,6 +62,7 @@ import com.android.launcher3.LauncherSettings;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.util.Executors;
+import com.android.launcher3.util.LauncherModelHelper;
 import com.android.launcher3.util.PackageManagerHelper;
 
 import org.junit.Before;
@@ -65,6 +73,9 @@ import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.LooperMode;
 import org.robolectric.annotation.LooperMode.Mode;
 
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
 /**
  * Tests for {@link LoaderCursor}
  */
@@ -72,6 +83,9 @@ import org.robolectric.annotation.LooperMode.Mode;
 @LooperMode(Mode.PAUSED)
 public class LoaderCursorTest {
 
+    private static final int SHORTCUT_COUNT = 3;
+    private static final int ICON_SIZE = 48;
+
     private LauncherAppState mApp;
 
     private MatrixCursor mCursor;
@@ -209,6 +223,99 @@ public class LoaderCursorTest {
                 newItemInfo(3, 3, 1, 1, CONTAINER_HOTSEAT, 3)));
     }
 
+    @Test
+    public void parseIntent_sharedIntentReturnsCopies() {
+        LoaderCursor loaderCursor = new LoaderCursor(newIntentCursor(2, 1),
+                LauncherSettings.Favorites.CONTENT_URI, mApp, new UserManagerState());
+
+        assertTrue(loaderCursor.moveToNext());
+        Intent first = loaderCursor.parseIntent();
+        String uri = first.toUri(0);
+        first.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        assertTrue(loaderCursor.moveToNext());
+        Intent second = loaderCursor.parseIntent();
+
+        assertTrue(first != second);
+        assertEquals(uri, second.toUri(0));
+    }
+
+    @Test
+    public void workspaceProjection_excludesIcon() {
+        assertFalse(Arrays.asList(LoaderCursor.WORKSPACE_PROJECTION).contains(ICON));
+    }
+
+    @Test
+    public void loadSimpleShortcut_iconFromDb() {
+        LauncherModelHelper modelHelper = new LauncherModelHelper();
+        SQLiteDatabase db = modelHelper.provider.getDb();
+        insertShortcutRows(db, SHORTCUT_COUNT);
+
+        Uri uri = LauncherSettings.Favorites.CONTENT_URI;
+        try (LoaderCursor c = new LoaderCursor(mContext.getContentResolver().query(uri,
+                LoaderCursor.WORKSPACE_PROJECTION, null, null, null),
+                uri, mApp, new UserManagerState())) {
+            c.allUsers.put(0, Process.myUserHandle());
+            int count = 0;
+            while (c.moveToNext()) {
+                WorkspaceItemInfo info = c.loadSimpleWorkspaceItem();
+                assertFalse(mApp.getIconCache().isDefaultIcon(info.bitmap, info.user));
+                if (count == 0) {
+                    // The icons of all the shortcuts are loaded along with the first one
+                    ContentValues values = new ContentValues();
+                    values.putNull(ICON);
+                    db.update(LauncherSettings.Favorites.TABLE_NAME, values, null, null);
+                }
+                count++;
+            }
+            assertEquals(SHORTCUT_COUNT, count);
+        }
+    }
+
+    private void insertShortcutRows(SQLiteDatabase db, int rowCount) {
+        Bitmap bitmap = Bitmap.createBitmap(ICON_SIZE, ICON_SIZE, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.RED);
+        ByteArrayOutputStream icon = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.PNG, 100, icon);
+        String intent = new Intent(Intent.ACTION_VIEW).toUri(0);
+        for (int i = 0; i < rowCount; i++) {
+            ContentValues values = new ContentValues();
+            values.put(_ID, i + 1);
+            values.put(PROFILE_ID, 0);
+            values.put(ITEM_TYPE, ITEM_TYPE_SHORTCUT);
+            values.put(CONTAINER, CONTAINER_DESKTOP);
+            values.put(SCREEN, 1);
+            values.put(CELLX, i % mIDP.numColumns);
+            values.put(CELLY, i / mIDP.numColumns);
+            values.put(SPANX, 1);
+            values.put(SPANY, 1);
+            values.put(TITLE, "Shortcut" + i);
+            values.put(INTENT, intent);
+            values.put(ICON, icon.toByteArray());
+            db.insert(LauncherSettings.Favorites.TABLE_NAME, null, values);
+        }
+    }
+
+    private MatrixCursor newIntentCursor(int rowCount, int distinctIntents) {
+        MatrixCursor cursor = new MatrixCursor(LoaderCursor.WORKSPACE_PROJECTION);
+        for (int i = 0; i < rowCount; i++) {
+            String intent = new Intent(Intent.ACTION_MAIN)
+                    .addCategory(Intent.CATEGORY_LAUNCHER)
+                    .setComponent(new ComponentName(TEST_PACKAGE,
+                            TEST_PACKAGE + ".Activity" + (i % distinctIntents)))
+                    .toUri(0);
+            cursor.newRow()
+                    .add(_ID, i + 1)
+                    .add(PROFILE_ID, 0)
+                    .add(ITEM_TYPE, ITEM_TYPE_APPLICATION)
+                    .add(CONTAINER, CONTAINER_DESKTOP)
+                    .add(SCREEN, i / 20)
+                    .add(CELLX, i % 4)
+                    .add(CELLY, (i / 4) % 5)
+                    .add(INTENT, intent);
+        }
+        return cursor;
+    }
+
     private ItemInfo newItemInfo(int cellX, int cellY, int spanX, int spanY,
             int container, int screenId) {
         ItemInfo info = new ItemInfo();
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.LauncherApps;
+import android.os.Process;
+import android.os.UserHandle;
+
+import com.android.launcher3.shadows.LShadowLauncherApps;
+import com.android.launcher3.util.LauncherModelHelper;
+import com.android.launcher3.util.PackageUserKey;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.LooperMode;
+import org.robolectric.annotation.LooperMode.Mode;
+import org.robolectric.shadow.api.Shadow;
+
+/**
+ * Tests for {@link PackageStateSnapshot}
+ */
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(Mode.PAUSED)
+public class PackageStateSnapshotTest {
+
+    private static final int APP_COUNT = 50;
+    private static final String APP_PREFIX = "com.android.launcher3.snapshot.app";
+
+    private Context mContext;
+    private UserHandle mUser;
+    private LShadowLauncherApps mLauncherApps;
+
+    @Before
+    public void setup() throws Exception {
+        mContext = RuntimeEnvironment.application;
+        mUser = Process.myUserHandle();
+        mLauncherApps = Shadow.extract(mContext.getSystemService(LauncherApps.class));
+
+        LauncherModelHelper modelHelper = new LauncherModelHelper();
+        for (int i = 0; i < APP_COUNT; i++) {
+            modelHelper.installApp(APP_PREFIX + i);
+        }
+        mLauncherApps.resetCallCounts();
+    }
+
+    @Test
+    public void testInstalledAppsUseSingleIpc() {
+        PackageStateSnapshot snapshot = new PackageStateSnapshot(mContext);
+        for (int i = 0; i < APP_COUNT; i++) {
+            String pkg = APP_PREFIX + i;
+            ComponentName cn = new ComponentName(pkg, pkg);
+
+            assertTrue(snapshot.isPackageEnabled(pkg, mUser));
+            assertTrue(snapshot.isActivityEnabled(cn, mUser));
+            assertFalse(snapshot.isAppSuspended(pkg, mUser));
+
+            Intent launchIntent = snapshot.getAppLaunchIntent(pkg, mUser);
+            assertNotNull(launchIntent);
+            assertEquals(cn, launchIntent.getComponent());
+            assertNotNull(snapshot.resolveActivity(
+                    new Intent(Intent.ACTION_MAIN).setComponent(cn), mUser));
+        }
+
+        assertEquals(1, mLauncherApps.getCallCount("getActivityList"));
+        assertEquals(0, mLauncherApps.getCallCount("isPackageEnabled"));
+        assertEquals(0, mLauncherApps.getCallCount("isActivityEnabled"));
+        assertEquals(0, mLauncherApps.getCallCount("resolveActivity"));
+        assertEquals(0, mLauncherApps.getCallCount("getApplicationInfo"));
+    }
+
+    @Test
+    public void testMissingPackageFallsBackOnce() {
+        String pkg = "com.android.launcher3.snapshot.missing";
+        mLauncherApps.disabledApps.add(new PackageUserKey(pkg, mUser));
+
+        PackageStateSnapshot snapshot = new PackageStateSnapshot(mContext);
+        assertFalse(snapshot.isPackageEnabled(pkg, mUser));
+        assertFalse(snapshot.isPackageEnabled(pkg, mUser));
+        assertNull(snapshot.getAppLaunchIntent(pkg, mUser));
+
+        assertEquals(1, mLauncherApps.getCallCount("getActivityList"));
+        assertEquals(1, mLauncherApps.getCallCount("isPackageEnabled"));
+    }
+}
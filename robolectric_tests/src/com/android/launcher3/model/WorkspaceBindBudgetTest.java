@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static com.android.launcher3.model.WorkspaceBindBudget.FRAME_BUDGET_NANOS;
+import static com.android.launcher3.model.WorkspaceBindBudget.MAX_CHUNK_SIZE;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/**
+ * Tests for {@link WorkspaceBindBudget}
+ */
+@RunWith(RobolectricTestRunner.class)
+public class WorkspaceBindBudgetTest {
+
+    // Enough measurements for the running average to settle
+    private static final int MEASUREMENT_COUNT = 100;
+
+    private WorkspaceBindBudget mBudget;
+
+    @Before
+    public void setup() {
+        mBudget = new WorkspaceBindBudget();
+    }
+
+    @Test
+    public void testDefaultChunkSize() {
+        assertEquals(6, mBudget.getChunkSize(false));
+        assertEquals(1, mBudget.getChunkSize(true));
+    }
+
+    @Test
+    public void testChunkSizeFitsFrameBudget() {
+        for (int i = 0; i < MEASUREMENT_COUNT; i++) {
+            mBudget.onItemsBound(4, false, FRAME_BUDGET_NANOS * 2);
+        }
+        // Each icon takes half the budget
+        assertEquals(2, mBudget.getChunkSize(false));
+        // Widgets are tracked separately
+        assertEquals(1, mBudget.getChunkSize(true));
+    }
+
+    @Test
+    public void testChunkSizeClamped() {
+        for (int i = 0; i < MEASUREMENT_COUNT; i++) {
+            mBudget.onItemsBound(10, false, 0);
+            mBudget.onItemsBound(1, true, FRAME_BUDGET_NANOS * 4);
+        }
+        assertEquals(MAX_CHUNK_SIZE, mBudget.getChunkSize(false));
+        assertEquals(1, mBudget.getChunkSize(true));
+    }
+
+    @Test
+    public void testEmptyChunkIgnored() {
+        mBudget.onItemsBound(0, false, FRAME_BUDGET_NANOS);
+        assertEquals(6, mBudget.getChunkSize(false));
+    }
+}
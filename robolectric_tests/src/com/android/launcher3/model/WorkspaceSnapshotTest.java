@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_DESKTOP;
+import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_HOTSEAT;
+import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_APPLICATION;
+import static com.android.launcher3.util.LauncherModelHelper.TEST_PACKAGE;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Process;
+
+import com.android.launcher3.icons.BitmapInfo;
+import com.android.launcher3.model.WorkspaceSnapshot.SnapshotItem;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.util.LauncherModelHelper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.LooperMode;
+import org.robolectric.annotation.LooperMode.Mode;
+
+import java.util.ArrayList;
+
+/**
+ * Tests for {@link WorkspaceSnapshot}
+ */
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(Mode.PAUSED)
+public class WorkspaceSnapshotTest {
+
+    private static final String STATE_KEY = "state";
+    private static final int SCREEN_ID = 3;
+    private static final int ICON_SIZE = 48;
+
+    private Context mContext;
+    private ArrayList<WorkspaceItemInfo> mItems;
+
+    @Before
+    public void setup() {
+        new LauncherModelHelper();
+        mContext = RuntimeEnvironment.application;
+        mItems = new ArrayList<>();
+        mItems.add(createItem(1, CONTAINER_DESKTOP, 0, Color.RED));
+        mItems.add(createItem(2, CONTAINER_DESKTOP, 1, Color.GREEN));
+        mItems.add(createItem(3, CONTAINER_HOTSEAT, 0, Color.BLUE));
+    }
+
+    @Test
+    public void testWriteAndRead() {
+        assertTrue(write(STATE_KEY));
+
+        WorkspaceSnapshot snapshot = WorkspaceSnapshot.read(mContext, STATE_KEY);
+        assertNotNull(snapshot);
+        assertEquals(1, snapshot.screenIds.size());
+        assertEquals(SCREEN_ID, snapshot.screenIds.get(0));
+        assertEquals(mItems.size(), snapshot.items.size());
+        for (int i = 0; i < mItems.size(); i++) {
+            WorkspaceItemInfo expected = mItems.get(i);
+            WorkspaceItemInfo actual = (WorkspaceItemInfo) snapshot.items.get(i);
+            assertEquals(expected.id, actual.id);
+            assertEquals(expected.itemType, actual.itemType);
+            assertEquals(expected.container, actual.container);
+            assertEquals(expected.screenId, actual.screenId);
+            assertEquals(expected.cellX, actual.cellX);
+            assertEquals(expected.cellY, actual.cellY);
+            assertEquals(expected.title, actual.title);
+            assertEquals(expected.getTargetComponent(), actual.getTargetComponent());
+            assertEquals(expected.user, actual.user);
+            assertEquals(expected.bitmap.color, actual.bitmap.color);
+            assertNotNull(actual.bitmap.icon);
+        }
+    }
+
+    @Test
+    public void testReadWithOtherState() {
+        write(STATE_KEY);
+        assertNull(WorkspaceSnapshot.read(mContext, STATE_KEY + "2"));
+    }
+
+    @Test
+    public void testWriteSkippedWhenUnchanged() {
+        assertTrue(write(STATE_KEY));
+        assertFalse(write(STATE_KEY));
+
+        mItems.get(0).cellX = 2;
+        assertTrue(write(STATE_KEY));
+        assertTrue(write(STATE_KEY + "2"));
+    }
+
+    @Test
+    public void testLowResItemsSkipped() {
+        mItems.get(0).bitmap = BitmapInfo.LOW_RES_INFO;
+        write(STATE_KEY);
+
+        WorkspaceSnapshot snapshot = WorkspaceSnapshot.read(mContext, STATE_KEY);
+        assertEquals(mItems.size() - 1, snapshot.items.size());
+        for (ItemInfo info : snapshot.items) {
+            assertFalse(info.id == mItems.get(0).id);
+        }
+    }
+
+    @Test
+    public void testItemsCopiedForWrite() {
+        ArrayList<SnapshotItem> copies = WorkspaceSnapshot.copyItems(mItems);
+        WorkspaceItemInfo item = mItems.get(0);
+        CharSequence title = item.title;
+        item.cellX = 2;
+        item.title = "Other";
+
+        WorkspaceSnapshot.write(mContext, STATE_KEY, SCREEN_ID, copies);
+        WorkspaceSnapshot snapshot = WorkspaceSnapshot.read(mContext, STATE_KEY);
+        assertEquals(0, snapshot.items.get(0).cellX);
+        assertEquals(title, snapshot.items.get(0).title);
+    }
+
+    @Test
+    public void testWriteSkippedWhenIconUnchanged() {
+        assertTrue(write(STATE_KEY));
+
+        // A new icon instance with the same cache state does not need to be written again
+        Bitmap icon = Bitmap.createBitmap(ICON_SIZE, ICON_SIZE, Bitmap.Config.ARGB_8888);
+        mItems.get(0).bitmap = new BitmapInfo(icon, mItems.get(0).bitmap.color);
+        assertFalse(write(STATE_KEY));
+
+        mItems.get(0).title = "Other";
+        assertTrue(write(STATE_KEY));
+    }
+
+    private boolean write(String stateKey) {
+        return WorkspaceSnapshot.write(mContext, stateKey, SCREEN_ID,
+                WorkspaceSnapshot.copyItems(mItems));
+    }
+
+    private static WorkspaceItemInfo createItem(int id, int container, int cellX, int color) {
+        WorkspaceItemInfo info = new WorkspaceItemInfo();
+        info.id = id;
+        info.itemType = ITEM_TYPE_APPLICATION;
+        info.container = container;
+        info.screenId = container == CONTAINER_HOTSEAT ? cellX : SCREEN_ID;
+        info.cellX = cellX;
+        info.title = "Item" + id;
+        info.intent = new Intent(Intent.ACTION_MAIN)
+                .setComponent(new ComponentName(TEST_PACKAGE, TEST_PACKAGE + id));
+        info.user = Process.myUserHandle();
+
+        Bitmap icon = Bitmap.createBitmap(ICON_SIZE, ICON_SIZE, Bitmap.Config.ARGB_8888);
+        icon.eraseColor(color);
+        info.bitmap = new BitmapInfo(icon, color);
+        return info;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.pm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Looper;
+import android.os.UserHandle;
+import android.os.UserManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.LooperMode;
+import org.robolectric.annotation.LooperMode.Mode;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowUserManager;
+
+/**
+ * Tests for {@link UserCache}
+ */
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(Mode.PAUSED)
+public class UserCacheTest {
+
+    private static final int FLAG_SYSTEM = 0x00000800;
+    private static final int FLAG_PROFILE = 0x00001000;
+
+    private static final int SYSTEM_USER = 0;
+    private static final int WORK_PROFILE_ID = 10;
+    private static final int NEW_PROFILE_ID = 11;
+
+    private Context mContext;
+    private UserManager mUserManager;
+    private ShadowUserManager mShadowUserManager;
+    private UserHandle mMainUser;
+    private UserHandle mWorkUser;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mUserManager = mContext.getSystemService(UserManager.class);
+        mShadowUserManager = Shadow.extract(mUserManager);
+        mMainUser = mShadowUserManager.addUser(SYSTEM_USER, "me", FLAG_SYSTEM);
+        mWorkUser = mShadowUserManager.addUser(WORK_PROFILE_ID, "work", FLAG_PROFILE);
+    }
+
+    @Test
+    public void testLookupsMatchUserManager() {
+        UserCache cache = UserCache.INSTANCE.get(mContext);
+        for (UserHandle user : mUserManager.getUserProfiles()) {
+            long serial = mUserManager.getSerialNumberForUser(user);
+            assertEquals(serial, cache.getSerialNumberForUser(user));
+            assertEquals(user, cache.getUserForSerialNumber(serial));
+        }
+        assertEquals(mUserManager.getUserProfiles().size(), cache.getUserProfiles().size());
+        assertTrue(cache.getUserProfiles().contains(mWorkUser));
+        assertNull(cache.getUserForSerialNumber(-12345));
+    }
+
+    @Test
+    public void testTableOnlyRefreshedOnUserChange() {
+        UserCache cache = UserCache.INSTANCE.get(mContext);
+        int[] changeCount = new int[1];
+        cache.addUserChangeListener(() -> changeCount[0]++);
+        assertTrue(cache.getUserProfiles().contains(mMainUser));
+
+        // Lookups are answered from the table, so a new user is not visible until the broadcast
+        UserHandle newUser = mShadowUserManager.addUser(NEW_PROFILE_ID, "new", FLAG_PROFILE);
+        assertFalse(cache.getUserProfiles().contains(newUser));
+
+        mContext.sendBroadcast(new Intent(Intent.ACTION_MANAGED_PROFILE_ADDED));
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertEquals(1, changeCount[0]);
+        assertTrue(cache.getUserProfiles().contains(newUser));
+        long serial = mUserManager.getSerialNumberForUser(newUser);
+        assertEquals(serial, cache.getSerialNumberForUser(newUser));
+        assertEquals(newUser, cache.getUserForSerialNumber(serial));
+    }
+}
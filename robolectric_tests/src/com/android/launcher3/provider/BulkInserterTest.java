@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.provider;
+
+import static com.android.launcher3.util.LauncherModelHelper.TEST_PACKAGE;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.ComponentName;
+import android.content.ContentValues;
+import android.content.Intent;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Bundle;
+
+import com.android.launcher3.LauncherSettings.Favorites;
+import com.android.launcher3.LauncherSettings.Settings;
+import com.android.launcher3.model.BgDataModel;
+import com.android.launcher3.util.LauncherLayoutBuilder;
+import com.android.launcher3.provider.LauncherDbUtils.SQLiteTransaction;
+import com.android.launcher3.util.LauncherModelHelper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.LooperMode;
+import org.robolectric.annotation.LooperMode.Mode;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * Tests for {@link BulkInserter} and the bulk insert paths of the launcher provider
+ */
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(Mode.PAUSED)
+public class BulkInserterTest {
+
+    private static final int ITEM_COUNT = 500;
+    // Each folder is one row, along with the apps it contains
+    private static final int FOLDER_SIZE = 9;
+    private static final int GRID_SIZE = 4;
+
+    private LauncherModelHelper mModelHelper;
+
+    @Before
+    public void setUp() {
+        mModelHelper = new LauncherModelHelper();
+        shadowOf(RuntimeEnvironment.application.getPackageManager())
+                .addActivityIfNotPresent(new ComponentName(TEST_PACKAGE, TEST_PACKAGE));
+    }
+
+    @Test
+    public void testDefaultLayoutLoaded() throws Exception {
+        int folderCount = ITEM_COUNT / (FOLDER_SIZE + 1);
+        LauncherLayoutBuilder builder = new LauncherLayoutBuilder();
+        for (int i = 0; i < folderCount; i++) {
+            int cell = i % (GRID_SIZE * GRID_SIZE);
+            LauncherLayoutBuilder.FolderBuilder folder = builder.atWorkspace(cell % GRID_SIZE,
+                    cell / GRID_SIZE, i / (GRID_SIZE * GRID_SIZE)).putFolder("Folder" + i);
+            for (int j = 0; j < FOLDER_SIZE; j++) {
+                folder.addApp(TEST_PACKAGE, TEST_PACKAGE);
+            }
+        }
+        mModelHelper.setupDefaultLayoutProvider(builder).loadModelSync();
+
+        BgDataModel dataModel = mModelHelper.getBgDataModel();
+        assertEquals(folderCount, dataModel.workspaceItems.size());
+        assertEquals(folderCount, dataModel.folders.size());
+        assertEquals(ITEM_COUNT, dataModel.itemsIdMap.size());
+    }
+
+    @Test
+    public void testBulkInsertMatchesInsert() {
+        SQLiteDatabase db = mModelHelper.provider.getDb();
+        ContentValues[] values = createItems(
+                mModelHelper.provider.getHelper().generateNewItemIds(ITEM_COUNT));
+
+        db.delete(Favorites.TABLE_NAME, null, null);
+        assertEquals(ITEM_COUNT, mModelHelper.provider.bulkInsert(Favorites.CONTENT_URI, values));
+        ArrayList<ContentValues> bulkRows = readItems(db);
+
+        db.delete(Favorites.TABLE_NAME, null, null);
+        insertItems(db, values);
+        ArrayList<ContentValues> rows = readItems(db);
+
+        assertEquals(ITEM_COUNT, rows.size());
+        assertEquals(rows, bulkRows);
+    }
+
+    @Test
+    public void testBulkInsertInSingleTransaction() {
+        SQLiteDatabase db = mModelHelper.provider.getDb();
+        ContentValues[] values = createItems(
+                mModelHelper.provider.getHelper().generateNewItemIds(ITEM_COUNT));
+        // The last row reuses the id of the first one, and fails to insert
+        values[ITEM_COUNT - 1].put(Favorites._ID, values[0].getAsInteger(Favorites._ID));
+
+        db.delete(Favorites.TABLE_NAME, null, null);
+        assertEquals(0, mModelHelper.provider.bulkInsert(Favorites.CONTENT_URI, values));
+        // All the rows inserted before the failure are rolled back
+        assertEquals(0, readItems(db).size());
+    }
+
+    @Test
+    public void testStatementReusedForSameColumns() {
+        SQLiteDatabase db = mModelHelper.provider.getDb();
+        ContentValues[] values = createItems(
+                mModelHelper.provider.getHelper().generateNewItemIds(ITEM_COUNT + 1));
+        db.delete(Favorites.TABLE_NAME, null, null);
+
+        try (SQLiteTransaction t = new SQLiteTransaction(db);
+             BulkInserter inserter = new BulkInserter(db, Favorites.TABLE_NAME)) {
+            assertTrue(inserter.insert(values[0]) >= 0);
+            Object statement = getStatement(inserter, values[0]);
+            for (int i = 1; i < ITEM_COUNT; i++) {
+                assertTrue(inserter.insert(values[i]) >= 0);
+            }
+            assertEquals(1, getStatements(inserter).size());
+            assertSame(statement, getStatement(inserter, values[0]));
+
+            // A different set of columns gets its own statement
+            ContentValues other = new ContentValues(values[1]);
+            other.put(Favorites._ID, values[0].getAsInteger(Favorites._ID) + ITEM_COUNT);
+            other.remove(Favorites.TITLE);
+            assertTrue(inserter.insert(other) >= 0);
+            assertEquals(2, getStatements(inserter).size());
+            t.commit();
+        }
+        assertEquals(ITEM_COUNT + 1, readItems(db).size());
+    }
+
+    @Test
+    public void testNewItemIdsReservesBlock() {
+        Bundle result = mModelHelper.provider.call(Settings.METHOD_NEW_ITEM_IDS,
+                Integer.toString(ITEM_COUNT), null);
+        int firstId = result.getInt(Settings.EXTRA_VALUE);
+        assertEquals(firstId + ITEM_COUNT, mModelHelper.provider.getHelper().generateNewItemId());
+    }
+
+    private static HashMap<String, ?> getStatements(BulkInserter inserter) {
+        return ReflectionHelpers.getField(inserter, "mStatements");
+    }
+
+    private static Object getStatement(BulkInserter inserter, ContentValues values) {
+        ArrayList<String> columns = new ArrayList<>(values.keySet());
+        Collections.sort(columns);
+        return ReflectionHelpers.getField(
+                getStatements(inserter).get(String.join(",", columns)), "statement");
+    }
+
+    private static void insertItems(SQLiteDatabase db, ContentValues[] values) {
+        try (SQLiteTransaction t = new SQLiteTransaction(db)) {
+            for (ContentValues v : values) {
+                db.insert(Favorites.TABLE_NAME, null, v);
+            }
+            t.commit();
+        }
+    }
+
+    private static ArrayList<ContentValues> readItems(SQLiteDatabase db) {
+        ArrayList<ContentValues> rows = new ArrayList<>();
+        try (Cursor c = db.query(Favorites.TABLE_NAME, null, null, null, null, null,
+                Favorites._ID)) {
+            while (c.moveToNext()) {
+                ContentValues row = new ContentValues();
+                DatabaseUtils.cursorRowToContentValues(c, row);
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    private ContentValues[] createItems(int firstId) {
+        String intent = new Intent(Intent.ACTION_MAIN)
+                .setComponent(new ComponentName(TEST_PACKAGE, TEST_PACKAGE))
+                .toUri(Intent.URI_INTENT_SCHEME);
+        ContentValues[] values = new ContentValues[ITEM_COUNT];
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            ContentValues v = new ContentValues();
+            v.put(Favorites._ID, firstId + i);
+            v.put(Favorites.CONTAINER, Favorites.CONTAINER_DESKTOP);
+            v.put(Favorites.SCREEN, i / (GRID_SIZE * GRID_SIZE));
+            v.put(Favorites.CELLX, i % GRID_SIZE);
+            v.put(Favorites.CELLY, (i / GRID_SIZE) % GRID_SIZE);
+            v.put(Favorites.SPANX, 1);
+            v.put(Favorites.SPANY, 1);
+            v.put(Favorites.ITEM_TYPE, Favorites.ITEM_TYPE_APPLICATION);
+            v.put(Favorites.INTENT, intent);
+            v.put(Favorites.TITLE, "Item" + i);
+            values[i] = v;
+        }
+        return values;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.shadows;
+
+import static org.robolectric.util.ReflectionHelpers.ClassParameter.from;
+
+import android.appwidget.AppWidgetHost;
+import android.appwidget.AppWidgetHostView;
+import android.appwidget.AppWidgetProviderInfo;
+import android.content.Context;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.annotation.RealObject;
+import org.robolectric.shadows.ShadowAppWidgetHost;
+import org.robolectric.util.ReflectionHelpers;
+
+/**
+ * Extension of {@link ShadowAppWidgetHost} which creates the views through
+ * {@link AppWidgetHost#onCreateView}, like the framework does
+ */
+@Implements(value = AppWidgetHost.class)
+public class LShadowAppWidgetHost extends ShadowAppWidgetHost {
+
+    @RealObject
+    private AppWidgetHost mRealHost;
+
+    @Override
+    @Implementation
+    protected AppWidgetHostView createView(Context context, int appWidgetId,
+            AppWidgetProviderInfo appWidget) {
+        AppWidgetHostView view = ReflectionHelpers.callInstanceMethod(mRealHost, "onCreateView",
+                from(Context.class, context),
+                from(int.class, appWidgetId),
+                from(AppWidgetProviderInfo.class, appWidget));
+        view.setAppWidget(appWidgetId, appWidget);
+        return view;
+    }
+
+    @Implementation
+    protected void deleteAppWidgetId(int appWidgetId) {
+        // The widget ids are not registered with the system
+    }
+}
@@ -31,6 +31,7 @@ import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
 import android.content.pm.ShortcutInfo;
 import android.os.UserHandle;
+import android.util.ArrayMap;
 import android.util.ArraySet;
 
 import com.android.launcher3.util.ComponentKey;
@@ -55,6 +56,21 @@ public class LShadowLauncherApps extends ShadowLauncherApps {
     public final ArraySet<PackageUserKey> disabledApps = new ArraySet<>();
     public final ArraySet<ComponentKey> disabledActivities = new ArraySet<>();
 
+    // Number of calls to each of the package state methods, used to count IPCs in tests
+    private final ArrayMap<String, Integer> mCallCounts = new ArrayMap<>();
+
+    public int getCallCount(String method) {
+        return mCallCounts.getOrDefault(method, 0);
+    }
+
+    public void resetCallCounts() {
+        mCallCounts.clear();
+    }
+
+    private void countCall(String method) {
+        mCallCounts.put(method, getCallCount(method) + 1);
+    }
+
     @Implementation
     @Override
     protected List<ShortcutInfo> getShortcuts(LauncherApps.ShortcutQuery query, UserHandle user) {
@@ -67,16 +83,19 @@ public class LShadowLauncherApps extends ShadowLauncherApps {
 
     @Implementation
     protected boolean isPackageEnabled(String packageName, UserHandle user) {
+        countCall("isPackageEnabled");
         return !disabledApps.contains(new PackageUserKey(packageName, user));
     }
 
     @Implementation
     protected boolean isActivityEnabled(ComponentName component, UserHandle user) {
+        countCall("isActivityEnabled");
         return !disabledActivities.contains(new ComponentKey(component, user));
     }
 
     @Implementation
     protected LauncherActivityInfo resolveActivity(Intent intent, UserHandle user) {
+        countCall("resolveActivity");
         ResolveInfo ri = RuntimeEnvironment.application.getPackageManager()
                 .resolveActivity(intent, 0);
         return ri == null ? null : getLauncherActivityInfo(ri.activityInfo, user);
@@ -93,12 +112,14 @@ public class LShadowLauncherApps extends ShadowLauncherApps {
     @Implementation
     public ApplicationInfo getApplicationInfo(String packageName, int flags, UserHandle user)
             throws PackageManager.NameNotFoundException {
+        countCall("getApplicationInfo");
         return RuntimeEnvironment.application.getPackageManager()
                 .getApplicationInfo(packageName, flags);
     }
 
     @Implementation
     public List<LauncherActivityInfo> getActivityList(String packageName, UserHandle user) {
+        countCall("getActivityList");
         Intent intent = new Intent(Intent.ACTION_MAIN)
                 .addCategory(Intent.CATEGORY_LAUNCHER)
                 .setPackage(packageName);
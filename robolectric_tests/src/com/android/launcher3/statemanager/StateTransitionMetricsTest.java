@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.statemanager;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.os.Bundle;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+/**
+ * Tests for {@link StateTransitionMetrics}
+ */
+@RunWith(RobolectricTestRunner.class)
+public class StateTransitionMetricsTest {
+
+    private static final long FRAME_INTERVAL = MILLISECONDS.toNanos(16);
+
+    private StateTransitionMetrics mMetrics;
+
+    @Before
+    public void setUp() {
+        mMetrics = new StateTransitionMetrics(RuntimeEnvironment.application);
+    }
+
+    @Test
+    public void testFramesAndDroppedFrames() {
+        long time = MILLISECONDS.toNanos(1000);
+        mMetrics.onTransitionStart("Normal", "AllApps", false, time, FRAME_INTERVAL);
+
+        // First frame after 5ms, then 10 smooth frames and one frame taking 3 intervals
+        time += MILLISECONDS.toNanos(5);
+        mMetrics.onFrame(time);
+        for (int i = 0; i < 10; i++) {
+            time += FRAME_INTERVAL;
+            mMetrics.onFrame(time);
+        }
+        time += 3 * FRAME_INTERVAL;
+        mMetrics.onFrame(time);
+        mMetrics.onTransitionEnd(true);
+
+        Bundle stats = mMetrics.toBundle().getBundle("Normal->AllApps");
+        assertNotNull(stats);
+        assertEquals(1, stats.getInt("completed"));
+        assertEquals(0, stats.getInt("cancelled"));
+        assertEquals(11, stats.getLong("frames"));
+        assertEquals(2, stats.getLong("dropped_frames"));
+        assertEquals(5, stats.getLong("first_frame_avg_ms"));
+        assertEquals(16, stats.getInt("frame_time_p50_ms"));
+        assertEquals(48, stats.getInt("frame_time_p99_ms"));
+    }
+
+    @Test
+    public void testTransitionsKeyedByStatesAndTouch() {
+        mMetrics.onTransitionStart("Normal", "Overview", true, 0, FRAME_INTERVAL);
+        // Starting another transition cancels the current one
+        mMetrics.onTransitionStart("Normal", "Overview", false, 0, FRAME_INTERVAL);
+        mMetrics.onTransitionEnd(true);
+        // Ending with no transition in progress is ignored
+        mMetrics.onTransitionEnd(true);
+
+        Bundle result = mMetrics.toBundle();
+        assertEquals(2, result.size());
+        assertEquals(1, result.getBundle("Normal->Overview (touch)").getInt("cancelled"));
+        assertEquals(1, result.getBundle("Normal->Overview").getInt("completed"));
+
+        mMetrics.reset();
+        assertTrue(mMetrics.toBundle().isEmpty());
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.ui;
+
+import static com.android.launcher3.util.LauncherModelHelper.TEST_PACKAGE;
+import static com.android.launcher3.util.LauncherUIHelper.buildAndBindLauncher;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.appwidget.AppWidgetManager;
+import android.appwidget.AppWidgetProviderInfo;
+import android.content.ComponentCallbacks2;
+import android.content.ComponentName;
+import android.content.Context;
+import android.util.SparseArray;
+
+import com.android.launcher3.InvariantDeviceProfile;
+import com.android.launcher3.Launcher;
+import com.android.launcher3.LauncherAppWidgetHost;
+import com.android.launcher3.LauncherAppWidgetProviderInfo;
+import com.android.launcher3.LauncherSettings.Favorites;
+import com.android.launcher3.Workspace;
+import com.android.launcher3.config.FeatureFlags;
+import com.android.launcher3.config.FeatureFlags.BooleanFlag;
+import com.android.launcher3.config.FeatureFlags.DebugFlag;
+import com.android.launcher3.model.data.LauncherAppWidgetInfo;
+import com.android.launcher3.util.LauncherLayoutBuilder;
+import com.android.launcher3.util.LauncherModelHelper;
+import com.android.launcher3.widget.LauncherAppWidgetHostView;
+import com.android.launcher3.widget.LazyAppWidgetHostView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.LooperMode;
+import org.robolectric.annotation.LooperMode.Mode;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.ReflectionHelpers;
+
+/**
+ * Tests for the widgets which are bound as {@link LazyAppWidgetHostView} on the workspace
+ */
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(Mode.PAUSED)
+public class WorkspaceLazyWidgetsTest {
+
+    private static final int PAGE_COUNT = 5;
+    private static final int FIRST_PAGE = 0;
+    private static final int LAST_PAGE = PAGE_COUNT - 1;
+
+    private static final int FIRST_PAGE_WIDGET_ID = 1;
+    private static final int LAST_PAGE_WIDGET_ID = 2;
+
+    private Context mTargetContext;
+    private ComponentName mProvider;
+    private Launcher mLauncher;
+    private Workspace mWorkspace;
+
+    @Before
+    public void setup() throws Exception {
+        mTargetContext = RuntimeEnvironment.application;
+        setLazyWidgetsEnabled(true);
+
+        LauncherModelHelper modelHelper = new LauncherModelHelper();
+        modelHelper.installApp(TEST_PACKAGE);
+        InvariantDeviceProfile idp = InvariantDeviceProfile.INSTANCE.get(mTargetContext);
+        LauncherLayoutBuilder builder = new LauncherLayoutBuilder();
+        for (int i = 0; i < PAGE_COUNT; i++) {
+            builder.atWorkspace(0, idp.numRows - 1, i).putApp(TEST_PACKAGE, TEST_PACKAGE);
+        }
+
+        mProvider = new ComponentName(TEST_PACKAGE, "DummyWidget");
+        AppWidgetProviderInfo providerInfo = new AppWidgetProviderInfo();
+        providerInfo.provider = mProvider;
+        ReflectionHelpers.setField(providerInfo, "providerInfo",
+                shadowOf(mTargetContext.getPackageManager()).addReceiverIfNotPresent(mProvider));
+        AppWidgetManager widgetManager = AppWidgetManager.getInstance(mTargetContext);
+        shadowOf(widgetManager).addInstalledProvider(providerInfo);
+        shadowOf(widgetManager).bindAppWidgetId(FIRST_PAGE_WIDGET_ID, mProvider);
+        shadowOf(widgetManager).bindAppWidgetId(LAST_PAGE_WIDGET_ID, mProvider);
+
+        modelHelper.setupDefaultLayoutProvider(builder).loadModelSync();
+        mLauncher = buildAndBindLauncher();
+        mWorkspace = mLauncher.getWorkspace();
+    }
+
+    @After
+    public void tearDown() {
+        setLazyWidgetsEnabled(false);
+    }
+
+    @Test
+    public void testDeferredAwayFromVisiblePage() {
+        LauncherAppWidgetInfo first = createWidgetInfo(FIRST_PAGE_WIDGET_ID, FIRST_PAGE);
+        LauncherAppWidgetInfo last = createWidgetInfo(LAST_PAGE_WIDGET_ID, LAST_PAGE);
+        assertFalse(mWorkspace.shouldDeferWidgetInflation(first));
+        assertTrue(mWorkspace.shouldDeferWidgetInflation(last));
+
+        setLazyWidgetsEnabled(false);
+        assertFalse(mWorkspace.shouldDeferWidgetInflation(last));
+    }
+
+    @Test
+    public void testDeferredAwayFromPageToBindWhileLoading() {
+        LauncherAppWidgetInfo first = createWidgetInfo(FIRST_PAGE_WIDGET_ID, FIRST_PAGE);
+        LauncherAppWidgetInfo last = createWidgetInfo(LAST_PAGE_WIDGET_ID, LAST_PAGE);
+
+        // While loading, the workspace is not on the page being bound yet
+        ReflectionHelpers.setField(mLauncher, "mWorkspaceLoading", true);
+        mLauncher.setPageToBindSynchronously(LAST_PAGE);
+        assertTrue(mWorkspace.shouldDeferWidgetInflation(first));
+        assertFalse(mWorkspace.shouldDeferWidgetInflation(last));
+
+        ReflectionHelpers.setField(mLauncher, "mWorkspaceLoading", false);
+        assertFalse(mWorkspace.shouldDeferWidgetInflation(first));
+        assertTrue(mWorkspace.shouldDeferWidgetInflation(last));
+    }
+
+    @Test
+    public void testPlaceholderInflatedOnPageChange() {
+        bindWidgets();
+        assertFalse(getWidget(FIRST_PAGE_WIDGET_ID) instanceof LazyAppWidgetHostView);
+        assertTrue(getWidget(LAST_PAGE_WIDGET_ID) instanceof LazyAppWidgetHostView);
+
+        mWorkspace.setCurrentPage(LAST_PAGE);
+        ShadowLooper.idleMainLooper();
+        assertFalse(getWidget(LAST_PAGE_WIDGET_ID) instanceof LazyAppWidgetHostView);
+        // Widgets are only deferred again under memory pressure
+        assertFalse(getWidget(FIRST_PAGE_WIDGET_ID) instanceof LazyAppWidgetHostView);
+    }
+
+    @Test
+    public void testOffscreenWidgetsDeferredOnTrimMemory() {
+        bindWidgets();
+        mWorkspace.setCurrentPage(LAST_PAGE);
+        ShadowLooper.idleMainLooper();
+        LauncherAppWidgetHostView lastView = getWidget(LAST_PAGE_WIDGET_ID);
+
+        mLauncher.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        ShadowLooper.idleMainLooper();
+        assertTrue(getWidget(FIRST_PAGE_WIDGET_ID) instanceof LazyAppWidgetHostView);
+        assertSame(lastView, getWidget(LAST_PAGE_WIDGET_ID));
+
+        // The inflated view is released by the host
+        assertNull(getHostViews().get(FIRST_PAGE_WIDGET_ID));
+        assertSame(lastView, getHostViews().get(LAST_PAGE_WIDGET_ID));
+    }
+
+    @Test
+    public void testLazyViewReplacesInflatedViewInHost() {
+        LauncherAppWidgetHost host = mLauncher.getAppWidgetHost();
+        LauncherAppWidgetProviderInfo info = LauncherAppWidgetProviderInfo.fromProviderInfo(
+                mTargetContext, AppWidgetManager.getInstance(mTargetContext)
+                        .getAppWidgetInfo(FIRST_PAGE_WIDGET_ID));
+
+        // A placeholder for a widget which was never inflated is not registered
+        host.createLazyView(mLauncher, FIRST_PAGE_WIDGET_ID, info);
+        assertNull(getHostViews().get(FIRST_PAGE_WIDGET_ID));
+
+        LauncherAppWidgetHostView view = (LauncherAppWidgetHostView)
+                host.createView(mLauncher, FIRST_PAGE_WIDGET_ID, info);
+        assertFalse(view instanceof LazyAppWidgetHostView);
+        assertSame(view, getHostViews().get(FIRST_PAGE_WIDGET_ID));
+
+        // The placeholder takes the place of the inflated view, and is not tracked itself
+        LazyAppWidgetHostView lazyView =
+                host.createLazyView(mLauncher, FIRST_PAGE_WIDGET_ID, info);
+        assertNull(getHostViews().get(FIRST_PAGE_WIDGET_ID));
+        SparseArray<?> lazyViews = ReflectionHelpers.getField(host, "mLazyViews");
+        assertNull(lazyViews.get(FIRST_PAGE_WIDGET_ID));
+
+        // Inflating again creates a new view
+        LauncherAppWidgetHostView newView = (LauncherAppWidgetHostView)
+                host.createView(mLauncher, FIRST_PAGE_WIDGET_ID, info);
+        assertNotSame(view, newView);
+        assertNotSame(lazyView, newView);
+        assertFalse(newView instanceof LazyAppWidgetHostView);
+        assertSame(newView, getHostViews().get(FIRST_PAGE_WIDGET_ID));
+    }
+
+    private void bindWidgets() {
+        mLauncher.bindAppWidget(createWidgetInfo(FIRST_PAGE_WIDGET_ID, FIRST_PAGE));
+        mLauncher.bindAppWidget(createWidgetInfo(LAST_PAGE_WIDGET_ID, LAST_PAGE));
+        ShadowLooper.idleMainLooper();
+        assertNotNull(getWidget(FIRST_PAGE_WIDGET_ID));
+        assertNotNull(getWidget(LAST_PAGE_WIDGET_ID));
+    }
+
+    private LauncherAppWidgetInfo createWidgetInfo(int appWidgetId, int page) {
+        LauncherAppWidgetInfo info = new LauncherAppWidgetInfo(appWidgetId, mProvider);
+        info.id = appWidgetId + 1000;
+        info.container = Favorites.CONTAINER_DESKTOP;
+        info.screenId = mWorkspace.getScreenIdForPageIndex(page);
+        info.cellX = 0;
+        info.cellY = 0;
+        info.spanX = 1;
+        info.spanY = 1;
+        return info;
+    }
+
+    private LauncherAppWidgetHostView getWidget(int appWidgetId) {
+        return mWorkspace.getWidgetForAppWidgetId(appWidgetId);
+    }
+
+    private SparseArray<LauncherAppWidgetHostView> getHostViews() {
+        return ReflectionHelpers.getField(mLauncher.getAppWidgetHost(), "mViews");
+    }
+
+    private void setLazyWidgetsEnabled(boolean enabled) {
+        BooleanFlag flag = FeatureFlags.ENABLE_LAZY_WIDGETS;
+        flag.defaultValue = enabled;
+        if (flag instanceof DebugFlag) {
+            ((DebugFlag) flag).initialize(mTargetContext);
+        }
+    }
+}
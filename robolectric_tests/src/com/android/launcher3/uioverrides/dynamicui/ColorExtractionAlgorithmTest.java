@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.uioverrides.dynamicui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import android.util.Pair;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Random;
+
+/**
+ * Tests for {@link ColorExtractionAlgorithm}
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ColorExtractionAlgorithmTest {
+
+    @Test
+    public void testPaletteLookupMatchesSearch() {
+        Random random = new Random(0);
+        for (int i = 0; i <= 100000; i++) {
+            float hue = i % 2 == 0 ? i / 100000f : random.nextFloat();
+            assertEquals("hue " + hue, ColorExtractionAlgorithm.searchTonalPalette(hue),
+                    ColorExtractionAlgorithm.getTonalPaletteIndex(hue));
+        }
+    }
+
+    @Test
+    public void testBlacklistMatchesAllRanges() {
+        Random random = new Random(0);
+        float[] hsl = new float[3];
+        for (int i = 0; i < 100000; i++) {
+            hsl[0] = random.nextInt(360 * 4) / 4f;
+            hsl[1] = random.nextFloat();
+            hsl[2] = random.nextFloat();
+
+            boolean expected = false;
+            for (ColorExtractionAlgorithm.ColorRange range
+                    : ColorExtractionAlgorithm.BLACKLISTED_COLORS) {
+                expected |= range.containsColor(hsl[0], hsl[1], hsl[2]);
+            }
+            assertEquals(expected, ColorExtractionAlgorithm.isBlacklisted(hsl));
+        }
+    }
+
+    @Test
+    public void testResultsAreCached() {
+        ColorExtractionAlgorithm algorithm = new ColorExtractionAlgorithm();
+        Pair<Integer, Integer> result =
+                algorithm.extractInto(new WallpaperColorsCompat(0xff3366cc, 0xff112233, 0, 0));
+        assertSame(result,
+                algorithm.extractInto(new WallpaperColorsCompat(0xff3366cc, 0xff112233, 0, 0)));
+
+        Pair<Integer, Integer> expected = new ColorExtractionAlgorithm().extractUncached(
+                new WallpaperColorsCompat(0xff3366cc, 0xff112233, 0, 0));
+        assertEquals(expected.first, result.first);
+        assertEquals(expected.second, result.second);
+    }
+
+    @Test
+    public void testCachedResultsMatchExtraction() {
+        Random random = new Random(0);
+        int count = ColorExtractionAlgorithm.RESULT_CACHE_SIZE + 1;
+        WallpaperColorsCompat[] colors = new WallpaperColorsCompat[count];
+        for (int i = 0; i < count; i++) {
+            colors[i] = new WallpaperColorsCompat(0xff000000 | random.nextInt(),
+                    0xff000000 | random.nextInt(), 0xff000000 | random.nextInt(),
+                    random.nextInt(4));
+        }
+
+        ColorExtractionAlgorithm algorithm = new ColorExtractionAlgorithm();
+        Pair<Integer, Integer> first = algorithm.extractInto(colors[0]);
+        for (int i = 0; i < 2 * count; i++) {
+            // Wallpapers usually alternate between a few colors
+            WallpaperColorsCompat c = colors[i % 2];
+            Pair<Integer, Integer> expected = new ColorExtractionAlgorithm().extractUncached(c);
+            Pair<Integer, Integer> result = algorithm.extractInto(c);
+            assertEquals(expected.first, result.first);
+            assertEquals(expected.second, result.second);
+        }
+        assertSame(first, algorithm.extractInto(colors[0]));
+
+        // The oldest result is evicted once the cache is full
+        for (int i = 1; i < count; i++) {
+            algorithm.extractInto(colors[i]);
+        }
+        Pair<Integer, Integer> result = algorithm.extractInto(colors[0]);
+        assertNotSame(first, result);
+        assertEquals(first.first, result.first);
+        assertEquals(first.second, result.second);
+    }
+}
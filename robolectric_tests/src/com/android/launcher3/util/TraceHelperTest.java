@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.util;
+
+import static com.android.launcher3.util.TraceHelper.FLAG_IGNORE_BINDERS;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.LooperMode;
+import org.robolectric.annotation.LooperMode.Mode;
+import org.robolectric.shadows.ShadowLooper;
+
+/**
+ * Tests for the main thread sections of {@link TraceHelper}
+ */
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(Mode.PAUSED)
+public class TraceHelperTest {
+
+    @After
+    public void tearDown() {
+        ShadowLooper.idleMainLooper();
+    }
+
+    @Test
+    public void testSectionsEndedByToken() {
+        Object outer = TraceHelper.INSTANCE.beginSection("outer", FLAG_IGNORE_BINDERS);
+        Object inner = TraceHelper.INSTANCE.beginSection("inner");
+        assertEquals("inner", TraceHelper.getMainThreadSection());
+
+        TraceHelper.INSTANCE.endSection(inner);
+        assertEquals("outer", TraceHelper.getMainThreadSection());
+        assertEquals(FLAG_IGNORE_BINDERS, TraceHelper.getMainThreadFlags());
+
+        TraceHelper.INSTANCE.endSection(outer);
+        assertNull(TraceHelper.getMainThreadSection());
+        assertEquals(0, TraceHelper.getMainThreadFlags());
+    }
+
+    @Test
+    public void testUnendedSectionsRemovedWithOuterSection() {
+        Object outer = TraceHelper.INSTANCE.beginSection("outer");
+        TraceHelper.INSTANCE.beginSection("leaked", FLAG_IGNORE_BINDERS);
+
+        TraceHelper.INSTANCE.endSection(outer);
+        assertNull(TraceHelper.getMainThreadSection());
+        assertEquals(0, TraceHelper.getMainThreadFlags());
+    }
+
+    @Test
+    public void testEndingUnknownSectionKeepsOpenSections() {
+        Object outer = TraceHelper.INSTANCE.beginSection("outer");
+        Object inner = TraceHelper.INSTANCE.beginSection("inner");
+        TraceHelper.INSTANCE.endSection(outer);
+
+        // Ending the inner section afterwards does not affect newer sections
+        Object other = TraceHelper.INSTANCE.beginSection("other");
+        TraceHelper.INSTANCE.endSection(inner);
+        assertEquals("other", TraceHelper.getMainThreadSection());
+        TraceHelper.INSTANCE.endSection(other);
+    }
+
+    @Test
+    public void testSectionsClearedOnIdle() {
+        TraceHelper.INSTANCE.beginSection("leaked", FLAG_IGNORE_BINDERS);
+        assertEquals("leaked", TraceHelper.getMainThreadSection());
+
+        ShadowLooper.idleMainLooper();
+        assertNull(TraceHelper.getMainThreadSection());
+        assertEquals(0, TraceHelper.getMainThreadFlags());
+    }
+}
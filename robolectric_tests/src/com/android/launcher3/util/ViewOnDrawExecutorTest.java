@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Activity;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.LooperMode;
+import org.robolectric.annotation.LooperMode.Mode;
+import org.robolectric.shadows.ShadowLooper;
+
+/**
+ * Tests for {@link ViewOnDrawExecutor}
+ */
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(Mode.PAUSED)
+public class ViewOnDrawExecutorTest {
+
+    private static final int TASK_COUNT = 3;
+
+    private View mView;
+    private IntArray mTasksRun;
+    private int mClearCount;
+
+    @Before
+    public void setup() {
+        Activity activity = Robolectric.buildActivity(Activity.class).setup().get();
+        mView = new View(activity);
+        activity.setContentView(mView);
+        mTasksRun = new IntArray();
+        mClearCount = 0;
+    }
+
+    @Test
+    public void testTasksRunInSeparateMessages() {
+        ViewOnDrawExecutor executor = createExecutor();
+        executor.onDraw();
+        executor.run();
+
+        // Only the first task is run, and the executor is still pending
+        assertEquals(1, mTasksRun.size());
+        assertFalse(executor.isCompleted());
+        assertEquals(0, mClearCount);
+
+        ShadowLooper.idleMainLooper();
+        assertEquals(TASK_COUNT, mTasksRun.size());
+        for (int i = 0; i < TASK_COUNT; i++) {
+            assertEquals(i, mTasksRun.get(i));
+        }
+        assertTrue(executor.isCompleted());
+        assertEquals(1, mClearCount);
+    }
+
+    @Test
+    public void testNotRunBeforeFirstDraw() {
+        ViewOnDrawExecutor executor = createExecutor();
+        executor.run();
+        ShadowLooper.idleMainLooper();
+
+        assertEquals(0, mTasksRun.size());
+        assertFalse(executor.isCompleted());
+    }
+
+    @Test
+    public void testMarkCompletedStopsPendingTasks() {
+        ViewOnDrawExecutor executor = createExecutor();
+        executor.onDraw();
+        executor.run();
+        executor.markCompleted();
+        ShadowLooper.idleMainLooper();
+
+        assertEquals(1, mTasksRun.size());
+        assertEquals(1, mClearCount);
+    }
+
+    @Test
+    public void testRunAllTasks() {
+        ViewOnDrawExecutor executor = createExecutor();
+        executor.runAllTasks();
+
+        assertEquals(TASK_COUNT, mTasksRun.size());
+        assertTrue(executor.isCompleted());
+        assertEquals(1, mClearCount);
+    }
+
+    private ViewOnDrawExecutor createExecutor() {
+        ViewOnDrawExecutor executor = new ViewOnDrawExecutor();
+        for (int i = 0; i < TASK_COUNT; i++) {
+            final int task = i;
+            executor.execute(() -> mTasksRun.add(task));
+        }
+        executor.attachTo(mView, false /* waitForLoadAnimation */, e -> mClearCount++);
+        return executor;
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.util;
+
+import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+import static com.android.launcher3.util.LauncherModelHelper.TEST_PACKAGE;
+import static com.android.launcher3.util.LauncherUIHelper.buildAndBindLauncher;
+import static com.android.launcher3.util.LauncherUIHelper.buildLauncher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.SparseArray;
+import android.view.View;
+
+import com.android.launcher3.InvariantDeviceProfile;
+import com.android.launcher3.Launcher;
+import com.android.launcher3.R;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.LooperMode;
+import org.robolectric.annotation.LooperMode.Mode;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Tests for {@link ViewPreInflater}
+ */
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(Mode.PAUSED)
+public class ViewPreInflaterTest {
+
+    private static final int ICON_COUNT = 5;
+
+    private Context mContext;
+    private CountingViewCache mViewCache;
+
+    @Before
+    public void setup() {
+        mContext = RuntimeEnvironment.application;
+        mViewCache = new CountingViewCache();
+    }
+
+    @Test
+    public void testViewsInflatedInIdleTime() {
+        ViewPreInflater inflater = new ViewPreInflater(mContext, mViewCache)
+                .add(R.layout.app_icon, ICON_COUNT);
+        inflater.start();
+        assertTrue(inflater.isStarted());
+        assertEquals(0, mViewCache.recycledCount);
+
+        ShadowLooper.idleMainLooper();
+        assertEquals(ICON_COUNT, mViewCache.recycledCount);
+        assertEquals(ICON_COUNT, getCachedCount(mViewCache, R.layout.app_icon));
+        assertFalse(inflater.isStarted());
+    }
+
+    @Test
+    public void testInflationSplitByIdleBudget() {
+        ViewPreInflater inflater = new ViewPreInflater(mContext, mViewCache)
+                .add(R.layout.app_icon, ICON_COUNT);
+        inflater.start();
+
+        // Each inflation uses up the budget, so every idle step inflates a single view
+        mViewCache.inflationTimeMs = ViewPreInflater.IDLE_BUDGET_MS;
+        for (int i = 1; i < ICON_COUNT; i++) {
+            assertTrue(inflater.queueIdle());
+            assertEquals(i, mViewCache.recycledCount);
+        }
+        assertFalse(inflater.queueIdle());
+        assertEquals(ICON_COUNT, mViewCache.recycledCount);
+        assertFalse(inflater.isStarted());
+    }
+
+    @Test
+    public void testCacheResizedOnlyWhileStarted() {
+        ViewPreInflater inflater = new ViewPreInflater(mContext, mViewCache)
+                .add(R.layout.app_icon, ICON_COUNT);
+        assertEquals(1, mViewCache.getCacheSize(R.layout.app_icon));
+
+        inflater.start();
+        assertEquals(ICON_COUNT, mViewCache.getCacheSize(R.layout.app_icon));
+
+        inflater.cancel();
+        assertEquals(1, mViewCache.getCacheSize(R.layout.app_icon));
+    }
+
+    @Test
+    public void testCancelStopsInflation() {
+        ViewPreInflater inflater = new ViewPreInflater(mContext, mViewCache)
+                .add(R.layout.app_icon, ICON_COUNT);
+        inflater.start();
+        mViewCache.inflationTimeMs = ViewPreInflater.IDLE_BUDGET_MS;
+        inflater.queueIdle();
+        inflater.queueIdle();
+        inflater.cancel();
+        assertFalse(inflater.isStarted());
+
+        ShadowLooper.idleMainLooper();
+        assertEquals(2, mViewCache.recycledCount);
+        // Inflated views are kept up to the original cache size
+        assertEquals(1, getCachedCount(mViewCache, R.layout.app_icon));
+    }
+
+    @Test
+    public void testNotStartedWhenBoundSynchronously() throws Exception {
+        LauncherModelHelper modelHelper = new LauncherModelHelper();
+        modelHelper.installApp(TEST_PACKAGE);
+        modelHelper.setupDefaultLayoutProvider(new LauncherLayoutBuilder()
+                .atWorkspace(0, 0, 0).putApp(TEST_PACKAGE, TEST_PACKAGE))
+                .loadModelSync();
+
+        Launcher launcher = buildAndBindLauncher();
+        assertEquals(0, getCachedCount(launcher.getViewCache(), R.layout.app_icon));
+        assertEquals(1, launcher.getViewCache().getCacheSize(R.layout.app_icon));
+    }
+
+    @Test
+    public void testStartedWhileModelLoads() throws Exception {
+        new LauncherModelHelper().installApp(TEST_PACKAGE);
+
+        // Hold the loader until the activity is created
+        CountDownLatch loaderLatch = new CountDownLatch(1);
+        MODEL_EXECUTOR.execute(() -> {
+            try {
+                loaderLatch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        try {
+            Launcher launcher = buildLauncher().setup().get();
+            InvariantDeviceProfile idp = launcher.getDeviceProfile().inv;
+            assertEquals(idp.numRows * idp.numColumns + idp.numHotseatIcons,
+                    getCachedCount(launcher.getViewCache(), R.layout.app_icon));
+        } finally {
+            loaderLatch.countDown();
+        }
+    }
+
+    @Test
+    public void testStoppedOnFirstPageBind() throws Exception {
+        new LauncherModelHelper().installApp(TEST_PACKAGE);
+        Launcher launcher = buildLauncher().setup().get();
+
+        ViewPreInflater inflater = new ViewPreInflater(launcher, mViewCache)
+                .add(R.layout.app_icon, ICON_COUNT);
+        ReflectionHelpers.setField(launcher, "mViewPreInflater", inflater);
+        inflater.start();
+
+        launcher.finishFirstPageBind(null);
+        assertFalse(inflater.isStarted());
+        assertEquals(1, mViewCache.getCacheSize(R.layout.app_icon));
+        ShadowLooper.idleMainLooper();
+        assertEquals(0, mViewCache.recycledCount);
+    }
+
+    @Test
+    public void testNotStoppedOnSnapshotBind() throws Exception {
+        new LauncherModelHelper().installApp(TEST_PACKAGE);
+        Launcher launcher = buildLauncher().setup().get();
+
+        ViewPreInflater inflater = new ViewPreInflater(launcher, mViewCache)
+                .add(R.layout.app_icon, ICON_COUNT);
+        ReflectionHelpers.setField(launcher, "mViewPreInflater", inflater);
+        inflater.start();
+
+        launcher.finishSnapshotBind();
+        assertTrue(inflater.isStarted());
+        ShadowLooper.idleMainLooper();
+        assertEquals(ICON_COUNT, mViewCache.recycledCount);
+    }
+
+    private static int getCachedCount(ViewCache viewCache, int layoutId) {
+        SparseArray<?> cache = ReflectionHelpers.getField(viewCache, "mCache");
+        return ReflectionHelpers.getField(cache.get(layoutId), "mCurrentSize");
+    }
+
+    private static class CountingViewCache extends ViewCache {
+
+        int recycledCount;
+        // Time each inflation takes on the test clock
+        long inflationTimeMs;
+
+        @Override
+        public void recycleView(int layoutId, View view) {
+            SystemClock.sleep(inflationTimeMs);
+            super.recycleView(layoutId, view);
+            recycledCount++;
+        }
+    }
+}
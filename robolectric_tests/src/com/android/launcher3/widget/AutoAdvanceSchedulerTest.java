@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.widget;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Looper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.LooperMode;
+import org.robolectric.annotation.LooperMode.Mode;
+
+import java.time.Duration;
+
+/**
+ * Tests for {@link AutoAdvanceScheduler}
+ */
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(Mode.PAUSED)
+public class AutoAdvanceSchedulerTest {
+
+    private AutoAdvanceScheduler mScheduler;
+    private LauncherAppWidgetHostView mView1;
+    private LauncherAppWidgetHostView mView2;
+
+    @Before
+    public void setup() {
+        mScheduler = new AutoAdvanceScheduler();
+        mView1 = mock(LauncherAppWidgetHostView.class);
+        mView2 = mock(LauncherAppWidgetHostView.class);
+    }
+
+    @Test
+    public void testWidgetsAdvanceOnSharedTick() {
+        mScheduler.add(mView1);
+        mScheduler.add(mView2);
+        mScheduler.add(mView1);
+        assertEquals(2, mScheduler.getWidgetCount());
+
+        idleFor(AutoAdvanceScheduler.ADVANCE_INTERVAL);
+        verify(mView1, times(1)).advanceIfVisible();
+        verify(mView2, times(1)).advanceIfVisible();
+
+        idleFor(AutoAdvanceScheduler.ADVANCE_INTERVAL);
+        verify(mView1, times(2)).advanceIfVisible();
+        verify(mView2, times(2)).advanceIfVisible();
+    }
+
+    @Test
+    public void testRemovedWidgetsNotAdvanced() {
+        mScheduler.add(mView1);
+        mScheduler.add(mView2);
+        mScheduler.remove(mView1);
+        mScheduler.remove(mView2);
+        assertEquals(0, mScheduler.getWidgetCount());
+
+        idleFor(AutoAdvanceScheduler.ADVANCE_INTERVAL);
+        verify(mView1, never()).advanceIfVisible();
+        verify(mView2, never()).advanceIfVisible();
+    }
+
+    private static void idleFor(long millis) {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(millis));
+    }
+}
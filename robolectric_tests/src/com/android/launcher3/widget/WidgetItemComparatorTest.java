@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.widget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.when;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.appwidget.AppWidgetProviderInfo;
+import android.content.ComponentName;
+import android.content.Context;
+
+import com.android.launcher3.InvariantDeviceProfile;
+import com.android.launcher3.LauncherAppWidgetProviderInfo;
+import com.android.launcher3.icons.ComponentWithLabel;
+import com.android.launcher3.icons.IconCache;
+import com.android.launcher3.model.WidgetItem;
+import com.android.launcher3.model.data.PackageItemInfo;
+import com.android.launcher3.util.LabelComparator;
+import com.android.launcher3.widget.WidgetsListAdapter.WidgetListRowEntryComparator;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowPackageManager;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * Tests for {@link WidgetItemComparator} and {@link WidgetListRowEntryComparator}
+ */
+@RunWith(RobolectricTestRunner.class)
+public class WidgetItemComparatorTest {
+
+    private static final int WIDGET_COUNT = 1000;
+    private static final String[] WORDS = {"Clock", "calendar", "Élan", "weather", "Notes",
+            "#tag", "2048", "Zoom", "émoji", "music", " spaced", "Ångström"};
+
+    @Mock private IconCache mIconCache;
+
+    private Context mContext;
+    private InvariantDeviceProfile mTestProfile;
+    private Random mRandom;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        mContext = RuntimeEnvironment.application;
+        mTestProfile = new InvariantDeviceProfile();
+        mTestProfile.numRows = 5;
+        mTestProfile.numColumns = 5;
+        mRandom = new Random(0);
+        when(mIconCache.getTitleNoCache(any(ComponentWithLabel.class))).thenAnswer(
+                invocation -> ((ComponentWithLabel) invocation.getArguments()[0])
+                        .getComponent().getClassName());
+    }
+
+    @Test
+    public void testWidgetOrderMatchesCollator() {
+        ArrayList<WidgetItem> items = generateWidgets();
+        Collections.sort(items, new WidgetItemComparator());
+
+        // Same as the comparator, comparing the labels without collation keys
+        Collator collator = Collator.getInstance();
+        int sameLabelCount = 0;
+        for (int i = 1; i < items.size(); i++) {
+            WidgetItem a = items.get(i - 1);
+            WidgetItem b = items.get(i);
+            int labelCompare = collator.compare(a.label, b.label);
+            assertTrue(a.label + " > " + b.label, labelCompare <= 0);
+            if (labelCompare == 0) {
+                sameLabelCount++;
+                int areaA = a.spanX * a.spanY;
+                int areaB = b.spanX * b.spanY;
+                assertTrue(areaA < areaB || (areaA == areaB && a.spanY <= b.spanY));
+            }
+        }
+        // Labels are drawn from a small set, so the size tie-break is exercised
+        assertTrue(sameLabelCount > 0);
+    }
+
+    @Test
+    public void testRowOrderMatchesLabelComparator() {
+        LabelComparator labelComparator = new LabelComparator();
+        ArrayList<WidgetListRowEntry> rows = new ArrayList<>();
+        ArrayList<String> titles = new ArrayList<>();
+        for (int i = 0; i < WIDGET_COUNT / 10; i++) {
+            String title = randomLabel();
+            PackageItemInfo pInfo = new PackageItemInfo("com.dummy.apk" + i);
+            pInfo.title = title;
+            rows.add(new WidgetListRowEntry(pInfo, new ArrayList<>(), labelComparator));
+            titles.add(title);
+        }
+
+        Collections.sort(rows, new WidgetListRowEntryComparator());
+        Collections.sort(titles, labelComparator);
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals(titles.get(i), rows.get(i).pkgItem.title.toString());
+        }
+    }
+
+    @Test
+    public void testCachedKeysKeepOrder() {
+        ArrayList<WidgetItem> items = generateWidgets();
+        WidgetItemComparator comparator = new WidgetItemComparator();
+        ArrayList<WidgetItem> firstSort = new ArrayList<>(items);
+        Collections.sort(firstSort, comparator);
+
+        // Keys are reused when the model sorts the rows again
+        Collections.shuffle(items, mRandom);
+        Collections.sort(items, comparator);
+        assertSameOrder(firstSort, items, comparator);
+
+        // Same as the order of a new comparator, which computes new keys
+        Collections.shuffle(items, mRandom);
+        Collections.sort(items, new WidgetItemComparator());
+        assertSameOrder(firstSort, items, comparator);
+    }
+
+    private static void assertSameOrder(ArrayList<WidgetItem> expected,
+            ArrayList<WidgetItem> actual, WidgetItemComparator comparator) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            // Items with the same label and size can be in any order
+            assertEquals(0, comparator.compare(expected.get(i), actual.get(i)));
+        }
+    }
+
+    private ArrayList<WidgetItem> generateWidgets() {
+        ShadowPackageManager spm = shadowOf(mContext.getPackageManager());
+        ArrayList<WidgetItem> items = new ArrayList<>(WIDGET_COUNT);
+        for (int i = 0; i < WIDGET_COUNT; i++) {
+            // The class name is used as the label of the widget. Labels are repeated across
+            // packages so that items with the same label are sorted by size.
+            ComponentName cn = new ComponentName("com.dummy.apk" + i, randomLabel());
+
+            AppWidgetProviderInfo widgetInfo = new AppWidgetProviderInfo();
+            widgetInfo.provider = cn;
+            ReflectionHelpers.setField(widgetInfo, "providerInfo", spm.addReceiverIfNotPresent(cn));
+            LauncherAppWidgetProviderInfo info =
+                    LauncherAppWidgetProviderInfo.fromProviderInfo(mContext, widgetInfo);
+            info.spanX = 1 + mRandom.nextInt(4);
+            info.spanY = 1 + mRandom.nextInt(4);
+            items.add(new WidgetItem(info, mTestProfile, mIconCache));
+        }
+        return items;
+    }
+
+    private String randomLabel() {
+        return WORDS[mRandom.nextInt(WORDS.length)] + " " + WORDS[mRandom.nextInt(WORDS.length)];
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.widget;
+
+import static android.content.res.Configuration.ORIENTATION_LANDSCAPE;
+import static android.content.res.Configuration.ORIENTATION_PORTRAIT;
+
+import static com.android.launcher3.util.Executors.UI_HELPER_EXECUTOR;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import android.content.ComponentName;
+import android.graphics.Bitmap;
+
+import com.android.launcher3.LauncherAppWidgetHost;
+import com.android.launcher3.icons.GraphicsUtils;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.LooperMode;
+import org.robolectric.annotation.LooperMode.Mode;
+
+/**
+ * Tests for {@link WidgetSnapshotCache}
+ */
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(Mode.PAUSED)
+public class WidgetSnapshotCacheTest {
+
+    private static final ComponentName PROVIDER = new ComponentName("com.dummy.apk", "Widget");
+    private static final ComponentName OTHER_PROVIDER =
+            new ComponentName("com.dummy.apk", "OtherWidget");
+
+    private WidgetSnapshotCache mCache;
+    private Bitmap mSnapshot;
+
+    @Before
+    public void setup() {
+        mCache = new WidgetSnapshotCache(RuntimeEnvironment.application);
+        mSnapshot = Bitmap.createBitmap(40, 20, Bitmap.Config.ARGB_8888);
+    }
+
+    @Test
+    public void testSnapshotOnlyReturnedForSameProviderAndOrientation() {
+        mCache.writeSnapshot(1, PROVIDER, ORIENTATION_PORTRAIT, mSnapshot);
+
+        assertNotNull(mCache.readSnapshot(1, PROVIDER, ORIENTATION_PORTRAIT));
+        assertNull(mCache.readSnapshot(1, PROVIDER, ORIENTATION_LANDSCAPE));
+        assertNull(mCache.readSnapshot(1, OTHER_PROVIDER, ORIENTATION_PORTRAIT));
+        assertNull(mCache.readSnapshot(2, PROVIDER, ORIENTATION_PORTRAIT));
+
+        // A new snapshot replaces the previous one
+        mCache.writeSnapshot(1, PROVIDER, ORIENTATION_LANDSCAPE, mSnapshot);
+        assertNull(mCache.readSnapshot(1, PROVIDER, ORIENTATION_PORTRAIT));
+        assertNotNull(mCache.readSnapshot(1, PROVIDER, ORIENTATION_LANDSCAPE));
+    }
+
+    @Test
+    public void testTrimRemovesOldestSnapshots() {
+        for (int i = 1; i <= 3; i++) {
+            mCache.writeSnapshot(i, PROVIDER, ORIENTATION_PORTRAIT, mSnapshot);
+        }
+        mCache.trimToSize(GraphicsUtils.flattenBitmap(mSnapshot).length);
+
+        assertNull(mCache.readSnapshot(1, PROVIDER, ORIENTATION_PORTRAIT));
+        assertNull(mCache.readSnapshot(2, PROVIDER, ORIENTATION_PORTRAIT));
+        assertNotNull(mCache.readSnapshot(3, PROVIDER, ORIENTATION_PORTRAIT));
+    }
+
+    @Test
+    public void testSnapshotRemovedWithWidgetId() throws Exception {
+        mCache.writeSnapshot(1, PROVIDER, ORIENTATION_PORTRAIT, mSnapshot);
+        mCache.writeSnapshot(2, PROVIDER, ORIENTATION_PORTRAIT, mSnapshot);
+
+        // The shared cache was not created yet
+        new LauncherAppWidgetHost(RuntimeEnvironment.application).deleteAppWidgetId(1);
+        UI_HELPER_EXECUTOR.submit(() -> { }).get();
+
+        assertNull(mCache.readSnapshot(1, PROVIDER, ORIENTATION_PORTRAIT));
+        assertNotNull(mCache.readSnapshot(2, PROVIDER, ORIENTATION_PORTRAIT));
+    }
+}
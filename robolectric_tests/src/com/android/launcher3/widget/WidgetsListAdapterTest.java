@@ -15,8 +15,10 @@
  */
 package com.android.launcher3.widget;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.robolectric.Shadows.shadowOf;
@@ -119,6 +121,39 @@ public class WidgetsListAdapterTest {
         // E - null = -1, E deleted from index 3      [A, C, D]
     }
 
+    @Test
+    public void testUnchangedRowsAreSkipped_itemChanged() throws Exception {
+        ArrayList<WidgetListRowEntry> rows = generateSampleMap(4);
+        mAdapter.setWidgets(new ArrayList<>(rows));
+
+        // Only the row for the second package is a new instance
+        rows.set(1, generateSampleRow(1));
+        mAdapter.setWidgets(new ArrayList<>(rows));
+
+        verify(mListener, times(1)).onChanged();
+        verify(mListener, times(1)).onItemRangeChanged(eq(1), eq(1), isNull());
+        verify(mListener, never()).onItemRangeInserted(eq(1), eq(1));
+        verify(mListener, never()).onItemRangeRemoved(eq(1), eq(1));
+    }
+
+    @Test
+    public void testUnchangedRowsAreSkipped_itemInsertedRemoved() throws Exception {
+        ArrayList<WidgetListRowEntry> rows = generateSampleMap(4);
+        mAdapter.setWidgets(new ArrayList<>(rows));
+
+        rows.remove(2);
+        mAdapter.setWidgets(new ArrayList<>(rows));
+        verify(mListener, times(1)).onItemRangeRemoved(eq(2), eq(1));
+
+        // The new list is not sorted, the row is still inserted at the sorted position
+        rows.add(0, generateSampleRow(2));
+        mAdapter.setWidgets(new ArrayList<>(rows));
+        verify(mListener, times(1)).onItemRangeInserted(eq(2), eq(1));
+
+        verify(mListener, times(1)).onChanged();
+        assertEquals(4, mAdapter.getItemCount());
+    }
+
     /**
      * Helper method to generate the sample widget model map that can be used for the tests
      * @param num the number of WidgetItem the map should contain
@@ -126,26 +161,33 @@ public class WidgetsListAdapterTest {
     private ArrayList<WidgetListRowEntry> generateSampleMap(int num) {
         ArrayList<WidgetListRowEntry> result = new ArrayList<>();
         if (num <= 0) return result;
-        ShadowPackageManager spm = shadowOf(mContext.getPackageManager());
 
         for (int i = 0; i < num; i++) {
-            ComponentName cn = new ComponentName("com.dummy.apk" + i, "DummyWidet");
+            result.add(generateSampleRow(i));
+        }
 
-            AppWidgetProviderInfo widgetInfo = new AppWidgetProviderInfo();
-            widgetInfo.provider = cn;
-            ReflectionHelpers.setField(widgetInfo, "providerInfo", spm.addReceiverIfNotPresent(cn));
+        return result;
+    }
 
-            WidgetItem wi = new WidgetItem(LauncherAppWidgetProviderInfo
-                    .fromProviderInfo(mContext, widgetInfo), mTestProfile, mIconCache);
+    /**
+     * Helper method to generate the row for the sample package with the given index
+     */
+    private WidgetListRowEntry generateSampleRow(int index) {
+        ShadowPackageManager spm = shadowOf(mContext.getPackageManager());
+        ComponentName cn = new ComponentName("com.dummy.apk" + index, "DummyWidet");
 
-            PackageItemInfo pInfo = new PackageItemInfo(wi.componentName.getPackageName());
-            pInfo.title = pInfo.packageName;
-            pInfo.user = wi.user;
-            pInfo.bitmap = BitmapInfo.of(Bitmap.createBitmap(10, 10, Bitmap.Config.ALPHA_8), 0);
+        AppWidgetProviderInfo widgetInfo = new AppWidgetProviderInfo();
+        widgetInfo.provider = cn;
+        ReflectionHelpers.setField(widgetInfo, "providerInfo", spm.addReceiverIfNotPresent(cn));
 
-            result.add(new WidgetListRowEntry(pInfo, new ArrayList<>(Collections.singleton(wi))));
-        }
+        WidgetItem wi = new WidgetItem(LauncherAppWidgetProviderInfo
+                .fromProviderInfo(mContext, widgetInfo), mTestProfile, mIconCache);
 
-        return result;
+        PackageItemInfo pInfo = new PackageItemInfo(wi.componentName.getPackageName());
+        pInfo.title = pInfo.packageName;
+        pInfo.user = wi.user;
+        pInfo.bitmap = BitmapInfo.of(Bitmap.createBitmap(10, 10, Bitmap.Config.ALPHA_8), 0);
+
+        return new WidgetListRowEntry(pInfo, new ArrayList<>(Collections.singleton(wi)));
     }
 }
@@ -21,7 +21,6 @@ import android.content.ComponentName;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
-import android.content.pm.ActivityInfo;
 import android.content.pm.PackageManager;
 import android.content.res.Resources;
 import android.database.sqlite.SQLiteDatabase;
@@ -44,6 +43,8 @@ import com.android.launcher3.LauncherProvider.SqlArguments;
 import com.android.launcher3.LauncherSettings.Favorites;
 import com.android.launcher3.icons.GraphicsUtils;
 import com.android.launcher3.icons.LauncherIcons;
+import com.android.launcher3.model.LayoutComponentResolver;
+import com.android.launcher3.model.LayoutComponentResolver.ResolvedActivity;
 import com.android.launcher3.model.data.LauncherAppWidgetInfo;
 import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.qsb.QsbContainerView;
@@ -55,11 +56,16 @@ import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
+import java.util.HashSet;
 import java.util.Locale;
 import java.util.function.Supplier;
 
 /**
- * Layout parsing code for auto installs layout
+ * Layout parsing code for auto installs layout.
+ *
+ * The layout is read twice: the first pass only collects the referenced activities so that they
+ * can be resolved together by {@link LayoutComponentResolver}, and the second pass adds the items
+ * using the resolved activities.
  */
 public class AutoInstallsLayout {
     private static final String TAG = "AutoInstalls";
@@ -162,6 +168,7 @@ public class AutoInstallsLayout {
     protected final LayoutParserCallback mCallback;
 
     protected final PackageManager mPackageManager;
+    protected final LayoutComponentResolver mComponentResolver;
     protected final Resources mSourceRes;
     protected final Supplier<XmlPullParser> mInitialLayoutSupplier;
 
@@ -190,6 +197,7 @@ public class AutoInstallsLayout {
         mCallback = callback;
 
         mPackageManager = context.getPackageManager();
+        mComponentResolver = new LayoutComponentResolver(mPackageManager);
         mValues = new ContentValues();
         mRootTag = rootTag;
 
@@ -206,6 +214,14 @@ public class AutoInstallsLayout {
      */
     public int loadLayout(SQLiteDatabase db, IntArray screenIds) {
         mDb = db;
+        try {
+            HashSet<ComponentName> components = new HashSet<>();
+            collectComponents(mInitialLayoutSupplier.get(), components);
+            mComponentResolver.resolveAll(components);
+        } catch (Exception e) {
+            // The components are resolved individually while adding the items
+            Log.e(TAG, "Error collecting layout components: ", e);
+        }
         try {
             return parseLayout(mInitialLayoutSupplier.get(), screenIds);
         } catch (Exception e) {
@@ -235,6 +251,37 @@ public class AutoInstallsLayout {
         return count;
     }
 
+    /**
+     * Collects the activities referenced by the layout, including the included layouts. Items
+     * which are not resolved by the package manager, like widgets and auto installs, are skipped.
+     */
+    protected void collectComponents(XmlPullParser parser, HashSet<ComponentName> out)
+            throws XmlPullParserException, IOException {
+        beginDocument(parser, mRootTag);
+        final int depth = parser.getDepth();
+        int type;
+        while (((type = parser.next()) != XmlPullParser.END_TAG ||
+                parser.getDepth() > depth) && type != XmlPullParser.END_DOCUMENT) {
+            if (type != XmlPullParser.START_TAG) {
+                continue;
+            }
+            String tag = parser.getName();
+            if (TAG_INCLUDE.equals(tag)) {
+                final int resId = getAttributeResourceValue(parser, ATTR_WORKSPACE, 0);
+                if (resId != 0) {
+                    collectComponents(mSourceRes.getXml(resId), out);
+                }
+            } else if (!TAG_APPWIDGET.equals(tag) && !TAG_SEARCH_WIDGET.equals(tag)
+                    && !TAG_AUTO_INSTALL.equals(tag)) {
+                final String packageName = getAttributeValue(parser, ATTR_PACKAGE_NAME);
+                final String className = getAttributeValue(parser, ATTR_CLASS_NAME);
+                if (!TextUtils.isEmpty(packageName) && !TextUtils.isEmpty(className)) {
+                    out.add(new ComponentName(packageName, className));
+                }
+            }
+        }
+    }
+
     /**
      * Parses container and screenId attribute from the current tag, and puts it in the out.
      * @param out array of size 2.
@@ -351,30 +398,20 @@ public class AutoInstallsLayout {
             final String className = getAttributeValue(parser, ATTR_CLASS_NAME);
 
             if (!TextUtils.isEmpty(packageName) && !TextUtils.isEmpty(className)) {
-                ActivityInfo info;
-                try {
-                    ComponentName cn;
-                    try {
-                        cn = new ComponentName(packageName, className);
-                        info = mPackageManager.getActivityInfo(cn, 0);
-                    } catch (PackageManager.NameNotFoundException nnfe) {
-                        String[] packages = mPackageManager.currentToCanonicalPackageNames(
-                                new String[]{packageName});
-                        cn = new ComponentName(packages[0], className);
-                        info = mPackageManager.getActivityInfo(cn, 0);
-                    }
-                    final Intent intent = new Intent(Intent.ACTION_MAIN, null)
-                            .addCategory(Intent.CATEGORY_LAUNCHER)
-                            .setComponent(cn)
-                            .setFlags(Intent.FLAG_ACTIVITY_NEW_TASK
-                                    | Intent.FLAG_ACTIVITY_RESET_TASK_IF_NEEDED);
-
-                    return addShortcut(info.loadLabel(mPackageManager).toString(),
-                            intent, Favorites.ITEM_TYPE_APPLICATION);
-                } catch (PackageManager.NameNotFoundException e) {
+                // Usually resolved along with the rest of the layout, see collectComponents
+                ResolvedActivity activity = mComponentResolver.resolve(
+                        new ComponentName(packageName, className));
+                if (activity == null) {
                     Log.e(TAG, "Favorite not found: " + packageName + "/" + className);
+                    return -1;
                 }
-                return -1;
+                final Intent intent = new Intent(Intent.ACTION_MAIN, null)
+                        .addCategory(Intent.CATEGORY_LAUNCHER)
+                        .setComponent(activity.component)
+                        .setFlags(Intent.FLAG_ACTIVITY_NEW_TASK
+                                | Intent.FLAG_ACTIVITY_RESET_TASK_IF_NEEDED);
+
+                return addShortcut(activity.label, intent, Favorites.ITEM_TYPE_APPLICATION);
             } else {
                 return invalidPackageOrClass(parser);
             }
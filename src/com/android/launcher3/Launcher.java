@@ -82,7 +82,6 @@ import android.util.SparseArray;
 import android.view.KeyEvent;
 import android.view.KeyboardShortcutGroup;
 import android.view.KeyboardShortcutInfo;
-import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MotionEvent;
 import android.view.View;
@@ -169,6 +168,7 @@ import com.android.launcher3.util.TouchController;
 import com.android.launcher3.util.TraceHelper;
 import com.android.launcher3.util.UiThreadHelper;
 import com.android.launcher3.util.ViewOnDrawExecutor;
+import com.android.launcher3.util.ViewPreInflater;
 import com.android.launcher3.views.ActivityContext;
 import com.android.launcher3.views.FloatingSurfaceView;
 import com.android.launcher3.views.OptionsPopupView;
@@ -304,6 +304,7 @@ public class Launcher extends StatefulActivity<LauncherState> implements Launche
     private Runnable mOnDeferredActivityLaunchCallback;
 
     private ViewOnDrawExecutor mPendingExecutor;
+    private ViewPreInflater mViewPreInflater;
 
     private LauncherModel mModel;
     private ModelWriter mModelWriter;
@@ -416,7 +417,16 @@ public class Launcher extends StatefulActivity<LauncherState> implements Launche
         }
         mPageToBindSynchronously = currentScreen;
 
+        // Views for the first page, warmed up while the model is being loaded
+        InvariantDeviceProfile idp = mDeviceProfile.inv;
+        mViewPreInflater = new ViewPreInflater(this, getViewCache())
+                .add(R.layout.app_icon, idp.numRows * idp.numColumns + idp.numHotseatIcons)
+                .add(R.layout.folder_icon, idp.numColumns);
+
         if (!mModel.addCallbacksAndLoad(this)) {
+            // The first page is bound once the model is loaded, until then views are
+            // inflated in idle time
+            mViewPreInflater.start();
             if (!internalStateHandled) {
                 // If we are not binding synchronously, show a fade in animation when
                 // the first page bind completes.
@@ -1185,8 +1195,7 @@ public class Launcher extends StatefulActivity<LauncherState> implements Launche
      * @return A View inflated from layoutResId.
      */
     public View createShortcut(ViewGroup parent, WorkspaceItemInfo info) {
-        BubbleTextView favorite = (BubbleTextView) LayoutInflater.from(parent.getContext())
-                .inflate(R.layout.app_icon, parent, false);
+        BubbleTextView favorite = getViewCache().getView(R.layout.app_icon, this, parent);
         favorite.applyFromWorkspaceItem(info);
         favorite.setOnClickListener(ItemClickHandler.INSTANCE);
         favorite.setOnFocusChangeListener(mFocusHandler);
@@ -1545,6 +1554,7 @@ public class Launcher extends StatefulActivity<LauncherState> implements Launche
 
         mModel.removeCallbacks(this);
         mRotationHelper.destroy();
+        mViewPreInflater.cancel();
 
         try {
             mAppWidgetHost.stopListening();
@@ -1937,6 +1947,12 @@ public class Launcher extends StatefulActivity<LauncherState> implements Launche
             // This clears all widget bitmaps from the widget tray
             // TODO(hyunyoungs)
         }
+        if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL
+                || level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            // Release the widgets which are not in view, they are inflated again when needed
+            mWorkspace.deferOffscreenWidgets();
+        }
     }
 
     @Override
@@ -2328,7 +2344,12 @@ public class Launcher extends StatefulActivity<LauncherState> implements Launche
 
                 item.minSpanX = appWidgetInfo.minSpanX;
                 item.minSpanY = appWidgetInfo.minSpanY;
-                view = mAppWidgetHost.createView(this, item.appWidgetId, appWidgetInfo);
+                if (!appWidgetInfo.isCustomWidget()
+                        && mWorkspace.shouldDeferWidgetInflation(item)) {
+                    view = mAppWidgetHost.createLazyView(this, item.appWidgetId, appWidgetInfo);
+                } else {
+                    view = mAppWidgetHost.createView(this, item.appWidgetId, appWidgetInfo);
+                }
             } else if (!item.hasRestoreFlag(LauncherAppWidgetInfo.FLAG_ID_NOT_VALID)
                     && appWidgetInfo != null) {
                 mAppWidgetHost.addPendingView(item.appWidgetId,
@@ -2398,6 +2419,17 @@ public class Launcher extends StatefulActivity<LauncherState> implements Launche
 
     @Override
     public void finishFirstPageBind(final ViewOnDrawExecutor executor) {
+        mViewPreInflater.cancel();
+        showFirstPage(executor);
+    }
+
+    @Override
+    public void finishSnapshotBind() {
+        // Views are still inflated for the actual first page
+        showFirstPage(null);
+    }
+
+    private void showFirstPage(final ViewOnDrawExecutor executor) {
         AlphaProperty property = mDragLayer.getAlphaProperty(ALPHA_INDEX_LAUNCHER_LOAD);
         if (property.getValue() < 1) {
             ObjectAnimator anim = ObjectAnimator.ofFloat(property, MultiValueAlpha.VALUE, 1);
@@ -34,7 +34,9 @@ import com.android.launcher3.testing.TestLogging;
 import com.android.launcher3.testing.TestProtocol;
 import com.android.launcher3.widget.DeferredAppWidgetHostView;
 import com.android.launcher3.widget.LauncherAppWidgetHostView;
+import com.android.launcher3.widget.LazyAppWidgetHostView;
 import com.android.launcher3.widget.PendingAppWidgetHostView;
+import com.android.launcher3.widget.WidgetSnapshotCache;
 import com.android.launcher3.widget.custom.CustomWidgetManager;
 
 import java.util.ArrayList;
@@ -57,6 +59,7 @@ public class LauncherAppWidgetHost extends AppWidgetHost {
     private final ArrayList<ProviderChangedListener> mProviderChangeListeners = new ArrayList<>();
     private final SparseArray<LauncherAppWidgetHostView> mViews = new SparseArray<>();
     private final SparseArray<PendingAppWidgetHostView> mPendingViews = new SparseArray<>();
+    private final SparseArray<LazyAppWidgetHostView> mLazyViews = new SparseArray<>();
 
     private final Context mContext;
     private int mFlags = FLAG_RESUMED;
@@ -79,7 +82,13 @@ public class LauncherAppWidgetHost extends AppWidgetHost {
     protected LauncherAppWidgetHostView onCreateView(Context context, int appWidgetId,
             AppWidgetProviderInfo appWidget) {
         final LauncherAppWidgetHostView view;
-        if (mPendingViews.get(appWidgetId) != null) {
+        if (mLazyViews.get(appWidgetId) != null) {
+            // Placeholders are not tracked, a new view is created when the widget is inflated
+            view = mLazyViews.get(appWidgetId);
+            mLazyViews.remove(appWidgetId);
+            mViews.remove(appWidgetId);
+            return view;
+        } else if (mPendingViews.get(appWidgetId) != null) {
             view = mPendingViews.get(appWidgetId);
             mPendingViews.remove(appWidgetId);
         } else {
@@ -238,6 +247,30 @@ public class LauncherAppWidgetHost extends AppWidgetHost {
         }
     }
 
+    /**
+     * Creates a placeholder for a widget which is inflated later using {@link #createView}.
+     * If the widget was already inflated, the placeholder replaces it in the host so that the
+     * inflated view no longer receives updates and can be released.
+     */
+    public LazyAppWidgetHostView createLazyView(Context context, int appWidgetId,
+            LauncherAppWidgetProviderInfo appWidget) {
+        LazyAppWidgetHostView view = new LazyAppWidgetHostView(context);
+        if (mViews.get(appWidgetId) != null) {
+            mLazyViews.put(appWidgetId, view);
+            try {
+                super.createView(context, appWidgetId, appWidget);
+            } catch (Exception e) {
+                if (!Utilities.isBinderSizeError(e)) {
+                    throw new RuntimeException(e);
+                }
+            } finally {
+                mLazyViews.remove(appWidgetId);
+            }
+        }
+        view.setAppWidget(appWidgetId, appWidget);
+        return view;
+    }
+
     /**
      * Called when the AppWidget provider for a AppWidget has been upgraded to a new apk.
      */
@@ -267,6 +300,8 @@ public class LauncherAppWidgetHost extends AppWidgetHost {
     public void deleteAppWidgetId(int appWidgetId) {
         super.deleteAppWidgetId(appWidgetId);
         mViews.remove(appWidgetId);
+        // The snapshot is stored even if the cache was not used since the process started
+        WidgetSnapshotCache.INSTANCE.get(mContext).removeSnapshot(appWidgetId);
     }
 
     @Override
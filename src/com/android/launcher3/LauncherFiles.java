@@ -29,6 +29,7 @@ public class LauncherFiles {
     public static final String DEVICE_PREFERENCES_KEY = "com.android.launcher3.device.prefs";
 
     public static final String WIDGET_PREVIEWS_DB = "widgetpreviews.db";
+    public static final String WIDGET_SNAPSHOTS_DB = "widget_snapshots.db";
     public static final String APP_ICONS_DB = "app_icons.db";
 
     public static final List<String> ALL_FILES = Collections.unmodifiableList(Arrays.asList(
@@ -42,6 +43,7 @@ public class LauncherFiles {
             BACKUP_DB,
             SHARED_PREFERENCES_KEY + XML,
             WIDGET_PREVIEWS_DB,
+            WIDGET_SNAPSHOTS_DB,
             MANAGED_USER_PREFERENCES_KEY + XML,
             DEVICE_PREFERENCES_KEY + XML,
             APP_ICONS_DB));
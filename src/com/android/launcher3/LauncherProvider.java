@@ -62,6 +62,7 @@ import com.android.launcher3.config.FeatureFlags;
 import com.android.launcher3.logging.FileLog;
 import com.android.launcher3.model.DbDowngradeHelper;
 import com.android.launcher3.pm.UserCache;
+import com.android.launcher3.provider.BulkInserter;
 import com.android.launcher3.provider.LauncherDbUtils;
 import com.android.launcher3.provider.LauncherDbUtils.SQLiteTransaction;
 import com.android.launcher3.provider.RestoreDbTask;
@@ -73,6 +74,7 @@ import com.android.launcher3.util.PackageManagerHelper;
 import com.android.launcher3.util.Thunk;
 
 import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.File;
 import java.io.FileDescriptor;
@@ -205,6 +207,22 @@ public class LauncherProvider extends ContentProvider {
         return (int) db.insert(table, nullColumnHack, values);
     }
 
+    /**
+     * Same as {@link #dbInsertAndCheck(DatabaseHelper, SQLiteDatabase, String, String,
+     * ContentValues)} but uses the compiled statements of the inserter.
+     */
+    @Thunk static int dbInsertAndCheck(DatabaseHelper helper, BulkInserter inserter,
+            ContentValues values) {
+        if (values == null) {
+            throw new RuntimeException("Error: attempting to insert null values");
+        }
+        if (!values.containsKey(LauncherSettings.Favorites._ID)) {
+            throw new RuntimeException("Error: attempting to add item without specifying an id");
+        }
+        helper.checkId(values);
+        return (int) inserter.insert(values);
+    }
+
     private void reloadLauncherIfExternal() {
         if (Binder.getCallingPid() != Process.myPid()) {
             LauncherAppState app = LauncherAppState.getInstanceNoCreate();
@@ -280,11 +298,12 @@ public class LauncherProvider extends ContentProvider {
         SqlArguments args = new SqlArguments(uri);
 
         SQLiteDatabase db = mOpenHelper.getWritableDatabase();
-        try (SQLiteTransaction t = new SQLiteTransaction(db)) {
+        try (SQLiteTransaction t = new SQLiteTransaction(db);
+             BulkInserter inserter = new BulkInserter(db, args.table)) {
             int numValues = values.length;
             for (int i = 0; i < numValues; i++) {
                 addModifiedTime(values[i]);
-                if (dbInsertAndCheck(mOpenHelper, db, args.table, null, values[i]) < 0) {
+                if (dbInsertAndCheck(mOpenHelper, inserter, values[i]) < 0) {
                     return 0;
                 }
             }
@@ -301,6 +320,10 @@ public class LauncherProvider extends ContentProvider {
     public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
             throws OperationApplicationException {
         createDbIfNotExists();
+        // Inserts from the launcher process, like the data import, skip the per-row insert
+        // and reuse the compiled statements of a single inserter.
+        final boolean isLocal = Binder.getCallingPid() == Process.myPid();
+        BulkInserter inserter = null;
         try (SQLiteTransaction t = new SQLiteTransaction(mOpenHelper.getWritableDatabase())) {
             boolean isAddOrDelete = false;
 
@@ -308,6 +331,22 @@ public class LauncherProvider extends ContentProvider {
             final ContentProviderResult[] results = new ContentProviderResult[numOperations];
             for (int i = 0; i < numOperations; i++) {
                 ContentProviderOperation op = operations.get(i);
+                if (isLocal && op.isInsert() && Favorites.TABLE_NAME.equals(
+                        new SqlArguments(op.getUri()).table)) {
+                    if (inserter == null) {
+                        inserter = new BulkInserter(t.getDb(), Favorites.TABLE_NAME);
+                    }
+                    ContentValues values = op.resolveValueBackReferences(results, i);
+                    addModifiedTime(values);
+                    int rowId = dbInsertAndCheck(mOpenHelper, inserter, values);
+                    if (rowId < 0) {
+                        throw new OperationApplicationException("insert failed");
+                    }
+                    results[i] = new ContentProviderResult(
+                            ContentUris.withAppendedId(op.getUri(), rowId));
+                    isAddOrDelete = true;
+                    continue;
+                }
                 results[i] = op.apply(this, results, i);
 
                 isAddOrDelete |= (op.isInsert() || op.isDelete()) &&
@@ -320,6 +359,10 @@ public class LauncherProvider extends ContentProvider {
             t.commit();
             reloadLauncherIfExternal();
             return results;
+        } finally {
+            if (inserter != null) {
+                inserter.close();
+            }
         }
     }
 
@@ -385,6 +428,12 @@ public class LauncherProvider extends ContentProvider {
                         mOpenHelper.generateNewItemId());
                 return result;
             }
+            case LauncherSettings.Settings.METHOD_NEW_ITEM_IDS: {
+                Bundle result = new Bundle();
+                result.putInt(LauncherSettings.Settings.EXTRA_VALUE,
+                        mOpenHelper.generateNewItemIds(Integer.parseInt(arg)));
+                return result;
+            }
             case LauncherSettings.Settings.METHOD_NEW_SCREEN_ID: {
                 Bundle result = new Bundle();
                 result.putInt(LauncherSettings.Settings.EXTRA_VALUE,
@@ -595,19 +644,28 @@ public class LauncherProvider extends ContentProvider {
         try (InputStream in = ctx.getContentResolver().openInputStream(uri)) {
             // Read the full xml so that we fail early in case of any IO error.
             String layout = new String(IOUtils.toByteArray(in));
-            XmlPullParser parser = Xml.newPullParser();
-            parser.setInput(new StringReader(layout));
 
             Log.d(TAG, "Loading layout from " + authority);
+            // The layout is read more than once, see AutoInstallsLayout#loadLayout
             return new AutoInstallsLayout(ctx, widgetHost, mOpenHelper,
                     ctx.getPackageManager().getResourcesForApplication(pi.applicationInfo),
-                    () -> parser, AutoInstallsLayout.TAG_WORKSPACE);
+                    () -> newLayoutParser(layout), AutoInstallsLayout.TAG_WORKSPACE);
         } catch (Exception e) {
             Log.e(TAG, "Error getting layout stream from: " + authority , e);
             return null;
         }
     }
 
+    private static XmlPullParser newLayoutParser(String layout) {
+        XmlPullParser parser = Xml.newPullParser();
+        try {
+            parser.setInput(new StringReader(layout));
+        } catch (XmlPullParserException e) {
+            throw new RuntimeException(e);
+        }
+        return parser;
+    }
+
     public static Uri getLayoutUri(String authority, Context ctx) {
         InvariantDeviceProfile grid = LauncherAppState.getIDP(ctx);
         return new Uri.Builder().scheme("content").authority(authority).path("launcher_layout")
@@ -640,6 +698,8 @@ public class LauncherProvider extends ContentProvider {
         private final boolean mForMigration;
         private int mMaxItemId = -1;
         private int mMaxScreenId = -1;
+        // Inserter used while a layout is being loaded, see loadFavorites
+        private BulkInserter mLayoutInserter;
         private boolean mBackupTableExists;
         private boolean mHotseatRestoreTableExists;
 
@@ -1038,12 +1098,30 @@ public class LauncherProvider extends ContentProvider {
             return mMaxItemId;
         }
 
+        /**
+         * Reserves a block of consecutive item ids, so that a caller outside the provider, like
+         * the grid migration, can allocate the ids of a batch of items with a single call.
+         * @return the first id of the block
+         * @see LauncherSettings.Settings#METHOD_NEW_ITEM_IDS
+         */
+        public int generateNewItemIds(int count) {
+            if (mMaxItemId < 0) {
+                throw new RuntimeException("Error: max item id was not initialized");
+            }
+            int firstId = mMaxItemId + 1;
+            mMaxItemId += count;
+            return firstId;
+        }
+
         public AppWidgetHost newLauncherWidgetHost() {
             return new LauncherAppWidgetHost(mContext);
         }
 
         @Override
         public int insertAndCheck(SQLiteDatabase db, ContentValues values) {
+            if (mLayoutInserter != null && mLayoutInserter.getDb() == db) {
+                return dbInsertAndCheck(this, mLayoutInserter, values);
+            }
             return dbInsertAndCheck(this, db, Favorites.TABLE_NAME, null, values);
         }
 
@@ -1083,8 +1161,19 @@ public class LauncherProvider extends ContentProvider {
         }
 
         @Thunk int loadFavorites(SQLiteDatabase db, AutoInstallsLayout loader) {
-            // TODO: Use multiple loaders with fall-back and transaction.
-            int count = loader.loadLayout(db, new IntArray());
+            // TODO: Use multiple loaders with fall-back.
+            int count;
+            try (SQLiteTransaction t = new SQLiteTransaction(db)) {
+                mLayoutInserter = new BulkInserter(db, Favorites.TABLE_NAME);
+                count = loader.loadLayout(db, new IntArray());
+                // Items loaded before a parse error are kept, same as without a transaction
+                t.commit();
+            } finally {
+                if (mLayoutInserter != null) {
+                    mLayoutInserter.close();
+                    mLayoutInserter = null;
+                }
+            }
 
             // Ensure that the max ids are initialized
             mMaxItemId = initializeMaxItemId(db);
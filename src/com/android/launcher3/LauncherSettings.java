@@ -334,6 +334,8 @@ public class LauncherSettings {
         public static final String METHOD_DELETE_EMPTY_FOLDERS = "delete_empty_folders";
 
         public static final String METHOD_NEW_ITEM_ID = "generate_new_item_id";
+        // Reserves the number of ids given as the arg, and returns the first one
+        public static final String METHOD_NEW_ITEM_IDS = "generate_new_item_ids";
         public static final String METHOD_NEW_SCREEN_ID = "generate_new_screen_id";
 
         public static final String METHOD_CREATE_EMPTY_DB = "create_empty_db";
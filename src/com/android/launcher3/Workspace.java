@@ -106,7 +106,9 @@ import com.android.launcher3.util.ItemInfoMatcher;
 import com.android.launcher3.util.PackageUserKey;
 import com.android.launcher3.util.Thunk;
 import com.android.launcher3.util.WallpaperOffsetInterpolator;
+import com.android.launcher3.widget.DeferredAppWidgetHostView;
 import com.android.launcher3.widget.LauncherAppWidgetHostView;
+import com.android.launcher3.widget.LazyAppWidgetHostView;
 import com.android.launcher3.widget.PendingAddShortcutInfo;
 import com.android.launcher3.widget.PendingAddWidgetInfo;
 import com.android.launcher3.widget.PendingAppWidgetHostView;
@@ -870,6 +872,7 @@ public class Workspace extends PagedView<WorkspacePageIndicator>
     protected void onPageBeginTransition() {
         super.onPageBeginTransition();
         updateChildrenLayersEnabled();
+        inflateWidgetsNearPage(getNextPage());
     }
 
     protected void onPageEndTransition() {
@@ -1122,6 +1125,7 @@ public class Workspace extends PagedView<WorkspacePageIndicator>
     @Override
     protected void notifyPageSwitchListener(int prevPage) {
         super.notifyPageSwitchListener(prevPage);
+        inflateWidgetsNearPage(getNextPage());
         if (prevPage != mCurrentPage) {
             int swipeDirection = (prevPage < mCurrentPage)
                     ? Action.Direction.RIGHT : Action.Direction.LEFT;
@@ -2935,6 +2939,84 @@ public class Workspace extends PagedView<WorkspacePageIndicator>
                         ((LauncherAppWidgetInfo) info).appWidgetId == appWidgetId);
     }
 
+    /**
+     * Returns true if the widget should be bound as a {@link LazyAppWidgetHostView}, as its page
+     * is not next to the visible page. The widget is inflated when its page comes into view.
+     */
+    public boolean shouldDeferWidgetInflation(LauncherAppWidgetInfo info) {
+        if (!FeatureFlags.ENABLE_LAZY_WIDGETS.get()
+                || info.container != LauncherSettings.Favorites.CONTAINER_DESKTOP) {
+            return false;
+        }
+        int page = getPageIndexForScreenId(info.screenId);
+        if (page < 0) {
+            return false;
+        }
+        // While binding, the current page is not set until the first page is bound
+        int visiblePage = mLauncher.isWorkspaceLoading()
+                ? mLauncher.getPageToBindSynchronously() : getNextPage();
+        return Math.abs(page - visiblePage) > 1;
+    }
+
+    /**
+     * Inflates the widgets which were deferred on the given page and the pages next to it.
+     */
+    private void inflateWidgetsNearPage(int page) {
+        ArrayList<LazyAppWidgetHostView> views = null;
+        int lastPage = Math.min(page + 1, getPageCount() - 1);
+        for (int i = Math.max(page - 1, 0); i <= lastPage; i++) {
+            ShortcutAndWidgetContainer container =
+                    ((CellLayout) getPageAt(i)).getShortcutsAndWidgets();
+            for (int j = container.getChildCount() - 1; j >= 0; j--) {
+                View child = container.getChildAt(j);
+                if (child instanceof LazyAppWidgetHostView) {
+                    if (views == null) {
+                        views = new ArrayList<>();
+                    }
+                    views.add((LazyAppWidgetHostView) child);
+                }
+            }
+        }
+        if (views != null) {
+            for (LazyAppWidgetHostView view : views) {
+                view.reInflate();
+            }
+        }
+    }
+
+    /**
+     * Replaces the widgets on the pages which are not next to the visible page with placeholders,
+     * releasing the inflated widget views. The widgets are inflated again when their page comes
+     * into view.
+     */
+    public void deferOffscreenWidgets() {
+        if (!FeatureFlags.ENABLE_LAZY_WIDGETS.get() || mLauncher.isWorkspaceLoading()) {
+            return;
+        }
+        ArrayList<LauncherAppWidgetHostView> views = new ArrayList<>();
+        int visiblePage = getNextPage();
+        for (int i = getPageCount() - 1; i >= 0; i--) {
+            if (Math.abs(i - visiblePage) <= 1) {
+                continue;
+            }
+            ShortcutAndWidgetContainer container =
+                    ((CellLayout) getPageAt(i)).getShortcutsAndWidgets();
+            for (int j = container.getChildCount() - 1; j >= 0; j--) {
+                View child = container.getChildAt(j);
+                if (child instanceof LauncherAppWidgetHostView
+                        && !(child instanceof DeferredAppWidgetHostView)
+                        && !(child instanceof PendingAppWidgetHostView)
+                        && child.getTag() instanceof LauncherAppWidgetInfo
+                        && !((LauncherAppWidgetInfo) child.getTag()).isCustomWidget()) {
+                    views.add((LauncherAppWidgetHostView) child);
+                }
+            }
+        }
+        for (LauncherAppWidgetHostView view : views) {
+            view.reInflate();
+        }
+    }
+
     public View getFirstMatch(final ItemOperator operator) {
         final View[] value = new View[1];
         mapOverItems(new ItemOperator() {
@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.anim;
+
+import static com.android.launcher3.anim.Interpolators.LINEAR;
+
+import android.animation.Animator;
+import android.animation.TimeInterpolator;
+import android.animation.ValueAnimator;
+import android.util.FloatProperty;
+import android.util.IntProperty;
+import android.view.View;
+
+import java.util.Arrays;
+
+/**
+ * A single animator which drives multiple properties sharing the same timeline, instead of
+ * creating an {@link android.animation.ObjectAnimator} per property.
+ *
+ * Targets, properties and values are kept in parallel arrays and all the properties are updated
+ * in one update callback. Each property keeps its own interpolator, unless an interpolator is
+ * set on this animator, in which case it replaces the interpolators of all the properties, same
+ * as setting it on each of the individual animators.
+ */
+class BatchedPropertyAnimator extends ValueAnimator
+        implements ValueAnimator.AnimatorUpdateListener {
+
+    /**
+     * Interpolator returned by {@link #getInterpolator()} when each property uses its own
+     * interpolator. Setting it back restores the per-property interpolators.
+     */
+    static final TimeInterpolator PER_PROPERTY = t -> t;
+
+    private static final int TYPE_FLOAT = 0;
+    private static final int TYPE_INT = 1;
+    private static final int TYPE_VIEW_ALPHA = 2;
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private Object[] mTargets = new Object[INITIAL_CAPACITY];
+    private Object[] mProperties = new Object[INITIAL_CAPACITY];
+    private int[] mTypes = new int[INITIAL_CAPACITY];
+    private float[] mFromValues = new float[INITIAL_CAPACITY];
+    private float[] mToValues = new float[INITIAL_CAPACITY];
+    private boolean[] mHasFromValue = new boolean[INITIAL_CAPACITY];
+    private TimeInterpolator[] mInterpolators = new TimeInterpolator[INITIAL_CAPACITY];
+    private int mCount;
+
+    private TimeInterpolator mOverrideInterpolator;
+    private boolean mStartValuesInitialized;
+
+    BatchedPropertyAnimator() {
+        setFloatValues(0, 1);
+        setInterpolator(PER_PROPERTY);
+        addUpdateListener(this);
+        addListener(new AnimationSuccessListener() {
+            @Override
+            public void onAnimationStart(Animator animation) {
+                initStartValues();
+                // Views need to be visible for the fade-in/out to be visible
+                for (int i = 0; i < mCount; i++) {
+                    if (mTypes[i] == TYPE_VIEW_ALPHA) {
+                        ((View) mTargets[i]).setVisibility(View.VISIBLE);
+                    }
+                }
+            }
+
+            @Override
+            public void onAnimationSuccess(Animator animator) {
+                updateAlphaVisibility();
+            }
+        });
+    }
+
+    <T> void addFloat(T target, FloatProperty<T> property, float to,
+            TimeInterpolator interpolator) {
+        add(target, property, TYPE_FLOAT, 0, false, to, interpolator);
+    }
+
+    <T> void addFloat(T target, FloatProperty<T> property, float from, float to,
+            TimeInterpolator interpolator) {
+        add(target, property, TYPE_FLOAT, from, true, to, interpolator);
+    }
+
+    <T> void addInt(T target, IntProperty<T> property, int to, TimeInterpolator interpolator) {
+        add(target, property, TYPE_INT, 0, false, to, interpolator);
+    }
+
+    /**
+     * Animates the view alpha. The view is made visible when the animation starts, and hidden
+     * when it ends if the alpha is zero.
+     */
+    void addViewAlpha(View view, float to, TimeInterpolator interpolator) {
+        add(view, null, TYPE_VIEW_ALPHA, 0, false, to, interpolator);
+    }
+
+    boolean isEmpty() {
+        return mCount == 0;
+    }
+
+    private void add(Object target, Object property, int type, float from, boolean hasFrom,
+            float to, TimeInterpolator interpolator) {
+        if (mCount == mTargets.length) {
+            int capacity = mCount * 2;
+            mTargets = Arrays.copyOf(mTargets, capacity);
+            mProperties = Arrays.copyOf(mProperties, capacity);
+            mTypes = Arrays.copyOf(mTypes, capacity);
+            mFromValues = Arrays.copyOf(mFromValues, capacity);
+            mToValues = Arrays.copyOf(mToValues, capacity);
+            mHasFromValue = Arrays.copyOf(mHasFromValue, capacity);
+            mInterpolators = Arrays.copyOf(mInterpolators, capacity);
+        }
+        mTargets[mCount] = target;
+        mProperties[mCount] = property;
+        mTypes[mCount] = type;
+        mFromValues[mCount] = from;
+        mHasFromValue[mCount] = hasFrom;
+        mToValues[mCount] = to;
+        mInterpolators[mCount] = interpolator == null ? LINEAR : interpolator;
+        mCount++;
+        mStartValuesInitialized = false;
+    }
+
+    @Override
+    public void setInterpolator(TimeInterpolator value) {
+        // The timeline itself is always linear, interpolators are applied per property
+        super.setInterpolator(LINEAR);
+        mOverrideInterpolator = value == PER_PROPERTY ? null : value;
+    }
+
+    @Override
+    public TimeInterpolator getInterpolator() {
+        return mOverrideInterpolator == null ? PER_PROPERTY : mOverrideInterpolator;
+    }
+
+    @Override
+    public void onAnimationUpdate(ValueAnimator animation) {
+        initStartValues();
+        float fraction = getAnimatedFraction();
+        TimeInterpolator override = mOverrideInterpolator;
+        for (int i = 0; i < mCount; i++) {
+            TimeInterpolator interpolator = override != null ? override : mInterpolators[i];
+            float from = mFromValues[i];
+            float value = from + (mToValues[i] - from) * interpolator.getInterpolation(fraction);
+            switch (mTypes[i]) {
+                case TYPE_FLOAT:
+                    ((FloatProperty) mProperties[i]).setValue(mTargets[i], value);
+                    break;
+                case TYPE_INT:
+                    ((IntProperty) mProperties[i]).setValue(mTargets[i], (int) value);
+                    break;
+                case TYPE_VIEW_ALPHA:
+                    // The visibility is only updated at the start and the end, same as the
+                    // AlphaUpdateListener of a single alpha animator
+                    ((View) mTargets[i]).setAlpha(value);
+                    break;
+            }
+        }
+    }
+
+    private void initStartValues() {
+        if (mStartValuesInitialized) {
+            return;
+        }
+        mStartValuesInitialized = true;
+        for (int i = 0; i < mCount; i++) {
+            if (mHasFromValue[i]) {
+                continue;
+            }
+            switch (mTypes[i]) {
+                case TYPE_FLOAT:
+                    mFromValues[i] = (Float) ((FloatProperty) mProperties[i]).get(mTargets[i]);
+                    break;
+                case TYPE_INT:
+                    mFromValues[i] = (Integer) ((IntProperty) mProperties[i]).get(mTargets[i]);
+                    break;
+                case TYPE_VIEW_ALPHA:
+                    mFromValues[i] = ((View) mTargets[i]).getAlpha();
+                    break;
+            }
+        }
+    }
+
+    private void updateAlphaVisibility() {
+        for (int i = 0; i < mCount; i++) {
+            if (mTypes[i] == TYPE_VIEW_ALPHA) {
+                AlphaUpdateListener.updateVisibility((View) mTargets[i]);
+            }
+        }
+    }
+}
@@ -20,7 +20,6 @@ import static com.android.launcher3.anim.AnimatorPlaybackController.addAnimation
 import android.animation.Animator;
 import android.animation.Animator.AnimatorListener;
 import android.animation.AnimatorSet;
-import android.animation.ObjectAnimator;
 import android.animation.TimeInterpolator;
 import android.animation.ValueAnimator;
 import android.util.FloatProperty;
@@ -51,6 +50,9 @@ public class PendingAnimation implements PropertySetter {
 
     private ValueAnimator mProgressAnimator;
 
+    // Property changes requested through PropertySetter are driven by a single animator
+    private BatchedPropertyAnimator mPropertyAnimator;
+
     public PendingAnimation(long  duration) {
         mDuration = duration;
         mAnim = new AnimatorSet();
@@ -85,10 +87,7 @@ public class PendingAnimation implements PropertySetter {
         if (view == null || view.getAlpha() == alpha) {
             return;
         }
-        ObjectAnimator anim = ObjectAnimator.ofFloat(view, View.ALPHA, alpha);
-        anim.addListener(new AlphaUpdateListener(view));
-        anim.setInterpolator(interpolator);
-        add(anim);
+        getPropertyAnimator().addViewAlpha(view, alpha, interpolator);
     }
 
     @Override
@@ -97,16 +96,12 @@ public class PendingAnimation implements PropertySetter {
         if (property.get(target) == value) {
             return;
         }
-        Animator anim = ObjectAnimator.ofFloat(target, property, value);
-        anim.setDuration(mDuration).setInterpolator(interpolator);
-        add(anim);
+        getPropertyAnimator().addFloat(target, property, value, interpolator);
     }
 
     public <T> void addFloat(T target, FloatProperty<T> property, float from, float to,
             TimeInterpolator interpolator) {
-        Animator anim = ObjectAnimator.ofFloat(target, property, from, to);
-        anim.setInterpolator(interpolator);
-        add(anim);
+        getPropertyAnimator().addFloat(target, property, from, to, interpolator);
     }
 
     @Override
@@ -115,9 +110,14 @@ public class PendingAnimation implements PropertySetter {
         if (property.get(target) == value) {
             return;
         }
-        Animator anim = ObjectAnimator.ofInt(target, property, value);
-        anim.setInterpolator(interpolator);
-        add(anim);
+        getPropertyAnimator().addInt(target, property, value, interpolator);
+    }
+
+    private BatchedPropertyAnimator getPropertyAnimator() {
+        if (mPropertyAnimator == null) {
+            mPropertyAnimator = new BatchedPropertyAnimator();
+        }
+        return mPropertyAnimator;
     }
 
     /**
@@ -142,6 +142,10 @@ public class PendingAnimation implements PropertySetter {
      * Creates and returns the underlying AnimatorSet
      */
     public AnimatorSet buildAnim() {
+        if (mPropertyAnimator != null) {
+            add(mPropertyAnimator);
+            mPropertyAnimator = null;
+        }
         // Add progress animation to the end, so that frame callback is called after all the other
         // animation update.
         if (mProgressAnimator != null) {
@@ -166,6 +166,14 @@ public final class FeatureFlags {
             "ALWAYS_USE_HARDWARE_OPTIMIZATION_FOR_FOLDER_ANIMATIONS", false,
             "Always use hardware optimization for folder animations.");
 
+    public static final BooleanFlag ENABLE_LAZY_WIDGETS = getDebugFlag(
+            "ENABLE_LAZY_WIDGETS", false,
+            "Inflate workspace widgets only when their page is next to the visible page");
+
+    public static final BooleanFlag ENABLE_PARALLEL_ICON_UPDATE = getDebugFlag(
+            "ENABLE_PARALLEL_ICON_UPDATE", true,
+            "Create all the icons in parallel when the icon cache is invalidated");
+
     public static final BooleanFlag ENABLE_ALL_APPS_EDU = getDebugFlag(
             "ENABLE_ALL_APPS_EDU", true,
             "Shows user a tutorial on how to get to All Apps after X amount of attempts.");
@@ -42,6 +42,7 @@ import android.widget.FrameLayout;
 import androidx.annotation.NonNull;
 
 import com.android.launcher3.Alarm;
+import com.android.launcher3.BaseActivity;
 import com.android.launcher3.BubbleTextView;
 import com.android.launcher3.CellLayout;
 import com.android.launcher3.CheckLongPressHelper;
@@ -191,8 +192,10 @@ public class FolderIcon extends FrameLayout implements FolderListener, IconLabel
         }
 
         DeviceProfile grid = activity.getDeviceProfile();
-        FolderIcon icon = (FolderIcon) LayoutInflater.from(group.getContext())
-                .inflate(resId, group, false);
+        // Prefer pre-inflated shells from the activity view cache, if available
+        FolderIcon icon = activity instanceof BaseActivity
+                ? ((BaseActivity) activity).getViewCache().getView(resId, group.getContext(), group)
+                : (FolderIcon) LayoutInflater.from(group.getContext()).inflate(resId, group, false);
 
         icon.setClipToPadding(false);
         icon.mFolderName = icon.findViewById(R.id.folder_icon_name);
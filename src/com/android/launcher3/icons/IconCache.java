@@ -30,6 +30,8 @@ import android.content.pm.PackageInstaller;
 import android.content.pm.PackageManager;
 import android.content.pm.PackageManager.NameNotFoundException;
 import android.content.pm.ShortcutInfo;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteException;
 import android.graphics.drawable.Drawable;
 import android.os.Handler;
 import android.os.Process;
@@ -44,6 +46,7 @@ import com.android.launcher3.Utilities;
 import com.android.launcher3.config.FeatureFlags;
 import com.android.launcher3.icons.ComponentWithLabel.ComponentCachingLogic;
 import com.android.launcher3.icons.cache.BaseIconCache;
+import com.android.launcher3.icons.cache.BaseIconCache.IconDB;
 import com.android.launcher3.icons.cache.CachingLogic;
 import com.android.launcher3.icons.cache.HandlerRunnable;
 import com.android.launcher3.model.data.AppInfo;
@@ -57,6 +60,7 @@ import com.android.launcher3.util.InstantAppResolver;
 import com.android.launcher3.util.PackageUserKey;
 import com.android.launcher3.util.Preconditions;
 
+import java.util.HashMap;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
@@ -130,6 +134,15 @@ public class IconCache extends BaseIconCache {
         }
     }
 
+    /**
+     * Adds the entry of the object to the memory and persistent DB, replacing any existing entry.
+     */
+    public synchronized <T> void addIconToDB(T object, CachingLogic<T> cachingLogic,
+            PackageInfo info, UserHandle user) {
+        addIconToDBAndMemCache(object, cachingLogic, info,
+                mUserManager.getSerialNumberForUser(user), true /*replace existing*/);
+    }
+
     /**
      * Fetches high-res icon for the provided ItemInfo and updates the caller when done.
      * @return a request ID that can be used to cancel the request.
@@ -329,6 +342,42 @@ public class IconCache extends BaseIconCache {
         cachePackageInstallInfo(key.mPackageName, key.mUser, info.getAppIcon(), info.getAppLabel());
     }
 
+    /**
+     * Returns a key representing the icon state shared by all packages, which changes when
+     * all the icons are invalidated (eg, on locale or icon provider change).
+     */
+    public String getSystemState() {
+        return mSystemState;
+    }
+
+    /**
+     * Queries the given columns of the DB entries of the user.
+     */
+    Cursor queryEntries(UserHandle user, String[] columns) {
+        return mIconDb.query(columns, IconDB.COLUMN_USER + " = ? ",
+                new String[] {Long.toString(mUserManager.getSerialNumberForUser(user))});
+    }
+
+    /**
+     * Returns a key for the cached icon of each component of {@param user}, which changes
+     * whenever the icon is updated in the DB.
+     */
+    public HashMap<ComponentName, String> getCachedIconStates(UserHandle user) {
+        HashMap<ComponentName, String> states = new HashMap<>();
+        try (Cursor c = queryEntries(user, new String[] {IconDB.COLUMN_COMPONENT,
+                IconDB.COLUMN_LAST_UPDATED, IconDB.COLUMN_SYSTEM_STATE})) {
+            while (c.moveToNext()) {
+                ComponentName cn = ComponentName.unflattenFromString(c.getString(0));
+                if (cn != null) {
+                    states.put(cn, c.getLong(1) + "," + c.getString(2));
+                }
+            }
+        } catch (SQLiteException e) {
+            Log.d(TAG, "Error reading icon cache", e);
+        }
+        return states;
+    }
+
     @Override
     protected String getIconSystemState(String packageName) {
         return mIconProvider.getSystemStateForPackage(mSystemState, packageName)
@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.icons;
+
+import static com.android.launcher3.util.Executors.THREAD_POOL_EXECUTOR;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteException;
+import android.os.UserHandle;
+import android.text.TextUtils;
+import android.util.Log;
+import android.util.Pair;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.Utilities;
+import com.android.launcher3.config.FeatureFlags;
+import com.android.launcher3.icons.cache.BaseIconCache.IconDB;
+import com.android.launcher3.icons.cache.CachingLogic;
+import com.android.launcher3.icons.cache.IconCacheUpdateHandler;
+import com.android.launcher3.icons.cache.IconCacheUpdateHandler.OnUpdateCallback;
+import com.android.launcher3.util.PackageUserKey;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Creates the icons of a list of items in parallel, used when all the entries of the icon cache
+ * are invalid, like after a system update or when the icon cache is created.
+ *
+ * The icons are created on the thread pool, each worker using its own {@link LauncherIcons}
+ * from the pool, and are added to the icon cache one at a time on the calling thread. Entries
+ * which are already up to date are skipped using the same checks as
+ * {@link IconCacheUpdateHandler}, so an update which was interrupted resumes where it stopped
+ * and a cache which is already valid is only read before the state is recorded. The
+ * {@link IconCacheUpdateHandler} pass which follows finds these entries up to date.
+ */
+@WorkerThread
+public class ParallelIconUpdater {
+
+    private static final String TAG = "ParallelIconUpdater";
+
+    // Icon cache state for which all the icons have been created
+    private static final String KEY_LAST_SYSTEM_STATE = "parallel_icon_update_system_state";
+
+    // Maximum number of icons being created or waiting to be added to the cache, which bounds
+    // the memory used by the pending bitmaps
+    @VisibleForTesting
+    static final int MAX_PENDING_ICONS = 16;
+
+    private final Context mContext;
+    private final IconCache mIconCache;
+    private final BooleanSupplier mIsStopped;
+
+    private final HashMap<String, PackageInfo> mPkgInfoMap = new HashMap<>();
+    private final HashSet<PackageUserKey> mPackagesToIgnore = new HashSet<>();
+    // Entries of the icon cache DB for each user, loaded when first needed
+    private final HashMap<UserHandle, HashMap<ComponentName, CachedEntry>> mCachedEntries =
+            new HashMap<>();
+
+    public ParallelIconUpdater(Context context, IconCache iconCache, BooleanSupplier isStopped) {
+        mContext = context;
+        mIconCache = iconCache;
+        mIsStopped = isStopped;
+
+        for (PackageInfo info : context.getPackageManager()
+                .getInstalledPackages(PackageManager.GET_UNINSTALLED_PACKAGES)) {
+            mPkgInfoMap.put(info.packageName, info);
+        }
+    }
+
+    /**
+     * Returns true if the icon cache state changed since all the icons were last created, in
+     * which case every icon needs to be created again.
+     */
+    public static boolean isUpdateNeeded(Context context, IconCache iconCache) {
+        return FeatureFlags.ENABLE_PARALLEL_ICON_UPDATE.get()
+                && !iconCache.getSystemState().equals(Utilities.getDevicePrefs(context)
+                        .getString(KEY_LAST_SYSTEM_STATE, null));
+    }
+
+    /**
+     * Marks all the icons as created for the current icon cache state.
+     */
+    public static void onUpdateComplete(Context context, IconCache iconCache) {
+        Utilities.getDevicePrefs(context).edit()
+                .putString(KEY_LAST_SYSTEM_STATE, iconCache.getSystemState()).apply();
+    }
+
+    /**
+     * @see IconCacheUpdateHandler#addPackagesToIgnore(UserHandle, String)
+     */
+    public void addPackagesToIgnore(UserHandle user, String packageName) {
+        mPackagesToIgnore.add(new PackageUserKey(packageName, user));
+    }
+
+    /**
+     * Creates the icons of all the objects which are not up to date and adds them to the icon
+     * cache. The updated packages are reported to the callback once all the icons are in the
+     * cache. If the updater is stopped, the icons which are not created yet are left to the
+     * update handler.
+     */
+    public <T> void updateIcons(List<T> objects, CachingLogic<T> cachingLogic,
+            OnUpdateCallback onUpdateCallback) {
+        ExecutorCompletionService<Pair<T, BitmapInfo>> completionService =
+                new ExecutorCompletionService<>(THREAD_POOL_EXECUTOR);
+        HashSet<Future<Pair<T, BitmapInfo>>> pendingIcons = new HashSet<>();
+        HashMap<UserHandle, HashSet<String>> updatedPackages = new HashMap<>();
+        PackageUserKey tempKey = new PackageUserKey(null, null);
+
+        int nextIndex = 0;
+        try {
+            while (true) {
+                while (pendingIcons.size() < MAX_PENDING_ICONS && nextIndex < objects.size()) {
+                    T object = objects.get(nextIndex++);
+                    ComponentName cn = cachingLogic.getComponent(object);
+                    UserHandle user = cachingLogic.getUser(object);
+                    PackageInfo info = mPkgInfoMap.get(cn.getPackageName());
+                    tempKey.update(cn.getPackageName(), user);
+                    if (info == null || mPackagesToIgnore.contains(tempKey)) {
+                        // Left to the update handler
+                        continue;
+                    }
+                    CachedEntry entry = mCachedEntries
+                            .computeIfAbsent(user, this::loadCachedEntries).get(cn);
+                    if (entry != null && entry.isUpToDate(object, cachingLogic, info)) {
+                        continue;
+                    }
+                    pendingIcons.add(completionService.submit(
+                            () -> Pair.create(object, cachingLogic.loadIcon(mContext, object))));
+                }
+                if (pendingIcons.isEmpty() || mIsStopped.getAsBoolean()) {
+                    break;
+                }
+
+                Future<Pair<T, BitmapInfo>> future;
+                try {
+                    future = completionService.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                pendingIcons.remove(future);
+                Pair<T, BitmapInfo> result;
+                try {
+                    result = future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (ExecutionException e) {
+                    Log.e(TAG, "Error creating icon", e);
+                    continue;
+                }
+
+                ComponentName cn = cachingLogic.getComponent(result.first);
+                UserHandle user = cachingLogic.getUser(result.first);
+                mIconCache.addIconToDB(result.first,
+                        new CreatedIconCachingLogic<>(cachingLogic, result.second),
+                        mPkgInfoMap.get(cn.getPackageName()), user);
+                updatedPackages.computeIfAbsent(user, u -> new HashSet<>())
+                        .add(cn.getPackageName());
+            }
+        } finally {
+            for (Future<Pair<T, BitmapInfo>> future : pendingIcons) {
+                future.cancel(false);
+            }
+        }
+
+        for (Map.Entry<UserHandle, HashSet<String>> entry : updatedPackages.entrySet()) {
+            onUpdateCallback.onPackageIconsUpdated(entry.getValue(), entry.getKey());
+        }
+    }
+
+    private HashMap<ComponentName, CachedEntry> loadCachedEntries(UserHandle user) {
+        HashMap<ComponentName, CachedEntry> entries = new HashMap<>();
+        try (Cursor c = mIconCache.queryEntries(user, new String[] {IconDB.COLUMN_COMPONENT,
+                IconDB.COLUMN_LAST_UPDATED, IconDB.COLUMN_VERSION,
+                IconDB.COLUMN_SYSTEM_STATE})) {
+            while (c.moveToNext()) {
+                ComponentName cn = ComponentName.unflattenFromString(c.getString(0));
+                if (cn != null) {
+                    entries.put(cn, new CachedEntry(c.getLong(1), c.getInt(2), c.getString(3)));
+                }
+            }
+        } catch (SQLiteException e) {
+            Log.d(TAG, "Error reading icon cache", e);
+        }
+        return entries;
+    }
+
+    /**
+     * State of an entry of the icon cache DB.
+     */
+    private class CachedEntry {
+
+        private final long mLastUpdated;
+        private final int mVersion;
+        private final String mSystemState;
+
+        CachedEntry(long lastUpdated, int version, String systemState) {
+            mLastUpdated = lastUpdated;
+            mVersion = version;
+            mSystemState = systemState;
+        }
+
+        /**
+         * Returns true if the entry was created for the current version of the package and the
+         * current icon state, in which case the icon does not need to be created again.
+         */
+        <T> boolean isUpToDate(T object, CachingLogic<T> cachingLogic, PackageInfo info) {
+            return mVersion == info.versionCode
+                    && mLastUpdated == cachingLogic.getLastUpdatedTime(object, info)
+                    && TextUtils.equals(mSystemState,
+                            mIconCache.getIconSystemState(info.packageName));
+        }
+    }
+
+    /**
+     * Caching logic which returns an icon that was already created by the workers.
+     */
+    private static class CreatedIconCachingLogic<T> implements CachingLogic<T> {
+
+        private final CachingLogic<T> mCachingLogic;
+        private final BitmapInfo mIcon;
+
+        CreatedIconCachingLogic(CachingLogic<T> cachingLogic, BitmapInfo icon) {
+            mCachingLogic = cachingLogic;
+            mIcon = icon;
+        }
+
+        @Override
+        public ComponentName getComponent(T object) {
+            return mCachingLogic.getComponent(object);
+        }
+
+        @Override
+        public UserHandle getUser(T object) {
+            return mCachingLogic.getUser(object);
+        }
+
+        @Override
+        public CharSequence getLabel(T object) {
+            return mCachingLogic.getLabel(object);
+        }
+
+        @Override
+        public CharSequence getDescription(T object, CharSequence fallback) {
+            return mCachingLogic.getDescription(object, fallback);
+        }
+
+        @Override
+        public BitmapInfo loadIcon(Context context, T object) {
+            return mIcon;
+        }
+
+        @Override
+        public long getLastUpdatedTime(T object, PackageInfo info) {
+            return mCachingLogic.getLastUpdatedTime(object, info);
+        }
+
+        @Override
+        public boolean addToMemCache() {
+            return mCachingLogic.addToMemCache();
+        }
+    }
+}
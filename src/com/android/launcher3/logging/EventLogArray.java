@@ -15,18 +15,30 @@
  */
 package com.android.launcher3.logging;
 
-
-import android.util.Log;
 import java.io.PrintWriter;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.Locale;
+import java.util.Objects;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * A utility class to record and log events. Events are stored in a fixed size array and old logs
  * are purged as new events come.
+ *
+ * Logging can happen from multiple threads without locking: each writer claims a slot from a
+ * shared sequence counter and is the only writer of that slot until it publishes it. Event names
+ * are interned to int ids and extras are stored as primitives, so adding a log does not allocate
+ * once an event name has been seen. Entries are only decoded to strings in {@link #dump}.
+ *
+ * The fields of an entry are stored in atomic arrays, so that {@link #dump} reads them in order
+ * between the two reads of the slot version, and never accepts a partially written entry.
  */
 public class EventLogArray {
 
@@ -35,66 +47,237 @@ public class EventLogArray {
     private static final int TYPE_INTEGER = 2;
     private static final int TYPE_BOOL_TRUE = 3;
     private static final int TYPE_BOOL_FALSE = 4;
+    private static final int TYPE_INTEGER_WITH_POINT = 5;
+    private static final int TYPE_OBJECT = 6;
+
+    // Maximum number of distinct event names, to avoid growing the table when callers log
+    // dynamically built strings. Further names are stored by reference in the entry.
+    private static final int MAX_EVENT_IDS = 256;
+    private static final int EVENT_ID_NONE = -1;
 
     private final String name;
-    private final EventEntry[] logs;
-    private int nextIndex;
-    private int mLogId;
+    private final int mSize;
+
+    // Intern table for event names
+    private final ConcurrentHashMap<String, Integer> mEventIds = new ConcurrentHashMap<>();
+    private volatile String[] mEventNames = new String[0];
+
+    // Per slot seqlock version: odd while the slot is being written
+    private final AtomicIntegerArray mVersions;
+    private final AtomicLong mNextSequence = new AtomicLong();
+    private volatile long mClearedSequence;
+
+    private final AtomicLongArray mSequences;
+    private final AtomicIntegerArray mTypes;
+    private final AtomicIntegerArray mEvents;
+    private final AtomicReferenceArray<String> mUninternedEvents;
+    // Float extras, stored as raw int bits
+    private final AtomicIntegerArray mExtras;
+    private final AtomicIntegerArray mExtrasX;
+    private final AtomicIntegerArray mExtrasY;
+    private final AtomicReferenceArray<Object> mExtrasObjects;
+    private final AtomicLongArray mTimes;
+    private final AtomicIntegerArray mTraceIds;
+    private final AtomicIntegerArray mDuplicateCounts;
+
+    private volatile int mLogId;
 
     public EventLogArray(String name, int size) {
         this.name = name;
-        logs = new EventEntry[size];
-        nextIndex = 0;
+        mSize = size;
+        mVersions = new AtomicIntegerArray(size);
+        mSequences = new AtomicLongArray(size);
+        mTypes = new AtomicIntegerArray(size);
+        mEvents = new AtomicIntegerArray(size);
+        mUninternedEvents = new AtomicReferenceArray<>(size);
+        mExtras = new AtomicIntegerArray(size);
+        mExtrasX = new AtomicIntegerArray(size);
+        mExtrasY = new AtomicIntegerArray(size);
+        mExtrasObjects = new AtomicReferenceArray<>(size);
+        mTimes = new AtomicLongArray(size);
+        mTraceIds = new AtomicIntegerArray(size);
+        mDuplicateCounts = new AtomicIntegerArray(size);
     }
 
     public void addLog(String event) {
-        addLog(TYPE_ONE_OFF, event, 0);
+        addLog(TYPE_ONE_OFF, event, 0, 0, 0, null);
     }
 
     public void addLog(String event, int extras) {
-        addLog(TYPE_INTEGER, event, extras);
+        addLog(TYPE_INTEGER, event, extras, 0, 0, null);
+    }
+
+    public void addLog(String event, float extras) {
+        addLog(TYPE_FLOAT, event, extras, 0, 0, null);
     }
 
     public void addLog(String event, boolean extras) {
-        addLog(extras ? TYPE_BOOL_TRUE : TYPE_BOOL_FALSE, event, 0);
+        addLog(extras ? TYPE_BOOL_TRUE : TYPE_BOOL_FALSE, event, 0, 0, 0, null);
+    }
+
+    /**
+     * Logs {@param event} with an int extra and a position, eg a motion event action and its
+     * raw coordinates.
+     */
+    public void addLog(String event, int extras, int x, int y) {
+        addLog(TYPE_INTEGER_WITH_POINT, event, extras, x, y, null);
     }
 
-    private void addLog(int type, String event, float extras) {
-        // Merge the logs if its a duplicate
-        int last = (nextIndex + logs.length - 1) % logs.length;
-        int secondLast = (nextIndex + logs.length - 2) % logs.length;
-        if (isEntrySame(logs[last], type, event) && isEntrySame(logs[secondLast], type, event)) {
-            logs[last].update(type, event, extras, mLogId);
-            logs[secondLast].duplicateCount++;
+    /**
+     * Logs {@param event} with an object extra, which is only converted to a string when the log
+     * is dumped. The object should be immutable, like an enum value or a constant string.
+     */
+    public void addLog(String event, Object extras) {
+        addLog(TYPE_OBJECT, event, 0, 0, 0, extras);
+    }
+
+    private void addLog(int type, String event, float extras, int x, int y, Object extrasObject) {
+        int eventId = getEventId(event);
+        if (eventId != EVENT_ID_NONE && tryMergeDuplicate(type, eventId, extras, x, y,
+                extrasObject)) {
             return;
         }
 
-        if (logs[nextIndex] == null) {
-            logs[nextIndex] = new EventEntry();
+        long sequence = mNextSequence.getAndIncrement();
+        int index = (int) (sequence % mSize);
+        int version = claimSlot(index);
+        mSequences.set(index, sequence);
+        mEvents.set(index, eventId);
+        mUninternedEvents.set(index, eventId == EVENT_ID_NONE ? event : null);
+        mDuplicateCounts.set(index, 0);
+        writeEntry(index, type, extras, x, y, extrasObject);
+        mVersions.set(index, version + 2);
+    }
+
+    /**
+     * Merges the event into the last entry if the last two entries are the same event with the
+     * same extras. The
+     * second last entry keeps the first occurrence and counts the duplicates, while the last
+     * entry is updated to the latest occurrence.
+     */
+    private boolean tryMergeDuplicate(int type, int eventId, float extras, int x, int y,
+            Object extrasObject) {
+        long next = mNextSequence.get();
+        if (next - 2 < mClearedSequence) {
+            return false;
+        }
+        int last = (int) ((next - 1) % mSize);
+        int secondLast = (int) ((next - 2) % mSize);
+
+        int lastVersion = mVersions.get(last);
+        if ((lastVersion & 1) != 0
+                || !isEntrySame(last, next - 1, type, eventId, extras, x, y, extrasObject)
+                || !isEntrySame(secondLast, next - 2, type, eventId, extras, x, y,
+                        extrasObject)) {
+            return false;
+        }
+        // Take ownership of the last slot, and make sure no new entry was appended meanwhile
+        if (!mVersions.compareAndSet(last, lastVersion, lastVersion + 1)) {
+            return false;
+        }
+        if (mNextSequence.get() != next || mSequences.get(last) != next - 1) {
+            mVersions.set(last, lastVersion + 2);
+            return false;
+        }
+        writeEntry(last, type, extras, x, y, extrasObject);
+        mVersions.set(last, lastVersion + 2);
+        mDuplicateCounts.incrementAndGet(secondLast);
+        return true;
+    }
+
+    private int claimSlot(int index) {
+        while (true) {
+            int version = mVersions.get(index);
+            // The slot is only busy if writers lapped the whole array, wait for the other writer
+            if ((version & 1) == 0 && mVersions.compareAndSet(index, version, version + 1)) {
+                return version + 1;
+            }
+            Thread.yield();
+        }
+    }
+
+    private void writeEntry(int index, int type, float extras, int x, int y,
+            Object extrasObject) {
+        mTypes.set(index, type);
+        mExtras.set(index, Float.floatToRawIntBits(extras));
+        mExtrasX.set(index, x);
+        mExtrasY.set(index, y);
+        mExtrasObjects.set(index, extrasObject);
+        mTraceIds.set(index, mLogId);
+        mTimes.set(index, System.currentTimeMillis());
+    }
+
+    private boolean isEntrySame(int index, long sequence, int type, int eventId, float extras,
+            int x, int y, Object extrasObject) {
+        return mSequences.get(index) == sequence && mTypes.get(index) == type
+                && mEvents.get(index) == eventId
+                && mExtras.get(index) == Float.floatToRawIntBits(extras)
+                && mExtrasX.get(index) == x && mExtrasY.get(index) == y
+                && Objects.equals(mExtrasObjects.get(index), extrasObject);
+    }
+
+    private int getEventId(String event) {
+        Integer id = mEventIds.get(event);
+        if (id != null) {
+            return id;
+        }
+        synchronized (mEventIds) {
+            id = mEventIds.get(event);
+            if (id != null) {
+                return id;
+            }
+            String[] names = mEventNames;
+            if (names.length >= MAX_EVENT_IDS) {
+                return EVENT_ID_NONE;
+            }
+            String[] newNames = Arrays.copyOf(names, names.length + 1);
+            newNames[names.length] = event;
+            mEventNames = newNames;
+            mEventIds.put(event, names.length);
+            return names.length;
         }
-        logs[nextIndex].update(type, event, extras, mLogId);
-        nextIndex = (nextIndex + 1) % logs.length;
     }
 
     public void clear() {
-        Arrays.setAll(logs, (i) -> null);
+        mClearedSequence = mNextSequence.get();
     }
 
     public void dump(String prefix, PrintWriter writer) {
         writer.println(prefix + "EventLog (" + name + ") history:");
         SimpleDateFormat sdf = new SimpleDateFormat("  HH:mm:ss.SSSZ  ", Locale.US);
         Date date = new Date();
+        String[] eventNames = mEventNames;
 
-        for (int i = 0; i < logs.length; i++) {
-            EventEntry log = logs[(nextIndex + logs.length - i - 1) % logs.length];
-            if (log == null) {
+        long next = mNextSequence.get();
+        long first = Math.max(mClearedSequence, next - mSize);
+        for (long sequence = next - 1; sequence >= first; sequence--) {
+            int index = (int) (sequence % mSize);
+            int version = mVersions.get(index);
+            if ((version & 1) != 0 || mSequences.get(index) != sequence) {
+                // Being written, or already overwritten by a newer entry
                 continue;
             }
-            date.setTime(log.time);
+            int type = mTypes.get(index);
+            int eventId = mEvents.get(index);
+            String event = mUninternedEvents.get(index);
+            float extras = Float.intBitsToFloat(mExtras.get(index));
+            int x = mExtrasX.get(index);
+            int y = mExtrasY.get(index);
+            Object extrasObject = mExtrasObjects.get(index);
+            long time = mTimes.get(index);
+            int traceId = mTraceIds.get(index);
+            int duplicateCount = mDuplicateCounts.get(index);
+            if (mVersions.get(index) != version) {
+                continue;
+            }
+            if (eventId != EVENT_ID_NONE) {
+                event = eventId < eventNames.length ? eventNames[eventId] : mEventNames[eventId];
+            }
+            date.setTime(time);
 
             StringBuilder msg = new StringBuilder(prefix).append(sdf.format(date))
-                    .append(log.event);
-            switch (log.type) {
+                    .append(event);
+            switch (type) {
                 case TYPE_BOOL_FALSE:
                     msg.append(": false");
                     break;
@@ -102,17 +285,24 @@ public class EventLogArray {
                     msg.append(": true");
                     break;
                 case TYPE_FLOAT:
-                    msg.append(": ").append(log.extras);
+                    msg.append(": ").append(extras);
                     break;
                 case TYPE_INTEGER:
-                    msg.append(": ").append((int) log.extras);
+                    msg.append(": ").append((int) extras);
+                    break;
+                case TYPE_INTEGER_WITH_POINT:
+                    msg.append("(").append(x).append(", ").append(y).append("): ")
+                            .append((int) extras);
+                    break;
+                case TYPE_OBJECT:
+                    msg.append(": ").append(extrasObject);
                     break;
                 default: // fall out
             }
-            if (log.duplicateCount > 0) {
-                msg.append(" & ").append(log.duplicateCount).append(" similar events");
+            if (duplicateCount > 0) {
+                msg.append(" & ").append(duplicateCount).append(" similar events");
             }
-            msg.append(" traceId: ").append(log.traceId);
+            msg.append(" traceId: ").append(traceId);
             writer.println(msg);
         }
     }
@@ -123,28 +313,4 @@ public class EventLogArray {
         mLogId = r.nextInt(900) + 100;
         return mLogId;
     }
-
-    private boolean isEntrySame(EventEntry entry, int type, String event) {
-        return entry != null && entry.type == type && entry.event.equals(event);
-    }
-
-    /** A single event entry. */
-    private static class EventEntry {
-
-        private int type;
-        private String event;
-        private float extras;
-        private long time;
-        private int duplicateCount;
-        private int traceId;
-
-        public void update(int type, String event, float extras, int traceId) {
-            this.type = type;
-            this.event = event;
-            this.extras = extras;
-            this.traceId = traceId;
-            time = System.currentTimeMillis();
-            duplicateCount = 0;
-        }
-    }
 }
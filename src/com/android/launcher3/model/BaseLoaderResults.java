@@ -20,7 +20,9 @@ import static com.android.launcher3.model.ModelUtils.filterCurrentWorkspaceItems
 import static com.android.launcher3.model.ModelUtils.getMissingHotseatRanks;
 import static com.android.launcher3.model.ModelUtils.sortWorkspaceItemsSpatially;
 
+import android.os.SystemClock;
 import android.util.Log;
+import android.util.TimingLogger;
 
 import com.android.launcher3.InvariantDeviceProfile;
 import com.android.launcher3.LauncherAppState;
@@ -47,7 +49,9 @@ public abstract class BaseLoaderResults {
 
     protected static final String TAG = "LoaderResults";
     protected static final int INVALID_SCREEN_ID = -1;
-    private static final int ITEMS_CHUNK = 6; // batch size for the workspace icons
+
+    // Shared across binds so that the measured item costs carry over to the next bind
+    private static final WorkspaceBindBudget BIND_BUDGET = new WorkspaceBindBudget();
 
     protected final LooperExecutor mUiExecutor;
 
@@ -70,8 +74,11 @@ public abstract class BaseLoaderResults {
 
     /**
      * Binds all loaded data to actual views on the main thread.
+     *
+     * @return the id of the screen which the first callbacks bind before the other screens, or
+     *         {@link #INVALID_SCREEN_ID} if all the screens are bound together.
      */
-    public void bindWorkspace() {
+    public int bindWorkspace() {
         // Save a copy of all the bg-thread collections
         ArrayList<ItemInfo> workspaceItems = new ArrayList<>();
         ArrayList<LauncherAppWidgetInfo> appWidgets = new ArrayList<>();
@@ -85,10 +92,30 @@ public abstract class BaseLoaderResults {
             mMyBindingId = mBgDataModel.lastBindId;
         }
 
-        for (Callbacks cb : mCallbacksList) {
-            new WorkspaceBinder(cb, mUiExecutor, mApp, mBgDataModel, mMyBindingId,
-                    workspaceItems, appWidgets, orderedScreenIds).bind();
+        int firstScreenId = INVALID_SCREEN_ID;
+        for (int i = 0; i < mCallbacksList.length; i++) {
+            int screenId = new WorkspaceBinder(mCallbacksList[i], mUiExecutor, mApp, mBgDataModel,
+                    mMyBindingId, workspaceItems, appWidgets, orderedScreenIds).bind();
+            if (i == 0) {
+                firstScreenId = screenId;
+            }
         }
+        return firstScreenId;
+    }
+
+    /**
+     * Binds the items of a previously saved {@link WorkspaceSnapshot}, so that the first screen
+     * is visible while the model is loading. All items are replaced on the next
+     * {@link #bindWorkspace()}.
+     */
+    public void bindWorkspaceSnapshot(WorkspaceSnapshot snapshot) {
+        executeCallbacksTask(c -> {
+            c.clearPendingBinds();
+            c.startBinding();
+            c.bindScreens(snapshot.screenIds);
+            c.bindItems(snapshot.items, false);
+            c.finishSnapshotBind();
+        }, mUiExecutor);
     }
 
     public abstract void bindDeepShortcuts();
@@ -155,7 +182,7 @@ public abstract class BaseLoaderResults {
             mOrderedScreenIds = orderedScreenIds;
         }
 
-        private void bind() {
+        private int bind() {
             final int currentScreen;
             {
                 // Create an anonymous scope to calculate currentScreen as it has to be a
@@ -185,6 +212,7 @@ public abstract class BaseLoaderResults {
             sortWorkspaceItemsSpatially(idp, currentWorkspaceItems);
             sortWorkspaceItemsSpatially(idp, otherWorkspaceItems);
 
+            TimingLogger logger = new TimingLogger(TAG, "bindWorkspace");
             // Tell the workspace that we're about to start binding items
             executeCallbacksTask(c -> {
                 c.clearPendingBinds();
@@ -195,9 +223,11 @@ public abstract class BaseLoaderResults {
             executeCallbacksTask(c -> c.bindScreens(mOrderedScreenIds), mUiExecutor);
 
             Executor mainExecutor = mUiExecutor;
-            // Load items on the current page.
-            bindWorkspaceItems(currentWorkspaceItems, mainExecutor);
-            bindAppWidgets(currentAppWidgets, mainExecutor);
+            // Load items on the current page. These are bound in as few messages as possible, so
+            // that the first screen is visible in a single frame.
+            bindItemsInChunks(currentWorkspaceItems, false, currentWorkspaceItems.size(),
+                    mainExecutor);
+            bindItemsInChunks(currentAppWidgets, true, currentAppWidgets.size(), mainExecutor);
 
             // Locate available spots for prediction using currentWorkspaceItems
             IntArray gaps = getMissingHotseatRanks(currentWorkspaceItems, idp.numHotseatIcons);
@@ -212,11 +242,21 @@ public abstract class BaseLoaderResults {
 
             executeCallbacksTask(c -> c.finishFirstPageBind(
                     validFirstPage ? (ViewOnDrawExecutor) deferredExecutor : null), mainExecutor);
-
-            bindWorkspaceItems(otherWorkspaceItems, deferredExecutor);
-            bindAppWidgets(otherAppWidgets, deferredExecutor);
+            executeCallbacksTask(c -> logger.addSplit("first screen bound"), mainExecutor);
+
+            // Remaining pages are bound in chunks sized to fit the frame budget. The
+            // ViewOnDrawExecutor runs each chunk in its own message, and stays pending until the
+            // last chunk has been bound.
+            bindItemsInChunks(otherWorkspaceItems, false, BIND_BUDGET.getChunkSize(false),
+                    deferredExecutor);
+            bindItemsInChunks(otherAppWidgets, true, BIND_BUDGET.getChunkSize(true),
+                    deferredExecutor);
             // Tell the workspace that we're done binding items
-            executeCallbacksTask(c -> c.finishBindingItems(currentScreen), deferredExecutor);
+            executeCallbacksTask(c -> {
+                c.finishBindingItems(currentScreen);
+                logger.addSplit("all pages bound");
+                logger.dumpToLog();
+            }, deferredExecutor);
 
             if (validFirstPage) {
                 executeCallbacksTask(c -> {
@@ -228,28 +268,22 @@ public abstract class BaseLoaderResults {
 
                 }, mUiExecutor);
             }
+            return currentScreenId;
         }
 
-        private void bindWorkspaceItems(
-                final ArrayList<ItemInfo> workspaceItems, final Executor executor) {
-            // Bind the workspace items
-            int count = workspaceItems.size();
-            for (int i = 0; i < count; i += ITEMS_CHUNK) {
-                final int start = i;
-                final int chunkSize = (i + ITEMS_CHUNK <= count) ? ITEMS_CHUNK : (count - i);
-                executeCallbacksTask(
-                        c -> c.bindItems(workspaceItems.subList(start, start + chunkSize), false),
-                        executor);
-            }
-        }
-
-        private void bindAppWidgets(List<LauncherAppWidgetInfo> appWidgets, Executor executor) {
-            // Bind the widgets, one at a time
-            int count = appWidgets.size();
-            for (int i = 0; i < count; i++) {
-                final ItemInfo widget = appWidgets.get(i);
-                executeCallbacksTask(
-                        c -> c.bindItems(Collections.singletonList(widget), false), executor);
+        private void bindItemsInChunks(final List<? extends ItemInfo> items,
+                boolean widgets, int chunkSize, final Executor executor) {
+            int count = items.size();
+            chunkSize = Math.max(1, chunkSize);
+            for (int i = 0; i < count; i += chunkSize) {
+                final List<ItemInfo> chunk = Collections.unmodifiableList(
+                        items.subList(i, Math.min(i + chunkSize, count)));
+                executeCallbacksTask(c -> {
+                    long startTime = SystemClock.elapsedRealtimeNanos();
+                    c.bindItems(chunk, false);
+                    BIND_BUDGET.onItemsBound(chunk.size(), widgets,
+                            SystemClock.elapsedRealtimeNanos() - startTime);
+                }, executor);
             }
         }
 
@@ -365,6 +365,11 @@ public class BgDataModel {
         void bindItems(List<ItemInfo> shortcuts, boolean forceAnimateIcons);
         void bindScreens(IntArray orderedScreenIds);
         void finishFirstPageBind(ViewOnDrawExecutor executor);
+        /**
+         * Called once the items of a {@link WorkspaceSnapshot} are bound. The actual first page
+         * bind follows once the model is loaded.
+         */
+        void finishSnapshotBind();
         void finishBindingItems(int pageBoundFirst);
         void preAddApps();
         void bindAppsAdded(IntArray newScreens,
@@ -29,8 +29,8 @@ import android.content.SharedPreferences;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.database.Cursor;
-import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.graphics.Point;
 import android.util.ArrayMap;
 import android.util.Log;
@@ -51,6 +51,7 @@ import com.android.launcher3.util.IntArray;
 import com.android.launcher3.widget.WidgetManagerHelper;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -69,8 +70,6 @@ public class GridSizeMigrationTaskV2 {
     private static final String TAG = "GridSizeMigrationTaskV2";
     private static final boolean DEBUG = true;
 
-    private final Context mContext;
-    private final SQLiteDatabase mDb;
     private final DbReader mSrcReader;
     private final DbReader mDestReader;
 
@@ -83,11 +82,11 @@ public class GridSizeMigrationTaskV2 {
     private final int mDestHotseatSize;
     private final int mTrgX, mTrgY;
 
+    private final EntryWriter mWriter;
+
     @VisibleForTesting
     protected GridSizeMigrationTaskV2(Context context, SQLiteDatabase db, DbReader srcReader,
             DbReader destReader, int destHotseatSize, Point targetSize) {
-        mContext = context;
-        mDb = db;
         mSrcReader = srcReader;
         mDestReader = destReader;
 
@@ -100,6 +99,8 @@ public class GridSizeMigrationTaskV2 {
 
         mTrgX = targetSize.x;
         mTrgY = targetSize.y;
+
+        mWriter = new EntryWriter(db, context, srcReader.mTableName, destReader.mTableName);
     }
 
     /**
@@ -165,6 +166,7 @@ public class GridSizeMigrationTaskV2 {
         }
 
         long migrationStartTime = System.currentTimeMillis();
+        int migratedItemsCount = 0;
         try (SQLiteTransaction t = (SQLiteTransaction) LauncherSettings.Settings.call(
                 context.getContentResolver(),
                 LauncherSettings.Settings.METHOD_NEW_TRANSACTION).getBinder(
@@ -183,6 +185,7 @@ public class GridSizeMigrationTaskV2 {
             GridSizeMigrationTaskV2 task = new GridSizeMigrationTaskV2(context, t.getDb(),
                     srcReader, destReader, idp.numHotseatIcons, targetSize);
             task.migrate();
+            migratedItemsCount = task.mWriter.mInsertedCount;
 
             if (!migrateForPreview) {
                 dropTable(t.getDb(), LauncherSettings.Favorites.TMP_TABLE);
@@ -196,7 +199,8 @@ public class GridSizeMigrationTaskV2 {
             return false;
         } finally {
             Log.v(TAG, "Workspace migration completed in "
-                    + (System.currentTimeMillis() - migrationStartTime));
+                    + (System.currentTimeMillis() - migrationStartTime) + "ms, "
+                    + migratedItemsCount + " items copied");
 
             if (!migrateForPreview) {
                 // Save current configuration, so that the migration does not run again.
@@ -214,9 +218,19 @@ public class GridSizeMigrationTaskV2 {
             return false;
         }
 
+        // Reserve the ids of all the entries which can be copied
+        int count = 0;
+        for (DbEntry entry : mHotseatDiff) {
+            count += entry.getRowCount();
+        }
+        for (DbEntry entry : mWorkspaceDiff) {
+            count += entry.getRowCount();
+        }
+        mWriter.reserveItemIds(count);
+
         // Migrate hotseat
-        HotseatPlacementSolution hotseatSolution = new HotseatPlacementSolution(mDb, mSrcReader,
-                mDestReader, mContext, mDestHotseatSize, mHotseatItems, mHotseatDiff);
+        HotseatPlacementSolution hotseatSolution = new HotseatPlacementSolution(mWriter,
+                mDestHotseatSize, mHotseatItems, mHotseatDiff);
         hotseatSolution.find();
 
         // Sort the items by the reading order.
@@ -227,8 +241,8 @@ public class GridSizeMigrationTaskV2 {
             if (DEBUG) {
                 Log.d(TAG, "Migrating " + screenId);
             }
-            GridPlacementSolution workspaceSolution = new GridPlacementSolution(mDb, mSrcReader,
-                    mDestReader, mContext, screenId, mTrgX, mTrgY, mWorkspaceDiff);
+            GridPlacementSolution workspaceSolution = new GridPlacementSolution(mWriter,
+                    mDestReader, screenId, mTrgX, mTrgY, mWorkspaceDiff);
             workspaceSolution.find();
             if (mWorkspaceDiff.isEmpty()) {
                 break;
@@ -237,23 +251,26 @@ public class GridSizeMigrationTaskV2 {
 
         int screenId = mDestReader.mLastScreenId + 1;
         while (!mWorkspaceDiff.isEmpty()) {
-            GridPlacementSolution workspaceSolution = new GridPlacementSolution(mDb, mSrcReader,
-                    mDestReader, mContext, screenId, mTrgX, mTrgY, mWorkspaceDiff);
+            GridPlacementSolution workspaceSolution = new GridPlacementSolution(mWriter,
+                    mDestReader, screenId, mTrgX, mTrgY, mWorkspaceDiff);
             workspaceSolution.find();
             screenId++;
         }
         return true;
     }
 
-    /** Return what's in the src but not in the dest */
+    /**
+     * Return what's in the src but not in the dest. Entries are matched by intent, or by provider
+     * for widgets, and folders are matched by their content.
+     */
     private static List<DbEntry> calcDiff(List<DbEntry> src, List<DbEntry> dest) {
-        Set<String> destIntentSet = new HashSet<>();
+        Set<String> destKeySet = new HashSet<>();
         Set<Map<String, Integer>> destFolderIntentSet = new HashSet<>();
         for (DbEntry entry : dest) {
             if (entry.itemType == LauncherSettings.Favorites.ITEM_TYPE_FOLDER) {
                 destFolderIntentSet.add(getFolderIntents(entry));
             } else {
-                destIntentSet.add(entry.mIntent);
+                destKeySet.add(entry.getDiffKey());
             }
         }
         List<DbEntry> diff = new ArrayList<>();
@@ -263,7 +280,7 @@ public class GridSizeMigrationTaskV2 {
                     diff.add(entry);
                 }
             } else {
-                if (!destIntentSet.contains(entry.mIntent)) {
+                if (!destKeySet.contains(entry.getDiffKey())) {
                     diff.add(entry);
                 }
             }
@@ -279,53 +296,6 @@ public class GridSizeMigrationTaskV2 {
         return folder;
     }
 
-    private static void insertEntryInDb(SQLiteDatabase db, Context context, DbEntry entry,
-            String srcTableName, String destTableName) {
-        int id = copyEntryAndUpdate(db, context, entry, srcTableName, destTableName);
-
-        if (entry.itemType == LauncherSettings.Favorites.ITEM_TYPE_FOLDER) {
-            for (Set<Integer> itemIds : entry.mFolderItems.values()) {
-                for (int itemId : itemIds) {
-                    copyEntryAndUpdate(db, context, itemId, id, srcTableName, destTableName);
-                }
-            }
-        }
-    }
-
-    private static int copyEntryAndUpdate(SQLiteDatabase db, Context context,
-            DbEntry entry, String srcTableName, String destTableName) {
-        return copyEntryAndUpdate(db, context, entry, -1, -1, srcTableName, destTableName);
-    }
-
-    private static int copyEntryAndUpdate(SQLiteDatabase db, Context context,
-            int id, int folderId, String srcTableName, String destTableName) {
-        return copyEntryAndUpdate(db, context, null, id, folderId, srcTableName, destTableName);
-    }
-
-    private static int copyEntryAndUpdate(SQLiteDatabase db, Context context,
-            DbEntry entry, int id, int folderId, String srcTableName, String destTableName) {
-        int newId = -1;
-        Cursor c = db.query(srcTableName, null,
-                LauncherSettings.Favorites._ID + " = '" + (entry != null ? entry.id : id) + "'",
-                null, null, null, null);
-        while (c.moveToNext()) {
-            ContentValues values = new ContentValues();
-            DatabaseUtils.cursorRowToContentValues(c, values);
-            if (entry != null) {
-                entry.updateContentValues(values);
-            } else {
-                values.put(LauncherSettings.Favorites.CONTAINER, folderId);
-            }
-            newId = LauncherSettings.Settings.call(context.getContentResolver(),
-                    LauncherSettings.Settings.METHOD_NEW_ITEM_ID).getInt(
-                    LauncherSettings.Settings.EXTRA_VALUE);
-            values.put(LauncherSettings.Favorites._ID, newId);
-            db.insert(destTableName, null, values);
-        }
-        c.close();
-        return newId;
-    }
-
     private static void removeEntryFromDb(SQLiteDatabase db, String tableName, IntArray entryIds) {
         db.delete(tableName,
                 Utilities.createDbSelectionQuery(LauncherSettings.Favorites._ID, entryIds), null);
@@ -350,10 +320,8 @@ public class GridSizeMigrationTaskV2 {
 
     protected static class GridPlacementSolution {
 
-        private final SQLiteDatabase mDb;
-        private final DbReader mSrcReader;
+        private final EntryWriter mWriter;
         private final DbReader mDestReader;
-        private final Context mContext;
         private final GridOccupancy mOccupied;
         private final int mScreenId;
         private final int mTrgX;
@@ -363,12 +331,10 @@ public class GridSizeMigrationTaskV2 {
         private int mNextStartX;
         private int mNextStartY;
 
-        GridPlacementSolution(SQLiteDatabase db, DbReader srcReader, DbReader destReader,
-                Context context, int screenId, int trgX, int trgY, List<DbEntry> itemsToPlace) {
-            mDb = db;
-            mSrcReader = srcReader;
+        GridPlacementSolution(EntryWriter writer, DbReader destReader, int screenId, int trgX,
+                int trgY, List<DbEntry> itemsToPlace) {
+            mWriter = writer;
             mDestReader = destReader;
-            mContext = context;
             mOccupied = new GridOccupancy(trgX, trgY);
             mScreenId = screenId;
             mTrgX = trgX;
@@ -392,10 +358,14 @@ public class GridSizeMigrationTaskV2 {
                     iterator.remove();
                     continue;
                 }
+                boolean fullSearch = mNextStartX == 0;
                 if (findPlacement(entry)) {
-                    insertEntryInDb(mDb, mContext, entry, mSrcReader.mTableName,
-                            mDestReader.mTableName);
+                    mWriter.insertEntry(entry);
                     iterator.remove();
+                } else if (fullSearch && entry.minSpanX == 1 && entry.minSpanY == 1) {
+                    // If a 1x1 entry does not fit anywhere in the remaining search space, no
+                    // other entry can fit on this screen.
+                    return;
                 }
             }
         }
@@ -433,20 +403,13 @@ public class GridSizeMigrationTaskV2 {
 
     protected static class HotseatPlacementSolution {
 
-        private final SQLiteDatabase mDb;
-        private final DbReader mSrcReader;
-        private final DbReader mDestReader;
-        private final Context mContext;
+        private final EntryWriter mWriter;
         private final HotseatOccupancy mOccupied;
         private final List<DbEntry> mItemsToPlace;
 
-        HotseatPlacementSolution(SQLiteDatabase db, DbReader srcReader, DbReader destReader,
-                Context context, int hotseatSize, List<DbEntry> placedHotseatItems,
-                List<DbEntry> itemsToPlace) {
-            mDb = db;
-            mSrcReader = srcReader;
-            mDestReader = destReader;
-            mContext = context;
+        HotseatPlacementSolution(EntryWriter writer, int hotseatSize,
+                List<DbEntry> placedHotseatItems, List<DbEntry> itemsToPlace) {
+            mWriter = writer;
             mOccupied = new HotseatOccupancy(hotseatSize);
             for (DbEntry entry : placedHotseatItems) {
                 mOccupied.markCells(entry, true);
@@ -463,8 +426,7 @@ public class GridSizeMigrationTaskV2 {
                     // to something other than -1.
                     entry.cellX = i;
                     entry.cellY = 0;
-                    insertEntryInDb(mDb, mContext, entry, mSrcReader.mTableName,
-                            mDestReader.mTableName);
+                    mWriter.insertEntry(entry);
                     mOccupied.markCells(entry, true);
                 }
             }
@@ -484,6 +446,127 @@ public class GridSizeMigrationTaskV2 {
         }
     }
 
+    /**
+     * Copies entries from the source table to the destination table. Each row is copied using a
+     * single execution of a compiled INSERT ... SELECT statement, with the new position bound as
+     * arguments, instead of reading the row into {@link ContentValues} first.
+     */
+    protected static class EntryWriter {
+
+        // Columns which are updated when copying an entry
+        private static final String[] ENTRY_COLUMNS = new String[] {
+                LauncherSettings.Favorites._ID,
+                LauncherSettings.Favorites.SCREEN,
+                LauncherSettings.Favorites.CELLX,
+                LauncherSettings.Favorites.CELLY,
+                LauncherSettings.Favorites.SPANX,
+                LauncherSettings.Favorites.SPANY};
+
+        // Columns which are updated when copying a folder item
+        private static final String[] FOLDER_ITEM_COLUMNS = new String[] {
+                LauncherSettings.Favorites._ID,
+                LauncherSettings.Favorites.CONTAINER};
+
+        private final Context mContext;
+        private final SQLiteStatement mInsertEntry;
+        private final SQLiteStatement mInsertFolderItem;
+
+        private int mInsertedCount;
+
+        // Range of ids reserved for the copied rows
+        private int mNextId;
+        private int mLastId = -1;
+
+        EntryWriter(SQLiteDatabase db, Context context, String srcTableName,
+                String destTableName) {
+            mContext = context;
+            String[] columns;
+            try (Cursor c = db.query(srcTableName, null, "0", null, null, null, null)) {
+                columns = c.getColumnNames();
+            }
+            mInsertEntry = db.compileStatement(
+                    buildCopyQuery(columns, ENTRY_COLUMNS, srcTableName, destTableName));
+            mInsertFolderItem = db.compileStatement(
+                    buildCopyQuery(columns, FOLDER_ITEM_COLUMNS, srcTableName, destTableName));
+        }
+
+        /**
+         * Returns an INSERT ... SELECT query which copies a row identified by _id, binding the
+         * values of {@param updatedColumns} as arguments.
+         */
+        private static String buildCopyQuery(String[] columns, String[] updatedColumns,
+                String srcTableName, String destTableName) {
+            StringBuilder insertColumns = new StringBuilder();
+            StringBuilder selectColumns = new StringBuilder();
+            for (String column : updatedColumns) {
+                insertColumns.append(column).append(',');
+                selectColumns.append("?,");
+            }
+            Set<String> updated = new HashSet<>(Arrays.asList(updatedColumns));
+            for (String column : columns) {
+                if (!updated.contains(column)) {
+                    insertColumns.append(column).append(',');
+                    selectColumns.append(column).append(',');
+                }
+            }
+            insertColumns.setLength(insertColumns.length() - 1);
+            selectColumns.setLength(selectColumns.length() - 1);
+            return "INSERT INTO " + destTableName + " (" + insertColumns + ") SELECT "
+                    + selectColumns + " FROM " + srcTableName
+                    + " WHERE " + LauncherSettings.Favorites._ID + " = ?";
+        }
+
+        /**
+         * Copies the entry and all its folder items, if any, at the position of the entry.
+         */
+        void insertEntry(DbEntry entry) {
+            int id = newItemId();
+            mInsertEntry.bindLong(1, id);
+            mInsertEntry.bindLong(2, entry.screenId);
+            mInsertEntry.bindLong(3, entry.cellX);
+            mInsertEntry.bindLong(4, entry.cellY);
+            mInsertEntry.bindLong(5, entry.spanX);
+            mInsertEntry.bindLong(6, entry.spanY);
+            mInsertEntry.bindLong(7, entry.id);
+            mInsertEntry.executeInsert();
+            mInsertedCount++;
+
+            if (entry.itemType == LauncherSettings.Favorites.ITEM_TYPE_FOLDER) {
+                for (Set<Integer> itemIds : entry.mFolderItems.values()) {
+                    for (int itemId : itemIds) {
+                        mInsertFolderItem.bindLong(1, newItemId());
+                        mInsertFolderItem.bindLong(2, id);
+                        mInsertFolderItem.bindLong(3, itemId);
+                        mInsertFolderItem.executeInsert();
+                        mInsertedCount++;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Reserves ids for {@param count} rows with a single call to the provider
+         */
+        void reserveItemIds(int count) {
+            if (count <= 0) {
+                return;
+            }
+            mNextId = LauncherSettings.Settings.call(mContext.getContentResolver(),
+                    LauncherSettings.Settings.METHOD_NEW_ITEM_IDS, Integer.toString(count))
+                    .getInt(LauncherSettings.Settings.EXTRA_VALUE);
+            mLastId = mNextId + count - 1;
+        }
+
+        private int newItemId() {
+            if (mNextId <= mLastId) {
+                return mNextId++;
+            }
+            return LauncherSettings.Settings.call(mContext.getContentResolver(),
+                    LauncherSettings.Settings.METHOD_NEW_ITEM_ID).getInt(
+                    LauncherSettings.Settings.EXTRA_VALUE);
+        }
+    }
+
     protected static class DbReader {
 
         private final SQLiteDatabase mDb;
@@ -746,20 +829,28 @@ public class GridSizeMigrationTaskV2 {
             if (this == o) return true;
             if (o == null || getClass() != o.getClass()) return false;
             DbEntry entry = (DbEntry) o;
-            return Objects.equals(mIntent, entry.mIntent);
+            return Objects.equals(mIntent, entry.mIntent)
+                    && Objects.equals(mProvider, entry.mProvider);
         }
 
         @Override
         public int hashCode() {
-            return Objects.hash(mIntent);
+            return Objects.hash(mIntent, mProvider);
+        }
+
+        /** Returns the number of rows of the entry, including its folder items */
+        private int getRowCount() {
+            int count = 1;
+            for (Set<Integer> itemIds : mFolderItems.values()) {
+                count += itemIds.size();
+            }
+            return count;
         }
 
-        public void updateContentValues(ContentValues values) {
-            values.put(LauncherSettings.Favorites.SCREEN, screenId);
-            values.put(LauncherSettings.Favorites.CELLX, cellX);
-            values.put(LauncherSettings.Favorites.CELLY, cellY);
-            values.put(LauncherSettings.Favorites.SPANX, spanX);
-            values.put(LauncherSettings.Favorites.SPANY, spanY);
+        /** Returns the key used to match the same entry across grids */
+        private String getDiffKey() {
+            return itemType == LauncherSettings.Favorites.ITEM_TYPE_APPWIDGET
+                    ? mProvider : mIntent;
         }
     }
 }
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static com.android.launcher3.util.Executors.THREAD_POOL_EXECUTOR;
+
+import android.content.ComponentName;
+import android.content.pm.ActivityInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.PackageManager.NameNotFoundException;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Resolves the activities referenced by a default layout.
+ *
+ * All the components of a layout are resolved together before the items are added, with the
+ * package manager queries running in parallel. Packages which are not found are mapped to their
+ * canonical names with a single query, and the results are memoized for the rest of the layout.
+ */
+@WorkerThread
+public class LayoutComponentResolver {
+
+    private static final String TAG = "LayoutComponentResolver";
+
+    private static final ResolvedActivity NOT_FOUND = new ResolvedActivity(null, null);
+
+    private final PackageManager mPm;
+    private final HashMap<ComponentName, ResolvedActivity> mResults = new HashMap<>();
+
+    public LayoutComponentResolver(PackageManager pm) {
+        mPm = pm;
+    }
+
+    /**
+     * Resolves all the components which are not resolved yet.
+     */
+    public void resolveAll(Collection<ComponentName> components) {
+        ArrayList<ComponentName> pending = new ArrayList<>();
+        for (ComponentName cn : components) {
+            if (!mResults.containsKey(cn)) {
+                pending.add(cn);
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<ResolvedActivity> results = queryAll(pending);
+        ArrayList<ComponentName> missing = new ArrayList<>();
+        HashSet<String> missingPackages = new HashSet<>();
+        for (int i = 0; i < pending.size(); i++) {
+            ResolvedActivity result = results.get(i);
+            if (result == null) {
+                missing.add(pending.get(i));
+                missingPackages.add(pending.get(i).getPackageName());
+            } else {
+                mResults.put(pending.get(i), result);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        // Packages might have been renamed, retry with the current names
+        String[] packages = missingPackages.toArray(new String[missingPackages.size()]);
+        String[] canonicalPackages = mPm.currentToCanonicalPackageNames(packages);
+        HashMap<String, String> canonicalMap = new HashMap<>();
+        for (int i = 0; i < packages.length; i++) {
+            canonicalMap.put(packages[i], canonicalPackages[i]);
+        }
+        ArrayList<ComponentName> renamed = new ArrayList<>();
+        for (ComponentName cn : missing) {
+            renamed.add(new ComponentName(canonicalMap.get(cn.getPackageName()),
+                    cn.getClassName()));
+        }
+        results = queryAll(renamed);
+        for (int i = 0; i < missing.size(); i++) {
+            ResolvedActivity result = results.get(i);
+            mResults.put(missing.get(i), result == null ? NOT_FOUND : result);
+        }
+    }
+
+    /**
+     * Returns the activity for the component, resolving it if it was not part of
+     * {@link #resolveAll(Collection)}, or null if the activity is not found.
+     */
+    @Nullable
+    public ResolvedActivity resolve(ComponentName cn) {
+        ResolvedActivity result = mResults.get(cn);
+        if (result == null) {
+            resolveAll(Collections.singletonList(cn));
+            result = mResults.get(cn);
+        }
+        return result == NOT_FOUND ? null : result;
+    }
+
+    private List<ResolvedActivity> queryAll(List<ComponentName> components) {
+        if (components.size() == 1) {
+            return Collections.singletonList(query(components.get(0)));
+        }
+        ArrayList<Callable<ResolvedActivity>> tasks = new ArrayList<>(components.size());
+        for (ComponentName cn : components) {
+            tasks.add(() -> query(cn));
+        }
+
+        ArrayList<ResolvedActivity> results = new ArrayList<>(components.size());
+        try {
+            for (Future<ResolvedActivity> future : THREAD_POOL_EXECUTOR.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            Log.w(TAG, "Error resolving layout components", e);
+            // Resolve the remaining components on the calling thread
+            for (int i = results.size(); i < components.size(); i++) {
+                results.add(query(components.get(i)));
+            }
+        }
+        return results;
+    }
+
+    private ResolvedActivity query(ComponentName cn) {
+        try {
+            ActivityInfo info = mPm.getActivityInfo(cn, 0);
+            return new ResolvedActivity(cn, info.loadLabel(mPm).toString());
+        } catch (NameNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * An activity referenced by the layout, along with its label.
+     */
+    public static class ResolvedActivity {
+
+        // The component to launch, which uses the canonical package name
+        public final ComponentName component;
+        public final String label;
+
+        ResolvedActivity(ComponentName component, String label) {
+            this.component = component;
+            this.label = label;
+        }
+    }
+}
@@ -35,6 +35,7 @@ import android.text.TextUtils;
 import android.util.Log;
 import android.util.LongSparseArray;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.launcher3.InvariantDeviceProfile;
@@ -57,6 +58,7 @@ import com.android.launcher3.util.IntSparseArrayMap;
 
 import java.net.URISyntaxException;
 import java.security.InvalidParameterException;
+import java.util.HashMap;
 
 /**
  * Extension of {@link Cursor} with utility methods for workspace loading.
@@ -65,6 +67,31 @@ public class LoaderCursor extends CursorWrapper {
 
     private static final String TAG = "LoaderCursor";
 
+    /**
+     * Columns required for loading the workspace. The icon blob is not included as it is only
+     * needed for legacy shortcuts and is loaded separately when required.
+     */
+    public static final String[] WORKSPACE_PROJECTION = new String[] {
+            LauncherSettings.Favorites._ID,
+            LauncherSettings.Favorites.TITLE,
+            LauncherSettings.Favorites.INTENT,
+            LauncherSettings.Favorites.CONTAINER,
+            LauncherSettings.Favorites.SCREEN,
+            LauncherSettings.Favorites.CELLX,
+            LauncherSettings.Favorites.CELLY,
+            LauncherSettings.Favorites.SPANX,
+            LauncherSettings.Favorites.SPANY,
+            LauncherSettings.Favorites.ITEM_TYPE,
+            LauncherSettings.Favorites.APPWIDGET_ID,
+            LauncherSettings.Favorites.ICON_PACKAGE,
+            LauncherSettings.Favorites.ICON_RESOURCE,
+            LauncherSettings.Favorites.APPWIDGET_PROVIDER,
+            LauncherSettings.Favorites.RESTORED,
+            LauncherSettings.Favorites.PROFILE_ID,
+            LauncherSettings.Favorites.RANK,
+            LauncherSettings.Favorites.OPTIONS
+    };
+
     public final LongSparseArray<UserHandle> allUsers;
 
     private final Uri mContentUri;
@@ -77,6 +104,13 @@ public class LoaderCursor extends CursorWrapper {
     private final IntArray restoredRows = new IntArray();
     private final IntSparseArrayMap<GridOccupancy> occupied = new IntSparseArrayMap<>();
 
+    // Many items share the same intent, parse each intent description only once
+    private final HashMap<String, Intent> mParsedIntents = new HashMap<>();
+
+    // Icon blobs of the legacy shortcuts and restored items, loaded together on first use when
+    // the icon is not part of the projection
+    private IntSparseArrayMap<byte[]> mIconBlobs;
+
     private final int iconPackageIndex;
     private final int iconResourceIndex;
     private final int iconIndex;
@@ -112,7 +146,8 @@ public class LoaderCursor extends CursorWrapper {
         mPM = mContext.getPackageManager();
 
         // Init column indices
-        iconIndex = getColumnIndexOrThrow(LauncherSettings.Favorites.ICON);
+        // Icon is optional, see WORKSPACE_PROJECTION
+        iconIndex = getColumnIndex(LauncherSettings.Favorites.ICON);
         iconPackageIndex = getColumnIndexOrThrow(LauncherSettings.Favorites.ICON_PACKAGE);
         iconResourceIndex = getColumnIndexOrThrow(LauncherSettings.Favorites.ICON_RESOURCE);
         titleIndex = getColumnIndexOrThrow(LauncherSettings.Favorites.TITLE);
@@ -145,13 +180,21 @@ public class LoaderCursor extends CursorWrapper {
 
     public Intent parseIntent() {
         String intentDescription = getString(intentIndex);
-        try {
-            return TextUtils.isEmpty(intentDescription) ?
-                    null : Intent.parseUri(intentDescription, 0);
-        } catch (URISyntaxException e) {
-            Log.e(TAG, "Error parsing Intent");
+        if (TextUtils.isEmpty(intentDescription)) {
             return null;
         }
+        Intent intent = mParsedIntents.get(intentDescription);
+        if (intent == null) {
+            try {
+                intent = Intent.parseUri(intentDescription, 0);
+            } catch (URISyntaxException e) {
+                Log.e(TAG, "Error parsing Intent");
+                return null;
+            }
+            mParsedIntents.put(intentDescription, intent);
+        }
+        // Return a copy as the caller can modify the intent
+        return new Intent(intent);
     }
 
     @VisibleForTesting
@@ -193,7 +236,7 @@ public class LoaderCursor extends CursorWrapper {
             }
 
             // Failed to load from resource, try loading from DB.
-            byte[] data = getBlob(iconIndex);
+            byte[] data = iconIndex >= 0 ? getBlob(iconIndex) : loadIconBlob();
             try {
                 info.bitmap = li.createIconBitmap(decodeByteArray(data, 0, data.length));
                 return true;
@@ -204,6 +247,36 @@ public class LoaderCursor extends CursorWrapper {
         }
     }
 
+    /**
+     * Loads the icon blob for the current item, when it is not part of the cursor projection
+     */
+    private byte[] loadIconBlob() {
+        if (mIconBlobs == null) {
+            mIconBlobs = new IntSparseArrayMap<>();
+            try (Cursor c = mContext.getContentResolver().query(mContentUri,
+                    new String[] {LauncherSettings.Favorites._ID, LauncherSettings.Favorites.ICON},
+                    LauncherSettings.Favorites.ICON + " IS NOT NULL AND ("
+                            + LauncherSettings.Favorites.ITEM_TYPE + " = "
+                            + LauncherSettings.Favorites.ITEM_TYPE_SHORTCUT + " OR "
+                            + LauncherSettings.Favorites.RESTORED + " != 0)", null, null)) {
+                while (c != null && c.moveToNext()) {
+                    mIconBlobs.put(c.getInt(0), c.getBlob(1));
+                }
+            }
+        }
+        if (mIconBlobs.containsKey(id)) {
+            return mIconBlobs.get(id);
+        }
+
+        // Other items only use the icon from the DB when their target is missing
+        try (Cursor c = mContext.getContentResolver().query(mContentUri,
+                new String[] {LauncherSettings.Favorites.ICON},
+                LauncherSettings.Favorites._ID + " = ?",
+                new String[] {Integer.toString(id)}, null)) {
+            return c != null && c.moveToNext() ? c.getBlob(0) : null;
+        }
+    }
+
     /**
      * Returns the title or empty string
      */
@@ -250,6 +323,15 @@ public class LoaderCursor extends CursorWrapper {
      */
     public WorkspaceItemInfo getAppShortcutInfo(
             Intent intent, boolean allowMissingTarget, boolean useLowResIcon) {
+        return getAppShortcutInfo(intent, allowMissingTarget, useLowResIcon, null);
+    }
+
+    /**
+     * Make an WorkspaceItemInfo object for a shortcut that is an application.
+     * @param packageState optional snapshot used to resolve the activity
+     */
+    public WorkspaceItemInfo getAppShortcutInfo(Intent intent, boolean allowMissingTarget,
+            boolean useLowResIcon, @Nullable PackageStateSnapshot packageState) {
         if (user == null) {
             Log.d(TAG, "Null user found in getShortcutInfo");
             return null;
@@ -264,8 +346,9 @@ public class LoaderCursor extends CursorWrapper {
         Intent newIntent = new Intent(Intent.ACTION_MAIN, null);
         newIntent.addCategory(Intent.CATEGORY_LAUNCHER);
         newIntent.setComponent(componentName);
-        LauncherActivityInfo lai = mContext.getSystemService(LauncherApps.class)
-                .resolveActivity(newIntent, user);
+        LauncherActivityInfo lai = packageState != null
+                ? packageState.resolveActivity(newIntent, user)
+                : mContext.getSystemService(LauncherApps.class).resolveActivity(newIntent, user);
         if ((lai == null) && !allowMissingTarget) {
             Log.d(TAG, "Missing activity found in getShortcutInfo: " + componentName);
             return null;
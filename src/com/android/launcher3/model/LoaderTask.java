@@ -65,6 +65,7 @@ import com.android.launcher3.icons.ComponentWithLabelAndIcon;
 import com.android.launcher3.icons.ComponentWithLabelAndIcon.ComponentWithIconCachingLogic;
 import com.android.launcher3.icons.IconCache;
 import com.android.launcher3.icons.LauncherActivityCachingLogic;
+import com.android.launcher3.icons.ParallelIconUpdater;
 import com.android.launcher3.icons.ShortcutCachingLogic;
 import com.android.launcher3.icons.cache.IconCacheUpdateHandler;
 import com.android.launcher3.logging.FileLog;
@@ -98,6 +99,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CancellationException;
+import java.util.function.BiConsumer;
 
 /**
  * Runnable for the thread that loads the contents of the launcher:
@@ -154,6 +156,10 @@ public class LoaderTask implements Runnable {
         while (!mStopped && idleLock.awaitLocked(1000));
     }
 
+    private synchronized boolean isStopped() {
+        return mStopped;
+    }
+
     private synchronized void verifyNotStopped() throws CancellationException {
         if (mStopped) {
             throw new CancellationException("Loader stopped");
@@ -187,15 +193,29 @@ public class LoaderTask implements Runnable {
         Object traceToken = TraceHelper.INSTANCE.beginSection(TAG);
         TimingLogger logger = new TimingLogger(TAG, "run");
         try (LauncherModel.LoaderTransaction transaction = mApp.getModel().beginLoader(this)) {
+            String snapshotKey = WorkspaceSnapshot.getStateKey(
+                    mApp.getInvariantDeviceProfile(), mIconCache.getSystemState());
+            if (mBgDataModel.workspaceItems.isEmpty()) {
+                // Cold start, show the last known first screen while the workspace is loading
+                WorkspaceSnapshot snapshot =
+                        WorkspaceSnapshot.read(mApp.getContext(), snapshotKey);
+                if (snapshot != null) {
+                    mResults.bindWorkspaceSnapshot(snapshot);
+                    logger.addSplit("bindWorkspaceSnapshot");
+                }
+            }
+
             List<ShortcutInfo> allShortcuts = new ArrayList<>();
             loadWorkspace(allShortcuts);
             loadCachedPredictions();
             logger.addSplit("loadWorkspace");
 
             verifyNotStopped();
-            mResults.bindWorkspace();
+            int firstScreenId = mResults.bindWorkspace();
             logger.addSplit("bindWorkspace");
 
+            WorkspaceSnapshot.save(mApp.getContext(), snapshotKey, firstScreenId, mBgDataModel);
+
             // Notify the installer packages of packages with active installs on the first screen.
             sendFirstScreenActiveInstallsBroadcast();
             logger.addSplit("sendFirstScreenActiveInstallsBroadcast");
@@ -214,8 +234,21 @@ public class LoaderTask implements Runnable {
             logger.addSplit("bindAllApps");
 
             verifyNotStopped();
+            // All the icons are created in parallel first if the whole icon cache is invalid
+            ParallelIconUpdater parallelUpdater = null;
+            if (ParallelIconUpdater.isUpdateNeeded(mApp.getContext(), mIconCache)) {
+                parallelUpdater = new ParallelIconUpdater(
+                        mApp.getContext(), mIconCache, this::isStopped);
+                setIgnorePackages(parallelUpdater::addPackagesToIgnore);
+                parallelUpdater.updateIcons(allActivityList,
+                        LauncherActivityCachingLogic.newInstance(mApp.getContext()),
+                        mApp.getModel()::onPackageIconsUpdated);
+                logger.addSplit("create icons in parallel");
+                verifyNotStopped();
+            }
+
             IconCacheUpdateHandler updateHandler = mIconCache.getUpdateHandler();
-            setIgnorePackages(updateHandler);
+            setIgnorePackages(updateHandler::addPackagesToIgnore);
             updateHandler.updateIcons(allActivityList,
                     LauncherActivityCachingLogic.newInstance(mApp.getContext()),
                     mApp.getModel()::onPackageIconsUpdated);
@@ -224,6 +257,10 @@ public class LoaderTask implements Runnable {
             if (FeatureFlags.ENABLE_DEEP_SHORTCUT_ICON_CACHE.get()) {
                 verifyNotStopped();
                 logger.addSplit("save shortcuts in icon cache");
+                if (parallelUpdater != null) {
+                    parallelUpdater.updateIcons(allShortcuts, new ShortcutCachingLogic(),
+                            mApp.getModel()::onPackageIconsUpdated);
+                }
                 updateHandler.updateIcons(allShortcuts, new ShortcutCachingLogic(),
                         mApp.getModel()::onPackageIconsUpdated);
             }
@@ -244,6 +281,10 @@ public class LoaderTask implements Runnable {
             if (FeatureFlags.ENABLE_DEEP_SHORTCUT_ICON_CACHE.get()) {
                 verifyNotStopped();
                 logger.addSplit("save deep shortcuts in icon cache");
+                if (parallelUpdater != null) {
+                    parallelUpdater.updateIcons(allDeepShortcuts,
+                            new ShortcutCachingLogic(), (pkgs, user) -> { });
+                }
                 updateHandler.updateIcons(allDeepShortcuts,
                         new ShortcutCachingLogic(), (pkgs, user) -> { });
             }
@@ -263,6 +304,11 @@ public class LoaderTask implements Runnable {
             logger.addSplit("bindWidgets");
             verifyNotStopped();
 
+            if (parallelUpdater != null) {
+                parallelUpdater.updateIcons(allWidgetsList,
+                        new ComponentWithIconCachingLogic(mApp.getContext(), true),
+                        mApp.getModel()::onWidgetLabelsUpdated);
+            }
             updateHandler.updateIcons(allWidgetsList,
                     new ComponentWithIconCachingLogic(mApp.getContext(), true),
                     mApp.getModel()::onWidgetLabelsUpdated);
@@ -275,6 +321,9 @@ public class LoaderTask implements Runnable {
 
             verifyNotStopped();
             updateHandler.finish();
+            if (parallelUpdater != null) {
+                ParallelIconUpdater.onUpdateComplete(mApp.getContext(), mIconCache);
+            }
             logger.addSplit("finish icon update");
 
             transaction.commit();
@@ -303,6 +352,7 @@ public class LoaderTask implements Runnable {
         final ContentResolver contentResolver = context.getContentResolver();
         final PackageManagerHelper pmHelper = new PackageManagerHelper(context);
         final boolean isSafeMode = pmHelper.isSafeMode();
+        final PackageStateSnapshot packageState = new PackageStateSnapshot(context);
         final boolean isSdCardReady = Utilities.isBootCompleted();
         final MultiHashMap<UserHandle, String> pendingPackages = new MultiHashMap<>();
 
@@ -343,7 +393,8 @@ public class LoaderTask implements Runnable {
 
             Map<ShortcutKey, ShortcutInfo> shortcutKeyToPinnedShortcuts = new HashMap<>();
             final LoaderCursor c = new LoaderCursor(
-                    contentResolver.query(contentUri, null, selection, null, null), contentUri,
+                    contentResolver.query(contentUri, LoaderCursor.WORKSPACE_PROJECTION,
+                            selection, null, null), contentUri,
                     mApp, mUserManagerState);
 
             try {
@@ -438,7 +489,7 @@ public class LoaderTask implements Runnable {
                             // If there is no target package, its an implicit intent
                             // (legacy shortcut) which is always valid
                             boolean validTarget = TextUtils.isEmpty(targetPkg) ||
-                                    mLauncherApps.isPackageEnabled(targetPkg, c.user);
+                                    packageState.isPackageEnabled(targetPkg, c.user);
 
                             // If it's a deep shortcut, we'll use pinned shortcuts to restore it
                             if (cn != null && validTarget && c.itemType
@@ -447,12 +498,12 @@ public class LoaderTask implements Runnable {
                                 // component.
 
                                 // If the component is already present
-                                if (mLauncherApps.isActivityEnabled(cn, c.user)) {
+                                if (packageState.isActivityEnabled(cn, c.user)) {
                                     // no special handling necessary for this item
                                     c.markRestored();
                                 } else {
                                     // Gracefully try to find a fallback activity.
-                                    intent = pmHelper.getAppLaunchIntent(targetPkg, c.user);
+                                    intent = packageState.getAppLaunchIntent(targetPkg, c.user);
                                     if (intent != null) {
                                         c.restoreFlag = 0;
                                         c.updater().put(
@@ -489,7 +540,7 @@ public class LoaderTask implements Runnable {
                                         c.markDeleted("Unrestored app removed: " + targetPkg);
                                         continue;
                                     }
-                                } else if (pmHelper.isAppOnSdcard(targetPkg, c.user)) {
+                                } else if (packageState.isAppOnSdcard(targetPkg, c.user)) {
                                     // Package is present but not available.
                                     disabledState |= WorkspaceItemInfo.FLAG_DISABLED_NOT_AVAILABLE;
                                     // Add the icon on the workspace anyway.
@@ -525,8 +576,8 @@ public class LoaderTask implements Runnable {
                                 info = c.getRestoredItemInfo(intent);
                             } else if (c.itemType ==
                                     LauncherSettings.Favorites.ITEM_TYPE_APPLICATION) {
-                                info = c.getAppShortcutInfo(
-                                        intent, allowMissingTarget, useLowResIcon);
+                                info = c.getAppShortcutInfo(intent, allowMissingTarget,
+                                        useLowResIcon, packageState);
                             } else if (c.itemType ==
                                     LauncherSettings.Favorites.ITEM_TYPE_DEEP_SHORTCUT) {
 
@@ -544,7 +595,7 @@ public class LoaderTask implements Runnable {
                                     // use the last saved icon instead of the default.
                                     mIconCache.getShortcutIcon(info, pinnedShortcut, c::loadIcon);
 
-                                    if (pmHelper.isAppSuspended(
+                                    if (packageState.isAppSuspended(
                                             pinnedShortcut.getPackage(), info.user)) {
                                         info.runtimeStatusFlags |= FLAG_DISABLED_SUSPENDED;
                                     }
@@ -560,7 +611,7 @@ public class LoaderTask implements Runnable {
 
                                 // Shortcuts are only available on the primary profile
                                 if (!TextUtils.isEmpty(targetPkg)
-                                        && pmHelper.isAppSuspended(targetPkg, c.user)) {
+                                        && packageState.isAppSuspended(targetPkg, c.user)) {
                                     disabledState |= FLAG_DISABLED_SUSPENDED;
                                 }
 
@@ -844,20 +895,20 @@ public class LoaderTask implements Runnable {
         }
     }
 
-    private void setIgnorePackages(IconCacheUpdateHandler updateHandler) {
+    private void setIgnorePackages(BiConsumer<UserHandle, String> ignorePackages) {
         // Ignore packages which have a promise icon.
         synchronized (mBgDataModel) {
             for (ItemInfo info : mBgDataModel.itemsIdMap) {
                 if (info instanceof WorkspaceItemInfo) {
                     WorkspaceItemInfo si = (WorkspaceItemInfo) info;
                     if (si.isPromise() && si.getTargetComponent() != null) {
-                        updateHandler.addPackagesToIgnore(
+                        ignorePackages.accept(
                                 si.user, si.getTargetComponent().getPackageName());
                     }
                 } else if (info instanceof LauncherAppWidgetInfo) {
                     LauncherAppWidgetInfo lawi = (LauncherAppWidgetInfo) info;
                     if (lawi.hasRestoreFlag(LauncherAppWidgetInfo.FLAG_PROVIDER_NOT_READY)) {
-                        updateHandler.addPackagesToIgnore(
+                        ignorePackages.accept(
                                 lawi.user, lawi.providerName.getPackageName());
                     }
                 }
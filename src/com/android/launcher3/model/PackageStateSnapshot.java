@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.LauncherActivityInfo;
+import android.content.pm.LauncherApps;
+import android.os.UserHandle;
+
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.Utilities;
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.util.ComponentKey;
+import com.android.launcher3.util.PackageManagerHelper;
+import com.android.launcher3.util.PackageUserKey;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Snapshot of the package state used while loading the workspace.
+ *
+ * The launcher activities of a profile are fetched with a single IPC the first time the profile
+ * is queried, and the per-item checks are answered from it. Checks which cannot be answered from
+ * the activity list, like packages without a launcher activity, fall back to the individual IPC
+ * and the result is memoized for the rest of the loader pass.
+ */
+@WorkerThread
+public class PackageStateSnapshot {
+
+    private final LauncherApps mLauncherApps;
+    private final PackageManagerHelper mPmHelper;
+
+    private final HashSet<UserHandle> mLoadedUsers = new HashSet<>();
+    // First launcher activity of each package, same as LauncherApps#getActivityList(pkg, user)
+    private final HashMap<PackageUserKey, LauncherActivityInfo> mPackageActivities =
+            new HashMap<>();
+    private final HashMap<ComponentKey, LauncherActivityInfo> mActivities = new HashMap<>();
+
+    // Results of the individual IPCs
+    private final HashMap<PackageUserKey, Boolean> mPackageEnabled = new HashMap<>();
+    private final HashMap<PackageUserKey, Boolean> mPackageSuspended = new HashMap<>();
+    private final HashMap<PackageUserKey, Boolean> mPackageOnSdcard = new HashMap<>();
+    private final HashMap<ComponentKey, Boolean> mActivityEnabled = new HashMap<>();
+
+    private final PackageUserKey mTempKey = new PackageUserKey(null, null);
+
+    public PackageStateSnapshot(Context context) {
+        mLauncherApps = context.getSystemService(LauncherApps.class);
+        mPmHelper = new PackageManagerHelper(context);
+    }
+
+    /**
+     * @see LauncherApps#isPackageEnabled(String, UserHandle)
+     */
+    public boolean isPackageEnabled(String packageName, UserHandle user) {
+        if (getPackageActivity(packageName, user) != null) {
+            return true;
+        }
+        return mPackageEnabled.computeIfAbsent(new PackageUserKey(packageName, user),
+                k -> mLauncherApps.isPackageEnabled(packageName, user));
+    }
+
+    /**
+     * @see LauncherApps#isActivityEnabled(ComponentName, UserHandle)
+     */
+    public boolean isActivityEnabled(ComponentName cn, UserHandle user) {
+        ComponentKey key = new ComponentKey(cn, user);
+        loadUser(user);
+        if (mActivities.containsKey(key)) {
+            return true;
+        }
+        return mActivityEnabled.computeIfAbsent(key,
+                k -> mLauncherApps.isActivityEnabled(cn, user));
+    }
+
+    /**
+     * Returns the launcher activity for the component in the intent, or resolves the intent if
+     * it does not point to a launcher activity.
+     * @see LauncherApps#resolveActivity(Intent, UserHandle)
+     */
+    public LauncherActivityInfo resolveActivity(Intent intent, UserHandle user) {
+        ComponentName cn = intent.getComponent();
+        if (cn != null) {
+            loadUser(user);
+            LauncherActivityInfo info = mActivities.get(new ComponentKey(cn, user));
+            if (info != null) {
+                return info;
+            }
+        }
+        return mLauncherApps.resolveActivity(intent, user);
+    }
+
+    /**
+     * @see PackageManagerHelper#getAppLaunchIntent(String, UserHandle)
+     */
+    public Intent getAppLaunchIntent(String packageName, UserHandle user) {
+        LauncherActivityInfo info = getPackageActivity(packageName, user);
+        return info == null ? null : AppInfo.makeLaunchIntent(info);
+    }
+
+    /**
+     * @see PackageManagerHelper#isAppSuspended(String, UserHandle)
+     */
+    public boolean isAppSuspended(String packageName, UserHandle user) {
+        LauncherActivityInfo info = getPackageActivity(packageName, user);
+        if (info != null && Utilities.ATLEAST_OREO) {
+            // Same checks as PackageManagerHelper#getApplicationInfo
+            ApplicationInfo appInfo = info.getApplicationInfo();
+            return (appInfo.flags & ApplicationInfo.FLAG_INSTALLED) != 0 && appInfo.enabled
+                    && PackageManagerHelper.isAppSuspended(appInfo);
+        }
+        return mPackageSuspended.computeIfAbsent(new PackageUserKey(packageName, user),
+                k -> mPmHelper.isAppSuspended(packageName, user));
+    }
+
+    /**
+     * @see PackageManagerHelper#isAppOnSdcard(String, UserHandle)
+     */
+    public boolean isAppOnSdcard(String packageName, UserHandle user) {
+        // Uninstalled packages are not part of the activity list, always use the IPC
+        return mPackageOnSdcard.computeIfAbsent(new PackageUserKey(packageName, user),
+                k -> mPmHelper.isAppOnSdcard(packageName, user));
+    }
+
+    private LauncherActivityInfo getPackageActivity(String packageName, UserHandle user) {
+        loadUser(user);
+        mTempKey.update(packageName, user);
+        return mPackageActivities.get(mTempKey);
+    }
+
+    private void loadUser(UserHandle user) {
+        if (!mLoadedUsers.add(user)) {
+            return;
+        }
+        List<LauncherActivityInfo> activities = mLauncherApps.getActivityList(null, user);
+        for (LauncherActivityInfo info : activities) {
+            ComponentName cn = info.getComponentName();
+            mActivities.put(new ComponentKey(cn, user), info);
+            mPackageActivities.putIfAbsent(new PackageUserKey(cn.getPackageName(), user), info);
+        }
+    }
+}
@@ -326,9 +326,10 @@ public class PackageUpdatedTask extends BaseModelUpdateTask {
             InstallShortcutReceiver.removeFromInstallQueue(context, removedPackages, mUser);
         }
 
-        if (Utilities.ATLEAST_OREO && mOp == OP_ADD) {
-            // Load widgets for the new package. Changes due to app updates are handled through
-            // AppWidgetHost events, this is just to initialize the long-press options.
+        if (Utilities.ATLEAST_OREO && (mOp == OP_ADD || mOp == OP_REMOVE)) {
+            // Load widgets for the new package, or drop the widgets of the removed package.
+            // Changes due to app updates are handled through AppWidgetHost events, this is just
+            // to keep the long-press options and the widget tray in sync.
             for (int i = 0; i < N; i++) {
                 dataModel.widgetsModel.update(app, new PackageUserKey(packages[i], mUser));
             }
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import androidx.annotation.VisibleForTesting;
+
+/**
+ * Keeps track of the cost of binding workspace items on the main thread, and uses it to size
+ * the bind chunks so that each chunk fits within a single frame.
+ *
+ * Icons and widgets are tracked separately as inflating a widget is usually an order of
+ * magnitude more expensive than inflating an icon.
+ */
+public class WorkspaceBindBudget {
+
+    // Target time spent binding items in a single main thread message
+    @VisibleForTesting
+    static final long FRAME_BUDGET_NANOS = MILLISECONDS.toNanos(8);
+
+    // Initial estimates, before any measurement is available. These match the previous fixed
+    // chunking of 6 icons or 1 widget per message.
+    private static final long DEFAULT_ICON_COST_NANOS = FRAME_BUDGET_NANOS / 6;
+    private static final long DEFAULT_WIDGET_COST_NANOS = FRAME_BUDGET_NANOS;
+
+    @VisibleForTesting
+    static final int MAX_CHUNK_SIZE = 64;
+
+    // Weight given to a new measurement in the running average, as 1 / n
+    private static final int AVERAGE_WEIGHT = 4;
+
+    private volatile long mIconCostNanos = DEFAULT_ICON_COST_NANOS;
+    private volatile long mWidgetCostNanos = DEFAULT_WIDGET_COST_NANOS;
+
+    /**
+     * Returns the number of items which can be bound in a single frame
+     */
+    public int getChunkSize(boolean widgets) {
+        long cost = widgets ? mWidgetCostNanos : mIconCostNanos;
+        return (int) Math.max(1, Math.min(MAX_CHUNK_SIZE, FRAME_BUDGET_NANOS / Math.max(1, cost)));
+    }
+
+    /**
+     * Called on the main thread after a chunk of items was bound
+     */
+    public void onItemsBound(int count, boolean widgets, long elapsedNanos) {
+        if (count <= 0) {
+            return;
+        }
+        long cost = elapsedNanos / count;
+        if (widgets) {
+            mWidgetCostNanos += (cost - mWidgetCostNanos) / AVERAGE_WEIGHT;
+        } else {
+            mIconCostNanos += (cost - mIconCostNanos) / AVERAGE_WEIGHT;
+        }
+    }
+}
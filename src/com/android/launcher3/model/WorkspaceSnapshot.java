@@ -0,0 +1,305 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_DESKTOP;
+import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_HOTSEAT;
+import static com.android.launcher3.util.Executors.THREAD_POOL_EXECUTOR;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.UserHandle;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.InvariantDeviceProfile;
+import com.android.launcher3.LauncherAppState;
+import com.android.launcher3.LauncherProvider;
+import com.android.launcher3.icons.BitmapInfo;
+import com.android.launcher3.icons.IconCache;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.pm.UserCache;
+import com.android.launcher3.util.IntArray;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A persisted copy of the items on the first workspace screen and the hotseat, which can be
+ * bound on a cold start while the actual model is being loaded.
+ *
+ * The snapshot is only valid for the state it was written in, identified by the DB schema
+ * version, the grid and the icon cache state. Only icons and shortcuts are included, folders
+ * and widgets are bound with the actual model.
+ */
+public class WorkspaceSnapshot {
+
+    private static final String TAG = "WorkspaceSnapshot";
+    private static final String FILE_NAME = "workspace_snapshot";
+
+    // Increment when changing the file format
+    private static final int SNAPSHOT_VERSION = 2;
+
+    public final IntArray screenIds = new IntArray();
+    public final ArrayList<ItemInfo> items = new ArrayList<>();
+
+    /**
+     * Returns a key which changes whenever a previously written snapshot can no longer be used.
+     */
+    public static String getStateKey(InvariantDeviceProfile idp, String iconState) {
+        return SNAPSHOT_VERSION + "," + LauncherProvider.SCHEMA_VERSION + ","
+                + idp.dbFile + "," + idp.numRows + "x" + idp.numColumns + ","
+                + idp.numHotseatIcons + "," + iconState;
+    }
+
+    /**
+     * Saves the items of {@param screenId} and the hotseat on a background thread. The first
+     * screen of {@param dataModel} is used if the screen id is not valid.
+     */
+    public static void save(Context context, String stateKey, int screenId,
+            BgDataModel dataModel) {
+        ArrayList<SnapshotItem> items;
+        synchronized (dataModel) {
+            IntArray screens = dataModel.collectWorkspaceScreens();
+            if (!screens.contains(screenId)) {
+                screenId = screens.get(0);
+            }
+            ArrayList<WorkspaceItemInfo> screenItems = new ArrayList<>();
+            for (ItemInfo info : dataModel.workspaceItems) {
+                if (info instanceof WorkspaceItemInfo && (info.container == CONTAINER_HOTSEAT
+                        || (info.container == CONTAINER_DESKTOP && info.screenId == screenId))) {
+                    screenItems.add((WorkspaceItemInfo) info);
+                }
+            }
+            // The items can change once the lock is released, so only copies are written
+            items = copyItems(screenItems);
+        }
+        final int snapshotScreenId = screenId;
+        THREAD_POOL_EXECUTOR.execute(() -> write(context, stateKey, snapshotScreenId, items));
+    }
+
+    /**
+     * Returns copies of the {@param items} which can be written to the snapshot
+     */
+    @VisibleForTesting
+    static ArrayList<SnapshotItem> copyItems(List<WorkspaceItemInfo> items) {
+        ArrayList<SnapshotItem> copies = new ArrayList<>();
+        for (WorkspaceItemInfo info : items) {
+            if (!info.bitmap.isLowRes() && info.getIntent() != null) {
+                copies.add(new SnapshotItem(info));
+            }
+        }
+        return copies;
+    }
+
+    /**
+     * Writes {@param items} to disk, unless the snapshot on disk already has the same content.
+     *
+     * @return true if the snapshot was written
+     */
+    @VisibleForTesting
+    @WorkerThread
+    static synchronized boolean write(Context context, String stateKey, int screenId,
+            List<SnapshotItem> items) {
+        UserCache userCache = UserCache.INSTANCE.get(context);
+        IconCache iconCache = LauncherAppState.getInstance(context).getIconCache();
+        HashMap<UserHandle, HashMap<ComponentName, String>> iconStates = new HashMap<>();
+        long signature = screenId;
+        for (SnapshotItem item : items) {
+            // Icons are compared by their state in the icon cache, instead of their pixels
+            String iconState = iconStates
+                    .computeIfAbsent(item.user, iconCache::getCachedIconStates)
+                    .get(item.targetComponent);
+            signature = 31 * signature + Objects.hash(item.id, item.itemType, item.container,
+                    item.screenId, item.cellX, item.cellY, item.rank, item.title, item.intentUri,
+                    userCache.getSerialNumberForUser(item.user), item.color, iconState);
+        }
+
+        AtomicFile file = new AtomicFile(new File(context.getCacheDir(), FILE_NAME));
+        if (readSignature(file, stateKey) == signature) {
+            return false;
+        }
+
+        FileOutputStream fos = null;
+        try {
+            fos = file.startWrite();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+            out.writeUTF(stateKey);
+            out.writeLong(signature);
+            out.writeInt(screenId);
+
+            ByteArrayOutputStream iconBytes = new ByteArrayOutputStream();
+            out.writeInt(items.size());
+            for (SnapshotItem item : items) {
+                out.writeInt(item.id);
+                out.writeInt(item.itemType);
+                out.writeInt(item.container);
+                out.writeInt(item.screenId);
+                out.writeInt(item.cellX);
+                out.writeInt(item.cellY);
+                out.writeInt(item.rank);
+                out.writeUTF(item.title);
+                out.writeUTF(item.intentUri);
+                out.writeLong(userCache.getSerialNumberForUser(item.user));
+                out.writeInt(item.color);
+
+                Bitmap lowRes = Bitmap.createScaledBitmap(item.icon,
+                        Math.max(1, item.icon.getWidth() / 2),
+                        Math.max(1, item.icon.getHeight() / 2), true);
+                iconBytes.reset();
+                lowRes.compress(Bitmap.CompressFormat.PNG, 100, iconBytes);
+                out.writeInt(iconBytes.size());
+                iconBytes.writeTo(out);
+            }
+            out.flush();
+            file.finishWrite(fos);
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to write workspace snapshot", e);
+            if (fos != null) {
+                file.failWrite(fos);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Returns the signature of the snapshot on disk, or 0 if there is no valid snapshot for
+     * {@param stateKey}
+     */
+    private static long readSignature(AtomicFile file, String stateKey) {
+        try (DataInputStream in = new DataInputStream(file.openRead())) {
+            return stateKey.equals(in.readUTF()) ? in.readLong() : 0;
+        } catch (FileNotFoundException e) {
+            return 0;
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to read workspace snapshot", e);
+            return 0;
+        }
+    }
+
+    /**
+     * Reads the snapshot from disk, or returns null if there is no valid snapshot for
+     * {@param stateKey}.
+     */
+    @WorkerThread
+    @Nullable
+    public static synchronized WorkspaceSnapshot read(Context context, String stateKey) {
+        AtomicFile file = new AtomicFile(new File(context.getCacheDir(), FILE_NAME));
+        UserCache userCache = UserCache.INSTANCE.get(context);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(file.openRead()))) {
+            if (!stateKey.equals(in.readUTF())) {
+                return null;
+            }
+            // Signature, only used when writing
+            in.readLong();
+            WorkspaceSnapshot snapshot = new WorkspaceSnapshot();
+            snapshot.screenIds.add(in.readInt());
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                WorkspaceItemInfo info = new WorkspaceItemInfo();
+                info.id = in.readInt();
+                info.itemType = in.readInt();
+                info.container = in.readInt();
+                info.screenId = in.readInt();
+                info.cellX = in.readInt();
+                info.cellY = in.readInt();
+                info.rank = in.readInt();
+                info.title = in.readUTF();
+                info.contentDescription = info.title;
+                info.intent = Intent.parseUri(in.readUTF(), 0);
+                UserHandle user = userCache.getUserForSerialNumber(in.readLong());
+                int color = in.readInt();
+
+                byte[] iconBytes = new byte[in.readInt()];
+                in.readFully(iconBytes);
+                Bitmap icon = BitmapFactory.decodeByteArray(iconBytes, 0, iconBytes.length);
+                if (user == null || icon == null) {
+                    continue;
+                }
+                info.user = user;
+                info.bitmap = new BitmapInfo(icon, color);
+                snapshot.items.add(info);
+            }
+            return snapshot;
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException | URISyntaxException e) {
+            Log.e(TAG, "Unable to read workspace snapshot", e);
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Copy of the fields of a {@link WorkspaceItemInfo} which are saved in the snapshot
+     */
+    @VisibleForTesting
+    static class SnapshotItem {
+
+        final int id;
+        final int itemType;
+        final int container;
+        final int screenId;
+        final int cellX;
+        final int cellY;
+        final int rank;
+        final String title;
+        final String intentUri;
+        @Nullable
+        final ComponentName targetComponent;
+        final UserHandle user;
+        final Bitmap icon;
+        final int color;
+
+        SnapshotItem(WorkspaceItemInfo info) {
+            id = info.id;
+            itemType = info.itemType;
+            container = info.container;
+            screenId = info.screenId;
+            cellX = info.cellX;
+            cellY = info.cellY;
+            rank = info.rank;
+            title = info.title == null ? "" : info.title.toString();
+            intentUri = info.getIntent().toUri(0);
+            targetComponent = info.getTargetComponent();
+            user = info.user;
+            icon = info.bitmap.icon;
+            color = info.bitmap.color;
+        }
+    }
+}
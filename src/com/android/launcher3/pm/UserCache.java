@@ -20,9 +20,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.os.UserHandle;
 import android.os.UserManager;
-import android.util.ArrayMap;
 import android.util.Log;
-import android.util.LongSparseArray;
 
 import com.android.launcher3.testing.TestProtocol;
 import com.android.launcher3.util.MainThreadInitializedObject;
@@ -30,11 +28,14 @@ import com.android.launcher3.util.SafeCloseable;
 import com.android.launcher3.util.SimpleBroadcastReceiver;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 
 /**
- * Class which manages a local cache of user handles to avoid system rpc
+ * Class which manages a local cache of user handles to avoid system rpc.
+ *
+ * The users are kept in an immutable table which is replaced when profiles are added or removed,
+ * so lookups from any thread do not need to lock or leave the process.
  */
 public class UserCache {
 
@@ -47,18 +48,19 @@ public class UserCache {
     private final SimpleBroadcastReceiver mUserChangeReceiver =
             new SimpleBroadcastReceiver(this::onUsersChanged);
 
-    private LongSparseArray<UserHandle> mUsers;
-    // Create a separate reverse map as LongSparseArray.indexOfValue checks if objects are same
-    // and not {@link Object#equals}
-    private ArrayMap<UserHandle, Long> mUserToSerialMap;
+    // Created lazily on first use and replaced on every user change
+    private volatile UserTable mUserTable;
 
     private UserCache(Context context) {
         mContext = context;
         mUserManager = context.getSystemService(UserManager.class);
+        mUserChangeReceiver.register(mContext,
+                Intent.ACTION_MANAGED_PROFILE_ADDED,
+                Intent.ACTION_MANAGED_PROFILE_REMOVED);
     }
 
     private void onUsersChanged(Intent intent) {
-        enableAndResetCache();
+        resetCache();
         mUserChangeListeners.forEach(Runnable::run);
     }
 
@@ -68,42 +70,36 @@ public class UserCache {
     public SafeCloseable addUserChangeListener(Runnable command) {
         synchronized (this) {
             if (mUserChangeListeners.isEmpty()) {
-                // Enable caching and start listening for user broadcast
-                mUserChangeReceiver.register(mContext,
-                        Intent.ACTION_MANAGED_PROFILE_ADDED,
-                        Intent.ACTION_MANAGED_PROFILE_REMOVED);
-                enableAndResetCache();
+                // Reload the users in case they changed before the first listener was added
+                resetCache();
             }
             mUserChangeListeners.add(command);
             return () -> removeUserChangeListener(command);
         }
     }
 
-    private void enableAndResetCache() {
+    private void resetCache() {
         synchronized (this) {
-            mUsers = new LongSparseArray<>();
-            mUserToSerialMap = new ArrayMap<>();
-            List<UserHandle> users = mUserManager.getUserProfiles();
-            if (users != null) {
-                for (UserHandle user : users) {
-                    long serial = mUserManager.getSerialNumberForUser(user);
-                    mUsers.put(serial, user);
-                    mUserToSerialMap.put(user, serial);
+            mUserTable = new UserTable(mUserManager);
+        }
+    }
+
+    private UserTable getUserTable() {
+        UserTable table = mUserTable;
+        if (table == null) {
+            synchronized (this) {
+                table = mUserTable;
+                if (table == null) {
+                    table = mUserTable = new UserTable(mUserManager);
                 }
             }
         }
+        return table;
     }
 
     private void removeUserChangeListener(Runnable command) {
         synchronized (this) {
             mUserChangeListeners.remove(command);
-            if (mUserChangeListeners.isEmpty()) {
-                // Disable cache and stop listening
-                mContext.unregisterReceiver(mUserChangeReceiver);
-
-                mUsers = null;
-                mUserToSerialMap = null;
-            }
             if (TestProtocol.sDebugTracing) {
                 Log.d(TestProtocol.WORK_PROFILE_REMOVED, "Work profile removed", new Exception());
             }
@@ -114,38 +110,61 @@ public class UserCache {
      * @see UserManager#getSerialNumberForUser(UserHandle)
      */
     public long getSerialNumberForUser(UserHandle user) {
-        synchronized (this) {
-            if (mUserToSerialMap != null) {
-                Long serial = mUserToSerialMap.get(user);
-                return serial == null ? 0 : serial;
+        UserTable table = getUserTable();
+        UserHandle[] users = table.users;
+        for (int i = 0; i < users.length; i++) {
+            if (users[i].equals(user)) {
+                return table.serials[i];
             }
         }
-        return mUserManager.getSerialNumberForUser(user);
+        return 0;
     }
 
     /**
      * @see UserManager#getUserForSerialNumber(long)
      */
     public UserHandle getUserForSerialNumber(long serialNumber) {
-        synchronized (this) {
-            if (mUsers != null) {
-                return mUsers.get(serialNumber);
-            }
-        }
-        return mUserManager.getUserForSerialNumber(serialNumber);
+        UserTable table = getUserTable();
+        int index = Arrays.binarySearch(table.sortedSerials, serialNumber);
+        return index < 0 ? null : table.usersBySerial[index];
     }
 
     /**
      * @see UserManager#getUserProfiles()
      */
     public List<UserHandle> getUserProfiles() {
-        synchronized (this) {
-            if (mUsers != null) {
-                return new ArrayList<>(mUserToSerialMap.keySet());
+        return new ArrayList<>(Arrays.asList(getUserTable().users));
+    }
+
+    /**
+     * Immutable snapshot of the user profiles and their serial numbers
+     */
+    private static class UserTable {
+
+        // Users in the order returned by UserManager, and their serial numbers
+        final UserHandle[] users;
+        final long[] serials;
+
+        // Serial numbers in ascending order for the reverse lookup
+        final long[] sortedSerials;
+        final UserHandle[] usersBySerial;
+
+        UserTable(UserManager userManager) {
+            List<UserHandle> profiles = userManager.getUserProfiles();
+            int count = profiles == null ? 0 : profiles.size();
+            users = new UserHandle[count];
+            serials = new long[count];
+            for (int i = 0; i < count; i++) {
+                users[i] = profiles.get(i);
+                serials[i] = userManager.getSerialNumberForUser(users[i]);
             }
-        }
 
-        List<UserHandle> users = mUserManager.getUserProfiles();
-        return users == null ? Collections.emptyList() : users;
+            sortedSerials = Arrays.copyOf(serials, count);
+            Arrays.sort(sortedSerials);
+            usersBySerial = new UserHandle[count];
+            for (int i = 0; i < count; i++) {
+                usersBySerial[Arrays.binarySearch(sortedSerials, serials[i])] = users[i];
+            }
+        }
     }
 }
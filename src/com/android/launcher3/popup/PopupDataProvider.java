@@ -197,6 +197,10 @@ public class PopupDataProvider implements NotificationListener.NotificationsChan
         mChangeListener = listener == null ? PopupDataChangeListener.INSTANCE : listener;
     }
 
+    /**
+     * Returns the rows sorted by package title, the list is shared with the model and the widget
+     * tray and should not be modified.
+     */
     public ArrayList<WidgetListRowEntry> getAllWidgets() {
         return mAllWidgets;
     }
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.provider;
+
+import android.content.ContentValues;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * Inserts rows into a table using compiled statements, which avoids building and compiling the
+ * INSERT statement for every row like {@link SQLiteDatabase#insert} does. A statement is compiled
+ * for each set of columns and reused for all the rows with the same columns.
+ *
+ * The caller is responsible for running the inserts in a transaction, see
+ * {@link LauncherDbUtils.SQLiteTransaction}.
+ */
+public class BulkInserter implements AutoCloseable {
+
+    private static final String TAG = "BulkInserter";
+
+    private final SQLiteDatabase mDb;
+    private final String mTable;
+
+    private final HashMap<String, CompiledInsert> mStatements = new HashMap<>();
+    private final ArrayList<String> mTempColumns = new ArrayList<>();
+
+    public BulkInserter(SQLiteDatabase db, String table) {
+        mDb = db;
+        mTable = table;
+    }
+
+    public SQLiteDatabase getDb() {
+        return mDb;
+    }
+
+    /**
+     * Inserts a row, same as {@link SQLiteDatabase#insert(String, String, ContentValues)}
+     * @return the row id of the inserted row, or -1 if an error occurred
+     */
+    public long insert(ContentValues values) {
+        mTempColumns.clear();
+        mTempColumns.addAll(values.keySet());
+        Collections.sort(mTempColumns);
+        String key = String.join(",", mTempColumns);
+
+        try {
+            CompiledInsert insert = mStatements.get(key);
+            if (insert == null) {
+                insert = new CompiledInsert(mTempColumns.toArray(new String[0]));
+                mStatements.put(key, insert);
+            }
+            return insert.execute(values);
+        } catch (SQLException e) {
+            Log.e(TAG, "Error inserting " + values, e);
+            return -1;
+        }
+    }
+
+    @Override
+    public void close() {
+        for (CompiledInsert insert : mStatements.values()) {
+            insert.statement.close();
+        }
+        mStatements.clear();
+    }
+
+    private class CompiledInsert {
+        final String[] columns;
+        final SQLiteStatement statement;
+
+        CompiledInsert(String[] columns) {
+            this.columns = columns;
+
+            StringBuilder sql = new StringBuilder("INSERT INTO ").append(mTable).append(" (");
+            StringBuilder args = new StringBuilder();
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    sql.append(',');
+                    args.append(',');
+                }
+                sql.append(columns[i]);
+                args.append('?');
+            }
+            sql.append(") VALUES (").append(args).append(')');
+            statement = mDb.compileStatement(sql.toString());
+        }
+
+        long execute(ContentValues values) {
+            statement.clearBindings();
+            for (int i = 0; i < columns.length; i++) {
+                // Bind indices are 1 based
+                bind(i + 1, values.get(columns[i]));
+            }
+            return statement.executeInsert();
+        }
+
+        private void bind(int index, Object value) {
+            if (value == null) {
+                statement.bindNull(index);
+            } else if (value instanceof String) {
+                statement.bindString(index, (String) value);
+            } else if (value instanceof Long || value instanceof Integer
+                    || value instanceof Short || value instanceof Byte) {
+                statement.bindLong(index, ((Number) value).longValue());
+            } else if (value instanceof Float || value instanceof Double) {
+                statement.bindDouble(index, ((Number) value).doubleValue());
+            } else if (value instanceof Boolean) {
+                statement.bindLong(index, (Boolean) value ? 1 : 0);
+            } else if (value instanceof byte[]) {
+                statement.bindBlob(index, (byte[]) value);
+            } else {
+                statement.bindString(index, value.toString());
+            }
+        }
+    }
+}
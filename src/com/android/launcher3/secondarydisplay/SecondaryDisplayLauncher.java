@@ -208,6 +208,9 @@ public class SecondaryDisplayLauncher extends BaseDraggingActivity
         }
     }
 
+    @Override
+    public void finishSnapshotBind() { }
+
     @Override
     public void finishBindingItems(int pageBoundFirst) { }
 
@@ -54,6 +54,8 @@ public class StateManager<STATE_TYPE extends BaseState<STATE_TYPE>> {
     // Animators which are run on properties also controlled by state animations.
     private final AtomicAnimationFactory mAtomicAnimationFactory;
 
+    private final StateTransitionMetrics mTransitionMetrics;
+
     private StateHandler<STATE_TYPE>[] mStateHandlers;
     private STATE_TYPE mState;
 
@@ -68,6 +70,7 @@ public class StateManager<STATE_TYPE extends BaseState<STATE_TYPE>> {
         mBaseState = baseState;
         mState = mLastStableState = mCurrentStableState = baseState;
         mAtomicAnimationFactory = l.createAtomicAnimationFactory();
+        mTransitionMetrics = new StateTransitionMetrics(l);
     }
 
     public STATE_TYPE getState() {
@@ -85,6 +88,14 @@ public class StateManager<STATE_TYPE extends BaseState<STATE_TYPE>> {
         writer.println(prefix + "\tmState:" + mState);
         writer.println(prefix + "\tmRestState:" + mRestState);
         writer.println(prefix + "\tisInTransition:" + (mConfig.currentAnimation != null));
+        mTransitionMetrics.dump(prefix + "\t", writer);
+    }
+
+    /**
+     * Returns the frame timing metrics recorded for state transitions
+     */
+    public StateTransitionMetrics getTransitionMetrics() {
+        return mTransitionMetrics;
     }
 
     public StateHandler[] getStateHandlers() {
@@ -200,6 +211,7 @@ public class StateManager<STATE_TYPE extends BaseState<STATE_TYPE>> {
         // Cancel the current animation. This will reset mState to mCurrentStableState, so store it.
         STATE_TYPE fromState = mState;
         mConfig.reset();
+        mTransitionMetrics.onTransitionEnd(false);
 
         if (!animated) {
             mAtomicAnimationFactory.cancelAllStateElementAnimation();
@@ -239,6 +251,7 @@ public class StateManager<STATE_TYPE extends BaseState<STATE_TYPE>> {
                 ? fromState.getTransitionDuration(mActivity)
                 : state.getTransitionDuration(mActivity);
         prepareForAtomicAnimation(fromState, state, mConfig);
+        mTransitionMetrics.onTransitionStart(fromState, state, false /* touch */);
         AnimatorSet animation = createAnimationToNewWorkspaceInternal(state).buildAnim();
         if (onCompleteRunnable != null) {
             animation.addListener(AnimationSuccessListener.forRunnable(onCompleteRunnable));
@@ -293,7 +306,9 @@ public class StateManager<STATE_TYPE extends BaseState<STATE_TYPE>> {
     public AnimatorPlaybackController createAnimationToNewWorkspace(STATE_TYPE state,
             StateAnimationConfig config) {
         config.userControlled = true;
+        STATE_TYPE fromState = mState;
         mConfig.reset();
+        mTransitionMetrics.onTransitionStart(fromState, state, true /* touch */);
         config.copyTo(mConfig);
         mConfig.playbackController = createAnimationToNewWorkspaceInternal(state)
                 .createPlaybackController();
@@ -345,6 +360,7 @@ public class StateManager<STATE_TYPE extends BaseState<STATE_TYPE>> {
     }
 
     private void onStateTransitionEnd(STATE_TYPE state) {
+        mTransitionMetrics.onTransitionEnd(true);
         // Only change the stable states after the transitions have finished
         if (state != mCurrentStableState) {
             mLastStableState = state.getHistoryForState(mCurrentStableState);
@@ -390,6 +406,7 @@ public class StateManager<STATE_TYPE extends BaseState<STATE_TYPE>> {
      */
     public void cancelAnimation() {
         mConfig.reset();
+        mTransitionMetrics.onTransitionEnd(false);
     }
 
     public void setCurrentUserControlledAnimation(AnimatorPlaybackController controller) {
@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.statemanager;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.view.Choreographer;
+
+import androidx.annotation.UiThread;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.launcher3.util.DefaultDisplay;
+
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+
+/**
+ * Records frame timing for state transitions, keyed by the start state, the end state and
+ * whether the transition is controlled by touch.
+ *
+ * While a transition is in progress, the interval between consecutive frames is recorded in a
+ * fixed size histogram. Frames which take longer than the display refresh interval count as
+ * dropped frames. Recording does not allocate per frame.
+ */
+public class StateTransitionMetrics implements Choreographer.FrameCallback {
+
+    // Frame times are recorded in 1ms buckets, the last bucket holds all longer frames
+    private static final int HISTOGRAM_SIZE = 128;
+
+    private static final int[] PERCENTILES = new int[] {50, 90, 95, 99};
+
+    private final Context mContext;
+    private final LinkedHashMap<String, TransitionStats> mStats = new LinkedHashMap<>();
+
+    // Current transition
+    private TransitionStats mActive;
+    private long mStartTimeNanos;
+    private long mLastFrameTimeNanos;
+    private long mFrameIntervalNanos;
+    private boolean mFrameCallbackPosted;
+
+    public StateTransitionMetrics(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * Called when a transition from {@param fromState} to {@param toState} is started. Any
+     * transition in progress is considered cancelled.
+     */
+    @UiThread
+    public void onTransitionStart(Object fromState, Object toState, boolean touch) {
+        onTransitionStart(fromState, toState, touch, System.nanoTime(),
+                MILLISECONDS.toNanos(DefaultDisplay.getSingleFrameMs(mContext)));
+        if (!mFrameCallbackPosted) {
+            mFrameCallbackPosted = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    @VisibleForTesting
+    void onTransitionStart(Object fromState, Object toState, boolean touch, long timeNanos,
+            long frameIntervalNanos) {
+        onTransitionEnd(false);
+        String key = fromState + "->" + toState + (touch ? " (touch)" : "");
+        mActive = mStats.get(key);
+        if (mActive == null) {
+            mActive = new TransitionStats(key);
+            mStats.put(key, mActive);
+        }
+        mStartTimeNanos = timeNanos;
+        mLastFrameTimeNanos = 0;
+        mFrameIntervalNanos = frameIntervalNanos;
+    }
+
+    /**
+     * Called when the current transition ends
+     * @param completed false if the transition was cancelled before reaching its end state
+     */
+    @UiThread
+    public void onTransitionEnd(boolean completed) {
+        if (mActive == null) {
+            return;
+        }
+        if (completed) {
+            mActive.completedCount++;
+        } else {
+            mActive.cancelledCount++;
+        }
+        mActive = null;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mFrameCallbackPosted = false;
+        if (mActive == null) {
+            return;
+        }
+        onFrame(frameTimeNanos);
+        mFrameCallbackPosted = true;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    @VisibleForTesting
+    void onFrame(long frameTimeNanos) {
+        TransitionStats stats = mActive;
+        if (mLastFrameTimeNanos == 0) {
+            long firstFrameNanos = Math.max(0, frameTimeNanos - mStartTimeNanos);
+            stats.firstFrameTotalNanos += firstFrameNanos;
+            stats.firstFrameMaxNanos = Math.max(stats.firstFrameMaxNanos, firstFrameNanos);
+            stats.firstFrameCount++;
+        } else {
+            long intervalNanos = frameTimeNanos - mLastFrameTimeNanos;
+            int bucket = (int) Math.min(HISTOGRAM_SIZE - 1, NANOSECONDS.toMillis(intervalNanos));
+            stats.frameTimeHistogram[bucket]++;
+            stats.frameCount++;
+            if (mFrameIntervalNanos > 0) {
+                // Allow for half a frame of jitter in the frame times
+                stats.droppedFrames += (intervalNanos + mFrameIntervalNanos / 2)
+                        / mFrameIntervalNanos - 1;
+            }
+        }
+        mLastFrameTimeNanos = frameTimeNanos;
+    }
+
+    /**
+     * Clears all recorded metrics
+     */
+    public void reset() {
+        mStats.clear();
+        mActive = null;
+    }
+
+    /**
+     * Returns the recorded metrics, with one bundle per transition key
+     */
+    public Bundle toBundle() {
+        Bundle result = new Bundle();
+        for (TransitionStats stats : mStats.values()) {
+            Bundle b = new Bundle();
+            b.putInt("completed", stats.completedCount);
+            b.putInt("cancelled", stats.cancelledCount);
+            b.putLong("frames", stats.frameCount);
+            b.putLong("dropped_frames", stats.droppedFrames);
+            b.putLong("first_frame_avg_ms", stats.getAverageFirstFrameMs());
+            b.putLong("first_frame_max_ms", NANOSECONDS.toMillis(stats.firstFrameMaxNanos));
+            for (int percentile : PERCENTILES) {
+                b.putInt("frame_time_p" + percentile + "_ms", stats.getPercentileMs(percentile));
+            }
+            result.putBundle(stats.key, b);
+        }
+        return result;
+    }
+
+    public void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "StateTransitionMetrics:");
+        for (TransitionStats stats : mStats.values()) {
+            StringBuilder line = new StringBuilder(prefix).append("\t").append(stats.key)
+                    .append(": completed=").append(stats.completedCount)
+                    .append(" cancelled=").append(stats.cancelledCount)
+                    .append(" frames=").append(stats.frameCount)
+                    .append(" dropped=").append(stats.droppedFrames)
+                    .append(" firstFrameAvg=").append(stats.getAverageFirstFrameMs())
+                    .append("ms");
+            for (int percentile : PERCENTILES) {
+                line.append(" p").append(percentile).append("=")
+                        .append(stats.getPercentileMs(percentile)).append("ms");
+            }
+            writer.println(line);
+        }
+    }
+
+    private static class TransitionStats {
+
+        final String key;
+        final int[] frameTimeHistogram = new int[HISTOGRAM_SIZE];
+
+        int completedCount;
+        int cancelledCount;
+        long frameCount;
+        long droppedFrames;
+
+        int firstFrameCount;
+        long firstFrameTotalNanos;
+        long firstFrameMaxNanos;
+
+        TransitionStats(String key) {
+            this.key = key;
+        }
+
+        long getAverageFirstFrameMs() {
+            return firstFrameCount == 0 ? 0
+                    : NANOSECONDS.toMillis(firstFrameTotalNanos / firstFrameCount);
+        }
+
+        int getPercentileMs(int percentile) {
+            long target = (frameCount * percentile + 99) / 100;
+            long count = 0;
+            for (int i = 0; i < HISTOGRAM_SIZE; i++) {
+                count += frameTimeHistogram[i];
+                if (count >= target && count > 0) {
+                    return i;
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -107,6 +107,16 @@ public class TestInformationHandler implements ResourceBasedOverride {
                 return response;
             }
 
+            case TestProtocol.REQUEST_STATE_TRANSITION_METRICS:
+                return getLauncherUIProperty(Bundle::putBundle,
+                        l -> l.getStateManager().getTransitionMetrics().toBundle());
+
+            case TestProtocol.REQUEST_RESET_STATE_TRANSITION_METRICS:
+                return getLauncherUIProperty(Bundle::putBoolean, l -> {
+                    l.getStateManager().getTransitionMetrics().reset();
+                    return true;
+                });
+
             case TestProtocol.REQUEST_MOCK_SENSOR_ROTATION:
                 TestProtocol.sDisableSensorRotation = true;
                 return response;
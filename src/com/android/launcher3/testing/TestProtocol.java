@@ -92,6 +92,9 @@ public final class TestProtocol {
     public static final String REQUEST_GET_TEST_EVENTS = "get-test-events";
     public static final String REQUEST_STOP_EVENT_LOGGING = "stop-event-logging";
     public static final String REQUEST_CLEAR_DATA = "clear-data";
+    public static final String REQUEST_STATE_TRANSITION_METRICS = "state-transition-metrics";
+    public static final String REQUEST_RESET_STATE_TRANSITION_METRICS =
+            "reset-state-transition-metrics";
 
     public static boolean sDebugTracing = false;
     public static final String REQUEST_ENABLE_DEBUG_TRACING = "enable-debug-tracing";
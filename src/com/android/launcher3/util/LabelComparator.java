@@ -15,6 +15,7 @@
  */
 package com.android.launcher3.util;
 
+import java.text.CollationKey;
 import java.text.Collator;
 import java.util.Comparator;
 
@@ -28,6 +29,28 @@ public class LabelComparator implements Comparator<String> {
 
     @Override
     public int compare(String titleA, String titleB) {
+        int result = compareFirstLetter(titleA, titleB);
+        // Order by the title in the current locale
+        return result != 0 ? result : mCollator.compare(titleA, titleB);
+    }
+
+    /**
+     * Returns a key for the title, which is faster to compare using {@link #compareKeys} than the
+     * title itself when the same title is compared many times.
+     */
+    public CollationKey getCollationKey(String title) {
+        return mCollator.getCollationKey(title);
+    }
+
+    /**
+     * Same as {@link #compare} for titles converted to keys using {@link #getCollationKey}
+     */
+    public static int compareKeys(CollationKey keyA, CollationKey keyB) {
+        int result = compareFirstLetter(keyA.getSourceString(), keyB.getSourceString());
+        return result != 0 ? result : keyA.compareTo(keyB);
+    }
+
+    private static int compareFirstLetter(String titleA, String titleB) {
         // Ensure that we de-prioritize any titles that don't start with a
         // linguistic letter or digit
         boolean aStartsWithLetter = (titleA.length() > 0) &&
@@ -39,8 +62,6 @@ public class LabelComparator implements Comparator<String> {
         } else if (!aStartsWithLetter && bStartsWithLetter) {
             return 1;
         }
-
-        // Order by the title in the current locale
-        return mCollator.compare(titleA, titleB);
+        return 0;
     }
 }
@@ -15,10 +15,14 @@
  */
 package com.android.launcher3.util;
 
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.MessageQueue.IdleHandler;
 import android.os.Trace;
 
 import androidx.annotation.MainThread;
 
+import java.util.ArrayList;
 import java.util.function.Supplier;
 
 /**
@@ -46,6 +50,15 @@ public class TraceHelper {
      */
     public static TraceHelper INSTANCE = new TraceHelper();
 
+    // Sections currently open on the main thread, used to attribute main thread binder calls.
+    // Only accessed on the main thread.
+    private static final ArrayList<MainThreadSection> sMainThreadSections = new ArrayList<>();
+    // Sections which are never ended are dropped once the main thread is idle
+    private static final IdleHandler sClearSectionsOnIdle = () -> {
+        sMainThreadSections.clear();
+        return false;
+    };
+
     /**
      * @return a token to pass into {@link #endSection(Object)}.
      */
@@ -55,13 +68,14 @@ public class TraceHelper {
 
     public Object beginSection(String sectionName, int flags) {
         Trace.beginSection(sectionName);
-        return null;
+        return pushMainThreadSection(sectionName, flags);
     }
 
     /**
      * @param token the token returned from {@link #beginSection(String, int)}
      */
     public void endSection(Object token) {
+        popMainThreadSection(token);
         Trace.endSection();
     }
 
@@ -69,10 +83,68 @@ public class TraceHelper {
      * Similar to {@link #beginSection} but doesn't add a trace section.
      */
     public Object beginFlagsOverride(int flags) {
+        return pushMainThreadSection(null, flags);
+    }
+
+    public void endFlagsOverride(Object token) {
+        popMainThreadSection(token);
+    }
+
+    private static Object pushMainThreadSection(String sectionName, int flags) {
+        if (!Looper.getMainLooper().isCurrentThread()) {
+            return null;
+        }
+        if (sMainThreadSections.isEmpty()) {
+            MessageQueue queue = Looper.myQueue();
+            queue.removeIdleHandler(sClearSectionsOnIdle);
+            queue.addIdleHandler(sClearSectionsOnIdle);
+        }
+        MainThreadSection section = new MainThreadSection(sectionName, flags);
+        sMainThreadSections.add(section);
+        return section;
+    }
+
+    /**
+     * Removes the section for {@param token}, along with any section opened after it which was
+     * not ended.
+     */
+    private static void popMainThreadSection(Object token) {
+        if (token == null || !Looper.getMainLooper().isCurrentThread()) {
+            return;
+        }
+        int index = sMainThreadSections.lastIndexOf(token);
+        if (index >= 0) {
+            sMainThreadSections.subList(index, sMainThreadSections.size()).clear();
+            if (sMainThreadSections.isEmpty()) {
+                Looper.myQueue().removeIdleHandler(sClearSectionsOnIdle);
+            }
+        }
+    }
+
+    /**
+     * Returns the name of the innermost section open on the main thread, or null. Must be
+     * called on the main thread.
+     */
+    public static String getMainThreadSection() {
+        for (int i = sMainThreadSections.size() - 1; i >= 0; i--) {
+            if (sMainThreadSections.get(i).name != null) {
+                return sMainThreadSections.get(i).name;
+            }
+        }
         return null;
     }
 
-    public void endFlagsOverride(Object token) { }
+    /**
+     * Returns the combined flags of all the sections open on the main thread. Must be called on
+     * the main thread.
+     */
+    public static int getMainThreadFlags() {
+        int flags = 0;
+        for (int i = sMainThreadSections.size() - 1; i >= 0; i--) {
+            flags |= sMainThreadSections.get(i).flags;
+        }
+        return flags;
+    }
 
     /**
      * Temporarily ignore blocking binder calls for the duration of this {@link Supplier}.
@@ -86,4 +158,15 @@ public class TraceHelper {
             INSTANCE.endSection(traceToken);
         }
     }
+
+    private static class MainThreadSection {
+
+        final String name;
+        final int flags;
+
+        MainThreadSection(String name, int flags) {
+            this.name = name;
+            this.flags = flags;
+        }
+    }
 }
@@ -29,7 +29,23 @@ public class ViewCache {
     protected final SparseArray<CacheEntry> mCache = new SparseArray();
 
     public void setCacheSize(int layoutId, int size) {
-        mCache.put(layoutId, new CacheEntry(size));
+        CacheEntry entry = new CacheEntry(size);
+        CacheEntry oldEntry = mCache.get(layoutId);
+        if (oldEntry != null) {
+            // Keep the views which are already cached
+            entry.mCurrentSize = Math.min(oldEntry.mCurrentSize, size);
+            System.arraycopy(oldEntry.mViews, 0, entry.mViews, 0, entry.mCurrentSize);
+        }
+        mCache.put(layoutId, entry);
+    }
+
+    /**
+     * Returns the maximum number of views cached for {@param layoutId}
+     */
+    public int getCacheSize(int layoutId) {
+        CacheEntry entry = mCache.get(layoutId);
+        // Layouts which were never sized cache a single view, see getView
+        return entry == null ? 1 : entry.mMaxSize;
     }
 
     public <T extends View> T getView(int layoutId, Context context, ViewGroup parent) {
@@ -33,6 +33,8 @@ import java.util.function.Consumer;
 
 /**
  * An executor which runs all the tasks after the first onDraw is called on the target view.
+ * Each task runs in its own message, and the executor is only completed once the last task has
+ * run.
  */
 public class ViewOnDrawExecutor implements Executor, OnDrawListener, Runnable,
         OnAttachStateChangeListener {
@@ -42,6 +44,8 @@ public class ViewOnDrawExecutor implements Executor, OnDrawListener, Runnable,
     private Consumer<ViewOnDrawExecutor> mOnClearCallback;
     private View mAttachedView;
     private boolean mCompleted;
+    private boolean mRunning;
+    private int mNextTask;
 
     private boolean mLoadAnimationCompleted;
     private boolean mFirstDrawCompleted;
@@ -104,8 +108,28 @@ public class ViewOnDrawExecutor implements Executor, OnDrawListener, Runnable,
     @Override
     public void run() {
         // Post the pending tasks after both onDraw and onLoadAnimationCompleted have been called.
-        if (mLoadAnimationCompleted && mFirstDrawCompleted && !mCompleted) {
-            runAllTasks();
+        if (mLoadAnimationCompleted && mFirstDrawCompleted && !mCompleted && !mRunning) {
+            mRunning = true;
+            mAttachedView.getViewTreeObserver().removeOnDrawListener(this);
+            runNextTask();
+        }
+    }
+
+    private void runNextTask() {
+        if (mCompleted) {
+            return;
+        }
+        if (mNextTask < mTasks.size()) {
+            mTasks.get(mNextTask++).run();
+        }
+        if (mCompleted) {
+            // The task cleared the pending binds
+            return;
+        }
+        if (mNextTask < mTasks.size()) {
+            mAttachedView.post(this::runNextTask);
+        } else {
+            markCompleted();
         }
     }
 
@@ -127,7 +151,7 @@ public class ViewOnDrawExecutor implements Executor, OnDrawListener, Runnable,
     }
 
     /**
-     * Executes all tasks immediately
+     * Executes all tasks immediately, in a single message
      */
     @VisibleForTesting
     public void runAllTasks() {
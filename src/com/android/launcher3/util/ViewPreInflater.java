@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.util;
+
+import android.content.Context;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
+import android.view.LayoutInflater;
+import android.view.View;
+
+import androidx.annotation.VisibleForTesting;
+
+/**
+ * Utility class to warm up a {@link ViewCache} by inflating views whenever the UI looper is idle,
+ * for example while the model is being loaded on the background thread. Views are later picked
+ * up from the cache when the corresponding items are bound, instead of being inflated inline.
+ */
+public class ViewPreInflater implements MessageQueue.IdleHandler {
+
+    // Maximum time spent inflating views in a single idle callback
+    @VisibleForTesting
+    static final long IDLE_BUDGET_MS = 4;
+
+    private final Context mContext;
+    private final ViewCache mViewCache;
+    private final Looper mLooper;
+
+    private final IntArray mLayoutIds = new IntArray();
+    private final IntArray mCounts = new IntArray();
+
+    // Cache sizes to restore once the inflation is cancelled
+    private final IntArray mResizedLayoutIds = new IntArray();
+    private final IntArray mOriginalSizes = new IntArray();
+
+    private boolean mStarted;
+
+    public ViewPreInflater(Context context, ViewCache viewCache) {
+        mContext = context;
+        mViewCache = viewCache;
+        mLooper = Looper.myLooper();
+    }
+
+    /**
+     * Adds {@param count} instances of {@param layoutId} to the list of views to inflate. The
+     * cache for the layout is resized to hold all the instances once the inflation is started.
+     */
+    public ViewPreInflater add(int layoutId, int count) {
+        if (count > 0) {
+            mLayoutIds.add(layoutId);
+            mCounts.add(count);
+        }
+        return this;
+    }
+
+    /**
+     * Starts inflating views in idle time
+     */
+    public void start() {
+        if (!mStarted && !mLayoutIds.isEmpty()) {
+            mStarted = true;
+            for (int i = 0; i < mLayoutIds.size(); i++) {
+                int layoutId = mLayoutIds.get(i);
+                mResizedLayoutIds.add(layoutId);
+                mOriginalSizes.add(mViewCache.getCacheSize(layoutId));
+                mViewCache.setCacheSize(layoutId, mCounts.get(i));
+            }
+            mLooper.getQueue().addIdleHandler(this);
+        }
+    }
+
+    /**
+     * Stops any pending inflation and restores the original cache sizes. Views which are already
+     * inflated stay in the cache, up to its original size.
+     */
+    public void cancel() {
+        mLayoutIds.clear();
+        mCounts.clear();
+        if (mStarted) {
+            mStarted = false;
+            mLooper.getQueue().removeIdleHandler(this);
+        }
+        for (int i = mResizedLayoutIds.size() - 1; i >= 0; i--) {
+            mViewCache.setCacheSize(mResizedLayoutIds.get(i), mOriginalSizes.get(i));
+        }
+        mResizedLayoutIds.clear();
+        mOriginalSizes.clear();
+    }
+
+    /**
+     * Returns true if views are being inflated in idle time
+     */
+    @VisibleForTesting
+    public boolean isStarted() {
+        return mStarted;
+    }
+
+    @Override
+    public boolean queueIdle() {
+        long endTime = SystemClock.uptimeMillis() + IDLE_BUDGET_MS;
+        LayoutInflater inflater = LayoutInflater.from(mContext);
+        while (!mLayoutIds.isEmpty() && SystemClock.uptimeMillis() < endTime) {
+            int index = mLayoutIds.size() - 1;
+            int layoutId = mLayoutIds.get(index);
+            View view = inflater.inflate(layoutId, null, false);
+            mViewCache.recycleView(layoutId, view);
+
+            int remaining = mCounts.get(index) - 1;
+            if (remaining > 0) {
+                mCounts.set(index, remaining);
+            } else {
+                mLayoutIds.removeIndex(index);
+                mCounts.removeIndex(index);
+            }
+        }
+        mStarted = !mLayoutIds.isEmpty();
+        return mStarted;
+    }
+}
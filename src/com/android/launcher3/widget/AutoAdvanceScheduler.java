@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.widget;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+import androidx.annotation.UiThread;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+
+/**
+ * Advances all the auto-advancing widgets together on a shared cadence, instead of each widget
+ * scheduling its own callbacks. The widgets of a tick are advanced in the same frame, and the
+ * widgets which are not visible are skipped.
+ *
+ * Widgets are only registered while their window is visible, so there are no ticks while the
+ * launcher is stopped.
+ */
+@UiThread
+class AutoAdvanceScheduler implements Runnable, Choreographer.FrameCallback {
+
+    @VisibleForTesting
+    static final long ADVANCE_INTERVAL = 20000;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final ArrayList<LauncherAppWidgetHostView> mViews = new ArrayList<>();
+    private boolean mFramePending;
+
+    /**
+     * Adds the widget to the next ticks, until it is removed.
+     */
+    void add(LauncherAppWidgetHostView view) {
+        if (mViews.contains(view)) {
+            return;
+        }
+        mViews.add(view);
+        if (mViews.size() == 1) {
+            scheduleNextTick();
+        }
+    }
+
+    void remove(LauncherAppWidgetHostView view) {
+        if (mViews.remove(view) && mViews.isEmpty()) {
+            mHandler.removeCallbacks(this);
+        }
+    }
+
+    @VisibleForTesting
+    int getWidgetCount() {
+        return mViews.size();
+    }
+
+    private void scheduleNextTick() {
+        // Align the ticks to the interval, so that the cadence does not depend on when the first
+        // widget was added
+        long now = SystemClock.uptimeMillis();
+        mHandler.postAtTime(this, now + ADVANCE_INTERVAL - (now % ADVANCE_INTERVAL));
+    }
+
+    @Override
+    public void run() {
+        if (mViews.isEmpty()) {
+            return;
+        }
+        if (!mFramePending) {
+            mFramePending = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+        scheduleNextTick();
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mFramePending = false;
+        for (int i = 0; i < mViews.size(); i++) {
+            mViews.get(i).advanceIfVisible();
+        }
+    }
+}
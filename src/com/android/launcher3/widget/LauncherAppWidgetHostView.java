@@ -19,9 +19,10 @@ package com.android.launcher3.widget;
 import android.appwidget.AppWidgetProviderInfo;
 import android.content.Context;
 import android.content.res.Configuration;
-import android.os.Handler;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
 import android.os.SystemClock;
-import android.util.SparseBooleanArray;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
 import android.view.View;
@@ -50,12 +51,15 @@ import com.android.launcher3.views.BaseDragLayer.TouchCompleteListener;
 public class LauncherAppWidgetHostView extends NavigableAppWidgetHostView
         implements TouchCompleteListener, View.OnLongClickListener {
 
-    // Related to the auto-advancing of widgets
-    private static final long ADVANCE_INTERVAL = 20000;
-    private static final long ADVANCE_STAGGER = 250;
+    // Delay after an update before the widget is captured, so that the views are applied and
+    // consecutive updates only cause one capture
+    private static final long SNAPSHOT_DELAY = 5000;
+    // Minimum time between two captures of the same widget
+    private static final long MIN_SNAPSHOT_INTERVAL = 15 * 60 * 1000;
 
-    // Maintains a list of widget ids which are supposed to be auto advanced.
-    private static final SparseBooleanArray sAutoAdvanceWidgetIds = new SparseBooleanArray();
+    // Advances the widgets which are supposed to be auto advanced.
+    private static final AutoAdvanceScheduler sAutoAdvanceScheduler = new AutoAdvanceScheduler();
+    private static final Rect sTempRect = new Rect();
 
     protected final LayoutInflater mInflater;
 
@@ -67,9 +71,14 @@ public class LauncherAppWidgetHostView extends NavigableAppWidgetHostView
 
     private boolean mIsScrollable;
     private boolean mIsAttachedToWindow;
-    private boolean mIsAutoAdvanceRegistered;
-    private Runnable mAutoAdvanceRunnable;
+    private boolean mIsAutoAdvance;
 
+    // Last rendered frame of the widget, drawn until the widget receives its first update
+    private Bitmap mSnapshot;
+    private boolean mSnapshotRequested;
+    private boolean mHasRemoteViews;
+    private long mLastSnapshotTime;
+    private final Runnable mCaptureSnapshotRunnable = this::captureSnapshot;
 
 
     public LauncherAppWidgetHostView(Context context) {
@@ -107,6 +116,17 @@ public class LauncherAppWidgetHostView extends NavigableAppWidgetHostView
     public void updateAppWidget(RemoteViews remoteViews) {
         super.updateAppWidget(remoteViews);
 
+        if (remoteViews == null) {
+            // The provider has not sent any views yet, show the last rendered frame if available
+            if (!mHasRemoteViews) {
+                loadSnapshot();
+            }
+        } else {
+            mHasRemoteViews = true;
+            setSnapshot(null);
+            scheduleSnapshot();
+        }
+
         // The provider info or the views might have changed.
         checkIfAutoAdvance();
 
@@ -122,6 +142,78 @@ public class LauncherAppWidgetHostView extends NavigableAppWidgetHostView
                 mLauncher.getOrientation();
     }
 
+    /**
+     * Loads the snapshot stored for this widget, if it was rendered in the current orientation.
+     */
+    protected void loadSnapshot() {
+        AppWidgetProviderInfo info = getAppWidgetInfo();
+        if (mSnapshotRequested || info == null || !isSameOrientation()) {
+            return;
+        }
+        mSnapshotRequested = true;
+        WidgetSnapshotCache.INSTANCE.get(getContext()).loadSnapshot(getAppWidgetId(),
+                info.provider, mLauncher.getOrientation(), snapshot -> {
+                    if (!mHasRemoteViews) {
+                        setSnapshot(snapshot);
+                    }
+                });
+    }
+
+    protected void setSnapshot(Bitmap snapshot) {
+        if (mSnapshot != snapshot) {
+            mSnapshot = snapshot;
+            invalidate();
+        }
+    }
+
+    /**
+     * Returns true if a snapshot is available for the current size of the view.
+     */
+    protected boolean hasSnapshot() {
+        return mSnapshot != null
+                && mSnapshot.getWidth() == getWidth() && mSnapshot.getHeight() == getHeight();
+    }
+
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        if (hasSnapshot()) {
+            canvas.drawBitmap(mSnapshot, 0, 0, null);
+        } else {
+            super.dispatchDraw(canvas);
+        }
+    }
+
+    private void scheduleSnapshot() {
+        if (mLastSnapshotTime != 0
+                && SystemClock.uptimeMillis() - mLastSnapshotTime < MIN_SNAPSHOT_INTERVAL) {
+            return;
+        }
+        removeCallbacks(mCaptureSnapshotRunnable);
+        postDelayed(mCaptureSnapshotRunnable, SNAPSHOT_DELAY);
+    }
+
+    private void captureSnapshot() {
+        AppWidgetProviderInfo info = getAppWidgetInfo();
+        if (info == null || !mHasRemoteViews || !isAttachedToWindow() || !isSameOrientation()
+                || getWidth() <= 0 || getHeight() <= 0) {
+            return;
+        }
+        Bitmap snapshot = Bitmap.createBitmap(getWidth(), getHeight(), Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(snapshot);
+        try {
+            // Only the widget content, without the focus background
+            dispatchDraw(canvas);
+        } catch (RuntimeException e) {
+            // The views can contain hardware bitmaps, which can't be drawn in software
+            return;
+        } finally {
+            canvas.setBitmap(null);
+        }
+        mLastSnapshotTime = SystemClock.uptimeMillis();
+        WidgetSnapshotCache.INSTANCE.get(getContext()).saveSnapshot(getAppWidgetId(),
+                info.provider, mLauncher.getOrientation(), snapshot);
+    }
+
     private boolean checkScrollableRecursively(ViewGroup viewGroup) {
         if (viewGroup instanceof AdapterView) {
             return true;
@@ -233,22 +325,12 @@ public class LauncherAppWidgetHostView extends NavigableAppWidgetHostView
     }
 
     private void checkIfAutoAdvance() {
-        boolean isAutoAdvance = false;
         Advanceable target = getAdvanceable();
         if (target != null) {
-            isAutoAdvance = true;
             target.fyiWillBeAdvancedByHostKThx();
         }
-
-        boolean wasAutoAdvance = sAutoAdvanceWidgetIds.indexOfKey(getAppWidgetId()) >= 0;
-        if (isAutoAdvance != wasAutoAdvance) {
-            if (isAutoAdvance) {
-                sAutoAdvanceWidgetIds.put(getAppWidgetId(), true);
-            } else {
-                sAutoAdvanceWidgetIds.delete(getAppWidgetId());
-            }
-            maybeRegisterAutoAdvance();
-        }
+        mIsAutoAdvance = target != null;
+        maybeRegisterAutoAdvance();
     }
 
     private Advanceable getAdvanceable() {
@@ -261,39 +343,25 @@ public class LauncherAppWidgetHostView extends NavigableAppWidgetHostView
     }
 
     private void maybeRegisterAutoAdvance() {
-        Handler handler = getHandler();
-        boolean shouldRegisterAutoAdvance = getWindowVisibility() == VISIBLE && handler != null
-                && (sAutoAdvanceWidgetIds.indexOfKey(getAppWidgetId()) >= 0);
-        if (shouldRegisterAutoAdvance != mIsAutoAdvanceRegistered) {
-            mIsAutoAdvanceRegistered = shouldRegisterAutoAdvance;
-            if (mAutoAdvanceRunnable == null) {
-                mAutoAdvanceRunnable = this::runAutoAdvance;
-            }
-
-            handler.removeCallbacks(mAutoAdvanceRunnable);
-            scheduleNextAdvance();
+        if (mIsAutoAdvance && mIsAttachedToWindow && getWindowVisibility() == VISIBLE) {
+            sAutoAdvanceScheduler.add(this);
+        } else {
+            sAutoAdvanceScheduler.remove(this);
         }
     }
 
-    private void scheduleNextAdvance() {
-        if (!mIsAutoAdvanceRegistered) {
+    /**
+     * Advances the widget, unless it is not visible to the user, like when it is on a page which
+     * is not in view or when the launcher is paused.
+     */
+    void advanceIfVisible() {
+        if (!mLauncher.hasBeenResumed() || !isShown() || !getGlobalVisibleRect(sTempRect)) {
             return;
         }
-        long now = SystemClock.uptimeMillis();
-        long advanceTime = now + (ADVANCE_INTERVAL - (now % ADVANCE_INTERVAL)) +
-                ADVANCE_STAGGER * sAutoAdvanceWidgetIds.indexOfKey(getAppWidgetId());
-        Handler handler = getHandler();
-        if (handler != null) {
-            handler.postAtTime(mAutoAdvanceRunnable, advanceTime);
-        }
-    }
-
-    private void runAutoAdvance() {
         Advanceable target = getAdvanceable();
         if (target != null) {
             target.advance();
         }
-        scheduleNextAdvance();
     }
 
     @Override
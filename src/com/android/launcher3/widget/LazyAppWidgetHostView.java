@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.widget;
+
+import android.appwidget.AppWidgetProviderInfo;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+/**
+ * A placeholder bound in place of a widget whose page is not near the visible page. It shows the
+ * last rendered frame of the widget if available, or the widget label like
+ * {@link DeferredAppWidgetHostView}, and ignores updates. The actual widget is inflated when its
+ * page comes into view.
+ *
+ * @see com.android.launcher3.Workspace#shouldDeferWidgetInflation
+ */
+public class LazyAppWidgetHostView extends DeferredAppWidgetHostView {
+
+    public LazyAppWidgetHostView(Context context) {
+        super(context);
+    }
+
+    @Override
+    public void setAppWidget(int appWidgetId, AppWidgetProviderInfo info) {
+        super.setAppWidget(appWidgetId, info);
+        loadSnapshot();
+    }
+
+    @Override
+    protected void setSnapshot(Bitmap snapshot) {
+        super.setSnapshot(snapshot);
+        if (snapshot != null) {
+            setBackground(null);
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (!hasSnapshot()) {
+            super.onDraw(canvas);
+        }
+    }
+}
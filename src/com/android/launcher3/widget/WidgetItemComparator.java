@@ -20,16 +20,22 @@ import android.os.UserHandle;
 
 import com.android.launcher3.model.WidgetItem;
 
+import java.text.CollationKey;
 import java.text.Collator;
 import java.util.Comparator;
+import java.util.HashMap;
 
 /**
  * Comparator for sorting WidgetItem based on their user, title and size.
+ *
+ * The collation key of each label is computed once and kept for the lifetime of the comparator,
+ * so it should not be shared across threads.
  */
 public class WidgetItemComparator implements Comparator<WidgetItem> {
 
     private final UserHandle mMyUserHandle = Process.myUserHandle();
     private final Collator mCollator = Collator.getInstance();
+    private final HashMap<String, CollationKey> mLabelKeys = new HashMap<>();
 
     @Override
     public int compare(WidgetItem a, WidgetItem b) {
@@ -41,7 +47,7 @@ public class WidgetItemComparator implements Comparator<WidgetItem> {
             return thisWorkProfile ? 1 : -1;
         }
 
-        int labelCompare = mCollator.compare(a.label, b.label);
+        int labelCompare = getLabelKey(a.label).compareTo(getLabelKey(b.label));
         if (labelCompare != 0) {
             return labelCompare;
         }
@@ -54,4 +60,13 @@ public class WidgetItemComparator implements Comparator<WidgetItem> {
                 ? Integer.compare(a.spanY, b.spanY)
                 : Integer.compare(thisArea, otherArea);
     }
+
+    private CollationKey getLabelKey(String label) {
+        CollationKey key = mLabelKeys.get(label);
+        if (key == null) {
+            key = mCollator.getCollationKey(label);
+            mLabelKeys.put(label, key);
+        }
+        return key;
+    }
 }
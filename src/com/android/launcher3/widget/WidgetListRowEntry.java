@@ -18,7 +18,9 @@ package com.android.launcher3.widget;
 import com.android.launcher3.model.WidgetItem;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.model.data.PackageItemInfo;
+import com.android.launcher3.util.LabelComparator;
 
+import java.text.CollationKey;
 import java.util.ArrayList;
 
 /**
@@ -36,9 +38,25 @@ public class WidgetListRowEntry {
      */
     public String titleSectionName;
 
+    /**
+     * Key of the package title when the row was created, used for sorting the rows.
+     */
+    public final CollationKey titleKey;
+
     public WidgetListRowEntry(PackageItemInfo pkgItem, ArrayList<WidgetItem> items) {
+        this(pkgItem, items, new LabelComparator());
+    }
+
+    /**
+     * @param labelComparator used to create the sort key, pass the same instance for all the
+     *                        rows created together to avoid creating a collator for each row
+     */
+    public WidgetListRowEntry(PackageItemInfo pkgItem, ArrayList<WidgetItem> items,
+            LabelComparator labelComparator) {
         this.pkgItem = pkgItem;
         this.widgets = items;
+        this.titleKey = labelComparator.getCollationKey(
+                pkgItem.title == null ? "" : pkgItem.title.toString());
     }
 
     @Override
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.widget;
+
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.UI_HELPER_EXECUTOR;
+
+import android.content.ComponentName;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.LauncherFiles;
+import com.android.launcher3.icons.GraphicsUtils;
+import com.android.launcher3.util.MainThreadInitializedObject;
+import com.android.launcher3.util.SQLiteCacheHelper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.function.Consumer;
+
+/**
+ * Persistent store of the last rendered frame of each widget on the workspace. The snapshot is
+ * drawn by {@link LauncherAppWidgetHostView} until the widget receives its first update, which
+ * can take a while after boot as the provider process needs to be started.
+ *
+ * Snapshots are stored per widget id along with the provider and the orientation they were
+ * rendered for, and are only returned if these still match. The view only draws a snapshot which
+ * has its current size.
+ */
+public class WidgetSnapshotCache {
+
+    private static final String TAG = "WidgetSnapshotCache";
+
+    public static final MainThreadInitializedObject<WidgetSnapshotCache> INSTANCE =
+            new MainThreadInitializedObject<>(WidgetSnapshotCache::new);
+
+    // Maximum total size of the stored snapshots, the least recently written are removed first
+    @VisibleForTesting
+    static final long MAX_CACHE_SIZE_BYTES = 4 * 1024 * 1024;
+
+    private final CacheDb mDb;
+
+    @VisibleForTesting
+    WidgetSnapshotCache(Context context) {
+        mDb = new CacheDb(context);
+    }
+
+    /**
+     * Loads the snapshot of the widget in the background and calls the callback on the main
+     * thread if a snapshot matching the provider and the orientation is found.
+     */
+    public void loadSnapshot(int appWidgetId, ComponentName provider, int orientation,
+            Consumer<Bitmap> callback) {
+        UI_HELPER_EXECUTOR.execute(() -> {
+            Bitmap snapshot = readSnapshot(appWidgetId, provider, orientation);
+            if (snapshot != null) {
+                MAIN_EXECUTOR.execute(() -> callback.accept(snapshot));
+            }
+        });
+    }
+
+    /**
+     * Saves the snapshot of the widget in the background, replacing any previous snapshot.
+     */
+    public void saveSnapshot(int appWidgetId, ComponentName provider, int orientation,
+            Bitmap snapshot) {
+        UI_HELPER_EXECUTOR.execute(
+                () -> writeSnapshot(appWidgetId, provider, orientation, snapshot));
+    }
+
+    /**
+     * Removes the snapshot of the widget in the background.
+     */
+    public void removeSnapshot(int appWidgetId) {
+        UI_HELPER_EXECUTOR.execute(() -> mDb.delete(CacheDb.COLUMN_APPWIDGET_ID + " = ?",
+                new String[] {Integer.toString(appWidgetId)}));
+    }
+
+    @VisibleForTesting
+    @WorkerThread
+    @Nullable Bitmap readSnapshot(int appWidgetId, ComponentName provider, int orientation) {
+        Cursor c = null;
+        try {
+            c = mDb.query(new String[] {CacheDb.COLUMN_SNAPSHOT},
+                    CacheDb.COLUMN_APPWIDGET_ID + " = ? AND " + CacheDb.COLUMN_PROVIDER
+                            + " = ? AND " + CacheDb.COLUMN_ORIENTATION + " = ?",
+                    new String[] {Integer.toString(appWidgetId),
+                            provider.flattenToShortString(), Integer.toString(orientation)});
+            if (c.moveToNext()) {
+                byte[] blob = c.getBlob(0);
+                return BitmapFactory.decodeByteArray(blob, 0, blob.length);
+            }
+        } catch (SQLException e) {
+            Log.w(TAG, "Error loading widget snapshot", e);
+        } finally {
+            if (c != null) {
+                c.close();
+            }
+        }
+        return null;
+    }
+
+    @VisibleForTesting
+    @WorkerThread
+    void writeSnapshot(int appWidgetId, ComponentName provider, int orientation,
+            Bitmap snapshot) {
+        byte[] data = GraphicsUtils.flattenBitmap(snapshot);
+        if (data == null || data.length > MAX_CACHE_SIZE_BYTES) {
+            return;
+        }
+        ContentValues values = new ContentValues();
+        values.put(CacheDb.COLUMN_APPWIDGET_ID, appWidgetId);
+        values.put(CacheDb.COLUMN_PROVIDER, provider.flattenToShortString());
+        values.put(CacheDb.COLUMN_ORIENTATION, orientation);
+        values.put(CacheDb.COLUMN_LAST_UPDATED, System.currentTimeMillis());
+        values.put(CacheDb.COLUMN_SNAPSHOT, data);
+        mDb.insertOrReplace(values);
+        trimToSize(MAX_CACHE_SIZE_BYTES);
+    }
+
+    /**
+     * Removes the least recently written snapshots until the total size is within the budget.
+     */
+    @VisibleForTesting
+    @WorkerThread
+    void trimToSize(long maxSize) {
+        ArrayList<long[]> entries = new ArrayList<>();
+        long totalSize = 0;
+        Cursor c = null;
+        try {
+            c = mDb.query(new String[] {CacheDb.COLUMN_APPWIDGET_ID, CacheDb.COLUMN_LAST_UPDATED,
+                    "length(" + CacheDb.COLUMN_SNAPSHOT + ")"}, null, null);
+            while (c.moveToNext()) {
+                long size = c.getLong(2);
+                entries.add(new long[] {c.getLong(0), c.getLong(1), size});
+                totalSize += size;
+            }
+        } catch (SQLException e) {
+            Log.w(TAG, "Error reading widget snapshots", e);
+            return;
+        } finally {
+            if (c != null) {
+                c.close();
+            }
+        }
+        if (totalSize <= maxSize) {
+            return;
+        }
+
+        Collections.sort(entries, (a, b) -> Long.compare(a[1], b[1]));
+        for (long[] entry : entries) {
+            if (totalSize <= maxSize) {
+                break;
+            }
+            mDb.delete(CacheDb.COLUMN_APPWIDGET_ID + " = ?",
+                    new String[] {Long.toString(entry[0])});
+            totalSize -= entry[2];
+        }
+    }
+
+    /**
+     * The DB holds the snapshot of each widget, similar to the previews stored by
+     * {@link com.android.launcher3.WidgetPreviewLoader}.
+     */
+    private static class CacheDb extends SQLiteCacheHelper {
+        private static final int DB_VERSION = 1;
+
+        private static final String TABLE_NAME = "widget_snapshots";
+        private static final String COLUMN_APPWIDGET_ID = "appWidgetId";
+        private static final String COLUMN_PROVIDER = "provider";
+        private static final String COLUMN_ORIENTATION = "orientation";
+        private static final String COLUMN_LAST_UPDATED = "lastUpdated";
+        private static final String COLUMN_SNAPSHOT = "snapshot";
+
+        CacheDb(Context context) {
+            super(context, LauncherFiles.WIDGET_SNAPSHOTS_DB, DB_VERSION, TABLE_NAME);
+        }
+
+        @Override
+        public void onCreateTable(SQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (" +
+                    COLUMN_APPWIDGET_ID + " INTEGER NOT NULL, " +
+                    COLUMN_PROVIDER + " TEXT NOT NULL, " +
+                    COLUMN_ORIENTATION + " INTEGER NOT NULL, " +
+                    COLUMN_LAST_UPDATED + " INTEGER NOT NULL DEFAULT 0, " +
+                    COLUMN_SNAPSHOT + " BLOB, " +
+                    "PRIMARY KEY (" + COLUMN_APPWIDGET_ID + ") " +
+                    ");");
+        }
+    }
+}
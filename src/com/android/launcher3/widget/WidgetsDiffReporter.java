@@ -25,7 +25,11 @@ import com.android.launcher3.model.data.PackageItemInfo;
 import com.android.launcher3.widget.WidgetsListAdapter.WidgetListRowEntryComparator;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.Set;
 
 /**
  * Do diff on widget's tray list items and call the {@link RecyclerView.Adapter}
@@ -118,6 +122,69 @@ public class WidgetsDiffReporter {
         } while(orgRowEntry != null || newRowEntry != null);
     }
 
+    /**
+     * Applies only the rows which changed between {@param currentEntries} and {@param newEntries}.
+     * Rows present as the same instance in both lists are unchanged, which is the case for the
+     * packages which were not updated in the model. The new list does not need to be sorted.
+     *
+     * @return false if too many rows changed, in which case {@link #process} should be used
+     */
+    public boolean processChangedRows(ArrayList<WidgetListRowEntry> currentEntries,
+            ArrayList<WidgetListRowEntry> newEntries, WidgetListRowEntryComparator comparator) {
+        if (currentEntries.isEmpty() || newEntries.isEmpty()) {
+            return false;
+        }
+        Set<WidgetListRowEntry> currentRows = Collections.newSetFromMap(new IdentityHashMap<>());
+        currentRows.addAll(currentEntries);
+
+        // New rows by package, these are either inserted or replace the row of the same package
+        HashMap<PackageItemInfo, WidgetListRowEntry> changedRows = new HashMap<>();
+        for (WidgetListRowEntry row : newEntries) {
+            if (!currentRows.contains(row)) {
+                changedRows.put(row.pkgItem, row);
+                if (changedRows.size() * 2 > newEntries.size()) {
+                    return false;
+                }
+            }
+        }
+        if (DEBUG) {
+            Log.d(TAG, "processChangedRows changedRows#=" + changedRows.size());
+        }
+
+        Set<WidgetListRowEntry> newRows = Collections.newSetFromMap(new IdentityHashMap<>());
+        newRows.addAll(newEntries);
+        // Go backwards so that the indices of the remaining rows do not change
+        for (int index = currentEntries.size() - 1; index >= 0; index--) {
+            WidgetListRowEntry orgRowEntry = currentEntries.get(index);
+            if (newRows.contains(orgRowEntry)) {
+                continue;
+            }
+            WidgetListRowEntry newRowEntry = changedRows.get(orgRowEntry.pkgItem);
+            if (newRowEntry != null && comparator.compare(orgRowEntry, newRowEntry) == 0) {
+                // Same package in the same position
+                changedRows.remove(orgRowEntry.pkgItem);
+                currentEntries.set(index, newRowEntry);
+                if (!isSamePackageItemInfo(orgRowEntry.pkgItem, newRowEntry.pkgItem)
+                        || !orgRowEntry.widgets.equals(newRowEntry.widgets)) {
+                    mListener.notifyItemChanged(index);
+                }
+            } else {
+                currentEntries.remove(index);
+                mListener.notifyItemRemoved(index);
+            }
+        }
+
+        for (WidgetListRowEntry newRowEntry : changedRows.values()) {
+            int index = Collections.binarySearch(currentEntries, newRowEntry, comparator);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            currentEntries.add(index, newRowEntry);
+            mListener.notifyItemInserted(index);
+        }
+        return true;
+    }
+
     /**
      * Compare package name using the same comparator as in {@link WidgetsListAdapter}.
      * Also handle null row pointers.
@@ -93,12 +93,30 @@ public class WidgetsListAdapter extends Adapter<WidgetsRowViewHolder> {
     }
 
     /**
-     * Update the widget list.
+     * Update the widget list. When only a few packages changed, only their rows are updated.
+     *
+     * @param tempEntries rows sorted by {@link WidgetListRowEntryComparator}, this list is shared
+     *                    with the model and not modified.
      */
     public void setWidgets(ArrayList<WidgetListRowEntry> tempEntries) {
         WidgetListRowEntryComparator rowComparator = new WidgetListRowEntryComparator();
-        Collections.sort(tempEntries, rowComparator);
-        mDiffReporter.process(mEntries, tempEntries, rowComparator);
+        if (!mDiffReporter.processChangedRows(mEntries, tempEntries, rowComparator)) {
+            if (!isSorted(tempEntries, rowComparator)) {
+                tempEntries = new ArrayList<>(tempEntries);
+                Collections.sort(tempEntries, rowComparator);
+            }
+            mDiffReporter.process(mEntries, tempEntries, rowComparator);
+        }
+    }
+
+    private static boolean isSorted(List<WidgetListRowEntry> entries,
+            WidgetListRowEntryComparator comparator) {
+        for (int i = entries.size() - 1; i > 0; i--) {
+            if (comparator.compare(entries.get(i - 1), entries.get(i)) > 0) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
@@ -209,11 +227,9 @@ public class WidgetsListAdapter extends Adapter<WidgetsRowViewHolder> {
      */
     public static class WidgetListRowEntryComparator implements Comparator<WidgetListRowEntry> {
 
-        private final LabelComparator mComparator = new LabelComparator();
-
         @Override
         public int compare(WidgetListRowEntry a, WidgetListRowEntry b) {
-            return mComparator.compare(a.pkgItem.title.toString(), b.pkgItem.title.toString());
+            return LabelComparator.compareKeys(a.titleKey, b.titleKey);
         }
     }
 }
@@ -26,19 +26,21 @@ import com.android.launcher3.icons.ComponentWithLabelAndIcon;
 import com.android.launcher3.icons.IconCache;
 import com.android.launcher3.model.data.PackageItemInfo;
 import com.android.launcher3.pm.ShortcutConfigActivityInfo;
+import com.android.launcher3.util.LabelComparator;
 import com.android.launcher3.util.MultiHashMap;
 import com.android.launcher3.util.PackageUserKey;
 import com.android.launcher3.util.Preconditions;
 import com.android.launcher3.widget.WidgetItemComparator;
 import com.android.launcher3.widget.WidgetListRowEntry;
 import com.android.launcher3.widget.WidgetManagerHelper;
+import com.android.launcher3.widget.WidgetsListAdapter.WidgetListRowEntryComparator;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
@@ -57,30 +59,83 @@ public class WidgetsModel {
 
     /* Map of widgets and shortcuts that are tracked per package. */
     private final MultiHashMap<PackageItemInfo, WidgetItem> mWidgetsList = new MultiHashMap<>();
+    /* Keys of {@link #mWidgetsList} by package name. */
+    private final HashMap<String, PackageItemInfo> mPackageItemInfos = new HashMap<>();
+    /*
+     * Rows returned by {@link #getWidgetsList}, a row is only rebuilt when its package changes.
+     * Rows are never modified once created, as they are shared with the UI.
+     */
+    private final HashMap<PackageItemInfo, WidgetListRowEntry> mRows = new HashMap<>();
+    /* Values of {@link #mRows} sorted by {@link WidgetListRowEntryComparator}. */
+    private final ArrayList<WidgetListRowEntry> mSortedRows = new ArrayList<>();
+    /* Packages whose row needs to be rebuilt on the next call to {@link #getWidgetsList}. */
+    private final HashSet<PackageItemInfo> mDirtyPackages = new HashSet<>();
+
+    // Comparators keep the collation keys of the labels, so they are reused across updates.
+    private LabelComparator mLabelComparator;
+    private WidgetItemComparator mWidgetComparator;
+    private final WidgetListRowEntryComparator mRowComparator = new WidgetListRowEntryComparator();
 
     private AppFilter mAppFilter;
 
     /**
-     * Returns a list of {@link WidgetListRowEntry}. All {@link WidgetItem} in a single row
-     * are sorted (based on label and user), but the overall list of {@link WidgetListRowEntry}s
-     * is not sorted. This list is sorted at the UI when using
-     * {@link com.android.launcher3.widget.WidgetsDiffReporter}
+     * Returns a list of {@link WidgetListRowEntry} sorted by package title. All
+     * {@link WidgetItem} in a single row are sorted (based on label and user).
+     *
+     * Only the rows of the packages which changed since the last call are rebuilt and moved to
+     * their sorted position, other rows are returned as the same instances, which lets the UI
+     * only update the rows which changed. The returned list is a snapshot which is never modified
+     * and can be shared as-is between the UI components.
      *
      * @see com.android.launcher3.widget.WidgetsListAdapter#setWidgets(ArrayList)
      */
     public synchronized ArrayList<WidgetListRowEntry> getWidgetsList(Context context) {
-        ArrayList<WidgetListRowEntry> result = new ArrayList<>();
+        if (!mDirtyPackages.isEmpty()) {
+            updateSortedRows(context);
+        }
+        return new ArrayList<>(mSortedRows);
+    }
+
+    private void updateSortedRows(Context context) {
+        if (mLabelComparator == null) {
+            mLabelComparator = new LabelComparator();
+            mWidgetComparator = new WidgetItemComparator();
+        }
         AlphabeticIndexCompat indexer = new AlphabeticIndexCompat(context);
 
-        WidgetItemComparator widgetComparator = new WidgetItemComparator();
-        for (Map.Entry<PackageItemInfo, ArrayList<WidgetItem>> entry : mWidgetsList.entrySet()) {
-            WidgetListRowEntry row = new WidgetListRowEntry(entry.getKey(), entry.getValue());
+        ArrayList<WidgetListRowEntry> newRows = new ArrayList<>(mDirtyPackages.size());
+        for (PackageItemInfo pkgItem : mDirtyPackages) {
+            WidgetListRowEntry oldRow = mRows.remove(pkgItem);
+            if (oldRow != null) {
+                mSortedRows.remove(oldRow);
+            }
+
+            ArrayList<WidgetItem> items = mWidgetsList.get(pkgItem);
+            if (items == null || items.isEmpty()) {
+                continue;
+            }
+            // Use the key instance from the map, it holds the latest title and icon
+            PackageItemInfo key = mPackageItemInfos.get(pkgItem.packageName);
+            WidgetListRowEntry row = new WidgetListRowEntry(key == null ? pkgItem : key,
+                    new ArrayList<>(items), mLabelComparator);
             row.titleSectionName = (row.pkgItem.title == null) ? "" :
                     indexer.computeSectionName(row.pkgItem.title);
-            Collections.sort(row.widgets, widgetComparator);
-            result.add(row);
+            Collections.sort(row.widgets, mWidgetComparator);
+            mRows.put(row.pkgItem, row);
+            newRows.add(row);
+        }
+        mDirtyPackages.clear();
+
+        if (newRows.size() > mSortedRows.size()) {
+            // Most of the list changed, sorting once is cheaper than inserting each row
+            mSortedRows.addAll(newRows);
+            Collections.sort(mSortedRows, mRowComparator);
+        } else {
+            for (WidgetListRowEntry row : newRows) {
+                int index = Collections.binarySearch(mSortedRows, row, mRowComparator);
+                mSortedRows.add(index < 0 ? -index - 1 : index, row);
+            }
         }
-        return result;
     }
 
     /**
@@ -144,15 +199,16 @@ public class WidgetsModel {
         // clear the lists.
         if (packageUser == null) {
             mWidgetsList.clear();
+            mPackageItemInfos.clear();
+            mRows.clear();
+            mSortedRows.clear();
+            mDirtyPackages.clear();
+            // Labels may have changed with the locale, start with new collation keys
+            mLabelComparator = null;
+            mWidgetComparator = null;
         } else {
             // Only clear the widgets for the given package/user.
-            PackageItemInfo packageItem = null;
-            for (PackageItemInfo item : mWidgetsList.keySet()) {
-                if (item.packageName.equals(packageUser.mPackageName)) {
-                    packageItem = item;
-                    break;
-                }
-            }
+            PackageItemInfo packageItem = mPackageItemInfos.get(packageUser.mPackageName);
             if (packageItem != null) {
                 // We want to preserve the user that was on the packageItem previously,
                 // so add it to tmpPackageItemInfos here to avoid creating a new entry.
@@ -220,14 +276,24 @@ public class WidgetsModel {
         // Update each package entry
         IconCache iconCache = app.getIconCache();
         for (PackageItemInfo p : tmpPackageItemInfos.values()) {
+            mDirtyPackages.add(p);
+            ArrayList<WidgetItem> items = mWidgetsList.get(p);
+            if (items == null || items.isEmpty()) {
+                // All the widgets of the package were removed
+                mWidgetsList.remove(p);
+                mPackageItemInfos.remove(p.packageName);
+                continue;
+            }
+            mPackageItemInfos.put(p.packageName, p);
             iconCache.getTitleAndIconForApp(p, true /* userLowResIcon */);
         }
     }
 
-    public void onPackageIconsUpdated(Set<String> packageNames, UserHandle user,
+    public synchronized void onPackageIconsUpdated(Set<String> packageNames, UserHandle user,
             LauncherAppState app) {
         for (Entry<PackageItemInfo, ArrayList<WidgetItem>> entry : mWidgetsList.entrySet()) {
             if (packageNames.contains(entry.getKey().packageName)) {
+                mDirtyPackages.add(entry.getKey());
                 ArrayList<WidgetItem> items = entry.getValue();
                 int count = items.size();
                 for (int i = 0; i < count; i++) {
@@ -23,12 +23,14 @@ import android.util.Range;
 
 import com.android.launcher3.Utilities;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import androidx.core.graphics.ColorUtils;
 
 /**
@@ -48,13 +50,44 @@ public class ColorExtractionAlgorithm {
     public static final int MAIN_COLOR_DARK = 0xff212121;
     public static final int SECONDARY_COLOR_DARK = 0xff000000;
 
+    // Number of entries in the hue to tonal palette lookup table
+    private static final int HUE_BUCKETS = 2048;
+    // Marks a hue bucket which contains a palette boundary and needs a full search
+    private static final byte AMBIGUOUS_HUE = -1;
+    // Margin around palette boundaries to account for float rounding
+    private static final float HUE_EPSILON = 1e-5f;
+
+    // Number of recent results kept, wallpapers usually alternate between a few colors
+    @VisibleForTesting
+    static final int RESULT_CACHE_SIZE = 4;
+
     // Temporary variable to avoid allocations
     private float[] mTmpHSL = new float[3];
 
+    private final CachedResult[] mCachedResults = new CachedResult[RESULT_CACHE_SIZE];
+    private int mNextCacheIndex;
+
+    /**
+     * Returns the main and secondary color for the provided wallpaper colors. Results are cached
+     * for the last few distinct wallpaper colors.
+     */
     public Pair<Integer, Integer> extractInto(WallpaperColorsCompat inWallpaperColors) {
         if (inWallpaperColors == null) {
             return applyFallback(inWallpaperColors);
         }
+        for (CachedResult cached : mCachedResults) {
+            if (cached != null && inWallpaperColors.equals(cached.colors)) {
+                return cached.result;
+            }
+        }
+        Pair<Integer, Integer> result = extractUncached(inWallpaperColors);
+        mCachedResults[mNextCacheIndex] = new CachedResult(inWallpaperColors, result);
+        mNextCacheIndex = (mNextCacheIndex + 1) % RESULT_CACHE_SIZE;
+        return result;
+    }
+
+    @VisibleForTesting
+    Pair<Integer, Integer> extractUncached(@NonNull WallpaperColorsCompat inWallpaperColors) {
 
         final List<Integer> mainColors = getMainColors(inWallpaperColors);
         final int mainColorsSize = mainColors.size();
@@ -171,8 +204,12 @@ public class ColorExtractionAlgorithm {
      * @param hsl float array with 3 components (H 0..360, S 0..1 and L 0..1)
      * @return true if color should be avoided
      */
-    private boolean isBlacklisted(float[] hsl) {
-        for (ColorRange badRange: BLACKLISTED_COLORS) {
+    @VisibleForTesting
+    static boolean isBlacklisted(float[] hsl) {
+        int hueIndex = (int) hsl[0];
+        ColorRange[] candidates = hueIndex >= 0 && hueIndex < BLACKLIST_BY_HUE.length
+                ? BLACKLIST_BY_HUE[hueIndex] : BLACKLISTED_COLORS;
+        for (ColorRange badRange: candidates) {
             if (badRange.containsColor(hsl[0], hsl[1], hsl[2])) {
                 return true;
             }
@@ -235,41 +272,66 @@ public class ColorExtractionAlgorithm {
         if (s < 0.05f) {
             return GREY_PALETTE;
         }
+        int index = getTonalPaletteIndex(h);
+        return index < 0 ? null : TONAL_PALETTES[index];
+    }
 
-        TonalPalette best = null;
+    /**
+     * Returns the index of the tonal palette for the hue [0..1], using the precomputed lookup
+     * table when the hue is not close to any palette boundary.
+     */
+    @VisibleForTesting
+    static int getTonalPaletteIndex(float h) {
+        if (h >= 0.0f && h <= 1.0f) {
+            int index = HUE_TO_PALETTE[Math.min((int) (h * HUE_BUCKETS), HUE_BUCKETS - 1)];
+            if (index != AMBIGUOUS_HUE) {
+                return index;
+            }
+        }
+        return searchTonalPalette(h);
+    }
+
+    /**
+     * Searches all the tonal palettes for the one containing the hue [0..1], or the one closest
+     * to it.
+     * @return the palette index or -1 if there is no palette.
+     */
+    @VisibleForTesting
+    static int searchTonalPalette(float h) {
+        int best = -1;
         float error = Float.POSITIVE_INFINITY;
 
         for (int i = 0; i < TONAL_PALETTES.length; i++) {
             final TonalPalette candidate = TONAL_PALETTES[i];
 
             if (h >= candidate.minHue && h <= candidate.maxHue) {
-                best = candidate;
+                best = i;
                 break;
             }
 
             if (candidate.maxHue > 1.0f && h >= 0.0f && h <= fract(candidate.maxHue)) {
-                best = candidate;
+                best = i;
                 break;
             }
 
             if (candidate.minHue < 0.0f && h >= fract(candidate.minHue) && h <= 1.0f) {
-                best = candidate;
+                best = i;
                 break;
             }
 
             if (h <= candidate.minHue && candidate.minHue - h < error) {
-                best = candidate;
+                best = i;
                 error = candidate.minHue - h;
             } else if (h >= candidate.maxHue && h - candidate.maxHue < error) {
-                best = candidate;
+                best = i;
                 error = h - candidate.maxHue;
             } else if (candidate.maxHue > 1.0f && h >= fract(candidate.maxHue)
                     && h - fract(candidate.maxHue) < error) {
-                best = candidate;
+                best = i;
                 error = h - fract(candidate.maxHue);
             } else if (candidate.minHue < 0.0f && h <= fract(candidate.minHue)
                     && fract(candidate.minHue) - h < error) {
-                best = candidate;
+                best = i;
                 error = fract(candidate.minHue) - h;
             }
         }
@@ -277,10 +339,82 @@ public class ColorExtractionAlgorithm {
         return best;
     }
 
+    /**
+     * Builds the hue to palette lookup table. The result of {@link #searchTonalPalette} only
+     * changes at a palette boundary, or half way between two neighbouring boundaries where the
+     * closest palette changes. Buckets around these points are marked as ambiguous and searched
+     * at runtime, all other buckets map to a single palette.
+     */
+    private static byte[] buildHueLookup() {
+        float[] boundaries = new float[TONAL_PALETTES.length * 4];
+        int count = 0;
+        for (TonalPalette palette : TONAL_PALETTES) {
+            boundaries[count++] = palette.minHue;
+            boundaries[count++] = palette.maxHue;
+            boundaries[count++] = fract(palette.minHue);
+            boundaries[count++] = fract(palette.maxHue);
+        }
+        Arrays.sort(boundaries);
+
+        byte[] lookup = new byte[HUE_BUCKETS];
+        for (int i = 0; i < count; i++) {
+            markAmbiguous(lookup, boundaries[i]);
+            if (i > 0) {
+                markAmbiguous(lookup, (boundaries[i - 1] + boundaries[i]) / 2);
+            }
+        }
+        for (int i = 0; i < HUE_BUCKETS; i++) {
+            if (lookup[i] != AMBIGUOUS_HUE) {
+                lookup[i] = (byte) searchTonalPalette((i + 0.5f) / HUE_BUCKETS);
+            }
+        }
+        return lookup;
+    }
+
+    private static void markAmbiguous(byte[] lookup, float hue) {
+        int start = Math.max((int) Math.floor((hue - HUE_EPSILON) * HUE_BUCKETS), 0);
+        int end = Math.min((int) Math.floor((hue + HUE_EPSILON) * HUE_BUCKETS), HUE_BUCKETS - 1);
+        for (int i = start; i <= end; i++) {
+            lookup[i] = AMBIGUOUS_HUE;
+        }
+    }
+
+    /**
+     * Groups the blacklisted ranges by integer hue, so that a color is only checked against the
+     * ranges which can contain its hue.
+     */
+    private static ColorRange[][] buildBlacklistByHue() {
+        ColorRange[][] result = new ColorRange[360][];
+        ArrayList<ColorRange> candidates = new ArrayList<>();
+        for (int hue = 0; hue < result.length; hue++) {
+            candidates.clear();
+            for (ColorRange range : BLACKLISTED_COLORS) {
+                if (range.mMinHue < hue + 1 && range.mMaxHue >= hue) {
+                    candidates.add(range);
+                }
+            }
+            result[hue] = candidates.toArray(new ColorRange[candidates.size()]);
+        }
+        return result;
+    }
+
     private static float fract(float v) {
         return v - (float) Math.floor(v);
     }
 
+    /**
+     * Result of an extraction, along with the wallpaper colors it was extracted from.
+     */
+    private static class CachedResult {
+        final WallpaperColorsCompat colors;
+        final Pair<Integer, Integer> result;
+
+        CachedResult(WallpaperColorsCompat colors, Pair<Integer, Integer> result) {
+            this.colors = colors;
+            this.result = result;
+        }
+    }
+
     static class TonalPalette {
         final float[] h;
         final float[] s;
@@ -591,6 +725,9 @@ public class ColorExtractionAlgorithm {
                     0.8196078431372549f, 0.9176470588235294f, 0.9490196078431372f}
     );
 
+    // Index of the palette to use for each hue bucket, see buildHueLookup
+    private static final byte[] HUE_TO_PALETTE = buildHueLookup();
+
     @SuppressWarnings("WeakerAccess")
     static final ColorRange[] BLACKLISTED_COLORS = new ColorRange[] {
 
@@ -735,6 +872,9 @@ public class ColorExtractionAlgorithm {
                     new Range<>(0.437f, 0.596f))
     };
 
+    // Blacklisted ranges which can contain each integer hue
+    private static final ColorRange[][] BLACKLIST_BY_HUE = buildBlacklistByHue();
+
     /**
      * Representation of an HSL color range.
      * <ul>
@@ -744,22 +884,29 @@ public class ColorExtractionAlgorithm {
      * </ul>
      */
     static class ColorRange {
-        private Range<Float> mHue;
-        private Range<Float> mSaturation;
-        private Range<Float> mLightness;
+        // Bounds are unboxed to avoid allocations when checking colors
+        private final float mMinHue;
+        private final float mMaxHue;
+        private final float mMinSaturation;
+        private final float mMaxSaturation;
+        private final float mMinLightness;
+        private final float mMaxLightness;
 
         ColorRange(Range<Float> hue, Range<Float> saturation, Range<Float> lightness) {
-            mHue = hue;
-            mSaturation = saturation;
-            mLightness = lightness;
+            mMinHue = hue.getLower();
+            mMaxHue = hue.getUpper();
+            mMinSaturation = saturation.getLower();
+            mMaxSaturation = saturation.getUpper();
+            mMinLightness = lightness.getLower();
+            mMaxLightness = lightness.getUpper();
         }
 
         boolean containsColor(float h, float s, float l) {
-            if (!mHue.contains(h)) {
+            if (h < mMinHue || h > mMaxHue) {
                 return false;
-            } else if (!mSaturation.contains(s)) {
+            } else if (s < mMinSaturation || s > mMaxSaturation) {
                 return false;
-            } else if (!mLightness.contains(l)) {
+            } else if (l < mMinLightness || l > mMaxLightness) {
                 return false;
             }
             return true;
@@ -767,15 +914,16 @@ public class ColorExtractionAlgorithm {
 
         float[] getCenter() {
             return new float[] {
-                    mHue.getLower() + (mHue.getUpper() - mHue.getLower()) / 2f,
-                    mSaturation.getLower() + (mSaturation.getUpper() - mSaturation.getLower()) / 2f,
-                    mLightness.getLower() + (mLightness.getUpper() - mLightness.getLower()) / 2f
+                    mMinHue + (mMaxHue - mMinHue) / 2f,
+                    mMinSaturation + (mMaxSaturation - mMinSaturation) / 2f,
+                    mMinLightness + (mMaxLightness - mMinLightness) / 2f
             };
         }
 
         @Override
         public String toString() {
-            return String.format("H: %s, S: %s, L %s", mHue, mSaturation, mLightness);
+            return String.format("H: [%s, %s], S: [%s, %s], L [%s, %s]", mMinHue, mMaxHue,
+                    mMinSaturation, mMaxSaturation, mMinLightness, mMaxLightness);
         }
     }
 
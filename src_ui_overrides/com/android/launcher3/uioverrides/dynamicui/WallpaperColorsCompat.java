@@ -15,6 +15,8 @@
  */
 package com.android.launcher3.uioverrides.dynamicui;
 
+import java.util.Objects;
+
 /**
  * A compatibility layer around platform implementation of WallpaperColors
  */
@@ -52,4 +54,21 @@ public class WallpaperColorsCompat {
         return mColorHints;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof WallpaperColorsCompat)) {
+            return false;
+        }
+        WallpaperColorsCompat other = (WallpaperColorsCompat) o;
+        return mPrimaryColor == other.mPrimaryColor
+                && mSecondaryColor == other.mSecondaryColor
+                && mTertiaryColor == other.mTertiaryColor
+                && mColorHints == other.mColorHints;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(mPrimaryColor, mSecondaryColor, mTertiaryColor, mColorHints);
+    }
+
 }
@@ -33,6 +33,7 @@ import android.content.pm.LauncherActivityInfo;
 import android.content.pm.LauncherApps;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
+import android.os.Bundle;
 import android.os.Debug;
 import android.os.Process;
 import android.os.RemoteException;
@@ -278,6 +279,7 @@ public abstract class AbstractLauncherUiTest {
         mTargetContext = InstrumentationRegistry.getTargetContext();
         mTargetPackage = mTargetContext.getPackageName();
         mLauncherPid = mLauncher.getPid();
+        mLauncher.resetStateTransitionMetrics();
 
         UserManager userManager = mTargetContext.getSystemService(UserManager.class);
         if (userManager != null) {
@@ -298,6 +300,22 @@ public abstract class AbstractLauncherUiTest {
                     mLauncherPid, mLauncher.getPid().intValue());
         }
         checkDetectedLeaks(mLauncher);
+        logStateTransitionMetrics();
+    }
+
+    private void logStateTransitionMetrics() {
+        Bundle metrics = mLauncher.getStateTransitionMetrics();
+        if (metrics == null) {
+            return;
+        }
+        for (String transition : metrics.keySet()) {
+            Bundle stats = metrics.getBundle(transition);
+            StringBuilder line = new StringBuilder("State transition ").append(transition);
+            for (String key : stats.keySet()) {
+                line.append(' ').append(key).append('=').append(stats.get(key));
+            }
+            Log.d(TAG, line.toString());
+        }
     }
 
     protected void clearLauncherData() {
@@ -57,7 +57,7 @@ public class TraceHelperForTest extends TraceHelper {
         }
         updateBinderTracking(stack);
 
-        super.beginSection(sectionName, flags);
+        info.parentToken = super.beginSection(sectionName, flags);
         return info;
     }
 
@@ -75,7 +75,7 @@ public class TraceHelperForTest extends TraceHelper {
         }
         updateBinderTracking(stack);
 
-        super.endSection(token);
+        super.endSection(info.parentToken);
     }
 
     @Override
@@ -84,15 +84,15 @@ public class TraceHelperForTest extends TraceHelper {
         TraceInfo info = new TraceInfo(null, flags);
         stack.add(info);
         updateBinderTracking(stack);
-        super.beginFlagsOverride(flags);
+        info.parentToken = super.beginFlagsOverride(flags);
         return info;
     }
 
     @Override
     public void endFlagsOverride(Object token) {
-        super.endFlagsOverride(token);
-        LinkedList<TraceInfo> stack = mStack.get();
         TraceInfo info = (TraceInfo) token;
+        super.endFlagsOverride(info.parentToken);
+        LinkedList<TraceInfo> stack = mStack.get();
         stack.remove(info);
         updateBinderTracking(stack);
     }
@@ -107,6 +107,8 @@ public class TraceHelperForTest extends TraceHelper {
     private static class TraceInfo {
         public final String sectionName;
         public final int flags;
+        // Token returned by the base implementation
+        public Object parentToken;
 
         TraceInfo(String sectionName, int flags) {
             this.sectionName = sectionName;
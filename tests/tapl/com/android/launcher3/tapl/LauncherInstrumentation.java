@@ -1329,6 +1329,19 @@ public final class LauncherInstrumentation {
                 getInt(TestProtocol.TEST_INFO_RESPONSE_FIELD);
     }
 
+    /**
+     * Returns the frame metrics of the launcher state transitions since the last reset, with one
+     * bundle per transition, or null if launcher is not running.
+     */
+    public Bundle getStateTransitionMetrics() {
+        final Bundle testInfo = getTestInfo(TestProtocol.REQUEST_STATE_TRANSITION_METRICS);
+        return testInfo != null ? testInfo.getBundle(TestProtocol.TEST_INFO_RESPONSE_FIELD) : null;
+    }
+
+    public void resetStateTransitionMetrics() {
+        getTestInfo(TestProtocol.REQUEST_RESET_STATE_TRANSITION_METRICS);
+    }
+
     public Integer getPid() {
         final Bundle testInfo = getTestInfo(TestProtocol.REQUEST_PID);
         return testInfo != null ? testInfo.getInt(TestProtocol.TEST_INFO_RESPONSE_FIELD) : null;